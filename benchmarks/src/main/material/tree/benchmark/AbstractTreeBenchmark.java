@@ -0,0 +1,49 @@
+package material.tree.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import material.tree.Position;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Common parameters of the benchmarks that run over every tree
+ * implementation and shape.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class AbstractTreeBenchmark {
+
+    @Param({"LINKED", "LCRS", "LCRS_ARRAYS", "INT_ARRAYS", "LONG_ARRAYS", "DOUBLE_ARRAYS",
+        "OFF_HEAP", "VERSIONED", "CONCURRENT"})
+    public TreeKind kind;
+
+    @Param({"WIDE", "DEEP", "BALANCED", "RANDOM"})
+    public TreeShape shape;
+
+    @Param({"10000"})
+    public int size;
+
+    protected int[] parents;
+    protected Position<Integer>[] positions;
+
+    @SuppressWarnings("unchecked")
+    protected void init() {
+        parents = shape.parents(size);
+        positions = new Position[size];
+    }
+
+    protected BenchmarkTree build() {
+        return kind.build(parents, positions);
+    }
+}
@@ -0,0 +1,86 @@
+package material.tree.benchmark;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import material.tree.LinkedTree;
+import material.tree.Position;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lowest common ancestor of two random nodes of a LinkedTree, answered with
+ * the ancestry index and by walking the parent links, and subtree membership
+ * answered with the jump pointers and with the interval labels.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AncestryBenchmark {
+
+    @Param({"DEEP", "RANDOM"})
+    public TreeShape shape;
+
+    @Param({"10000"})
+    public int size;
+
+    private LinkedTree<Integer> tree;
+    private Position<Integer>[] positions;
+    private final Random random = new Random(42);
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        int[] parents = shape.parents(size);
+        positions = new Position[size];
+        tree = (LinkedTree<Integer>) TreeKind.LINKED.build(parents, positions).tree();
+        tree.depth(tree.root());
+        tree.isInSubtree(tree.root(), tree.root());
+    }
+
+    @Benchmark
+    public Position<Integer> indexed() {
+        return tree.lowestCommonAncestor(positions[random.nextInt(size)], positions[random.nextInt(size)]);
+    }
+
+    @Benchmark
+    public Position<Integer> parentWalk() {
+        Position<Integer> p = positions[random.nextInt(size)];
+        Position<Integer> q = positions[random.nextInt(size)];
+        Set<Position<Integer>> ancestors = new HashSet<>();
+        for (Position<Integer> a = p; ; a = tree.parent(a)) {
+            ancestors.add(a);
+            if (tree.isRoot(a)) {
+                break;
+            }
+        }
+        while (!ancestors.contains(q)) {
+            q = tree.parent(q);
+        }
+        return q;
+    }
+
+    @Benchmark
+    public boolean inSubtreeJumps() {
+        return tree.isAncestor(positions[random.nextInt(size)], positions[random.nextInt(size)]);
+    }
+
+    @Benchmark
+    public boolean inSubtreeLabels() {
+        return tree.isInSubtree(positions[random.nextInt(size)], positions[random.nextInt(size)]);
+    }
+}
@@ -0,0 +1,118 @@
+package material.tree.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import material.tree.LinkedTree;
+import material.tree.Position;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A group of additions and removals at random nodes of a LinkedTree, applied
+ * one by one and as a single batch with {@link LinkedTree#mutate}. One in ten
+ * operations removes a leaf of the original tree, while there are leaves. Each measurement applies
+ * the operations once to a freshly built tree.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 50)
+@Fork(1)
+public class BatchBenchmark {
+
+    @Param({"10000"})
+    public int size;
+
+    @Param({"1000"})
+    public int operations;
+
+    @Param({"DEEP", "RANDOM"})
+    public TreeShape shape;
+
+    private int[] parents;
+    private int[] targets;
+    private LinkedTree<Integer> tree;
+    private Position<Integer>[] positions;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        parents = shape.parents(size);
+        boolean[] internal = new boolean[size];
+        for (int i = 1; i < size; i++) {
+            internal[parents[i]] = true;
+        }
+        List<Integer> leaves = new ArrayList<>();
+        for (int i = 1; i < size; i++) {
+            if (!internal[i]) {
+                leaves.add(i);
+            }
+        }
+        Random random = new Random(42);
+        Collections.shuffle(leaves, random);
+        boolean[] removed = new boolean[size];
+        targets = new int[operations];
+        for (int k = 0; k < operations; k++) {
+            if (k % 10 == 9 && !leaves.isEmpty()) {
+                // Remove a distinct leaf, so no operation becomes invalid
+                int leaf = leaves.remove(leaves.size() - 1);
+                removed[leaf] = true;
+                targets[k] = -1 - leaf;
+            } else {
+                int target = random.nextInt(size);
+                while (removed[target]) {
+                    target = random.nextInt(size);
+                }
+                targets[k] = target;
+            }
+        }
+    }
+
+    @Setup(Level.Iteration)
+    @SuppressWarnings("unchecked")
+    public void setUpInvocation() {
+        positions = new Position[size];
+        tree = (LinkedTree<Integer>) TreeKind.LINKED.build(parents, positions).tree();
+    }
+
+    @Benchmark
+    public LinkedTree<Integer> oneByOne() {
+        for (int k = 0; k < operations; k++) {
+            int target = targets[k];
+            if (target < 0) {
+                tree.remove(positions[-1 - target]);
+            } else {
+                tree.add(k, positions[target]);
+            }
+        }
+        return tree;
+    }
+
+    @Benchmark
+    public LinkedTree<Integer> batched() {
+        tree.mutate(batch -> {
+            for (int k = 0; k < operations; k++) {
+                int target = targets[k];
+                if (target < 0) {
+                    batch.remove(positions[-1 - target]);
+                } else {
+                    batch.add(k, positions[target]);
+                }
+            }
+        });
+        return tree;
+    }
+}
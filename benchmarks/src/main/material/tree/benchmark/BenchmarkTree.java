@@ -0,0 +1,24 @@
+package material.tree.benchmark;
+
+import material.tree.Position;
+import material.tree.Tree;
+
+/**
+ * Uniform view of the mutable operations of the tree implementations, which
+ * are not part of the {@link Tree} interface.
+ */
+public interface BenchmarkTree {
+
+    /**
+     * @return the benchmarked tree
+     */
+    public Tree<Integer> tree();
+
+    public Position<Integer> addRoot(Integer e);
+
+    public Position<Integer> add(Integer e, Position<Integer> parent);
+
+    public void remove(Position<Integer> p);
+
+    public void swapElements(Position<Integer> p1, Position<Integer> p2);
+}
@@ -0,0 +1,75 @@
+package material.tree.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import material.tree.LinkedTree;
+import material.tree.Position;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of validating a position at the bottom of a list-shaped LinkedTree.
+ * Validation is O(1) while no subtree is removed; after a removal the node
+ * is tested against the depths of the recent removals, which costs a few
+ * ancestor jumps per removal instead of a walk of the whole path, so both
+ * benchmarks should stay flat as the depth grows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckPositionBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    public int depth;
+
+    private LinkedTree<Integer> tree;
+    private Position<Integer> root;
+    private Position<Integer> deepest;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int[] parents = TreeShape.DEEP.parents(depth);
+        Integer[] elements = new Integer[depth];
+        for (int i = 0; i < depth; i++) {
+            elements[i] = i;
+        }
+        tree = new LinkedTree<>(Arrays.asList(elements), parents);
+        root = tree.root();
+        deepest = tree.root();
+        for (Position<Integer> p = tree.firstChild(root); p != null; p = tree.firstChild(p)) {
+            deepest = p;
+        }
+    }
+
+    /**
+     * Validation of a deep node when no subtree has been removed since its
+     * last check.
+     */
+    @Benchmark
+    public boolean checkCached() {
+        return tree.isLeaf(deepest);
+    }
+
+    /**
+     * Removal of an unrelated leaf followed by the validation of a deep node,
+     * which only has to climb to the depth of the removed leaf.
+     */
+    @Benchmark
+    public boolean checkAfterRemove() {
+        tree.remove(tree.add(-1, root));
+        return tree.isLeaf(deepest);
+    }
+}
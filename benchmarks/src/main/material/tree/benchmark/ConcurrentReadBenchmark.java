@@ -0,0 +1,95 @@
+package material.tree.benchmark;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import material.tree.ConcurrentLinkedTree;
+import material.tree.Position;
+import material.tree.Tree;
+import material.tree.iterator.BFSIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Read throughput of ConcurrentLinkedTree against a LinkedTree guarded by a
+ * single monitor, with seven reader threads doing full BFS traversals and one
+ * writer thread adding and removing a leaf under the root.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentReadBenchmark {
+
+    @Param({"10000"})
+    public int size;
+
+    private ConcurrentLinkedTree<Integer> concurrent;
+    private SynchronizedTree<Integer> synchronizedTree;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int[] parents = TreeShape.BALANCED.parents(size);
+        concurrent = new ConcurrentLinkedTree<>();
+        synchronizedTree = new SynchronizedTree<>();
+        @SuppressWarnings("unchecked")
+        Position<Integer>[] a = new Position[size];
+        @SuppressWarnings("unchecked")
+        Position<Integer>[] b = new Position[size];
+        a[0] = concurrent.addRoot(0);
+        b[0] = synchronizedTree.addRoot(0);
+        for (int i = 1; i < size; i++) {
+            a[i] = concurrent.add(i, a[parents[i]]);
+            b[i] = synchronizedTree.add(i, b[parents[i]]);
+        }
+    }
+
+    private static void traverse(Tree<Integer> tree, Blackhole bh) {
+        Iterator<Position<Integer>> it = new BFSIterator<>(tree);
+        while (it.hasNext()) {
+            bh.consume(it.next());
+        }
+    }
+
+    @Benchmark
+    @Group("concurrent")
+    @GroupThreads(7)
+    public void concurrentRead(Blackhole bh) {
+        traverse(concurrent, bh);
+    }
+
+    @Benchmark
+    @Group("concurrent")
+    @GroupThreads(1)
+    public void concurrentWrite() {
+        concurrent.remove(concurrent.add(-1, concurrent.root()));
+    }
+
+    @Benchmark
+    @Group("synchronized")
+    @GroupThreads(7)
+    public void synchronizedRead(Blackhole bh) {
+        traverse(synchronizedTree, bh);
+    }
+
+    @Benchmark
+    @Group("synchronized")
+    @GroupThreads(1)
+    public void synchronizedWrite() {
+        synchronizedTree.remove(synchronizedTree.add(-1, synchronizedTree.root()));
+    }
+}
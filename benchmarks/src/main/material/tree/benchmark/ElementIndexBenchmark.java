@@ -0,0 +1,79 @@
+package material.tree.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import material.tree.ElementIndex;
+import material.tree.LinkedTree;
+import material.tree.Position;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lookup of a node of a LinkedTree by its element, through a unique element
+ * index and by scanning the tree, and the cost the index adds to building
+ * the tree.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElementIndexBenchmark {
+
+    @Param({"10000"})
+    public int size;
+
+    private int[] parents;
+    private LinkedTree<Integer> tree;
+    private ElementIndex<Integer, Integer> index;
+    private final Random random = new Random(42);
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        parents = TreeShape.RANDOM.parents(size);
+        tree = (LinkedTree<Integer>) TreeKind.LINKED.build(parents, new Position[size]).tree();
+        index = tree.createIndex(e -> e, true);
+    }
+
+    @Benchmark
+    public Position<Integer> lookupIndexed() {
+        return index.get(random.nextInt(size));
+    }
+
+    @Benchmark
+    public Position<Integer> lookupScan() {
+        Integer key = random.nextInt(size);
+        for (Position<Integer> p : tree) {
+            if (key.equals(p.getElement())) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @SuppressWarnings("unchecked")
+    public LinkedTree<Integer> buildIndexed() {
+        LinkedTree<Integer> t = new LinkedTree<>();
+        t.createIndex(e -> e, true);
+        Position<Integer>[] positions = new Position[size];
+        positions[0] = t.addRoot(0);
+        for (int i = 1; i < size; i++) {
+            positions[i] = t.add(i, positions[parents[i]]);
+        }
+        return t;
+    }
+}
@@ -0,0 +1,89 @@
+package material.tree.benchmark;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import material.tree.LinkedTree;
+import material.tree.Position;
+import material.tree.metrics.TreeMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of the instrumentation of LinkedTree, with no listener attached and
+ * with a TreeMetrics listener. Comparing the runs without listener against
+ * TreeBuildBenchmark and TreeTraversalBenchmark on a build without the hooks
+ * gives the overhead of the disabled instrumentation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstrumentationBenchmark {
+
+    @Param({"10000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean instrumented;
+
+    private int[] parents;
+    private LinkedTree<Integer> tree;
+    private Position<Integer>[] positions;
+    private TreeMetrics metrics;
+    private int next;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        parents = TreeShape.RANDOM.parents(size);
+        metrics = instrumented ? new TreeMetrics() : null;
+        positions = new Position[size];
+        tree = build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private LinkedTree<Integer> build() {
+        LinkedTree<Integer> t = new LinkedTree<>();
+        t.setListener(metrics);
+        Position<Integer>[] nodes = new Position[size];
+        nodes[0] = t.addRoot(0);
+        for (int i = 1; i < size; i++) {
+            nodes[i] = t.add(i, nodes[parents[i]]);
+        }
+        positions = nodes;
+        return t;
+    }
+
+    @Benchmark
+    public LinkedTree<Integer> addAll() {
+        return build();
+    }
+
+    @Benchmark
+    public void bfsTraversal(Blackhole bh) {
+        Iterator<Position<Integer>> it = tree.iterator();
+        while (it.hasNext()) {
+            bh.consume(it.next());
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Integer replace() {
+        next = (next + 1) % size;
+        return tree.replace(positions[next], next);
+    }
+}
@@ -0,0 +1,87 @@
+package material.tree.benchmark;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import material.tree.LinkedTree;
+import material.tree.Position;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reparenting a random subtree between two branches of a LinkedTree, with
+ * moveSubtree and, as it had to be done before, by adding a copy of every
+ * node under the new parent and removing the original subtree.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class MoveSubtreeBenchmark {
+
+    @Param({"1000", "1000000"})
+    public int subtree;
+
+    private LinkedTree<Integer> tree;
+    private Position<Integer>[] branches;
+    private Position<Integer> moved;
+    private int target;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        tree = new LinkedTree<>();
+        Position<Integer> root = tree.addRoot(-1);
+        branches = new Position[] {tree.add(-2, root), tree.add(-3, root)};
+        int[] parents = TreeShape.RANDOM.parents(subtree);
+        List<Position<Integer>> nodes = new ArrayList<>(subtree);
+        nodes.add(tree.add(0, branches[0]));
+        for (int i = 1; i < subtree; i++) {
+            nodes.add(tree.add(i, nodes.get(parents[i])));
+        }
+        moved = nodes.get(0);
+        target = 1;
+    }
+
+    @Benchmark
+    public Position<Integer> move() {
+        tree.moveSubtree(moved, branches[target]);
+        target = 1 - target;
+        return moved;
+    }
+
+    @Benchmark
+    public Position<Integer> copyAndRemove() {
+        Deque<Position<Integer>> originals = new ArrayDeque<>();
+        Deque<Position<Integer>> copies = new ArrayDeque<>();
+        Position<Integer> top = tree.add(moved.getElement(), branches[target]);
+        originals.push(moved);
+        copies.push(top);
+        while (!originals.isEmpty()) {
+            Position<Integer> original = originals.pop();
+            Position<Integer> copy = copies.pop();
+            for (Position<Integer> child : tree.children(original)) {
+                originals.push(child);
+                copies.push(tree.add(child.getElement(), copy));
+            }
+        }
+        tree.remove(moved);
+        moved = top;
+        target = 1 - target;
+        return moved;
+    }
+}
@@ -0,0 +1,80 @@
+package material.tree.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import material.tree.LinkedTree;
+import material.tree.Position;
+import material.tree.Tree;
+import material.tree.io.IntCodec;
+import material.tree.io.OffHeapTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a full garbage collection while a large tree is alive, with the
+ * tree on the heap (LinkedTree) and off the heap (OffHeapTree). A full
+ * collection marks every live object, so its time grows with the number of
+ * nodes of an on-heap tree. Add "-jvmArgsAppend -Xlog:gc" to see the pauses
+ * in the GC log.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class OffHeapGcBenchmark {
+
+    @Param({"LINKED", "OFF_HEAP"})
+    public String kind;
+
+    @Param({"5000000"})
+    public int size;
+
+    private Tree<Integer> tree;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        int[] parents = TreeShape.RANDOM.parents(size);
+        Position<Integer>[] positions = new Position[size];
+        if (kind.equals("LINKED")) {
+            LinkedTree<Integer> t = new LinkedTree<>();
+            positions[0] = t.addRoot(0);
+            for (int i = 1; i < size; i++) {
+                positions[i] = t.add(i, positions[parents[i]]);
+            }
+            tree = t;
+        } else {
+            OffHeapTree<Integer> t = new OffHeapTree<>(new IntCodec());
+            positions[0] = t.addRoot(0);
+            for (int i = 1; i < size; i++) {
+                positions[i] = t.add(i, positions[parents[i]]);
+            }
+            tree = t;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (tree instanceof OffHeapTree) {
+            ((OffHeapTree<Integer>) tree).close();
+        }
+    }
+
+    @Benchmark
+    public int fullGc() {
+        System.gc();
+        return tree.size();
+    }
+}
@@ -0,0 +1,89 @@
+package material.tree.benchmark;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import material.tree.LinkedTree;
+import material.tree.Position;
+import material.tree.iterator.BFSIteratorFactory;
+import material.tree.iterator.ParallelBFSIteratorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Breadth-first traversal of a LinkedTree with BFSIteratorFactory against
+ * ParallelBFSIteratorFactory, both as an iterator and as a level-synchronous
+ * visitor. The per-node work is the same small arithmetic loop used by
+ * StreamBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelBFSBenchmark {
+
+    @Param({"BALANCED", "WIDE"})
+    public TreeShape shape;
+
+    @Param({"1000000"})
+    public int size;
+
+    private LinkedTree<Integer> tree;
+    private final BFSIteratorFactory<Integer> sequential = new BFSIteratorFactory<>();
+    private final ParallelBFSIteratorFactory<Integer> parallel = new ParallelBFSIteratorFactory<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Integer[] elements = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            elements[i] = i;
+        }
+        tree = new LinkedTree<>(Arrays.asList(elements), shape.parents(size));
+    }
+
+    private static long work(Position<Integer> p) {
+        long x = p.getElement();
+        for (int i = 0; i < 32; i++) {
+            x = x * 6364136223846793005L + 1442695040888963407L;
+        }
+        return x;
+    }
+
+    private static long consume(Iterator<Position<Integer>> it) {
+        long sum = 0;
+        while (it.hasNext()) {
+            sum += work(it.next());
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long sequentialIterator() {
+        return consume(sequential.createIterator(tree));
+    }
+
+    @Benchmark
+    public long parallelIterator() {
+        return consume(parallel.createIterator(tree));
+    }
+
+    @Benchmark
+    public long parallelVisitor() {
+        LongAdder sum = new LongAdder();
+        parallel.forEachLevel(tree, p -> sum.add(work(p)));
+        return sum.sum();
+    }
+}
@@ -0,0 +1,94 @@
+package material.tree.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import material.tree.IntPosition;
+import material.tree.IntTree;
+import material.tree.LinkedTree;
+import material.tree.Position;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * LinkedTree&lt;Integer&gt; against IntTree: building a tree and summing its
+ * elements. Run it with "-prof gc": the gc.alloc.rate.norm of the build
+ * benchmarks is the heap allocated per tree, and that of the sum benchmarks
+ * is the garbage created per aggregation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitiveTreeBenchmark {
+
+    @Param({"RANDOM"})
+    public TreeShape shape;
+
+    @Param({"100000"})
+    public int size;
+
+    private int[] parents;
+    private LinkedTree<Integer> linked;
+    private IntTree ints;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        parents = shape.parents(size);
+        linked = buildLinked();
+        ints = buildInt();
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public LinkedTree<Integer> buildLinked() {
+        LinkedTree<Integer> t = new LinkedTree<>();
+        Position<Integer>[] positions = new Position[size];
+        // Values beyond the Integer cache, as real payloads would be
+        positions[0] = t.addRoot(1000);
+        for (int i = 1; i < size; i++) {
+            positions[i] = t.add(i + 1000, positions[parents[i]]);
+        }
+        return t;
+    }
+
+    @Benchmark
+    public IntTree buildInt() {
+        IntTree t = new IntTree(size);
+        IntPosition[] positions = new IntPosition[size];
+        positions[0] = t.addRoot(1000);
+        for (int i = 1; i < size; i++) {
+            positions[i] = t.add(i + 1000, positions[parents[i]]);
+        }
+        return t;
+    }
+
+    @Benchmark
+    public long sumLinked() {
+        long sum = 0;
+        for (Position<Integer> p : linked) {
+            sum += p.getElement();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long sumLinkedFold() {
+        return linked.fold(linked.root(), Integer::longValue, Long::sum);
+    }
+
+    @Benchmark
+    public int sumInt() {
+        return ints.fold(0, Integer::sum);
+    }
+}
@@ -0,0 +1,123 @@
+package material.tree.benchmark;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import material.tree.LinkedTree;
+import material.tree.Position;
+import material.tree.iterator.BFSIteratorFactory;
+import material.tree.iterator.PreorderIterator;
+import material.tree.iterator.PreorderIteratorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Traversal of a LinkedTree whose nodes have been scattered by churn: random
+ * leaves are removed and replaced by nodes added at random places, with
+ * unrelated allocations in between, until most nodes were created after the
+ * tree was built. The tree is then traversed as it is, or after a relayout in
+ * breadth-first or pre-order. A tree that was only built (FRESH) is included
+ * too: its nodes are allocated in insertion order, which matches neither
+ * traversal either.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RelayoutBenchmark {
+
+    /**
+     * How the nodes of the traversed tree were allocated.
+     */
+    public enum Layout {
+        FRESH, CHURNED, BFS, PREORDER
+    }
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"FRESH", "CHURNED", "BFS", "PREORDER"})
+    public Layout layout;
+
+    private LinkedTree<Integer> tree;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        int[] parents = TreeShape.RANDOM.parents(size);
+        tree = new LinkedTree<>();
+        List<Position<Integer>> nodes = new ArrayList<>(size);
+        nodes.add(tree.addRoot(0));
+        for (int i = 1; i < size; i++) {
+            nodes.add(tree.add(i, nodes.get(parents[i])));
+        }
+        if (layout != Layout.FRESH) {
+            churn(nodes);
+        }
+        if (layout == Layout.BFS) {
+            tree.relayout(new BFSIteratorFactory<>());
+        } else if (layout == Layout.PREORDER) {
+            tree.relayout(new PreorderIteratorFactory<>());
+        }
+        System.gc();
+    }
+
+    /**
+     * Replaces leaves by new nodes at random places, keeping the size, until
+     * about three times as many nodes as the tree has have been replaced.
+     */
+    private void churn(List<Position<Integer>> nodes) {
+        Random random = new Random(7);
+        List<byte[]> garbage = new ArrayList<>();
+        int replaced = 0;
+        while (replaced < 3 * size) {
+            int i = random.nextInt(size);
+            Position<Integer> p = nodes.get(i);
+            if (tree.isRoot(p) || !tree.isLeaf(p)) {
+                continue;
+            }
+            tree.remove(p);
+            Position<Integer> parent = nodes.get(random.nextInt(size));
+            while (parent == p) {
+                parent = nodes.get(random.nextInt(size));
+            }
+            nodes.set(i, tree.add(i, parent));
+            garbage.add(new byte[16 + random.nextInt(64)]);
+            if (garbage.size() == 1024) {
+                garbage.clear();
+            }
+            replaced++;
+        }
+    }
+
+    @Benchmark
+    public void bfsTraversal(Blackhole bh) {
+        Iterator<Position<Integer>> it = tree.iterator();
+        while (it.hasNext()) {
+            bh.consume(it.next());
+        }
+    }
+
+    @Benchmark
+    public void preorderTraversal(Blackhole bh) {
+        Iterator<Position<Integer>> it = new PreorderIterator<>(tree);
+        while (it.hasNext()) {
+            bh.consume(it.next());
+        }
+    }
+}
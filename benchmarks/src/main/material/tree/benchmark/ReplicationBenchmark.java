@@ -0,0 +1,100 @@
+package material.tree.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import material.tree.LinkedTree;
+import material.tree.Position;
+import material.tree.io.IntCodec;
+import material.tree.replication.ChangeApplier;
+import material.tree.replication.ChangeLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of recording the modifications of a LinkedTree in a ChangeLog, which
+ * encodes every entry into a discarded stream, and of replaying the log of a
+ * whole tree into a replica.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplicationBenchmark {
+
+    @Param({"10000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean logged;
+
+    private int[] parents;
+    private LinkedTree<Integer> tree;
+    private Position<Integer>[] positions;
+    private byte[] entries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        parents = TreeShape.RANDOM.parents(size);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LinkedTree<Integer> recorded = new LinkedTree<>();
+        try (ChangeLog<Integer> log = new ChangeLog<>(recorded, new IntCodec(), out)) {
+            fill(recorded);
+        }
+        entries = out.toByteArray();
+        tree = build();
+    }
+
+    private LinkedTree<Integer> build() {
+        LinkedTree<Integer> t = new LinkedTree<>();
+        if (logged) {
+            new ChangeLog<>(t, new IntCodec(), OutputStream.nullOutputStream());
+        }
+        fill(t);
+        return t;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void fill(LinkedTree<Integer> t) {
+        Position<Integer>[] nodes = new Position[size];
+        nodes[0] = t.addRoot(0);
+        for (int i = 1; i < size; i++) {
+            nodes[i] = t.add(i, nodes[parents[i]]);
+        }
+        positions = nodes;
+    }
+
+    @Benchmark
+    public LinkedTree<Integer> addAll() {
+        return build();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Integer replace() {
+        next = (next + 1) % size;
+        return tree.replace(positions[next], next);
+    }
+
+    @Benchmark
+    public LinkedTree<Integer> replay() throws IOException {
+        ChangeApplier<Integer> replica = new ChangeApplier<>(new IntCodec());
+        replica.apply(new ByteArrayInputStream(entries));
+        return replica.getTree();
+    }
+}
@@ -0,0 +1,82 @@
+package material.tree.benchmark;
+
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import material.tree.LCRSTree2;
+import material.tree.Position;
+import material.tree.iterator.BFSIterator;
+import material.tree.iterator.BoundedBFSIterator;
+import material.tree.iterator.SpillingBFSIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Breadth-first traversal of a large LCRSTree2 with the in-memory queue of
+ * BFSIterator, with the bounded queue of SpillingBFSIterator and with the
+ * level buffers and level-successor walks of BoundedBFSIterator. The frontier
+ * of the balanced tree reaches seven eighths of its nodes. (WIDE is not used
+ * because LCRSTree2 appends children in time proportional to the fan-out.)
+ * Run with -prof gc to compare the memory allocated per traversal.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class SpillingBFSBenchmark {
+
+    @Param({"2000000"})
+    public int size;
+
+    @Param({"BALANCED", "RANDOM"})
+    public TreeShape shape;
+
+    @Param({"65536"})
+    public int capacity;
+
+    private LCRSTree2<Integer> tree;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        tree = (LCRSTree2<Integer>) TreeKind.LCRS_ARRAYS.build(shape.parents(size), new Position[size]).tree();
+    }
+
+    @Benchmark
+    public void inMemory(Blackhole bh) {
+        Iterator<Position<Integer>> it = new BFSIterator<>(tree);
+        while (it.hasNext()) {
+            bh.consume(it.next());
+        }
+    }
+
+    @Benchmark
+    public void spilling(Blackhole bh) {
+        Iterator<Position<Integer>> it = new SpillingBFSIterator<>(tree, tree.positionCodec(), capacity,
+                Paths.get(System.getProperty("java.io.tmpdir")));
+        while (it.hasNext()) {
+            bh.consume(it.next());
+        }
+    }
+
+    @Benchmark
+    public void bounded(Blackhole bh) {
+        Iterator<Position<Integer>> it = new BoundedBFSIterator<>(tree, capacity);
+        while (it.hasNext()) {
+            bh.consume(it.next());
+        }
+    }
+}
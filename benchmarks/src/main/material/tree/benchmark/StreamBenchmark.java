@@ -0,0 +1,66 @@
+package material.tree.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import material.tree.LinkedTree;
+import material.tree.Position;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sequential against parallel streams over a LinkedTree. The per-node work
+ * is a small arithmetic loop so that the split overhead can be amortized.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamBenchmark {
+
+    @Param({"BALANCED", "RANDOM", "WIDE"})
+    public TreeShape shape;
+
+    @Param({"1000000"})
+    public int size;
+
+    private LinkedTree<Integer> tree;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Integer[] elements = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            elements[i] = i;
+        }
+        tree = new LinkedTree<>(Arrays.asList(elements), shape.parents(size));
+    }
+
+    private static long work(Position<Integer> p) {
+        long x = p.getElement();
+        for (int i = 0; i < 32; i++) {
+            x = x * 6364136223846793005L + 1442695040888963407L;
+        }
+        return x;
+    }
+
+    @Benchmark
+    public long sequential() {
+        return tree.stream().mapToLong(StreamBenchmark::work).sum();
+    }
+
+    @Benchmark
+    public long parallel() {
+        return tree.parallelStream().mapToLong(StreamBenchmark::work).sum();
+    }
+}
@@ -0,0 +1,83 @@
+package material.tree.benchmark;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import material.tree.LinkedTree;
+import material.tree.Position;
+import material.tree.Tree;
+import material.tree.iterator.BFSIterator;
+
+/**
+ * LinkedTree guarded by a single monitor, the baseline for the concurrent
+ * read benchmark. children() copies the children while holding the monitor,
+ * since the view returned by LinkedTree cannot be read during a write.
+ *
+ * @param <E> the type of the elements in the tree
+ */
+public class SynchronizedTree<E> implements Tree<E> {
+
+    private final LinkedTree<E> tree = new LinkedTree<>();
+
+    @Override
+    public synchronized int size() {
+        return tree.size();
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return tree.isEmpty();
+    }
+
+    @Override
+    public synchronized Position<E> root() {
+        return tree.root();
+    }
+
+    @Override
+    public synchronized Position<E> parent(Position<E> v) {
+        return tree.parent(v);
+    }
+
+    @Override
+    public synchronized Iterable<? extends Position<E>> children(Position<E> v) {
+        List<Position<E>> copy = new ArrayList<>();
+        for (Position<E> c : tree.children(v)) {
+            copy.add(c);
+        }
+        return copy;
+    }
+
+    @Override
+    public synchronized boolean isInternal(Position<E> v) {
+        return tree.isInternal(v);
+    }
+
+    @Override
+    public synchronized boolean isLeaf(Position<E> v) {
+        return tree.isLeaf(v);
+    }
+
+    @Override
+    public synchronized boolean isRoot(Position<E> v) {
+        return tree.isRoot(v);
+    }
+
+    @Override
+    public synchronized Position<E> addRoot(E e) {
+        return tree.addRoot(e);
+    }
+
+    public synchronized Position<E> add(E e, Position<E> p) {
+        return tree.add(e, p);
+    }
+
+    public synchronized void remove(Position<E> p) {
+        tree.remove(p);
+    }
+
+    @Override
+    public Iterator<Position<E>> iterator() {
+        return new BFSIterator<>(this);
+    }
+}
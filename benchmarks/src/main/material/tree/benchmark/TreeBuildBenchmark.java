@@ -0,0 +1,21 @@
+package material.tree.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Builds the whole tree with one add per node.
+ */
+public class TreeBuildBenchmark extends AbstractTreeBenchmark {
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        init();
+    }
+
+    @Benchmark
+    public BenchmarkTree addAll() {
+        return build();
+    }
+}
@@ -0,0 +1,175 @@
+package material.tree.benchmark;
+
+import material.tree.ConcurrentLinkedTree;
+import material.tree.DoubleTree;
+import material.tree.IntTree;
+import material.tree.LCRSTree;
+import material.tree.LCRSTree2;
+import material.tree.LinkedTree;
+import material.tree.LongTree;
+import material.tree.Position;
+import material.tree.Tree;
+import material.tree.VersionedTree;
+import material.tree.io.IntCodec;
+import material.tree.io.OffHeapTree;
+
+/**
+ * Every tree implementation of the project, so each benchmark can be run
+ * against all of them with the same workload.
+ */
+public enum TreeKind {
+
+    LINKED {
+        @Override
+        public BenchmarkTree create() {
+            final LinkedTree<Integer> t = new LinkedTree<>();
+            return new BenchmarkTree() {
+                public Tree<Integer> tree() { return t; }
+                public Position<Integer> addRoot(Integer e) { return t.addRoot(e); }
+                public Position<Integer> add(Integer e, Position<Integer> p) { return t.add(e, p); }
+                public void remove(Position<Integer> p) { t.remove(p); }
+                public void swapElements(Position<Integer> p1, Position<Integer> p2) { t.swapElements(p1, p2); }
+            };
+        }
+    },
+    LCRS {
+        @Override
+        public BenchmarkTree create() {
+            final LCRSTree<Integer> t = new LCRSTree<>();
+            return new BenchmarkTree() {
+                public Tree<Integer> tree() { return t; }
+                public Position<Integer> addRoot(Integer e) { return t.addRoot(e); }
+                public Position<Integer> add(Integer e, Position<Integer> p) { return t.add(e, p); }
+                public void remove(Position<Integer> p) { t.remove(p); }
+                public void swapElements(Position<Integer> p1, Position<Integer> p2) { t.swapElements(p1, p2); }
+            };
+        }
+    },
+    LCRS_ARRAYS {
+        @Override
+        public BenchmarkTree create() {
+            final LCRSTree2<Integer> t = new LCRSTree2<>();
+            return new BenchmarkTree() {
+                public Tree<Integer> tree() { return t; }
+                public Position<Integer> addRoot(Integer e) { return t.addRoot(e); }
+                public Position<Integer> add(Integer e, Position<Integer> p) { return t.add(e, p); }
+                public void remove(Position<Integer> p) { t.remove(p); }
+                public void swapElements(Position<Integer> p1, Position<Integer> p2) { t.swapElements(p1, p2); }
+            };
+        }
+    },
+    INT_ARRAYS {
+        @Override
+        public BenchmarkTree create() {
+            final IntTree t = new IntTree();
+            return new BenchmarkTree() {
+                public Tree<Integer> tree() { return t; }
+                public Position<Integer> addRoot(Integer e) { return t.addRoot(e.intValue()); }
+                public Position<Integer> add(Integer e, Position<Integer> p) { return t.add(e.intValue(), p); }
+                public void remove(Position<Integer> p) { t.remove(p); }
+                public void swapElements(Position<Integer> p1, Position<Integer> p2) { t.swapElements(p1, p2); }
+            };
+        }
+    },
+    LONG_ARRAYS {
+        @Override
+        public BenchmarkTree create() {
+            final LongTree t = new LongTree();
+            return new BenchmarkTree() {
+                public Tree<Integer> tree() { return retype(t); }
+                public Position<Integer> addRoot(Integer e) { return retype(t.addRoot(e.longValue())); }
+                public Position<Integer> add(Integer e, Position<Integer> p) { return retype(t.add(e.longValue(), retype(p))); }
+                public void remove(Position<Integer> p) { t.remove(retype(p)); }
+                public void swapElements(Position<Integer> p1, Position<Integer> p2) { t.swapElements(retype(p1), retype(p2)); }
+            };
+        }
+    },
+    DOUBLE_ARRAYS {
+        @Override
+        public BenchmarkTree create() {
+            final DoubleTree t = new DoubleTree();
+            return new BenchmarkTree() {
+                public Tree<Integer> tree() { return retype(t); }
+                public Position<Integer> addRoot(Integer e) { return retype(t.addRoot(e.doubleValue())); }
+                public Position<Integer> add(Integer e, Position<Integer> p) { return retype(t.add(e.doubleValue(), retype(p))); }
+                public void remove(Position<Integer> p) { t.remove(retype(p)); }
+                public void swapElements(Position<Integer> p1, Position<Integer> p2) { t.swapElements(retype(p1), retype(p2)); }
+            };
+        }
+    },
+    OFF_HEAP {
+        @Override
+        public BenchmarkTree create() {
+            // Not closed: the segments are freed when the tree is collected
+            final OffHeapTree<Integer> t = new OffHeapTree<>(new IntCodec());
+            return new BenchmarkTree() {
+                public Tree<Integer> tree() { return t; }
+                public Position<Integer> addRoot(Integer e) { return t.addRoot(e); }
+                public Position<Integer> add(Integer e, Position<Integer> p) { return t.add(e, p); }
+                public void remove(Position<Integer> p) { t.remove(p); }
+                public void swapElements(Position<Integer> p1, Position<Integer> p2) { t.swapElements(p1, p2); }
+            };
+        }
+    },
+    VERSIONED {
+        @Override
+        public BenchmarkTree create() {
+            final VersionedTree<Integer> t = new VersionedTree<>();
+            return new BenchmarkTree() {
+                public Tree<Integer> tree() { return t; }
+                public Position<Integer> addRoot(Integer e) { return t.addRoot(e); }
+                public Position<Integer> add(Integer e, Position<Integer> p) { return t.add(e, p); }
+                public void remove(Position<Integer> p) { t.remove(p); }
+                public void swapElements(Position<Integer> p1, Position<Integer> p2) { t.swapElements(p1, p2); }
+            };
+        }
+    },
+    CONCURRENT {
+        @Override
+        public BenchmarkTree create() {
+            final ConcurrentLinkedTree<Integer> t = new ConcurrentLinkedTree<>();
+            return new BenchmarkTree() {
+                public Tree<Integer> tree() { return t; }
+                public Position<Integer> addRoot(Integer e) { return t.addRoot(e); }
+                public Position<Integer> add(Integer e, Position<Integer> p) { return t.add(e, p); }
+                public void remove(Position<Integer> p) { t.remove(p); }
+                public void swapElements(Position<Integer> p1, Position<Integer> p2) { t.swapElements(p1, p2); }
+            };
+        }
+    };
+
+    /**
+     * Views a tree or position of LongTree or DoubleTree as one of Integer
+     * elements. The benchmarks only hand positions back to the tree that
+     * created them and never read the elements as Integer, so the unchecked
+     * cast is never observed.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T retype(Object o) {
+        return (T) o;
+    }
+
+    /**
+     * Creates an empty tree of this kind.
+     *
+     * @return the new tree
+     */
+    public abstract BenchmarkTree create();
+
+    /**
+     * Creates a tree of this kind with a given shape, adding the nodes one by
+     * one.
+     *
+     * @param parents the parent index of every node, as built by TreeShape
+     * @param positions array that receives the position of every node
+     * @return the new tree
+     */
+    public BenchmarkTree build(int[] parents, Position<Integer>[] positions) {
+        BenchmarkTree t = create();
+        positions[0] = t.addRoot(0);
+        for (int i = 1; i < parents.length; i++) {
+            positions[i] = t.add(i, positions[parents[i]]);
+        }
+        return t;
+    }
+}
@@ -0,0 +1,38 @@
+package material.tree.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Removes the subtree of the last child of the root, which is most of the
+ * tree for DEEP and a single leaf for WIDE. A fresh tree is built before
+ * every invocation, outside of the measured time.
+ */
+public class TreeRemoveBenchmark extends AbstractTreeBenchmark {
+
+    private BenchmarkTree tree;
+    private int victim;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        init();
+        victim = 1;
+        for (int i = size - 1; i > 0; i--) {
+            if (parents[i] == 0) {
+                victim = i;
+                break;
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        tree = build();
+    }
+
+    @Benchmark
+    public void removeSubtree() {
+        tree.remove(positions[victim]);
+    }
+}
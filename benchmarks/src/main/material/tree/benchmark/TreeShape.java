@@ -0,0 +1,57 @@
+package material.tree.benchmark;
+
+import java.util.Random;
+
+/**
+ * Shapes of the benchmarked trees, described by the index of the parent of
+ * every node (the root is node 0 and parents always precede their children).
+ */
+public enum TreeShape {
+
+    /** Every node is a child of the root. */
+    WIDE {
+        @Override
+        int parentOf(int i, Random random) {
+            return 0;
+        }
+    },
+    /** A single path: every node is the child of the previous one. */
+    DEEP {
+        @Override
+        int parentOf(int i, Random random) {
+            return i - 1;
+        }
+    },
+    /** Complete tree with eight children per node, in BFS order. */
+    BALANCED {
+        @Override
+        int parentOf(int i, Random random) {
+            return (i - 1) / 8;
+        }
+    },
+    /** Random recursive tree: the parent of every node is chosen uniformly. */
+    RANDOM {
+        @Override
+        int parentOf(int i, Random random) {
+            return random.nextInt(i);
+        }
+    };
+
+    abstract int parentOf(int i, Random random);
+
+    /**
+     * Builds the parent array of a tree with this shape.
+     *
+     * @param size the number of nodes
+     * @return the parent of every node, -1 for the root
+     */
+    public int[] parents(int size) {
+        Random random = new Random(42);
+        int[] parents = new int[size];
+        parents[0] = -1;
+        for (int i = 1; i < size; i++) {
+            parents[i] = parentOf(i, random);
+        }
+        return parents;
+    }
+}
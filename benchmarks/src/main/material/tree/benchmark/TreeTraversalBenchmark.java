@@ -0,0 +1,52 @@
+package material.tree.benchmark;
+
+import java.util.Iterator;
+import java.util.Random;
+import material.tree.Position;
+import material.tree.iterator.BFSIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Operations that do not change the structure of the tree, so the tree is
+ * built once per trial.
+ */
+public class TreeTraversalBenchmark extends AbstractTreeBenchmark {
+
+    private BenchmarkTree tree;
+    private int[] swapPairs;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        init();
+        tree = build();
+        Random random = new Random(7);
+        swapPairs = new int[1024];
+        for (int i = 0; i < swapPairs.length; i++) {
+            swapPairs[i] = random.nextInt(size);
+        }
+    }
+
+    /**
+     * Visits every node with the BFS iterator.
+     */
+    @Benchmark
+    public void bfsTraversal(Blackhole bh) {
+        Iterator<Position<Integer>> it = new BFSIterator<>(tree.tree());
+        while (it.hasNext()) {
+            bh.consume(it.next());
+        }
+    }
+
+    /**
+     * Swaps the elements of 512 pairs of random nodes.
+     */
+    @Benchmark
+    public void swapElements() {
+        for (int i = 0; i < swapPairs.length; i += 2) {
+            tree.swapElements(positions[swapPairs[i]], positions[swapPairs[i + 1]]);
+        }
+    }
+}
@@ -0,0 +1,643 @@
+package material.tree;
+
+import material.tree.iterator.BFSIteratorFactory;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+import material.tree.iterator.TreeIteratorFactory;
+
+/**
+ * Base of the left-child/right-sibling trees stored as a structure of
+ * arrays. It keeps the links of the nodes in parallel int arrays (parent,
+ * first child, last child, next sibling) plus a generation counter per slot,
+ * so a child is appended in constant time, and the elements in one more
+ * column, which is an Object array or, to keep the elements unboxed, a
+ * primitive array. Subclasses only create the column, copy its elements and
+ * box them for the {@link Tree} interface; everything else about the column
+ * (growing, recycling, swapping, compacting) lives here.
+ *
+ * Slots released by {@link #remove(Position)} are recycled by later additions.
+ * Each slot has a generation that is increased when it is released, so a
+ * handle to a removed node is rejected even if its slot has been reused.
+ *
+ * @param <E> the elements stored in the tree
+ * @param <P> the type of the positions of the tree
+ */
+abstract class AbstractArrayTree<E, P extends Position<E>> implements NavigableTree<E> {
+
+    static final int NONE = -1; // Absent link
+    private static final int FREE = -2; // Parent value of a released slot
+    static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Handle to a slot of the tree. It only stores the slot index and the
+     * generation of the slot when the handle was created.
+     *
+     * @param <T> the type of the elements stored in a node
+     */
+    static class TreeNode<T> implements Position<T> {
+
+        private final AbstractArrayTree<T, ?> myTree; // The tree where the slot lives
+        private final int index; // The slot of the node
+        private final int generation; // The generation of the slot
+
+        /**
+         * Constructor of the class
+         *
+         * @param t the tree where the node is stored
+         * @param index the slot of the node
+         * @param generation the current generation of the slot
+         */
+        TreeNode(AbstractArrayTree<T, ?> t, int index, int generation) {
+            this.myTree = t;
+            this.index = index;
+            this.generation = generation;
+        }
+
+        @Override
+        public T getElement() {
+            return myTree.elementAt(slot());
+        }
+
+        /**
+         * Validates the handle and consults its slot.
+         *
+         * @return the slot of the node
+         * @throws IllegalStateException if the node has been removed
+         */
+        final int slot() throws IllegalStateException {
+            return myTree.checkPosition(this).index;
+        }
+
+        /**
+         * Consults the tree that created the handle.
+         *
+         * @return the tree of the node
+         */
+        final AbstractArrayTree<T, ?> tree() {
+            return myTree;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TreeNode)) {
+                return false;
+            }
+            TreeNode<?> other = (TreeNode<?>) o;
+            return myTree == other.myTree && index == other.index
+                    && generation == other.generation;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * index + generation;
+        }
+    }
+
+    /**
+     * Read-only view of the children of a node, walking the sibling column on
+     * demand.
+     */
+    private class ChildrenView implements Iterable<Position<E>> {
+
+        private final int first;
+
+        public ChildrenView(int first) {
+            this.first = first;
+        }
+
+        @Override
+        public Iterator<Position<E>> iterator() {
+            return new Iterator<Position<E>>() {
+                private int next = first;
+
+                @Override
+                public boolean hasNext() {
+                    return next != NONE;
+                }
+
+                @Override
+                public Position<E> next() {
+                    if (next == NONE) {
+                        throw new NoSuchElementException();
+                    }
+                    int aux = next;
+                    next = nextSibling[aux];
+                    return handle(aux);
+                }
+            };
+        }
+    }
+
+    private int[] parent; // The parent slot of every slot
+    private int[] firstChild; // The leftmost child slot of every slot
+    private int[] lastChild; // The rightmost child slot of every slot
+    private int[] nextSibling; // The right sibling of every slot, or the next free slot
+    private int[] generation; // The generation of every slot
+    private Object elements; // The element column, an Object[] or a primitive array
+    private int used; // Number of slots ever handed out (high-water mark)
+    private int freeHead; // First released slot, chained through nextSibling
+    private int maxGeneration; // Highest generation given to any slot
+    private int root; // The slot of the root
+    private int size; // The number of nodes in the tree
+    private TreeIteratorFactory<E> iteratorFactory; // The factory of iterators
+
+    /**
+     * Creates an empty tree with room for a given number of nodes.
+     *
+     * @param capacity the number of nodes to reserve space for
+     */
+    AbstractArrayTree(int capacity) {
+        capacity = Math.max(capacity, 1);
+        parent = new int[capacity];
+        firstChild = new int[capacity];
+        lastChild = new int[capacity];
+        nextSibling = new int[capacity];
+        generation = new int[capacity];
+        elements = newColumn(capacity);
+        used = 0;
+        freeHead = NONE;
+        maxGeneration = 0;
+        root = NONE;
+        size = 0;
+        this.iteratorFactory = new BFSIteratorFactory<>();
+    }
+
+    /**
+     * Creates an element column with a given number of slots. It is called
+     * from the constructor, so it must not read the fields of the subclass.
+     */
+    abstract Object newColumn(int capacity);
+
+    /**
+     * Copies the element of a slot of a column to a slot of another column,
+     * or of the same one.
+     */
+    abstract void copyElement(Object from, int fromSlot, Object to, int toSlot);
+
+    /**
+     * Consults the element stored in a live slot, boxing it if needed.
+     */
+    abstract E elementAt(int slot);
+
+    /**
+     * Stores an element in a live slot, unboxing it if needed.
+     */
+    abstract void setElementAt(int slot, E e);
+
+    /**
+     * Forgets the element of a released slot. Primitive columns hold no
+     * reference, so by default it does nothing.
+     */
+    void clearElement(int slot) {
+        // Nothing to forget
+    }
+
+    /**
+     * Creates a handle for a slot with a given generation. Subclasses may
+     * return a subclass of TreeNode with extra accessors.
+     */
+    abstract TreeNode<E> newHandle(int slot, int generation);
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (size == 0);
+    }
+
+    @Override
+    public boolean isInternal(Position<E> v) throws IllegalStateException {
+        return !isLeaf(v);
+    }
+
+    @Override
+    public boolean isLeaf(Position<E> p) throws IllegalStateException {
+        int node = checkPosition(p).index;
+        return firstChild[node] == NONE;
+    }
+
+    @Override
+    public boolean isRoot(Position<E> p) throws IllegalStateException {
+        int node = checkPosition(p).index;
+        return node == root;
+    }
+
+    @Override
+    public P root() throws IllegalStateException {
+        if (root == NONE) {
+            throw new IllegalStateException("The tree is empty");
+        }
+        return handle(root);
+    }
+
+    @Override
+    public P parent(Position<E> p) throws IndexOutOfBoundsException,
+            IllegalStateException {
+        int node = checkPosition(p).index;
+        if (parent[node] == NONE) {
+            throw new IndexOutOfBoundsException("The node has not parent");
+        }
+        return handle(parent[node]);
+    }
+
+    @Override
+    public Iterable<? extends Position<E>> children(Position<E> p) {
+        int node = checkPosition(p).index;
+        return new ChildrenView(firstChild[node]);
+    }
+
+    @Override
+    public P firstChild(Position<E> p) throws IllegalStateException {
+        int node = checkPosition(p).index;
+        return (firstChild[node] == NONE) ? null : handle(firstChild[node]);
+    }
+
+    @Override
+    public P nextSibling(Position<E> p) throws IllegalStateException {
+        int node = checkPosition(p).index;
+        return (nextSibling[node] == NONE) ? null : handle(nextSibling[node]);
+    }
+
+    /**
+     * Modifies the element stored in a given position
+     * @param p the position to be modified
+     * @param e the new element to be stored
+     * @return the previous element stored in the position
+     * @throws IllegalStateException if the position is not valid
+     */
+    public E replace(Position<E> p, E e) throws IllegalStateException {
+        int node = checkPosition(p).index;
+        E temp = elementAt(node);
+        setElementAt(node, e);
+        return temp;
+    }
+
+    @Override
+    public P addRoot(E e) throws IllegalStateException {
+        int slot = addRootSlot();
+        setElementAt(slot, e);
+        return handle(slot);
+    }
+
+    /**
+     * Swap the elements stored in two given positions
+     * @param p1 the first node to swap
+     * @param p2 the second node to swap
+     * @throws IllegalStateException if the position of any node is not valid
+     */
+    public void swapElements(Position<E> p1, Position<E> p2)
+            throws IllegalStateException {
+        int node1 = checkPosition(p1).index;
+        int node2 = checkPosition(p2).index;
+        Object temp = newColumn(1);
+        copyElement(elements, node1, temp, 0);
+        copyElement(elements, node2, elements, node1);
+        copyElement(temp, 0, elements, node2);
+    }
+
+    /**
+     * Validates the given position, casting it to TreeNode if valid
+     * @param p the position to be converted
+     * @return the position casted to TreeNode
+     * @throws IllegalStateException if the position is not valid
+     */
+    private TreeNode<E> checkPosition(Position<E> p)
+            throws IllegalStateException {
+        if (p == null || !(p instanceof TreeNode)) {
+            throw new IllegalStateException("The position is invalid");
+        }
+        TreeNode<E> aux = (TreeNode<E>) p;
+
+        if (aux.myTree != this) {
+            throw new IllegalStateException("The node is not from this tree");
+        }
+        if (aux.index >= used || parent[aux.index] == FREE
+                || generation[aux.index] != aux.generation) {
+            throw new IllegalStateException("The node has been removed");
+        }
+        return aux;
+    }
+
+    /**
+     * Validates the given position and consults its slot.
+     *
+     * @param p the position to be converted
+     * @return the slot of the node
+     * @throws IllegalStateException if the position is not valid
+     */
+    final int checkSlot(Position<E> p) throws IllegalStateException {
+        return checkPosition(p).index;
+    }
+
+    /**
+     * Adds a new node whose parent is pointed by a given position. The new
+     * node becomes the last child of its parent.
+     *
+     * @param element the element to be added
+     * @param p the position of the parent
+     * @return the position of the new node created
+     * @throws IllegalStateException if the position is not valid
+     */
+    public P add(E element, Position<E> p) throws IllegalStateException {
+        int slot = addSlot(checkPosition(p).index);
+        setElementAt(slot, element);
+        return handle(slot);
+    }
+
+    /**
+     * Creates the root slot, whose element must be set by the caller.
+     *
+     * @return the slot of the root
+     * @throws IllegalStateException if the tree already has a root
+     */
+    final int addRootSlot() throws IllegalStateException {
+        if (!isEmpty()) {
+            throw new IllegalStateException("Tree already has a root");
+        }
+        root = allocate(NONE);
+        size = 1;
+        return root;
+    }
+
+    /**
+     * Creates a slot linked as the last child of a given live slot. Its
+     * element must be set by the caller.
+     *
+     * @param parentSlot the slot of the parent
+     * @return the slot of the new node
+     */
+    final int addSlot(int parentSlot) {
+        int node = allocate(parentSlot);
+        if (firstChild[parentSlot] == NONE) {
+            firstChild[parentSlot] = node;
+        } else {
+            nextSibling[lastChild[parentSlot]] = node;
+        }
+        lastChild[parentSlot] = node;
+        size++;
+        return node;
+    }
+
+    /**
+     * Removes a node and its corresponding subtree rooted at node. The slots
+     * of the removed nodes are released for later additions.
+     *
+     * @param p the position of the node to be removed.
+     * @throws IllegalStateException if the position is not valid
+     */
+    public void remove(Position<E> p) throws IllegalStateException {
+        int node = checkPosition(p).index;
+        int parentSlot = parent[node];
+        if (parentSlot != NONE) {
+            int prev = NONE;
+            if (firstChild[parentSlot] == node) {
+                firstChild[parentSlot] = nextSibling[node];
+            } else {
+                prev = firstChild[parentSlot];
+                while (nextSibling[prev] != node) {
+                    prev = nextSibling[prev];
+                }
+                nextSibling[prev] = nextSibling[node];
+            }
+            if (lastChild[parentSlot] == node) {
+                lastChild[parentSlot] = prev;
+            }
+        } else {
+            root = NONE;
+        }
+        size = size - release(node);
+    }
+
+    /**
+     * Renumbers the nodes in breadth-first order and trims the free slots, so
+     * that siblings and consecutive levels are stored contiguously. Every
+     * position obtained before the call becomes invalid.
+     */
+    public void compact() {
+        int capacity = Math.max(size, INITIAL_CAPACITY);
+        int[] newParent = new int[capacity];
+        int[] newFirstChild = new int[capacity];
+        int[] newLastChild = new int[capacity];
+        int[] newNextSibling = new int[capacity];
+        int[] newGeneration = new int[capacity];
+        int stamp = maxGeneration + 1;
+        // The new slot numbers are handed out in BFS order, so the new arrays
+        // themselves act as the queue of the traversal: order[i] is the old
+        // slot of the node that goes to slot i.
+        int[] order = new int[size];
+        int tail = 0;
+        if (root != NONE) {
+            order[tail++] = root;
+            newParent[0] = NONE;
+            newNextSibling[0] = NONE;
+        }
+        for (int head = 0; head < tail; head++) {
+            int old = order[head];
+            newGeneration[head] = stamp;
+            newFirstChild[head] = NONE;
+            int prev = NONE;
+            for (int c = firstChild[old]; c != NONE; c = nextSibling[c]) {
+                int slot = tail;
+                order[tail++] = c;
+                newParent[slot] = head;
+                newNextSibling[slot] = NONE;
+                if (prev == NONE) {
+                    newFirstChild[head] = slot;
+                } else {
+                    newNextSibling[prev] = slot;
+                }
+                prev = slot;
+            }
+            newLastChild[head] = prev;
+        }
+        Object newElements = newColumn(capacity);
+        for (int i = 0; i < tail; i++) {
+            copyElement(elements, order[i], newElements, i);
+        }
+        elements = newElements;
+        parent = newParent;
+        firstChild = newFirstChild;
+        lastChild = newLastChild;
+        nextSibling = newNextSibling;
+        generation = newGeneration;
+        used = tail;
+        freeHead = NONE;
+        maxGeneration = stamp;
+        root = (tail == 0) ? NONE : 0;
+    }
+
+    public void setIterator(TreeIteratorFactory<E> iteratorFactory) {
+        this.iteratorFactory = iteratorFactory;
+    }
+
+    @Override
+    public Iterator<Position<E>> iterator() {
+        return this.iteratorFactory.createIterator(this);
+    }
+
+    /**
+     * Creates a codec for the positions of this tree. The code of a node
+     * holds its slot and the generation of the slot, so it takes no memory in
+     * the tree and detects removed nodes like handles do. Codes are not
+     * preserved by {@link #compact()}.
+     *
+     * @return the codec of the positions of this tree
+     */
+    public PositionCodec<E> positionCodec() {
+        return new PositionCodec<E>() {
+            @Override
+            public long encode(Position<E> p) throws IllegalStateException {
+                TreeNode<E> node = checkPosition(p);
+                return ((long) node.generation << 32) | (node.index & 0xFFFFFFFFL);
+            }
+
+            @Override
+            public Position<E> decode(long code) throws IllegalStateException {
+                int slot = (int) code;
+                int gen = (int) (code >>> 32);
+                if (slot < 0 || slot >= used || parent[slot] == FREE || generation[slot] != gen) {
+                    throw new IllegalStateException("The node has been removed");
+                }
+                return newHandle(slot, gen);
+            }
+        };
+    }
+
+    /**
+     * Creates a handle for a live slot.
+     */
+    @SuppressWarnings("unchecked")
+    final P handle(int slot) {
+        return (P) newHandle(slot, generation[slot]);
+    }
+
+    /**
+     * Consults the element column, which the subclass casts to the type of
+     * array it created.
+     */
+    final Object elements() {
+        return elements;
+    }
+
+    /**
+     * Runs an action on the slot of every node of the subtree rooted at a
+     * given position, in pre-order. The folds of the subclasses read their
+     * element column from the action.
+     *
+     * @param p the root of the subtree
+     * @param action the action that receives every slot
+     * @throws IllegalStateException if the position is not valid
+     */
+    final void forEachSlot(Position<E> p, IntConsumer action) throws IllegalStateException {
+        int top = checkPosition(p).index;
+        for (int slot = top; slot != NONE; slot = nextInSubtree(slot, top)) {
+            action.accept(slot);
+        }
+    }
+
+    /**
+     * Runs an action on the slot of every node of the tree, scanning the
+     * slots sequentially, so the nodes are visited in no particular order.
+     *
+     * @param action the action that receives every slot
+     */
+    final void forEachLiveSlot(IntConsumer action) {
+        for (int slot = 0; slot < used; slot++) {
+            if (parent[slot] != FREE) {
+                action.accept(slot);
+            }
+        }
+    }
+
+    /**
+     * Finds the slot that follows a given one in a pre-order traversal of the
+     * subtree rooted at top, without allocating anything.
+     *
+     * @param slot the current slot, inside the subtree
+     * @param top the root of the subtree
+     * @return the next slot, or NONE if the traversal is over
+     */
+    private int nextInSubtree(int slot, int top) {
+        if (firstChild[slot] != NONE) {
+            return firstChild[slot];
+        }
+        while (slot != top && nextSibling[slot] == NONE) {
+            slot = parent[slot];
+        }
+        return (slot == top) ? NONE : nextSibling[slot];
+    }
+
+    /**
+     * Takes a free slot (recycled or new) and initializes it as a leaf.
+     */
+    private int allocate(int parentSlot) {
+        int slot;
+        if (freeHead != NONE) {
+            slot = freeHead;
+            freeHead = nextSibling[slot];
+        } else {
+            if (used == parent.length) {
+                grow();
+            }
+            slot = used++;
+        }
+        parent[slot] = parentSlot;
+        firstChild[slot] = NONE;
+        lastChild[slot] = NONE;
+        nextSibling[slot] = NONE;
+        return slot;
+    }
+
+    private void grow() {
+        int capacity = parent.length + (parent.length >> 1) + 1;
+        parent = Arrays.copyOf(parent, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        lastChild = Arrays.copyOf(lastChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        generation = Arrays.copyOf(generation, capacity);
+        Object newElements = newColumn(capacity);
+        System.arraycopy(elements, 0, newElements, 0, used);
+        elements = newElements;
+    }
+
+    /**
+     * Releases every slot of the subtree rooted at a given slot, visiting it
+     * in post-order so the links of a node are read before it is released.
+     *
+     * @return the number of released slots
+     */
+    private int release(int start) {
+        int count = 0;
+        int cur = leftmostLeaf(start);
+        while (true) {
+            boolean last = (cur == start);
+            int next = NONE;
+            if (!last) {
+                next = (nextSibling[cur] != NONE) ? leftmostLeaf(nextSibling[cur]) : parent[cur];
+            }
+            parent[cur] = FREE;
+            clearElement(cur);
+            generation[cur]++;
+            maxGeneration = Math.max(maxGeneration, generation[cur]);
+            nextSibling[cur] = freeHead;
+            freeHead = cur;
+            count++;
+            if (last) {
+                return count;
+            }
+            cur = next;
+        }
+    }
+
+    private int leftmostLeaf(int slot) {
+        while (firstChild[slot] != NONE) {
+            slot = firstChild[slot];
+        }
+        return slot;
+    }
+}
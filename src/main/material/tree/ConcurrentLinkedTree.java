@@ -0,0 +1,312 @@
+package material.tree;
+
+import material.tree.iterator.BFSIteratorFactory;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import material.tree.iterator.TreeIteratorFactory;
+
+/**
+ * A linked tree for read-mostly concurrent use: any number of readers and
+ * writers may use it at the same time, and readers never take a lock.
+ *
+ * The children of a node are kept in a copy-on-write array: a writer builds a
+ * new array and publishes it with a volatile write, so a reader always sees a
+ * complete snapshot of the children of a node. Writers are serialized by a
+ * single lock. Consequently {@link #children(Position)} and the iterators are
+ * weakly consistent: they reflect the tree at some point at or after their
+ * creation and never throw ConcurrentModificationException.
+ *
+ * Read operations accept a position that a concurrent writer has just
+ * removed and see the detached subtree, so a traversal in progress is never
+ * interrupted by a removal. Write operations validate positions strictly, as
+ * {@link LinkedTree} does, and reject any node of a removed subtree.
+ *
+ * Adding a child copies the children array of its parent, so this tree is
+ * not suited to nodes with very large fan-out that change often.
+ *
+ * @param <E> the type of the elements in the tree
+ */
+public class ConcurrentLinkedTree<E> implements Tree<E> {
+
+    private static final AtomicLong EPOCHS = new AtomicLong();
+
+    /**
+     * Inner class which represents a node of the tree
+     *
+     * @param <T> the type of the elements stored in a node
+     */
+    private class TreeNode<T> implements Position<T> {
+
+        private volatile T element; // The element stored in the position
+        private volatile TreeNode<T> parent; // The parent of the node
+        private volatile List<TreeNode<T>> children; // Immutable snapshot of the children
+        private int subtreeSize; // Size of the subtree, only used by writers
+        private long checkedEpoch; // Last epoch in which a writer found the node attached
+        private final ConcurrentLinkedTree<T> myTree; // The tree where the node was created
+
+        /**
+         * Constructor of the class
+         *
+         * @param t the tree where the node is stored
+         * @param e the element to store in the node
+         * @param p the parent of the node
+         */
+        public TreeNode(ConcurrentLinkedTree<T> t, T e, TreeNode<T> p) {
+            this.element = e;
+            this.parent = p;
+            this.children = Collections.emptyList();
+            this.subtreeSize = 1;
+            this.checkedEpoch = t.epoch;
+            this.myTree = t;
+        }
+
+        @Override
+        public T getElement() {
+            return element;
+        }
+    }
+
+    private final ReentrantLock writeLock = new ReentrantLock(); // Serializes the writers
+    private volatile TreeNode<E> root; // The root of the tree
+    private volatile int size; // The number of nodes in the tree
+    private long epoch; // Changes every time a subtree is detached, guarded by writeLock
+    private volatile TreeIteratorFactory<E> iteratorFactory; // The factory of iterators
+
+    /**
+     * Creates an empty tree.
+     */
+    public ConcurrentLinkedTree() {
+        root = null;
+        size = 0;
+        epoch = EPOCHS.incrementAndGet();
+        this.iteratorFactory = new BFSIteratorFactory<>();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (size == 0);
+    }
+
+    @Override
+    public boolean isInternal(Position<E> v) throws IllegalStateException {
+        return !isLeaf(v);
+    }
+
+    @Override
+    public boolean isLeaf(Position<E> p) throws IllegalStateException {
+        TreeNode<E> node = castPosition(p);
+        return node.children.isEmpty();
+    }
+
+    @Override
+    public boolean isRoot(Position<E> p) throws IllegalStateException {
+        TreeNode<E> node = castPosition(p);
+        return (node == root);
+    }
+
+    @Override
+    public Position<E> root() throws IllegalStateException {
+        TreeNode<E> r = root;
+        if (r == null) {
+            throw new IllegalStateException("The tree is empty");
+        }
+        return r;
+    }
+
+    @Override
+    public Position<E> parent(Position<E> p) throws IllegalStateException,
+            IndexOutOfBoundsException {
+        TreeNode<E> node = castPosition(p);
+        Position<E> parentPos = node.parent;
+        if (parentPos == null) {
+            throw new IndexOutOfBoundsException("The node has not parent");
+        }
+        return parentPos;
+    }
+
+    @Override
+    public Iterable<? extends Position<E>> children(Position<E> p) {
+        TreeNode<E> node = castPosition(p);
+        return node.children;
+    }
+
+    /**
+     * Modifies the element stored in a given position
+     * @param p the position to be modified
+     * @param e the new element to be stored
+     * @return the previous element stored in the position
+     * @throws IllegalStateException if the position is not valid
+     */
+    public E replace(Position<E> p, E e) throws IllegalStateException {
+        writeLock.lock();
+        try {
+            TreeNode<E> node = checkPosition(p);
+            E temp = node.element;
+            node.element = e;
+            return temp;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Position<E> addRoot(E e) throws IllegalStateException {
+        writeLock.lock();
+        try {
+            if (root != null) {
+                throw new IllegalStateException("Tree already has a root");
+            }
+            root = new TreeNode<>(this, e, null);
+            size = 1;
+            return root;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Swap the elements stored in two given positions. Readers may see the
+     * two nodes with the same element for a short time.
+     * @param p1 the first node to swap
+     * @param p2 the second node to swap
+     * @throws IllegalStateException if the position of any node is not valid
+     */
+    public void swapElements(Position<E> p1, Position<E> p2)
+            throws IllegalStateException {
+        writeLock.lock();
+        try {
+            TreeNode<E> node1 = checkPosition(p1);
+            TreeNode<E> node2 = checkPosition(p2);
+            E temp = node2.element;
+            node2.element = node1.element;
+            node1.element = temp;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Casts the given position to TreeNode, checking that it was created by
+     * this tree. Used by readers, which accept removed nodes.
+     * @param p the position to be converted
+     * @return the position casted to TreeNode
+     * @throws IllegalStateException if the position is not valid
+     */
+    private TreeNode<E> castPosition(Position<E> p) throws IllegalStateException {
+        if (p == null || !(p instanceof TreeNode)) {
+            throw new IllegalStateException("The position is invalid");
+        }
+        TreeNode<E> aux = (TreeNode<E>) p;
+        if (aux.myTree != this) {
+            throw new IllegalStateException("The node is not from this tree");
+        }
+        return aux;
+    }
+
+    /**
+     * Validates the given position for a writer, rejecting removed nodes with
+     * the same epoch scheme as LinkedTree. Must be called holding the lock.
+     * @param p the position to be converted
+     * @return the position casted to TreeNode
+     * @throws IllegalStateException if the position is not valid
+     */
+    private TreeNode<E> checkPosition(Position<E> p) throws IllegalStateException {
+        TreeNode<E> aux = castPosition(p);
+        if (aux.checkedEpoch == epoch) {
+            return aux;
+        }
+        TreeNode<E> top = aux;
+        while (top.checkedEpoch != epoch && top.parent != null) {
+            top = top.parent;
+        }
+        if (top.checkedEpoch != epoch && top != root) {
+            throw new IllegalStateException("The node has been removed");
+        }
+        for (TreeNode<E> n = aux; n != top; n = n.parent) {
+            n.checkedEpoch = epoch;
+        }
+        top.checkedEpoch = epoch;
+        return aux;
+    }
+
+    /**
+     * Adds a new node whose parent is pointed by a given position.
+     *
+     * @param element the element to be added
+     * @param p the position of the parent
+     * @return the position of the new node created
+     * @throws IllegalStateException if the position is not valid
+     */
+    public Position<E> add(E element, Position<E> p) throws IllegalStateException {
+        writeLock.lock();
+        try {
+            TreeNode<E> parent = checkPosition(p);
+            TreeNode<E> newNode = new TreeNode<>(this, element, parent);
+            List<TreeNode<E>> old = parent.children;
+            List<TreeNode<E>> copy = new ArrayList<>(old.size() + 1);
+            copy.addAll(old);
+            copy.add(newNode);
+            parent.children = Collections.unmodifiableList(copy);
+            for (TreeNode<E> aux = parent; aux != null; aux = aux.parent) {
+                aux.subtreeSize++;
+            }
+            size = size + 1;
+            return newNode;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Removes a node and its corresponding subtree rooted at node.
+     *
+     * @param p the position of the node to be removed.
+     * @throws IllegalStateException if the position is not valid
+     */
+    public void remove(Position<E> p) throws IllegalStateException {
+        writeLock.lock();
+        try {
+            TreeNode<E> node = checkPosition(p);
+            TreeNode<E> parent = node.parent;
+            if (parent != null) {
+                List<TreeNode<E>> old = parent.children;
+                List<TreeNode<E>> copy = new ArrayList<>(old.size() - 1);
+                for (TreeNode<E> c : old) {
+                    if (c != node) {
+                        copy.add(c);
+                    }
+                }
+                parent.children = copy.isEmpty() ? Collections.<TreeNode<E>>emptyList()
+                        : Collections.unmodifiableList(copy);
+                for (TreeNode<E> aux = parent; aux != null; aux = aux.parent) {
+                    aux.subtreeSize -= node.subtreeSize;
+                }
+                node.parent = null;
+                size = size - node.subtreeSize;
+            } else {
+                root = null;
+                size = 0;
+            }
+            // Publishing the new epoch after detaching the subtree makes every
+            // node of it fail the next writer check.
+            epoch = EPOCHS.incrementAndGet();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void setIterator(TreeIteratorFactory<E> iteratorFactory) {
+        this.iteratorFactory = iteratorFactory;
+    }
+
+    @Override
+    public Iterator<Position<E>> iterator() {
+        return this.iteratorFactory.createIterator(this);
+    }
+}
@@ -0,0 +1,15 @@
+package material.tree;
+
+/**
+ * A position that stores a primitive double, which can be read without
+ * boxing.
+ */
+public interface DoublePosition extends Position<Double> {
+
+    /**
+     * Checks the element stored at this position, without boxing it.
+     *
+     * @return the element stored in the given position
+     */
+    double getDouble();
+}
@@ -0,0 +1,157 @@
+package material.tree;
+
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * A tree of primitive double elements, stored unboxed.
+ *
+ * It shares the structure-of-arrays layout of {@link LCRSTree2}, but the
+ * elements live in a double[] column, so a node costs 28 bytes (four
+ * links, a generation counter and the element) and creates no object at all.
+ * A LinkedTree&lt;Double&gt; pays for its TreeNode (80 bytes) plus a boxed
+ * Double (24 bytes) per node, and unboxes the element on every read.
+ *
+ * The positions of this tree are {@link DoublePosition}s, whose
+ * {@link DoublePosition#getDouble()} reads the element without boxing, and the
+ * fold operations aggregate the elements without boxing them. The
+ * methods of the {@link Tree} interface remain available and box the
+ * elements; null elements are not supported.
+ */
+public class DoubleTree extends AbstractArrayTree<Double, DoublePosition> {
+
+    /**
+     * Handle to a slot of the tree with unboxed access to the element.
+     */
+    private static class DoubleNode extends TreeNode<Double> implements DoublePosition {
+
+        public DoubleNode(DoubleTree t, int index, int generation) {
+            super(t, index, generation);
+        }
+
+        @Override
+        public double getDouble() {
+            return ((DoubleTree) tree()).column()[slot()];
+        }
+    }
+
+    /**
+     * Creates an empty tree.
+     */
+    public DoubleTree() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates an empty tree with room for a given number of nodes.
+     *
+     * @param capacity the number of nodes to reserve space for
+     */
+    public DoubleTree(int capacity) {
+        super(capacity);
+    }
+
+    private double[] column() {
+        return (double[]) elements();
+    }
+
+    @Override
+    Object newColumn(int capacity) {
+        return new double[capacity];
+    }
+
+    @Override
+    void copyElement(Object from, int fromSlot, Object to, int toSlot) {
+        ((double[]) to)[toSlot] = ((double[]) from)[fromSlot];
+    }
+
+    @Override
+    Double elementAt(int slot) {
+        return column()[slot];
+    }
+
+    @Override
+    void setElementAt(int slot, Double e) {
+        column()[slot] = e;
+    }
+
+    @Override
+    TreeNode<Double> newHandle(int slot, int generation) {
+        return new DoubleNode(this, slot, generation);
+    }
+
+    /**
+     * Adds the root of the tree.
+     *
+     * @param e the element to be stored in the root
+     * @return the position of the root
+     * @throws IllegalStateException if the tree already has a root
+     */
+    public DoublePosition addRoot(double e) throws IllegalStateException {
+        int slot = addRootSlot();
+        column()[slot] = e;
+        return handle(slot);
+    }
+
+    /**
+     * Adds a new node whose parent is pointed by a given position. The new
+     * node becomes the last child of its parent.
+     *
+     * @param element the element to be added
+     * @param p the position of the parent
+     * @return the position of the new node created
+     * @throws IllegalStateException if the position is not valid
+     */
+    public DoublePosition add(double element, Position<Double> p) throws IllegalStateException {
+        int slot = addSlot(checkSlot(p));
+        column()[slot] = element;
+        return handle(slot);
+    }
+
+    /**
+     * Modifies the element stored in a given position
+     * @param p the position to be modified
+     * @param e the new element to be stored
+     * @return the previous element stored in the position
+     * @throws IllegalStateException if the position is not valid
+     */
+    public double replace(Position<Double> p, double e) throws IllegalStateException {
+        int slot = checkSlot(p);
+        double[] elements = column();
+        double temp = elements[slot];
+        elements[slot] = e;
+        return temp;
+    }
+
+    /**
+     * Aggregates the elements of the subtree rooted at a given position,
+     * visited in pre-order.
+     *
+     * @param p the root of the subtree
+     * @param identity the initial value of the aggregation
+     * @param op the function that combines the partial result with an element
+     * @return the result of the aggregation
+     * @throws IllegalStateException if the position is not valid
+     */
+    public double fold(Position<Double> p, double identity, DoubleBinaryOperator op) throws IllegalStateException {
+        double[] elements = column();
+        double[] result = {identity};
+        forEachSlot(p, slot -> result[0] = op.applyAsDouble(result[0], elements[slot]));
+        return result[0];
+    }
+
+    /**
+     * Aggregates every element of the tree, scanning the element column
+     * sequentially. The elements are visited in no particular order, so the
+     * operator should be associative and commutative.
+     *
+     * @param identity the initial value of the aggregation
+     * @param op the function that combines the partial result with an element
+     * @return the result of the aggregation
+     */
+    public double fold(double identity, DoubleBinaryOperator op) {
+        double[] elements = column();
+        double[] result = {identity};
+        forEachLiveSlot(slot -> result[0] = op.applyAsDouble(result[0], elements[slot]));
+        return result[0];
+    }
+}
@@ -0,0 +1,201 @@
+package material.tree;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * A secondary index that maps a key extracted from the elements of a tree to
+ * the positions that store them. It is created by
+ * {@link LinkedTree#createIndex(Function, boolean)} and kept up to date by the
+ * tree on every modification, so lookups are O(1) on average instead of a
+ * traversal of the whole tree.
+ *
+ * A unique index rejects, with IllegalStateException, any modification of
+ * the tree that would store two elements with the same key; the tree is
+ * left unchanged. A multi-valued index keeps every position of a key.
+ *
+ * Memory overhead: one HashMap entry per distinct key (about 32 bytes on a
+ * 64-bit JVM with compressed oops, plus 4 to 8 bytes of table slot). In a
+ * multi-valued index, keys with more than one position also pay for an
+ * ArrayList (about 24 bytes plus 4 bytes per position). The overhead can be
+ * measured with {@link #keyCount()} and {@link #size()}.
+ *
+ * @param <K> the type of the keys
+ * @param <E> the type of the elements in the tree
+ */
+public final class ElementIndex<K, E> {
+
+    private final Function<? super E, ? extends K> keyExtractor; // Computes the key of an element
+    private final boolean unique; // Whether a key may have more than one position
+    // Each key maps to a Position, or to a List of positions if it has several
+    private final Map<K, Object> entries;
+    private int size; // The number of indexed positions
+
+    /**
+     * Creates an empty index. Only trees create indexes.
+     *
+     * @param keyExtractor the function that computes the key of an element
+     * @param unique TRUE if a key may only be stored once
+     */
+    ElementIndex(Function<? super E, ? extends K> keyExtractor, boolean unique) {
+        this.keyExtractor = keyExtractor;
+        this.unique = unique;
+        this.entries = new HashMap<>();
+        this.size = 0;
+    }
+
+    /**
+     * Finds a position whose element has a given key.
+     *
+     * @param key the key to look for
+     * @return a position with that key (the first one added, for multi-valued
+     * indexes), or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public Position<E> get(K key) {
+        Object value = entries.get(key);
+        if (value instanceof List) {
+            return ((List<Position<E>>) value).get(0);
+        }
+        return (Position<E>) value;
+    }
+
+    /**
+     * Finds every position whose element has a given key.
+     *
+     * @param key the key to look for
+     * @return a read-only list of the positions with that key, empty if there
+     * is none
+     */
+    @SuppressWarnings("unchecked")
+    public List<Position<E>> getAll(K key) {
+        Object value = entries.get(key);
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        if (value instanceof List) {
+            return Collections.unmodifiableList((List<Position<E>>) value);
+        }
+        return Collections.singletonList((Position<E>) value);
+    }
+
+    /**
+     * Checks whether some element has a given key.
+     *
+     * @param key the key to look for
+     * @return TRUE if at least one position has that key
+     */
+    public boolean containsKey(K key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Consults whether the index rejects repeated keys.
+     *
+     * @return TRUE if the index is unique
+     */
+    public boolean isUnique() {
+        return unique;
+    }
+
+    /**
+     * Consults the number of indexed positions, which is the size of the tree.
+     *
+     * @return the number of positions in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Consults the number of distinct keys, which is the number of map
+     * entries held by the index.
+     *
+     * @return the number of distinct keys
+     */
+    public int keyCount() {
+        return entries.size();
+    }
+
+    /**
+     * Adds a position with the key of a given element.
+     *
+     * @param p the position to add
+     * @param element the element stored in the position
+     * @throws IllegalStateException if the index is unique and the key is
+     * already present; the index is not modified
+     */
+    @SuppressWarnings("unchecked")
+    void insert(Position<E> p, E element) throws IllegalStateException {
+        K key = keyExtractor.apply(element);
+        Object value = entries.get(key);
+        if (value == null && !entries.containsKey(key)) {
+            entries.put(key, p);
+        } else if (unique) {
+            throw new IllegalStateException("Duplicated key in unique index: " + key);
+        } else if (value instanceof List) {
+            ((List<Position<E>>) value).add(p);
+        } else {
+            List<Position<E>> list = new ArrayList<>(2);
+            list.add((Position<E>) value);
+            list.add(p);
+            entries.put(key, list);
+        }
+        size++;
+    }
+
+    /**
+     * Replaces every indexed position by its new position, keeping the order
+     * of the positions of each key.
+     *
+     * @param mapping the new position of every indexed position
+     */
+    @SuppressWarnings("unchecked")
+    void remap(Map<Position<E>, Position<E>> mapping) {
+        for (Map.Entry<K, Object> entry : entries.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof List) {
+                List<Position<E>> list = (List<Position<E>>) value;
+                list.replaceAll(mapping::get);
+            } else {
+                entry.setValue(mapping.get((Position<E>) value));
+            }
+        }
+    }
+
+    /**
+     * Removes every position from the index.
+     */
+    void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Removes a position, stored with the key of a given element.
+     *
+     * @param p the position to remove
+     * @param element the element the position was indexed with
+     */
+    @SuppressWarnings("unchecked")
+    void delete(Position<E> p, E element) {
+        K key = keyExtractor.apply(element);
+        Object value = entries.get(key);
+        if (value instanceof List) {
+            List<Position<E>> list = (List<Position<E>>) value;
+            for (int i = 0; i < list.size(); i++) {
+                if (list.get(i) == p) {
+                    list.remove(i);
+                    size--;
+                    break;
+                }
+            }
+            if (list.size() == 1) {
+                entries.put(key, list.get(0));
+            }
+        } else if (value == p) {
+            entries.remove(key);
+            size--;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package material.tree;
+
+/**
+ * A position that stores a primitive int, which can be read without
+ * boxing.
+ */
+public interface IntPosition extends Position<Integer> {
+
+    /**
+     * Checks the element stored at this position, without boxing it.
+     *
+     * @return the element stored in the given position
+     */
+    int getInt();
+}
@@ -0,0 +1,157 @@
+package material.tree;
+
+import java.util.function.IntBinaryOperator;
+
+/**
+ * A tree of primitive int elements, stored unboxed.
+ *
+ * It shares the structure-of-arrays layout of {@link LCRSTree2}, but the
+ * elements live in an int[] column, so a node costs 24 bytes (four
+ * links, a generation counter and the element) and creates no object at all.
+ * A LinkedTree&lt;Integer&gt; pays for its TreeNode (80 bytes) plus a boxed
+ * Integer (16 bytes) per node, and unboxes the element on every read.
+ *
+ * The positions of this tree are {@link IntPosition}s, whose
+ * {@link IntPosition#getInt()} reads the element without boxing, and the
+ * fold operations aggregate the elements without boxing them. The
+ * methods of the {@link Tree} interface remain available and box the
+ * elements; null elements are not supported.
+ */
+public class IntTree extends AbstractArrayTree<Integer, IntPosition> {
+
+    /**
+     * Handle to a slot of the tree with unboxed access to the element.
+     */
+    private static class IntNode extends TreeNode<Integer> implements IntPosition {
+
+        public IntNode(IntTree t, int index, int generation) {
+            super(t, index, generation);
+        }
+
+        @Override
+        public int getInt() {
+            return ((IntTree) tree()).column()[slot()];
+        }
+    }
+
+    /**
+     * Creates an empty tree.
+     */
+    public IntTree() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates an empty tree with room for a given number of nodes.
+     *
+     * @param capacity the number of nodes to reserve space for
+     */
+    public IntTree(int capacity) {
+        super(capacity);
+    }
+
+    private int[] column() {
+        return (int[]) elements();
+    }
+
+    @Override
+    Object newColumn(int capacity) {
+        return new int[capacity];
+    }
+
+    @Override
+    void copyElement(Object from, int fromSlot, Object to, int toSlot) {
+        ((int[]) to)[toSlot] = ((int[]) from)[fromSlot];
+    }
+
+    @Override
+    Integer elementAt(int slot) {
+        return column()[slot];
+    }
+
+    @Override
+    void setElementAt(int slot, Integer e) {
+        column()[slot] = e;
+    }
+
+    @Override
+    TreeNode<Integer> newHandle(int slot, int generation) {
+        return new IntNode(this, slot, generation);
+    }
+
+    /**
+     * Adds the root of the tree.
+     *
+     * @param e the element to be stored in the root
+     * @return the position of the root
+     * @throws IllegalStateException if the tree already has a root
+     */
+    public IntPosition addRoot(int e) throws IllegalStateException {
+        int slot = addRootSlot();
+        column()[slot] = e;
+        return handle(slot);
+    }
+
+    /**
+     * Adds a new node whose parent is pointed by a given position. The new
+     * node becomes the last child of its parent.
+     *
+     * @param element the element to be added
+     * @param p the position of the parent
+     * @return the position of the new node created
+     * @throws IllegalStateException if the position is not valid
+     */
+    public IntPosition add(int element, Position<Integer> p) throws IllegalStateException {
+        int slot = addSlot(checkSlot(p));
+        column()[slot] = element;
+        return handle(slot);
+    }
+
+    /**
+     * Modifies the element stored in a given position
+     * @param p the position to be modified
+     * @param e the new element to be stored
+     * @return the previous element stored in the position
+     * @throws IllegalStateException if the position is not valid
+     */
+    public int replace(Position<Integer> p, int e) throws IllegalStateException {
+        int slot = checkSlot(p);
+        int[] elements = column();
+        int temp = elements[slot];
+        elements[slot] = e;
+        return temp;
+    }
+
+    /**
+     * Aggregates the elements of the subtree rooted at a given position,
+     * visited in pre-order.
+     *
+     * @param p the root of the subtree
+     * @param identity the initial value of the aggregation
+     * @param op the function that combines the partial result with an element
+     * @return the result of the aggregation
+     * @throws IllegalStateException if the position is not valid
+     */
+    public int fold(Position<Integer> p, int identity, IntBinaryOperator op) throws IllegalStateException {
+        int[] elements = column();
+        int[] result = {identity};
+        forEachSlot(p, slot -> result[0] = op.applyAsInt(result[0], elements[slot]));
+        return result[0];
+    }
+
+    /**
+     * Aggregates every element of the tree, scanning the element column
+     * sequentially. The elements are visited in no particular order, so the
+     * operator should be associative and commutative.
+     *
+     * @param identity the initial value of the aggregation
+     * @param op the function that combines the partial result with an element
+     * @return the result of the aggregation
+     */
+    public int fold(int identity, IntBinaryOperator op) {
+        int[] elements = column();
+        int[] result = {identity};
+        forEachLiveSlot(slot -> result[0] = op.applyAsInt(result[0], elements[slot]));
+        return result[0];
+    }
+}
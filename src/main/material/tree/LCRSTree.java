@@ -1,103 +1,382 @@
-package tree;
+package material.tree;
 
-import tree.iterator.BFSIteratorFactory;
+import material.tree.iterator.BFSIteratorFactory;
 import java.util.*;
-import tree.iterator.TreeIteratorFactory;
+import material.tree.iterator.TreeIteratorFactory;
 
 /**
- * A linked class for a tree where nodes have an arbitrary number of children.
+ * A left-child/right-sibling implementation of a tree where nodes have an
+ * arbitrary number of children.
+ *
+ * Each node only keeps a link to its last child and a link to its next
+ * sibling, so no collection is allocated to hold the children of a node.
+ * The siblings form a circular list: the next sibling of the last child is
+ * the first child, so the first child is one link away and a child is
+ * appended in constant time, without a third link per node. A node is the
+ * last child when its parent says so.
+ * Estimated footprint per node on a 64-bit JVM with compressed oops (object
+ * header of 12 bytes, 4 bytes per reference, 8 byte alignment):
+ * <ul>
+ * <li>LinkedTree: TreeNode (header + 8 links + outer reference + subtree
+ * size + depth + validation epoch + two interval labels = 80 bytes) for
+ * every node. Before its children were threaded through the nodes it also
+ * paid for an ArrayList per node (24 bytes) plus its backing array once the
+ * node had a child (56 bytes for the default capacity of 10).</li>
+ * <li>LCRSTree: TreeNode (header + 5 fields = 32 bytes) for every node, no
+ * matter how many children it has.</li>
+ * </ul>
+ * The price is that removing a node walks the siblings before it, since
+ * there is no link to the previous sibling.
  *
  * @author Raul Cabido, Abraham Duarte, Jose Velez, Jesús Sánchez-Oro
  * @param <E> the elements stored in the tree
  */
-public class LCRSTree<E> implements Tree<E> {
-    
-    public class TreeNode<T>  implements Position<T> {
+public class LCRSTree<E> implements NavigableTree<E> {
+
+    /**
+     * Inner class which represents a node of the tree. It is static so it
+     * does not pay for a hidden reference to the enclosing tree.
+     *
+     * @param <T> the type of the elements stored in a node
+     */
+    private static class TreeNode<T> implements Position<T> {
+
+        private T element; // The element stored in the position
+        private TreeNode<T> parent; // The parent of the node
+        private TreeNode<T> lastChild; // The rightmost child of the node
+        private TreeNode<T> nextSibling; // The sibling at the right of the node, or the first one for the last child
+        private LCRSTree<T> myTree; // A reference to the tree where the node belongs
+
+        /**
+         * Constructor of the class
+         *
+         * @param t the tree where the node is stored
+         * @param e the element to store in the node
+         * @param p the parent of the node
+         */
+        public TreeNode(LCRSTree<T> t, T e, TreeNode<T> p) {
+            this.element = e;
+            this.parent = p;
+            this.lastChild = null;
+            this.nextSibling = null;
+            this.myTree = t;
+        }
 
         @Override
         public T getElement() {
-            throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+            return element;
+        }
+
+        /**
+         * Sets the element stored at this position
+         *
+         * @param o the element to store in the node
+         */
+        public final void setElement(T o) {
+            element = o;
+        }
+
+        /**
+         * Accesses to the parent of this node
+         *
+         * @return the parent of this node
+         */
+        public TreeNode<T> getParent() {
+            return parent;
+        }
+
+        /**
+         * Accesses to the leftmost child of this node
+         *
+         * @return the first child, or null if the node is a leaf
+         */
+        public TreeNode<T> getFirstChild() {
+            return (lastChild == null) ? null : lastChild.nextSibling;
+        }
+
+        /**
+         * Accesses to the sibling at the right of this node
+         *
+         * @return the next sibling, or null if the node is the last child
+         */
+        public TreeNode<T> getNextSibling() {
+            return (parent == null || parent.lastChild == this) ? null : nextSibling;
+        }
+
+        /**
+         * Appends a node at the end of the circular list of children of this
+         * node
+         *
+         * @param c the node to be added as last child
+         */
+        public void linkChild(TreeNode<T> c) {
+            if (lastChild == null) {
+                c.nextSibling = c;
+            } else {
+                c.nextSibling = lastChild.nextSibling;
+                lastChild.nextSibling = c;
+            }
+            lastChild = c;
+        }
+
+        /**
+         * Removes a node from the list of children of this node, walking the
+         * siblings before it
+         *
+         * @param c a child of this node
+         */
+        public void unlinkChild(TreeNode<T> c) {
+            if (c.nextSibling == c) {
+                lastChild = null;
+            } else {
+                TreeNode<T> prev = lastChild;
+                while (prev.nextSibling != c) {
+                    prev = prev.nextSibling;
+                }
+                prev.nextSibling = c.nextSibling;
+                if (lastChild == c) {
+                    lastChild = prev;
+                }
+            }
+            c.nextSibling = null;
+        }
+
+        /**
+         * Consults the tree in which this node is stored
+         *
+         * @return a reference to the tree where the node belongs
+         */
+        public LCRSTree<T> getMyTree() {
+            return myTree;
+        }
+
+        /**
+         * Sets the tree where this node belongs
+         *
+         * @param myTree the tree where this node belongs
+         */
+        public void setMyTree(LCRSTree<T> myTree) {
+            this.myTree = myTree;
+        }
+    }
+
+    /**
+     * Read-only view of the children of a node. It walks the sibling chain on
+     * demand, so it does not copy the children into any collection.
+     */
+    private class ChildrenView implements Iterable<Position<E>> {
+
+        private final TreeNode<E> first;
+
+        public ChildrenView(TreeNode<E> first) {
+            this.first = first;
+        }
+
+        @Override
+        public Iterator<Position<E>> iterator() {
+            return new Iterator<Position<E>>() {
+                private TreeNode<E> next = first;
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public Position<E> next() {
+                    if (next == null) {
+                        throw new NoSuchElementException();
+                    }
+                    TreeNode<E> aux = next;
+                    next = aux.getNextSibling();
+                    return aux;
+                }
+            };
         }
-        
+    }
+
+    private TreeNode<E> root; // The root of the tree
+    private int size; // The number of nodes in the tree
+    private TreeIteratorFactory<E> iteratorFactory; // The factory of iterators
+
+    /**
+     * Creates an empty tree.
+     */
+    public LCRSTree() {
+        root = null;
+        size = 0;
+        this.iteratorFactory = new BFSIteratorFactory<>();
     }
 
     @Override
     public int size() {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        return size;
     }
 
     @Override
     public boolean isEmpty() {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        return (size == 0);
     }
 
     @Override
     public boolean isInternal(Position<E> v) throws IllegalStateException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        return !isLeaf(v);
     }
 
     @Override
     public boolean isLeaf(Position<E> p) throws IllegalStateException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        TreeNode<E> node = checkPosition(p);
+        return node.getFirstChild() == null;
     }
 
     @Override
     public boolean isRoot(Position<E> p) throws IllegalStateException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        TreeNode<E> node = checkPosition(p);
+        return (node == this.root());
     }
 
     @Override
     public Position<E> root() throws IllegalStateException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        if (root == null) {
+            throw new IllegalStateException("The tree is empty");
+        }
+        return root;
     }
 
     @Override
     public Position<E> parent(Position<E> p) throws IndexOutOfBoundsException,
             IllegalStateException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        TreeNode<E> node = checkPosition(p);
+        Position<E> parentPos = node.getParent();
+        if (parentPos == null) {
+            throw new IndexOutOfBoundsException("The node has not parent");
+        }
+        return parentPos;
     }
 
     @Override
     public Iterable<? extends Position<E>> children(Position<E> p) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        TreeNode<E> node = checkPosition(p);
+        return new ChildrenView(node.getFirstChild());
     }
 
+    @Override
+    public Position<E> firstChild(Position<E> p) throws IllegalStateException {
+        TreeNode<E> node = checkPosition(p);
+        return node.getFirstChild();
+    }
+
+    @Override
+    public Position<E> nextSibling(Position<E> p) throws IllegalStateException {
+        TreeNode<E> node = checkPosition(p);
+        return node.getNextSibling();
+    }
+
+    /**
+     * Modifies the element stored in a given position
+     * @param p the position to be modified
+     * @param e the new element to be stored
+     * @return the previous element stored in the position
+     * @throws IllegalStateException if the position is not valid
+     */
     public E replace(Position<E> p, E e) throws IllegalStateException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        TreeNode<E> node = checkPosition(p);
+        E temp = p.getElement();
+        node.setElement(e);
+        return temp;
     }
 
     @Override
     public Position<E> addRoot(E e) throws IllegalStateException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        if (!isEmpty()) {
+            throw new IllegalStateException("Tree already has a root");
+        }
+        size = 1;
+        root = new TreeNode<>(this, e, null);
+        return root;
     }
 
-    
+    /**
+     * Swap the elements stored in two given positions
+     * @param p1 the first node to swap
+     * @param p2 the second node to swap
+     * @throws IllegalStateException if the position of any node is not valid
+     */
     public void swapElements(Position<E> p1, Position<E> p2)
             throws IllegalStateException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        TreeNode<E> node1 = checkPosition(p1);
+        TreeNode<E> node2 = checkPosition(p2);
+        E temp = p2.getElement();
+        node2.setElement(p1.getElement());
+        node1.setElement(temp);
     }
 
-    
+    /**
+     * Validates the given position, casting it to TreeNode if valid
+     * @param p the position to be converted
+     * @return the position casted to TreeNode
+     * @throws IllegalStateException if the position is not valid
+     */
     private TreeNode<E> checkPosition(Position<E> p)
             throws IllegalStateException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
-    }
+        if (p == null || !(p instanceof TreeNode)) {
+            throw new IllegalStateException("The position is invalid");
+        }
+        TreeNode<E> aux = (TreeNode<E>) p;
 
+        if (aux.getMyTree() != this) {
+            throw new IllegalStateException("The node is not from this tree");
+        }
+        return aux;
+    }
 
-    public Position<E> add(E element, Position<E> p) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    /**
+     * Adds a new node whose parent is pointed by a given position. The new
+     * node becomes the last child of its parent.
+     *
+     * @param element the element to be added
+     * @param p the position of the parent
+     * @return the position of the new node created
+     * @throws IllegalStateException if the position is not valid
+     */
+    public Position<E> add(E element, Position<E> p) throws IllegalStateException {
+        TreeNode<E> parent = checkPosition(p);
+        TreeNode<E> newNode = new TreeNode<>(this, element, parent);
+        parent.linkChild(newNode);
+        size++;
+        return newNode;
     }
 
+    /**
+     * Removes a node and its corresponding subtree rooted at node.
+     *
+     * @param p the position of the node to be removed.
+     * @throws IllegalStateException if the position is not valid
+     */
     public void remove(Position<E> p) throws IllegalStateException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        TreeNode<E> node = checkPosition(p);
+        if (node.getParent() != null) {
+            Iterator<Position<E>> it = this.iteratorFactory.createIterator(this, p);
+            int cont = 0;
+            while (it.hasNext()) {
+                it.next();
+                cont++;
+            }
+            size = size - cont;
+            node.getParent().unlinkChild(node);
+        } else {
+            this.root = null;
+            this.size = 0;
+        }
+        node.setMyTree(null);
     }
 
     public void setIterator(TreeIteratorFactory<E> iteratorFactory) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        this.iteratorFactory = iteratorFactory;
     }
 
     @Override
     public Iterator<Position<E>> iterator() {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        return this.iteratorFactory.createIterator(this);
     }
 }
@@ -1,103 +1,73 @@
-package tree;
+package material.tree;
 
-import tree.iterator.BFSIteratorFactory;
 import java.util.*;
-import tree.iterator.TreeIteratorFactory;
 
 /**
- * A linked class for a tree where nodes have an arbitrary number of children.
+ * A left-child/right-sibling tree stored as a structure of arrays.
+ *
+ * There are no node objects: every node is a slot index and its links live in
+ * parallel int arrays (parent, first child, last child, next sibling), while
+ * the elements live in a single Object array. A node costs five ints (the
+ * four links plus a generation counter) and one array reference, that is,
+ * 24 bytes plus the element itself. Positions are lightweight handles (tree, slot, generation)
+ * created on demand, so two handles to the same node are equal but not
+ * necessarily the same object.
+ *
+ * Slots released by {@link #remove(Position)} are recycled by later additions.
+ * Each slot has a generation that is increased when it is released, so a
+ * handle to a removed node is rejected even if its slot has been reused.
+ * After heavy churn, {@link #compact()} renumbers the nodes in breadth-first
+ * order so traversals read the arrays sequentially again.
  *
  * @author Raul Cabido, Abraham Duarte, Jose Velez, Jesús Sánchez-Oro
  * @param <E> the elements stored in the tree
  */
-public class LCRSTree2<E> implements Tree<E> {
-    
-    public class TreeNode<T>  implements Position<T> {
+public class LCRSTree2<E> extends AbstractArrayTree<E, Position<E>> {
 
-        @Override
-        public T getElement() {
-            throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
-        }
-        
+    /**
+     * Creates an empty tree.
+     */
+    public LCRSTree2() {
+        this(INITIAL_CAPACITY);
     }
 
-    @Override
-    public int size() {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    /**
+     * Creates an empty tree with room for a given number of nodes.
+     *
+     * @param capacity the number of nodes to reserve space for
+     */
+    public LCRSTree2(int capacity) {
+        super(capacity);
     }
 
     @Override
-    public boolean isEmpty() {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    Object newColumn(int capacity) {
+        return new Object[capacity];
     }
 
     @Override
-    public boolean isInternal(Position<E> v) throws IllegalStateException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    void copyElement(Object from, int fromSlot, Object to, int toSlot) {
+        ((Object[]) to)[toSlot] = ((Object[]) from)[fromSlot];
     }
 
     @Override
-    public boolean isLeaf(Position<E> p) throws IllegalStateException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    @SuppressWarnings("unchecked")
+    E elementAt(int slot) {
+        return (E) ((Object[]) elements())[slot];
     }
 
     @Override
-    public boolean isRoot(Position<E> p) throws IllegalStateException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    void setElementAt(int slot, E e) {
+        ((Object[]) elements())[slot] = e;
     }
 
     @Override
-    public Position<E> root() throws IllegalStateException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
-    }
-
-    @Override
-    public Position<E> parent(Position<E> p) throws IndexOutOfBoundsException,
-            IllegalStateException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
-    }
-
-    @Override
-    public Iterable<? extends Position<E>> children(Position<E> p) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
-    }
-
-    public E replace(Position<E> p, E e) throws IllegalStateException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
-    }
-
-    @Override
-    public Position<E> addRoot(E e) throws IllegalStateException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
-    }
-
-    
-    public void swapElements(Position<E> p1, Position<E> p2)
-            throws IllegalStateException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
-    }
-
-    
-    private TreeNode<E> checkPosition(Position<E> p)
-            throws IllegalStateException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
-    }
-
-
-    public Position<E> add(E element, Position<E> p) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
-    }
-
-    public void remove(Position<E> p) throws IllegalStateException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
-    }
-
-    public void setIterator(TreeIteratorFactory<E> iteratorFactory) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    void clearElement(int slot) {
+        ((Object[]) elements())[slot] = null;
     }
 
     @Override
-    public Iterator<Position<E>> iterator() {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    TreeNode<E> newHandle(int slot, int generation) {
+        return new TreeNode<>(this, slot, generation);
     }
 }
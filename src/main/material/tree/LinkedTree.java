@@ -1,27 +1,99 @@
 package material.tree;
 
+import material.tree.iterator.BFSIterator;
 import material.tree.iterator.BFSIteratorFactory;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import material.tree.iterator.TreeIteratorFactory;
+import material.tree.metrics.TreeListener;
+import material.tree.metrics.TreeOperation;
 
 /**
  * A linked class for a tree where nodes have an arbitrary number of children.
  *
+ * The tree is not thread-safe, not even for readers alone: validating a
+ * position records in the nodes what the walk found (the epoch in which
+ * they were attached, their tree after a graft) and may rebuild the ancestry
+ * index. Threads that share a tree must synchronize every call, or use
+ * {@link ConcurrentLinkedTree}. Walking the children returned by
+ * {@link #children(Position)} only reads the links.
+ *
+ * Every node takes 80 bytes on a 64-bit JVM with compressed references
+ * (measured: 84 bytes per node for 2,000,000 nodes, counting one reference
+ * to each node kept by the caller). 24 of those bytes are always paid, even
+ * by trees that never ask an ancestry or subtree query: 8 for the depth and
+ * jump pointer of the ancestry index, and 16 for the interval labels. The
+ * ancestry index is kept up to date by every addition because position
+ * checks after removals rely on it to stay independent of the depth; this
+ * makes building a random tree of 100,000 nodes take 15.4 ms instead of
+ * 13.0 ms. Interval labels cost no time until the first interval query.
+ * Hierarchies where these 24 bytes matter more than the queries fit
+ * {@link LCRSTree} (32 bytes per node) or {@link LCRSTree2}.
+ *
  * @author Raul Cabido, Abraham Duarte, Jose Velez, J. Sánchez-Oro
  * @param <E> the type of the elements in the tree
  */
-public class LinkedTree<E> implements Tree<E> {
+public class LinkedTree<E> implements NavigableTree<E> {
+
+    /**
+     * Source of epochs shared by every tree, so an epoch value never means
+     * "valid" for two different trees.
+     */
+    private static final AtomicLong EPOCHS = new AtomicLong();
+
+    /**
+     * Subtrees with at most this number of nodes are folded sequentially by
+     * {@link #fold(Position, Function, BinaryOperator)}.
+     */
+    public static final int DEFAULT_FOLD_THRESHOLD = 4096;
+
+    /**
+     * Minimum distance between consecutive labels required to relabel a
+     * subtree instead of one of its ancestors; a subtree relabelled with this
+     * spacing takes about ten appends at the same place before it runs out of
+     * room again.
+     */
+    private static final long MIN_LABEL_SPACING = 1 << 16;
+
+    /**
+     * Nodes of removed subtrees counted by every addition and removal, so
+     * that removed subtrees are released progressively even if the size of
+     * the tree is never consulted.
+     */
+    private static final int COUNT_STEP = 4;
+
+    /**
+     * Number of recent removals whose depth is remembered to validate
+     * positions without walking their ancestors.
+     */
+    private static final int REMOVAL_LOG_SIZE = 64;
 
     /**
-     * Inner class which represents a node of the tree
+     * Inner class which represents a node of the tree. The children of a node
+     * form a doubly linked list threaded through the nodes themselves, so a
+     * child can be unlinked in constant time.
      *
      * @param <T> the type of the elements stored in a node
      */
-    private class TreeNode<T> implements Position<T> {
+    private static class TreeNode<T> implements Position<T> {
 
         private T element; // The element stored in the position
         private TreeNode<T> parent; // The parent of the node
-        private List<TreeNode<T>> children; // The children of the node
+        private TreeNode<T> firstChild; // The leftmost child of the node
+        private TreeNode<T> lastChild; // The rightmost child of the node
+        private TreeNode<T> prevSibling; // The sibling at the left of the node
+        private TreeNode<T> nextSibling; // The sibling at the right of the node
+        private int subtreeSize; // Nodes in the subtree rooted at the node, only valid while the tree keeps sizes
+        private long checkedEpoch; // Last epoch in which the node was known to be attached
+        private int depth; // Depth of the node, only valid while the ancestry index is built
+        private TreeNode<T> jump; // Ancestor used to skip levels in ancestry queries
+        private long enter; // Interval label taken when the Euler tour enters the node, only valid while labels are built
+        private long exit; // Interval label taken when the Euler tour leaves the node
         private LinkedTree<T> myTree; // A reference to the tree where the node belongs
 
         /**
@@ -30,12 +102,12 @@ public class LinkedTree<E> implements Tree<E> {
          * @param t the tree where the node is stored
          * @param e the element to store in the node
          * @param p the parent of the node
-         * @param c the list of children of the node
          */
-        public TreeNode(LinkedTree<T> t, T e, TreeNode<T> p, List<TreeNode<T>> c) {
+        public TreeNode(LinkedTree<T> t, T e, TreeNode<T> p) {
             this.element = e;
             this.parent = p;
-            this.children = c;
+            this.subtreeSize = 1;
+            this.checkedEpoch = t.epoch;
             this.myTree = t;
         }
 
@@ -54,39 +126,102 @@ public class LinkedTree<E> implements Tree<E> {
         }
 
         /**
-         * Accesses to the list of children of this node
+         * Accesses to the parent of this node
          * 
-         * @return the list of children
+         * @return the parent of this node
          */
-        public List<TreeNode<T>> getChildren() {
-            return children;
+        public TreeNode<T> getParent() {
+            return parent;
         }
 
         /**
-         * Sets the children of this node
+         * Sets the parent of this node
          * 
-         * @param c the list of nodes to be used as children of this position
+         * @param v the node to be used as parent
          */
-        public final void setChildren(List<TreeNode<T>> c) {
-            children = c;
+        public final void setParent(TreeNode<T> v) {
+            parent = v;
         }
 
         /**
-         * Accesses to the parent of this node
+         * Accesses to the leftmost child of this node
          * 
-         * @return the parent of this node
+         * @return the first child, or null if the node is a leaf
          */
-        public TreeNode<T> getParent() {
-            return parent;
+        public TreeNode<T> getFirstChild() {
+            return firstChild;
         }
 
         /**
-         * Sets the parent of this node
+         * Accesses to the rightmost child of this node
          * 
-         * @param v the node to be used as parent
+         * @return the last child, or null if the node is a leaf
          */
-        public final void setParent(TreeNode<T> v) {
-            parent = v;
+        public TreeNode<T> getLastChild() {
+            return lastChild;
+        }
+
+        /**
+         * Accesses to the sibling at the left of this node
+         * 
+         * @return the previous sibling, or null if the node is the first child
+         */
+        public TreeNode<T> getPrevSibling() {
+            return prevSibling;
+        }
+
+        /**
+         * Accesses to the sibling at the right of this node
+         * 
+         * @return the next sibling, or null if the node is the last child
+         */
+        public TreeNode<T> getNextSibling() {
+            return nextSibling;
+        }
+
+        /**
+         * Appends a node at the end of the list of children of this node
+         * 
+         * @param c the node to be added as last child
+         */
+        public void linkChild(TreeNode<T> c) {
+            c.prevSibling = lastChild;
+            c.nextSibling = null;
+            if (lastChild == null) {
+                firstChild = c;
+            } else {
+                lastChild.nextSibling = c;
+            }
+            lastChild = c;
+        }
+
+        /**
+         * Removes a node from the list of children of this node
+         * 
+         * @param c a child of this node
+         */
+        public void unlinkChild(TreeNode<T> c) {
+            if (c.prevSibling == null) {
+                firstChild = c.nextSibling;
+            } else {
+                c.prevSibling.nextSibling = c.nextSibling;
+            }
+            if (c.nextSibling == null) {
+                lastChild = c.prevSibling;
+            } else {
+                c.nextSibling.prevSibling = c.prevSibling;
+            }
+            c.prevSibling = null;
+            c.nextSibling = null;
+        }
+
+        /**
+         * Consults the number of nodes in the subtree rooted at this node
+         * 
+         * @return the size of the subtree, including this node
+         */
+        public int getSubtreeSize() {
+            return subtreeSize;
         }
 
         /**
@@ -108,9 +243,370 @@ public class LinkedTree<E> implements Tree<E> {
         }
     }
 
+    /**
+     * Read-only view of the children of a node, walking the sibling links on
+     * demand.
+     */
+    private class ChildrenView implements Iterable<Position<E>> {
+
+        private final TreeNode<E> first;
+
+        public ChildrenView(TreeNode<E> first) {
+            this.first = first;
+        }
+
+        @Override
+        public Iterator<Position<E>> iterator() {
+            return new Iterator<Position<E>>() {
+                private TreeNode<E> next = first;
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public Position<E> next() {
+                    if (next == null) {
+                        throw new NoSuchElementException();
+                    }
+                    TreeNode<E> aux = next;
+                    next = aux.getNextSibling();
+                    return aux;
+                }
+            };
+        }
+    }
+
+    /**
+     * Spliterator over a sequence of whole subtrees, optionally preceded by a
+     * single node. Positions are produced in pre-order. Splitting hands over
+     * the first half of the pending subtrees (by number of nodes, read from
+     * the subtree sizes, which must be up to date), so both halves know their
+     * exact size. A single remaining subtree is first opened into its root
+     * and its children.
+     */
+    private class SubtreeSpliterator implements Spliterator<Position<E>> {
+
+        private TreeNode<E> head; // Node to produce before the subtrees
+        private final ArrayDeque<TreeNode<E>> subtrees; // Pending subtrees, in order
+        private long remaining; // Exact number of positions left
+
+        public SubtreeSpliterator(TreeNode<E> head, ArrayDeque<TreeNode<E>> subtrees, long remaining) {
+            this.head = head;
+            this.subtrees = subtrees;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Position<E>> action) {
+            TreeNode<E> node;
+            if (head != null) {
+                node = head;
+                head = null;
+            } else if (!subtrees.isEmpty()) {
+                node = subtrees.pollFirst();
+                for (TreeNode<E> c = node.getLastChild(); c != null; c = c.getPrevSibling()) {
+                    subtrees.addFirst(c);
+                }
+            } else {
+                return false;
+            }
+            remaining--;
+            action.accept(node);
+            return true;
+        }
+
+        @Override
+        public Spliterator<Position<E>> trySplit() {
+            if (head == null && subtrees.size() == 1) {
+                head = subtrees.pollFirst();
+                for (TreeNode<E> c = head.getFirstChild(); c != null; c = c.getNextSibling()) {
+                    subtrees.addLast(c);
+                }
+            }
+            if (subtrees.isEmpty() || (head == null && subtrees.size() < 2)) {
+                return null;
+            }
+            long half = remaining / 2;
+            long taken = (head != null) ? 1 : 0;
+            ArrayDeque<TreeNode<E>> prefix = new ArrayDeque<>();
+            while (subtrees.size() > 1 && taken + subtrees.peekFirst().getSubtreeSize() <= half) {
+                TreeNode<E> node = subtrees.pollFirst();
+                taken += node.getSubtreeSize();
+                prefix.addLast(node);
+            }
+            if (prefix.isEmpty() && head == null) {
+                TreeNode<E> node = subtrees.pollFirst();
+                taken += node.getSubtreeSize();
+                prefix.addLast(node);
+            }
+            Spliterator<Position<E>> first = new SubtreeSpliterator(head, prefix, taken);
+            head = null;
+            remaining -= taken;
+            return first;
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | NONNULL | SIZED | SUBSIZED;
+        }
+    }
+
+    /**
+     * Fork/join task that folds a range of consecutive siblings, producing the
+     * result of each of their subtrees in order.
+     *
+     * A range larger than the threshold is split in two halves by number of
+     * nodes. A single large subtree is folded along its heavy path: the task
+     * walks down to the largest child iteratively, forking the smaller
+     * children on the way, so chains of any length use no thread stack and
+     * nested tasks always work on at most half of the nodes of their parent.
+     * Ranges under the threshold are folded sequentially with an explicit
+     * stack.
+     *
+     * @param <R> the type of the result of the fold
+     */
+    private class FoldTask<R> extends RecursiveTask<List<R>> {
+
+        private static final long serialVersionUID = 1L; // Tasks are never serialized
+        private final TreeNode<E> first; // First sibling of the range
+        private final int count; // Number of siblings in the range
+        private final long total; // Number of nodes in the subtrees of the range
+        private final Function<? super E, ? extends R> mapper;
+        private final BinaryOperator<R> combiner;
+        private final int threshold;
+
+        public FoldTask(TreeNode<E> first, int count, long total,
+                Function<? super E, ? extends R> mapper, BinaryOperator<R> combiner, int threshold) {
+            this.first = first;
+            this.count = count;
+            this.total = total;
+            this.mapper = mapper;
+            this.combiner = combiner;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected List<R> compute() {
+            if (total <= threshold) {
+                List<R> results = new ArrayList<>(count);
+                TreeNode<E> node = first;
+                for (int i = 0; i < count; i++) {
+                    results.add(foldSequential(node));
+                    node = node.getNextSibling();
+                }
+                return results;
+            }
+            if (count == 1) {
+                return Collections.singletonList(foldHeavyPath(first));
+            }
+            TreeNode<E> node = first;
+            int k = 0;
+            long acc = 0;
+            do {
+                acc += node.getSubtreeSize();
+                node = node.getNextSibling();
+                k++;
+            } while (k < count - 1 && acc + node.getSubtreeSize() <= total / 2);
+            FoldTask<R> left = subtask(first, k, acc);
+            left.fork();
+            List<R> right = subtask(node, count - k, total - acc).compute();
+            List<R> results = new ArrayList<>(left.join());
+            results.addAll(right);
+            return results;
+        }
+
+        private FoldTask<R> subtask(TreeNode<E> first, int count, long total) {
+            return new FoldTask<>(first, count, total, mapper, combiner, threshold);
+        }
+
+        /**
+         * Folds a large subtree, forking the children that are off its heavy
+         * path and folding the heavy path itself in this task.
+         */
+        private R foldHeavyPath(TreeNode<E> start) {
+            List<TreeNode<E>> path = new ArrayList<>();
+            List<TreeNode<E>> heavyChildren = new ArrayList<>();
+            List<FoldTask<R>> before = new ArrayList<>();
+            List<FoldTask<R>> after = new ArrayList<>();
+            TreeNode<E> node = start;
+            while (node.getSubtreeSize() > threshold && node.getFirstChild() != null) {
+                TreeNode<E> heavy = node.getFirstChild();
+                for (TreeNode<E> c = heavy.getNextSibling(); c != null; c = c.getNextSibling()) {
+                    if (c.getSubtreeSize() > heavy.getSubtreeSize()) {
+                        heavy = c;
+                    }
+                }
+                before.add(forkRange(node.getFirstChild(), heavy));
+                after.add(forkRange(heavy.getNextSibling(), null));
+                path.add(node);
+                heavyChildren.add(heavy);
+                node = heavy;
+            }
+            R result = foldSequential(node);
+            for (int i = path.size() - 1; i >= 0; i--) {
+                R acc = mapper.apply(path.get(i).getElement());
+                acc = combineAll(acc, before.get(i));
+                acc = combiner.apply(acc, result);
+                result = combineAll(acc, after.get(i));
+            }
+            return result;
+        }
+
+        /**
+         * Forks a task for the siblings from a given node up to (excluding)
+         * another one, or returns null if the range is empty.
+         */
+        private FoldTask<R> forkRange(TreeNode<E> from, TreeNode<E> to) {
+            int k = 0;
+            long acc = 0;
+            for (TreeNode<E> c = from; c != to; c = c.getNextSibling()) {
+                acc += c.getSubtreeSize();
+                k++;
+            }
+            if (k == 0) {
+                return null;
+            }
+            FoldTask<R> task = subtask(from, k, acc);
+            task.fork();
+            return task;
+        }
+
+        private R combineAll(R acc, FoldTask<R> task) {
+            if (task != null) {
+                for (R r : task.join()) {
+                    acc = combiner.apply(acc, r);
+                }
+            }
+            return acc;
+        }
+
+        /**
+         * Folds a subtree in the calling thread, keeping the partial result of
+         * every open node in an explicit stack instead of the thread stack.
+         */
+        private R foldSequential(TreeNode<E> start) {
+            List<R> stack = new ArrayList<>();
+            stack.add(mapper.apply(start.getElement()));
+            TreeNode<E> node = start;
+            while (true) {
+                if (node.getFirstChild() != null) {
+                    node = node.getFirstChild();
+                    stack.add(mapper.apply(node.getElement()));
+                    continue;
+                }
+                while (node != start) {
+                    R r = stack.remove(stack.size() - 1);
+                    int top = stack.size() - 1;
+                    stack.set(top, combiner.apply(stack.get(top), r));
+                    if (node.getNextSibling() != null) {
+                        break;
+                    }
+                    node = node.getParent();
+                }
+                if (node == start) {
+                    return stack.get(0);
+                }
+                node = node.getNextSibling();
+                stack.add(mapper.apply(node.getElement()));
+            }
+        }
+    }
+
+    /**
+     * The operations recorded by {@link #mutate(Consumer)}. New nodes are
+     * created when they are recorded, but they are neither linked to their
+     * parents nor owned by the tree until the batch is applied, so the tree
+     * rejects them until then. They are recognised by the batch through a
+     * stamp of their own in checkedEpoch.
+     */
+    private class Batch implements TreeBatch<E> {
+
+        private final long stamp = EPOCHS.incrementAndGet(); // The checkedEpoch of the new nodes
+        private final List<TreeNode<E>> added = new ArrayList<>(); // New nodes, in the order they were recorded
+        private final Set<TreeNode<E>> removed = Collections.newSetFromMap(new IdentityHashMap<>()); // Removed nodes, new or of the tree
+        private final Map<TreeNode<E>, E> replaced = new IdentityHashMap<>(); // Last element recorded for each node of the tree
+        private boolean closed; // Whether the batch no longer accepts operations
+
+        @Override
+        public Position<E> add(E element, Position<E> p) throws IllegalStateException {
+            TreeNode<E> parent = lookup(p);
+            TreeNode<E> node = new TreeNode<>(LinkedTree.this, element, parent);
+            node.setMyTree(null);
+            node.checkedEpoch = stamp;
+            added.add(node);
+            return node;
+        }
+
+        @Override
+        public void remove(Position<E> p) throws IllegalStateException {
+            removed.add(lookup(p));
+        }
+
+        @Override
+        public void replace(Position<E> p, E e) throws IllegalStateException {
+            TreeNode<E> node = lookup(p);
+            if (isPending(node)) {
+                node.setElement(e);
+            } else {
+                replaced.put(node, e);
+            }
+        }
+
+        /**
+         * Validates a position of the tree or of a node added by this batch.
+         *
+         * @param p the position to check
+         * @return the node of the position
+         * @throws IllegalStateException if the position is not valid
+         */
+        private TreeNode<E> lookup(Position<E> p) throws IllegalStateException {
+            if (closed) {
+                throw new IllegalStateException("The batch has already been applied");
+            }
+            if (p instanceof TreeNode && isPending((TreeNode<E>) p)) {
+                return (TreeNode<E>) p;
+            }
+            return checkPosition(p);
+        }
+
+        /**
+         * Checks whether a node has been added by this batch.
+         *
+         * @param node the node to check
+         * @return TRUE if the node is new and the batch has not been applied
+         */
+        private boolean isPending(TreeNode<E> node) {
+            return node.getMyTree() == null && node.checkedEpoch == stamp;
+        }
+    }
+
     private TreeNode<E> root; // The root of the tree
-    private int size; // The number of nodes in the tree
+    private int size; // The number of nodes in the tree, plus those of the uncounted subtrees
+    private TreeNode<E> uncounted; // Removed nodes still counted in size, chained by nextSibling
+    private boolean sizesValid; // Whether subtreeSize is valid for every node
+    private long epoch; // Changes every time a subtree is detached from the tree
+    private long[] removalEpochs; // Epoch started by each logged removal, in a circular buffer
+    private int[] removalDepths; // Depth of the root of each logged removal
+    private int removalHead; // Slot of the next logged removal
+    private int removalCount; // Number of logged removals
+    private long removalLogStart; // Removals after this epoch are all logged
+    private long walked; // Nodes walked by position checks since the ancestry index was lost
+    private boolean ancestryIndexed; // Whether depth and jump are valid for every node
+    private boolean intervalLabeled; // Whether enter and exit are valid for every node
+    private Position<E>[] preorder; // Every node in pre-order, null if out of date
+    private long[] preorderLabels; // The enter label of every node of preorder
+    private List<ElementIndex<?, E>> indexes; // The element indexes, null if there is none
     private TreeIteratorFactory<E> iteratorFactory; // The factory of iterators
+    private TreeListener listener; // Receives the measurements, null if instrumentation is off
+    private TreeChangeListener<E> changeListener; // Receives the changes, null if nobody records them
+    private boolean adopted; // Whether it holds nodes moved from another tree, which may still name that tree
 
     /**
      * Creates an empty tree.
@@ -118,17 +614,78 @@ public class LinkedTree<E> implements Tree<E> {
     public LinkedTree() {
         root = null;
         size = 0;
+        sizesValid = true;
+        epoch = EPOCHS.incrementAndGet();
+        removalLogStart = epoch;
+        ancestryIndexed = true;
         this.iteratorFactory = new BFSIteratorFactory<>();
     }
 
+    /**
+     * Creates a tree from a list of elements and the index of the parent of
+     * each one, in a single linear pass. The element at index 0 is the root
+     * and its parent index must be -1; every other element must have a parent
+     * with a smaller index (which holds for elements listed in pre-order or in
+     * breadth-first order). Children keep the relative order of the list.
+     *
+     * @param elements the elements of the tree
+     * @param parents the index of the parent of every element
+     * @throws IllegalArgumentException if the parent indices do not describe
+     * a tree with those properties
+     */
+    public LinkedTree(List<? extends E> elements, int[] parents) throws IllegalArgumentException {
+        this();
+        int n = elements.size();
+        if (parents.length != n) {
+            throw new IllegalArgumentException("There must be one parent index per element");
+        }
+        if (n == 0) {
+            return;
+        }
+        if (parents[0] != -1) {
+            throw new IllegalArgumentException("The first element must be the root");
+        }
+        List<TreeNode<E>> nodes = new ArrayList<>(n);
+        Iterator<? extends E> it = elements.iterator();
+        root = new TreeNode<>(this, it.next(), null);
+        indexAncestry(root);
+        nodes.add(root);
+        for (int i = 1; i < n; i++) {
+            int parentIndex = parents[i];
+            if (parentIndex < 0 || parentIndex >= i) {
+                throw new IllegalArgumentException("Invalid parent index " + parentIndex + " at " + i);
+            }
+            TreeNode<E> parent = nodes.get(parentIndex);
+            TreeNode<E> node = new TreeNode<>(this, it.next(), parent);
+            parent.linkChild(node);
+            indexAncestry(node);
+            nodes.add(node);
+        }
+        // Parents precede their children, so a backwards sweep sees every
+        // subtree complete before adding it to its parent.
+        for (int i = n - 1; i > 0; i--) {
+            nodes.get(parents[i]).subtreeSize += nodes.get(i).getSubtreeSize();
+        }
+        size = n;
+    }
+
+    /**
+     * Consults the number of nodes. Removed subtrees are counted here rather
+     * than by {@link #remove(Position)}, so the first call after removing
+     * large subtrees is proportional to their size; the cost is amortized
+     * over the additions of the removed nodes.
+     *
+     * @return the number of nodes in the tree
+     */
     @Override
     public int size() {
+        countRemoved(Integer.MAX_VALUE);
         return size;
     }
 
     @Override
     public boolean isEmpty() {
-        return (size == 0);
+        return (root == null);
     }
 
     @Override
@@ -139,7 +696,7 @@ public class LinkedTree<E> implements Tree<E> {
     @Override
     public boolean isLeaf(Position<E> p) throws IllegalStateException {
         TreeNode<E> node = checkPosition(p);
-        return (node.getChildren() == null) || (node.getChildren().isEmpty());
+        return node.getFirstChild() == null;
     }
 
     @Override
@@ -170,7 +727,19 @@ public class LinkedTree<E> implements Tree<E> {
     @Override
     public Iterable<? extends Position<E>> children(Position<E> p) {
         TreeNode<E> node = checkPosition(p);
-        return node.getChildren();
+        return new ChildrenView(node.getFirstChild());
+    }
+
+    @Override
+    public Position<E> firstChild(Position<E> p) throws IllegalStateException {
+        TreeNode<E> node = checkPosition(p);
+        return node.getFirstChild();
+    }
+
+    @Override
+    public Position<E> nextSibling(Position<E> p) throws IllegalStateException {
+        TreeNode<E> node = checkPosition(p);
+        return node.getNextSibling();
     }
 
     /**
@@ -181,9 +750,28 @@ public class LinkedTree<E> implements Tree<E> {
      * @throws IllegalStateException if the position is not valid 
      */
     public E replace(Position<E> p, E e) throws IllegalStateException {
+        long start = (listener == null) ? 0 : System.nanoTime();
         TreeNode<E> node = checkPosition(p);
         E temp = p.getElement();
-        node.setElement(e);
+        if (indexes == null) {
+            node.setElement(e);
+        } else {
+            unindexElement(node, temp);
+            node.setElement(e);
+            try {
+                indexElement(node);
+            } catch (IllegalStateException ex) {
+                node.setElement(temp);
+                indexElement(node);
+                throw ex;
+            }
+        }
+        if (changeListener != null) {
+            changeListener.elementReplaced(node);
+        }
+        if (listener != null) {
+            completed(TreeOperation.REPLACE, start);
+        }
         return temp;
     }
     
@@ -192,8 +780,26 @@ public class LinkedTree<E> implements Tree<E> {
         if (!isEmpty()) {
             throw new IllegalStateException("Tree already has a root");
         }
+        long start = (listener == null) ? 0 : System.nanoTime();
+        TreeNode<E> newRoot = new TreeNode<>(this, e, null);
+        indexElement(newRoot);
         size = 1;
-        root = new TreeNode<>(this, e, null, new ArrayList<TreeNode<E>>());
+        root = newRoot;
+        preorder = null;
+        if (ancestryIndexed) {
+            indexAncestry(root);
+        }
+        if (intervalLabeled) {
+            root.enter = 0;
+            root.exit = Long.MAX_VALUE;
+        }
+        if (changeListener != null) {
+            changeListener.rootAdded(root);
+        }
+        if (listener != null) {
+            listener.nodeAdded(0);
+            completed(TreeOperation.ADD, start);
+        }
         return root;
     }
 
@@ -205,15 +811,52 @@ public class LinkedTree<E> implements Tree<E> {
      */
     public void swapElements(Position<E> p1, Position<E> p2)
             throws IllegalStateException {
+        long start = (listener == null) ? 0 : System.nanoTime();
         TreeNode<E> node1 = checkPosition(p1);
         TreeNode<E> node2 = checkPosition(p2);
-        E temp = p2.getElement();
-        node2.setElement(p1.getElement());
-        node1.setElement(temp);
+        if (node1 != node2) {
+            E temp = p2.getElement();
+            if (indexes != null) {
+                unindexElement(node1, node1.getElement());
+                unindexElement(node2, temp);
+            }
+            node2.setElement(p1.getElement());
+            node1.setElement(temp);
+            if (indexes != null) {
+                indexElement(node1);
+                indexElement(node2);
+            }
+            if (changeListener != null) {
+                changeListener.elementsSwapped(node1, node2);
+            }
+        }
+        if (listener != null) {
+            completed(TreeOperation.SWAP, start);
+        }
     }
 
     /**
-     * Validates the given position, casting it to TreeNode if valid
+     * Validates the given position, casting it to TreeNode if valid.
+     *
+     * A removed subtree is only marked at its root, which loses its parent,
+     * so a node inside it still claims to belong to this tree. Every node
+     * remembers the epoch in which it was last found to be attached, and the
+     * epoch only changes when a subtree is removed, so between removals a
+     * check is O(1). After removals, the tree remembers the depth of the
+     * roots of the last ones: a node is still attached unless its ancestor at
+     * one of those depths is a removed root, which the ancestry index finds
+     * in O(log depth) per removal. Unrelated removals therefore do not make
+     * checks of deep nodes slower. When more removals happened since the
+     * node was checked than this is worth, or the ancestry index is not
+     * built, the node is found by walking up to its topmost ancestor instead,
+     * stamping the walked path so each node is walked at most once per
+     * epoch.
+     *
+     * Likewise, only the top node of a subtree grafted from another tree (or
+     * split from this one) is told its new tree. Once a tree has received
+     * such a subtree, a node that names another tree is also accepted if the
+     * walk up reaches the root, and the walked path is updated.
+     *
      * @param p the position to be converted
      * @return the position casted to TreeNode
      * @throws IllegalStateException if the position is not valid
@@ -221,18 +864,172 @@ public class LinkedTree<E> implements Tree<E> {
     private TreeNode<E> checkPosition(Position<E> p)
             throws IllegalStateException {
         if (p == null || !(p instanceof TreeNode)) {
-            throw new IllegalStateException("The position is invalid");
+            throw rejected("The position is invalid");
         }
         TreeNode<E> aux = (TreeNode<E>) p;
 
-        if (aux.getMyTree() != this) {
-            throw new IllegalStateException("The node is not from this tree");
+        if (aux.getMyTree() != this && !(adopted && aux.getMyTree() != null && isAttached(aux))) {
+            throw rejected("The node is not from this tree");
+        }
+        if (aux.checkedEpoch != epoch && !isAttached(aux)) {
+            throw rejected("The node has been removed");
         }
         return aux;
     }
 
     /**
-     * Adds a new node whose parent is pointed by a given position.
+     * Creates the exception for a position rejected by
+     * {@link #checkPosition(Position)}, reporting it to the listener.
+     *
+     * @param message the reason of the rejection
+     * @return the exception to throw
+     */
+    private IllegalStateException rejected(String message) {
+        if (listener != null) {
+            listener.positionRejected();
+        }
+        return new IllegalStateException(message);
+    }
+
+    /**
+     * Checks whether a node hangs from the root of this tree, stamping it
+     * with the current epoch if it does. The logged removals are used when
+     * they are cheaper than walking to the root, as described in
+     * {@link #checkPosition(Position)}; otherwise the whole walked path is
+     * stamped.
+     *
+     * @param node the node to check
+     * @return TRUE if the node belongs to the tree, FALSE if it is inside a
+     * removed subtree
+     */
+    private boolean isAttached(TreeNode<E> node) {
+        if (ancestryIndexed && node.getMyTree() == this && node.checkedEpoch >= removalLogStart) {
+            int count = 0;
+            while (count < removalCount && removalEpochs[slot(count)] > node.checkedEpoch) {
+                count++;
+            }
+            if ((long) count * (32 - Integer.numberOfLeadingZeros(node.depth)) <= node.depth) {
+                for (int i = 0; i < count; i++) {
+                    if (isRemovedAt(node, removalDepths[slot(i)])) {
+                        return false;
+                    }
+                }
+                node.checkedEpoch = epoch;
+                return true;
+            }
+        }
+        TreeNode<E> top = node;
+        while (top.checkedEpoch != epoch && top.getParent() != null) {
+            top = top.getParent();
+            walked++;
+        }
+        if (top.checkedEpoch != epoch && top != root) {
+            return false;
+        }
+        for (TreeNode<E> aux = node; aux != top; aux = aux.getParent()) {
+            aux.checkedEpoch = epoch;
+            aux.setMyTree(this);
+        }
+        top.checkedEpoch = epoch;
+        top.setMyTree(this);
+        if (!ancestryIndexed && walked > size) {
+            // Walks have cost as much as rebuilding the index would
+            buildAncestryIndex();
+        }
+        return true;
+    }
+
+    /**
+     * Gives the slot of the circular removal log holding a logged removal.
+     *
+     * @param age 0 for the last removal, 1 for the previous one, and so on
+     * @return the index of the removal in the log arrays
+     */
+    private int slot(int age) {
+        return Math.floorMod(removalHead - 1 - age, REMOVAL_LOG_SIZE);
+    }
+
+    /**
+     * Checks whether the ancestor of a node at a given depth is the root of
+     * a removed subtree. The jumps and parent links of removed nodes are
+     * kept, so the ancestor is found as it was when the node was attached; a
+     * removed root met on the way up also means the node is removed. The
+     * root of a split subtree may have a parent again if it was grafted into
+     * another tree, so an ancestor that names another tree is also a removed
+     * root: while the ancestry index is built, every attached node names
+     * this tree.
+     *
+     * @param node a node that was attached and indexed
+     * @param depth the depth of the root of a removed subtree
+     * @return TRUE if the node was inside a subtree removed at that depth
+     */
+    private boolean isRemovedAt(TreeNode<E> node, int depth) {
+        if (depth > node.depth) {
+            return false;
+        }
+        TreeNode<E> aux = node;
+        while (aux.depth > depth) {
+            TreeNode<E> next = aux.jump;
+            if (next == null || next.depth < depth) {
+                next = aux.getParent();
+            }
+            if (next == null) {
+                // A removed root, or an old node released by relayout
+                return true;
+            }
+            aux = next;
+        }
+        return aux.getMyTree() != this || (aux.getParent() == null && aux != root);
+    }
+
+    /**
+     * Logs the depth of a subtree just detached from the tree, after the
+     * epoch has been changed. Without the ancestry index the depth is not
+     * known, and the log is restarted instead.
+     *
+     * @param node the root of the detached subtree
+     */
+    private void logRemoval(TreeNode<E> node) {
+        if (root == null) {
+            // Every node is removed, and none can be indexed again
+            restartRemovalLog();
+            ancestryIndexed = true;
+            return;
+        }
+        if (!ancestryIndexed) {
+            restartRemovalLog();
+            return;
+        }
+        if (removalEpochs == null) {
+            removalEpochs = new long[REMOVAL_LOG_SIZE];
+            removalDepths = new int[REMOVAL_LOG_SIZE];
+        }
+        if (removalCount == REMOVAL_LOG_SIZE) {
+            // Nodes checked before the forgotten removal must walk
+            removalLogStart = removalEpochs[removalHead];
+        } else {
+            removalCount++;
+        }
+        removalEpochs[removalHead] = epoch;
+        removalDepths[removalHead] = node.depth;
+        removalHead = (removalHead + 1) % REMOVAL_LOG_SIZE;
+    }
+
+    /**
+     * Forgets the logged removals, when their depths can no longer be
+     * compared with those of the nodes. Nodes checked before the current
+     * epoch will walk to the root on their next check.
+     */
+    private void restartRemovalLog() {
+        removalCount = 0;
+        removalLogStart = epoch;
+    }
+
+    /**
+     * Adds a new node whose parent is pointed by a given position. The new
+     * node becomes the last child of its parent. The ancestors are not
+     * visited, so the cost is constant: the subtree sizes they keep are
+     * recounted by the next operation that needs them.
      *
      * @param element the element to be added
      * @param p the position of the parent
@@ -240,46 +1037,1158 @@ public class LinkedTree<E> implements Tree<E> {
      * @throws IllegalStateException if the position is not valid
      */
     public Position<E> add(E element, Position<E> p) throws IllegalStateException {
+        long start = (listener == null) ? 0 : System.nanoTime();
         TreeNode<E> parent = checkPosition(p);
-        TreeNode<E> newNode = new TreeNode<>(this, element, parent, new ArrayList<TreeNode<E>>());
-        List<TreeNode<E>> l = parent.getChildren();
-        l.add(newNode);
+        TreeNode<E> newNode = new TreeNode<>(this, element, parent);
+        indexElement(newNode);
+        parent.linkChild(newNode);
+        sizesValid = false;
+        if (ancestryIndexed) {
+            indexAncestry(newNode);
+        }
+        if (intervalLabeled) {
+            labelInterval(newNode);
+        }
+        preorder = null;
         size++;
+        if (uncounted != null) {
+            countRemoved(COUNT_STEP);
+        }
+        if (changeListener != null) {
+            changeListener.nodeAdded(newNode, parent);
+        }
+        if (listener != null) {
+            listener.nodeAdded(depthOf(newNode));
+            completed(TreeOperation.ADD, start);
+        }
         return newNode;
     }
 
     /**
-     * Removes a node and its corresponding subtree rooted at node.
+     * Removes a node and its corresponding subtree rooted at node. The node is
+     * unlinked in constant time and the nodes of the subtree are not visited:
+     * they are recognised as removed by {@link #checkPosition(Position)}, and
+     * they are subtracted from the size a few at a time by later additions
+     * and removals, or all at once by {@link #size()}. The cost does not
+     * depend on the size of the tree or of the removed subtree.
      *
      * @param p the position of the node to be removed.
      * @throws IllegalStateException if the position is not valid
      */
     public void remove(Position<E> p) throws IllegalStateException {
+        long start = (listener == null) ? 0 : System.nanoTime();
         TreeNode<E> node = checkPosition(p);
+        if (changeListener != null) {
+            changeListener.nodeRemoving(node);
+        }
+        if (indexes != null) {
+            forEachInSubtree(node, n -> unindexElement(n, n.getElement()));
+        }
         if (node.getParent() != null) {
-            Iterator<Position<E>> it = this.iteratorFactory.createIterator(this, p);
-            int cont = 0;
-            while (it.hasNext()) {
-                it.next();
-                cont++;
-            }
-            size = size - cont;
-            TreeNode<E> parent = node.getParent();
-            parent.getChildren().remove(node);
+            node.getParent().unlinkChild(node);
+            node.setParent(null);
+            detach(node);
+            countRemoved(COUNT_STEP);
         } else {
-            this.root = null;
-            this.size = 0;
+            clear();
         }
         node.setMyTree(null);
+        preorder = null;
+        epoch = EPOCHS.incrementAndGet();
+        logRemoval(node);
+        if (listener != null) {
+            completed(TreeOperation.REMOVE, start);
+        }
     }
-    
+
+    /**
+     * Takes a subtree unlinked from the tree out of the size. If the subtree
+     * sizes are up to date, the size of the subtree is read from its root;
+     * otherwise the subtree is queued to be counted by
+     * {@link #countRemoved(int)}.
+     *
+     * @param node the root of the subtree, already unlinked
+     */
+    private void detach(TreeNode<E> node) {
+        if (sizesValid) {
+            size -= node.getSubtreeSize();
+            sizesValid = false;
+        } else {
+            node.nextSibling = uncounted;
+            uncounted = node;
+        }
+    }
+
+    /**
+     * Leaves the tree empty, forgetting the subtrees not counted yet.
+     */
+    private void clear() {
+        root = null;
+        size = 0;
+        uncounted = null;
+        sizesValid = true;
+    }
+
+    /**
+     * Marks the ancestry index as out of date after the depth of some nodes
+     * changed. The logged removals are forgotten, since their depths no
+     * longer match those of the nodes.
+     */
+    private void loseAncestryIndex() {
+        ancestryIndexed = false;
+        walked = 0;
+        restartRemovalLog();
+    }
+
+    /**
+     * Subtracts from the size up to a given number of nodes of the removed
+     * subtrees. The subtrees are taken apart as they are counted: the children
+     * of a counted node are spliced at the head of the chain of nodes to
+     * count, so each node costs O(1) without any auxiliary structure. Only
+     * child and sibling links are dropped; the parent links that
+     * {@link #checkPosition(Position)} follows are kept.
+     *
+     * @param budget the maximum number of nodes to count
+     */
+    private void countRemoved(int budget) {
+        for (; uncounted != null && budget > 0; budget--) {
+            TreeNode<E> node = uncounted;
+            if (node.firstChild != null) {
+                node.lastChild.nextSibling = node.nextSibling;
+                uncounted = node.firstChild;
+                node.firstChild = null;
+                node.lastChild = null;
+            } else {
+                uncounted = node.nextSibling;
+            }
+            node.prevSibling = null;
+            node.nextSibling = null;
+            size--;
+        }
+    }
+
+    /**
+     * Recounts the size of every subtree of the tree, and the size of the
+     * tree itself, if any modification made them stale.
+     */
+    private void ensureSubtreeSizes() {
+        if (sizesValid) {
+            return;
+        }
+        size = (root == null) ? 0 : countSubtree(root);
+        uncounted = null;
+        sizesValid = true;
+    }
+
+    /**
+     * Recounts the size of every subtree inside the subtree rooted at a given
+     * node, in a single iterative walk that adds the size of each finished
+     * node to its parent.
+     *
+     * @param top the root of the subtree
+     * @return the number of nodes of the subtree
+     */
+    private int countSubtree(TreeNode<E> top) {
+        TreeNode<E> node = top;
+        node.subtreeSize = 1;
+        while (true) {
+            if (node.getFirstChild() != null) {
+                node = node.getFirstChild();
+                node.subtreeSize = 1;
+                continue;
+            }
+            while (node != top && node.getNextSibling() == null) {
+                node.getParent().subtreeSize += node.subtreeSize;
+                node = node.getParent();
+            }
+            if (node == top) {
+                return top.subtreeSize;
+            }
+            node.getParent().subtreeSize += node.subtreeSize;
+            node = node.getNextSibling();
+            node.subtreeSize = 1;
+        }
+    }
+
+    /**
+     * Moves a node and its subtree to become the last child of another node
+     * of the tree. Only the path from the new parent to the root is walked,
+     * to reject a move into the moved subtree, so the cost is proportional to
+     * the depth of the new parent and does not depend on the size of the
+     * subtree. The subtree sizes, the ancestry index and the interval labels
+     * are rebuilt by the next query that needs them.
+     *
+     * @param p the position of the node to move
+     * @param newParent the position of its new parent
+     * @throws IllegalStateException if a position is not valid or the new
+     * parent is inside the moved subtree
+     */
+    public void moveSubtree(Position<E> p, Position<E> newParent) throws IllegalStateException {
+        long start = (listener == null) ? 0 : System.nanoTime();
+        TreeNode<E> node = checkPosition(p);
+        TreeNode<E> parent = checkPosition(newParent);
+        for (TreeNode<E> aux = parent; aux != null; aux = aux.getParent()) {
+            if (aux == node) {
+                throw new IllegalStateException("A node cannot be moved into its own subtree");
+            }
+        }
+        node.getParent().unlinkChild(node);
+        node.setParent(parent);
+        parent.linkChild(node);
+        sizesValid = false;
+        loseAncestryIndex();
+        intervalLabeled = false;
+        preorder = null;
+        if (changeListener != null) {
+            changeListener.subtreeMoved(node, parent);
+        }
+        if (listener != null) {
+            completed(TreeOperation.MOVE, start);
+        }
+    }
+
+    /**
+     * Moves every node of another tree into this one, the root of the other
+     * tree becoming the last child of a given node. The other tree is left
+     * empty. The nodes are relinked, not copied: their positions stay valid
+     * and now belong to this tree. The cost is constant, plus the size of
+     * the moved tree if this tree has element indexes, and that of the
+     * subtrees the other tree has not counted yet. The subtree sizes, the
+     * ancestry index and the interval labels are rebuilt by the next query
+     * that needs them.
+     *
+     * @param other the tree to move
+     * @param at the position of the new parent of its root
+     * @throws IllegalStateException if the position is not valid, the other
+     * tree is this one, or a unique index rejects an element of the other
+     * tree; no tree is modified
+     */
+    public void graft(LinkedTree<E> other, Position<E> at) throws IllegalStateException {
+        long start = (listener == null) ? 0 : System.nanoTime();
+        if (other == this) {
+            throw new IllegalStateException("A tree cannot be grafted onto itself");
+        }
+        TreeNode<E> parent = checkPosition(at);
+        TreeNode<E> top = other.root;
+        if (top == null) {
+            return;
+        }
+        indexSubtree(top);
+        if (other.changeListener != null) {
+            other.changeListener.nodeRemoving(top);
+        }
+        if (other.indexes != null) {
+            for (ElementIndex<?, E> index : other.indexes) {
+                index.clear();
+            }
+        }
+        int moved = other.size();
+        other.clear();
+        other.preorder = null;
+        other.epoch = EPOCHS.incrementAndGet();
+        other.logRemoval(top);
+        top.setMyTree(this);
+        top.checkedEpoch = epoch;
+        top.setParent(parent);
+        parent.linkChild(top);
+        size += moved;
+        sizesValid = false;
+        adopted = true;
+        loseAncestryIndex();
+        intervalLabeled = false;
+        preorder = null;
+        if (changeListener != null) {
+            forEachInSubtree(top, n -> changeListener.nodeAdded(n, n.getParent()));
+        }
+        if (listener != null) {
+            completed(TreeOperation.MOVE, start);
+        }
+    }
+
+    /**
+     * Detaches a node and its subtree into a new tree, of which it becomes
+     * the root. The nodes are relinked, not copied: their positions now
+     * belong to the new tree and are rejected by this one, as after a
+     * removal. Both trees need the size of the subtree: it is read from the
+     * node if the subtree sizes are up to date, and counted otherwise, so
+     * the cost is constant or proportional to the size of the subtree (which
+     * is always the case if this tree has element indexes). The new tree has
+     * no indexes and uses the default iterator.
+     *
+     * @param p the position of the node
+     * @return the new tree
+     * @throws IllegalStateException if the position is not valid
+     */
+    public LinkedTree<E> split(Position<E> p) throws IllegalStateException {
+        long start = (listener == null) ? 0 : System.nanoTime();
+        TreeNode<E> node = checkPosition(p);
+        if (changeListener != null) {
+            changeListener.nodeRemoving(node);
+        }
+        if (indexes != null) {
+            forEachInSubtree(node, n -> unindexElement(n, n.getElement()));
+        }
+        int moved = sizesValid ? node.getSubtreeSize() : countSubtree(node);
+        if (node.getParent() != null) {
+            node.getParent().unlinkChild(node);
+            node.setParent(null);
+            size -= moved;
+            sizesValid = false;
+        } else {
+            clear();
+        }
+        preorder = null;
+        epoch = EPOCHS.incrementAndGet();
+        logRemoval(node);
+        LinkedTree<E> piece = new LinkedTree<>();
+        node.setMyTree(piece);
+        node.checkedEpoch = piece.epoch;
+        piece.root = node;
+        piece.size = moved;
+        piece.adopted = true;
+        piece.ancestryIndexed = false;
+        if (listener != null) {
+            completed(TreeOperation.MOVE, start);
+        }
+        return piece;
+    }
+
+    /**
+     * Adds every node of a subtree to the element indexes. If an index
+     * rejects a node, the nodes already added are removed before rethrowing.
+     *
+     * @param top the root of the subtree
+     * @throws IllegalStateException if a unique index already has a key
+     */
+    private void indexSubtree(TreeNode<E> top) throws IllegalStateException {
+        if (indexes == null) {
+            return;
+        }
+        List<TreeNode<E>> indexed = new ArrayList<>();
+        try {
+            forEachInSubtree(top, n -> {
+                indexElement(n);
+                indexed.add(n);
+            });
+        } catch (IllegalStateException ex) {
+            for (TreeNode<E> n : indexed) {
+                unindexElement(n, n.getElement());
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Applies a group of modifications in one pass. The operations are
+     * recorded on a {@link TreeBatch} and their positions validated one by
+     * one, but the tree is only changed once all of them have been recorded,
+     * so if an operation (or the action itself) fails the tree is left as it
+     * was. Before applying, operations on nodes of removed subtrees are
+     * discarded, along with the additions under them, and only the last
+     * replacement of each node is kept.
+     *
+     * Removals change the epoch twice, and the removed subtrees are
+     * found by walking up from the nodes of the other operations, stamping
+     * each walked node so it is not walked again. As with single removals,
+     * the nodes of the removed subtrees are counted later, and the subtree
+     * sizes are recounted by the next query that needs them. Element indexes
+     * are updated
+     * before any link changes: if a unique index rejects an element, the
+     * entries already changed are restored and the tree is not modified. The
+     * ancestry index is extended to the new nodes, while interval labels are
+     * rebuilt by the next query that needs them if any node was added.
+     *
+     * @param operations the action that records the operations on the batch
+     * @throws IllegalStateException if a position is not valid or a unique
+     * index rejects an element; the tree is not modified
+     */
+    public void mutate(Consumer<? super TreeBatch<E>> operations) throws IllegalStateException {
+        if (listener == null) {
+            applyBatch(operations);
+        } else {
+            long start = System.nanoTime();
+            applyBatch(operations);
+            completed(TreeOperation.BATCH, start);
+        }
+    }
+
+    /**
+     * Records and applies a batch, as described in {@link #mutate(Consumer)}.
+     *
+     * @param operations the action that records the operations on the batch
+     * @throws IllegalStateException if a position is not valid or a unique
+     * index rejects an element; the tree is not modified
+     */
+    private void applyBatch(Consumer<? super TreeBatch<E>> operations) throws IllegalStateException {
+        Batch batch = new Batch();
+        try {
+            operations.accept(batch);
+        } finally {
+            batch.closed = true;
+        }
+        // Mark the removed nodes with a value that is not an epoch of any
+        // tree, after making every previous stamp stale. New nodes that are
+        // marked lose the stamp of the batch.
+        long mark = 0;
+        List<TreeNode<E>> cut = new ArrayList<>();
+        if (!batch.removed.isEmpty()) {
+            epoch = EPOCHS.incrementAndGet();
+            mark = EPOCHS.incrementAndGet();
+            for (TreeNode<E> node : batch.removed) {
+                node.checkedEpoch = mark;
+            }
+            for (TreeNode<E> node : batch.removed) {
+                if (node.getMyTree() != null
+                        && (node.getParent() == null || !isMarked(node.getParent(), mark))) {
+                    cut.add(node);
+                }
+            }
+        }
+        // Keep only the operations whose nodes survive the batch
+        List<TreeNode<E>> born = new ArrayList<>();
+        for (TreeNode<E> node : batch.added) {
+            TreeNode<E> parent = node.getParent();
+            boolean gone;
+            if (!batch.isPending(node)) {
+                gone = true;
+            } else if (parent.getMyTree() == null) {
+                gone = !batch.isPending(parent);
+            } else {
+                gone = mark != 0 && isMarked(parent, mark);
+            }
+            if (gone) {
+                node.checkedEpoch = mark;
+            } else {
+                born.add(node);
+            }
+        }
+        Map<TreeNode<E>, E> replaced = batch.replaced;
+        if (mark != 0) {
+            long removedMark = mark;
+            replaced.keySet().removeIf(node -> isMarked(node, removedMark));
+        }
+        if (cut.isEmpty() && born.isEmpty() && replaced.isEmpty()) {
+            return;
+        }
+
+        updateIndexes(cut, born, replaced);
+        if (changeListener != null) {
+            for (TreeNode<E> node : cut) {
+                changeListener.nodeRemoving(node);
+            }
+        }
+        preorder = null;
+        if (mark != 0) {
+            // A new epoch after the mark, so that nodes stamped with the mark
+            // are checked against the logged removals
+            epoch = EPOCHS.incrementAndGet();
+        }
+        if (cut.size() == 1 && cut.get(0) == root) {
+            TreeNode<E> oldRoot = root;
+            oldRoot.setMyTree(null);
+            clear();
+            logRemoval(oldRoot);
+            return;
+        }
+        for (TreeNode<E> node : cut) {
+            node.getParent().unlinkChild(node);
+            node.setParent(null);
+            node.setMyTree(null);
+            detach(node);
+            logRemoval(node);
+        }
+        for (TreeNode<E> node : born) {
+            node.setMyTree(this);
+            node.checkedEpoch = epoch;
+            node.getParent().linkChild(node);
+        }
+        size += born.size();
+        if (!born.isEmpty()) {
+            sizesValid = false;
+        }
+        for (Map.Entry<TreeNode<E>, E> entry : replaced.entrySet()) {
+            entry.getKey().setElement(entry.getValue());
+        }
+        if (changeListener != null) {
+            for (TreeNode<E> node : born) {
+                changeListener.nodeAdded(node, node.getParent());
+            }
+            for (TreeNode<E> node : replaced.keySet()) {
+                changeListener.elementReplaced(node);
+            }
+        }
+        if (ancestryIndexed) {
+            for (TreeNode<E> node : born) {
+                indexAncestry(node);
+            }
+        }
+        if (!born.isEmpty()) {
+            intervalLabeled = false;
+        }
+    }
+
+    /**
+     * Checks whether a node of the tree hangs from a node marked as removed.
+     * The walk stops at the first node stamped with the current epoch or with
+     * the mark, and stamps the walked path with the answer, so the nodes of
+     * any path are walked at most once per batch.
+     *
+     * @param node the node to check
+     * @param mark the stamp of removed nodes
+     * @return TRUE if the node is inside a removed subtree
+     */
+    private boolean isMarked(TreeNode<E> node, long mark) {
+        TreeNode<E> top = node;
+        while (top.checkedEpoch != epoch && top.checkedEpoch != mark && top.getParent() != null) {
+            top = top.getParent();
+        }
+        long stamp = (top.checkedEpoch == mark) ? mark : epoch;
+        for (TreeNode<E> aux = node; aux != top; aux = aux.getParent()) {
+            aux.checkedEpoch = stamp;
+        }
+        top.checkedEpoch = stamp;
+        return stamp == mark;
+    }
+
+    /**
+     * Updates the element indexes for the changes of a batch, leaving them as
+     * they were if a unique index rejects an element. Deletions go first, so
+     * a batch may move a key from one node to another.
+     *
+     * @param cut the removed subtrees
+     * @param born the new nodes
+     * @param replaced the new element of each replaced node
+     * @throws IllegalStateException if a unique index rejects an element
+     */
+    private void updateIndexes(List<TreeNode<E>> cut, List<TreeNode<E>> born, Map<TreeNode<E>, E> replaced)
+            throws IllegalStateException {
+        if (indexes == null) {
+            return;
+        }
+        for (TreeNode<E> node : cut) {
+            forEachInSubtree(node, n -> unindexElement(n, n.getElement()));
+        }
+        for (TreeNode<E> node : replaced.keySet()) {
+            unindexElement(node, node.getElement());
+        }
+        List<TreeNode<E>> inserted = new ArrayList<>();
+        try {
+            for (Map.Entry<TreeNode<E>, E> entry : replaced.entrySet()) {
+                indexElement(entry.getKey(), entry.getValue());
+                inserted.add(entry.getKey());
+            }
+            for (TreeNode<E> node : born) {
+                indexElement(node);
+                inserted.add(node);
+            }
+        } catch (IllegalStateException ex) {
+            for (TreeNode<E> node : inserted) {
+                unindexElement(node, replaced.containsKey(node) ? replaced.get(node) : node.getElement());
+            }
+            for (TreeNode<E> node : replaced.keySet()) {
+                indexElement(node);
+            }
+            for (TreeNode<E> node : cut) {
+                forEachInSubtree(node, this::indexElement);
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Rebuilds every node of the tree in the order a given iterator visits
+     * them. After heavy churn the nodes of a long-lived tree are scattered
+     * across the heap; the new nodes are allocated one after the other, so
+     * traversals in the chosen order read memory mostly sequentially again,
+     * as in a freshly built tree. The elements themselves are not copied.
+     *
+     * The old positions are no longer valid after the call: they are
+     * rejected as positions of another tree, and the returned map gives the
+     * new position of each of them. Element indexes, the ancestry index,
+     * interval labels and the change listener are remapped to the new
+     * positions; the ancestry index is rebuilt first if a move or a graft
+     * made it stale, so the position checks of the copy loop never rebuild
+     * it halfway. The cost is linear in the size of the tree, plus the cost
+     * of the iterator.
+     *
+     * @param order the factory of the iterator that gives the new order,
+     * which must visit every node exactly once
+     * @return the new position of every old position
+     * @throws IllegalStateException if the iterator does not visit every
+     * node exactly once; the tree is not modified
+     */
+    public Map<Position<E>, Position<E>> relayout(TreeIteratorFactory<E> order) throws IllegalStateException {
+        countRemoved(Integer.MAX_VALUE);
+        Map<Position<E>, Position<E>> mapping = new IdentityHashMap<>(size);
+        if (root == null) {
+            return mapping;
+        }
+        buildAncestryIndex();
+        // Allocate the copies in the visiting order, without linking them
+        List<TreeNode<E>> visited = new ArrayList<>(size);
+        Iterator<Position<E>> it = order.createIterator(this);
+        while (it.hasNext()) {
+            TreeNode<E> node = checkPosition(it.next());
+            TreeNode<E> copy = new TreeNode<>(this, node.getElement(), null);
+            copy.subtreeSize = node.subtreeSize;
+            copy.depth = node.depth;
+            copy.enter = node.enter;
+            copy.exit = node.exit;
+            if (mapping.put(node, copy) != null || visited.size() == size) {
+                throw new IllegalStateException("The iterator must visit every node once");
+            }
+            visited.add(node);
+        }
+        if (visited.size() != size) {
+            throw new IllegalStateException("The iterator must visit every node once");
+        }
+        for (TreeNode<E> node : visited) {
+            TreeNode<E> copy = (TreeNode<E>) mapping.get(node);
+            for (TreeNode<E> child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                TreeNode<E> childCopy = (TreeNode<E>) mapping.get(child);
+                childCopy.setParent(copy);
+                copy.linkChild(childCopy);
+            }
+            copy.jump = (TreeNode<E>) mapping.get(node.jump);
+        }
+        if (indexes != null) {
+            for (ElementIndex<?, E> index : indexes) {
+                index.remap(mapping);
+            }
+        }
+        if (changeListener != null) {
+            changeListener.positionsRemapped(mapping);
+        }
+        // Detach the old nodes, releasing the links between them
+        for (TreeNode<E> node : visited) {
+            node.setMyTree(null);
+            node.parent = null;
+            node.firstChild = null;
+            node.lastChild = null;
+            node.prevSibling = null;
+            node.nextSibling = null;
+            node.jump = null;
+        }
+        root = (TreeNode<E>) mapping.get(root);
+        preorder = null;
+        adopted = false;
+        return mapping;
+    }
+
+    /**
+     * Creates an index over the elements of this tree, filled with the current
+     * nodes and maintained by every later modification. Each index adds the
+     * cost of a hash map update to add, addRoot, replace and swapElements, and
+     * makes remove proportional to the size of the removed subtree, whose
+     * entries are deleted.
+     *
+     * @param <K> the type of the keys
+     * @param keyExtractor the function that computes the key of an element
+     * @param unique TRUE if two elements with the same key must be rejected
+     * @return the new index
+     * @throws IllegalStateException if the index is unique and the tree
+     * already has two elements with the same key
+     */
+    public <K> ElementIndex<K, E> createIndex(Function<? super E, ? extends K> keyExtractor, boolean unique)
+            throws IllegalStateException {
+        ElementIndex<K, E> index = new ElementIndex<>(keyExtractor, unique);
+        if (root != null) {
+            forEachInSubtree(root, n -> index.insert(n, n.getElement()));
+        }
+        if (indexes == null) {
+            indexes = new ArrayList<>(2);
+        }
+        indexes.add(index);
+        return index;
+    }
+
+    /**
+     * Stops maintaining an index created by this tree.
+     *
+     * @param index the index to drop
+     */
+    public void dropIndex(ElementIndex<?, E> index) {
+        if (indexes != null && indexes.remove(index) && indexes.isEmpty()) {
+            indexes = null;
+        }
+    }
+
+    /**
+     * Adds a node to every index. If an index rejects it, the indexes that
+     * already accepted it are restored before rethrowing.
+     *
+     * @param node the node to index
+     * @throws IllegalStateException if a unique index already has the key
+     */
+    private void indexElement(TreeNode<E> node) throws IllegalStateException {
+        indexElement(node, node.getElement());
+    }
+
+    /**
+     * Adds a node to every index with the key of a given element, which may
+     * not be stored in the node yet. If an index rejects it, the indexes that
+     * already accepted it are restored before rethrowing.
+     *
+     * @param node the node to index
+     * @param element the element whose key is indexed
+     * @throws IllegalStateException if a unique index already has the key
+     */
+    private void indexElement(TreeNode<E> node, E element) throws IllegalStateException {
+        if (indexes == null) {
+            return;
+        }
+        for (int i = 0; i < indexes.size(); i++) {
+            try {
+                indexes.get(i).insert(node, element);
+            } catch (IllegalStateException ex) {
+                for (int j = 0; j < i; j++) {
+                    indexes.get(j).delete(node, element);
+                }
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Removes a node from every index.
+     *
+     * @param node the node to remove
+     * @param element the element the node was indexed with
+     */
+    private void unindexElement(TreeNode<E> node, E element) {
+        for (ElementIndex<?, E> index : indexes) {
+            index.delete(node, element);
+        }
+    }
+
+    /**
+     * Consults the depth of a node, the root having depth 0.
+     *
+     * @param p the position of the node
+     * @return the number of edges between the node and the root
+     * @throws IllegalStateException if the position is not valid
+     */
+    public int depth(Position<E> p) throws IllegalStateException {
+        TreeNode<E> node = checkPosition(p);
+        buildAncestryIndex();
+        return node.depth;
+    }
+
+    /**
+     * Checks whether a node is an ancestor of another one in O(log n). A node
+     * is considered an ancestor of itself.
+     *
+     * @param ancestor the position of the candidate ancestor
+     * @param descendant the position of the candidate descendant
+     * @return TRUE if ancestor is on the path from descendant to the root
+     * @throws IllegalStateException if any position is not valid
+     */
+    public boolean isAncestor(Position<E> ancestor, Position<E> descendant) throws IllegalStateException {
+        TreeNode<E> a = checkPosition(ancestor);
+        TreeNode<E> d = checkPosition(descendant);
+        buildAncestryIndex();
+        return a.depth <= d.depth && ancestorAtDepth(d, a.depth) == a;
+    }
+
+    /**
+     * Finds the deepest node that is an ancestor of two given nodes, in
+     * O(log n).
+     *
+     * @param p1 the position of the first node
+     * @param p2 the position of the second node
+     * @return the position of the lowest common ancestor
+     * @throws IllegalStateException if any position is not valid
+     */
+    public Position<E> lowestCommonAncestor(Position<E> p1, Position<E> p2) throws IllegalStateException {
+        TreeNode<E> a = checkPosition(p1);
+        TreeNode<E> b = checkPosition(p2);
+        buildAncestryIndex();
+        if (a.depth > b.depth) {
+            a = ancestorAtDepth(a, b.depth);
+        } else {
+            b = ancestorAtDepth(b, a.depth);
+        }
+        // Jump pointers only depend on the depth, so both nodes stay at the
+        // same depth and jump together until their jumps meet.
+        while (a != b) {
+            if (a.jump != b.jump) {
+                a = a.jump;
+                b = b.jump;
+            } else {
+                a = a.getParent();
+                b = b.getParent();
+            }
+        }
+        return a;
+    }
+
+    /**
+     * Climbs from a node to its ancestor at a given depth, which must not be
+     * greater than the depth of the node.
+     */
+    private TreeNode<E> ancestorAtDepth(TreeNode<E> node, int depth) {
+        while (node.depth > depth) {
+            node = (node.jump.depth >= depth) ? node.jump : node.getParent();
+        }
+        return node;
+    }
+
+    /**
+     * Computes the depth and jump pointer of every node if they are out of
+     * date. The index is kept from the creation of the tree:
+     * {@link #add(Object, Position)} indexes each new node in constant time
+     * and removals need no update, since removing a subtree does not change
+     * the depth of any other node. Only moving or grafting a subtree loses
+     * it, and it is then rebuilt by the next ancestry query, or once position
+     * checks have walked as many nodes as the tree has. The rebuild also
+     * tells every grafted node its new tree.
+     */
+    private void buildAncestryIndex() {
+        if (ancestryIndexed) {
+            return;
+        }
+        // The walk is in pre-order, so parents are indexed first
+        if (root != null) {
+            forEachInSubtree(root, n -> {
+                n.setMyTree(this);
+                indexAncestry(n);
+            });
+        }
+        ancestryIndexed = true;
+        adopted = false;
+    }
+
+    /**
+     * Visits every node of a subtree in pre-order, walking the links without
+     * any auxiliary structure.
+     *
+     * @param top the root of the subtree
+     * @param action the action to run on every node
+     */
+    private void forEachInSubtree(TreeNode<E> top, Consumer<TreeNode<E>> action) {
+        TreeNode<E> node = top;
+        while (node != null) {
+            action.accept(node);
+            if (node.getFirstChild() != null) {
+                node = node.getFirstChild();
+            } else {
+                while (node != top && node.getNextSibling() == null) {
+                    node = node.getParent();
+                }
+                node = (node == top) ? null : node.getNextSibling();
+            }
+        }
+    }
+
+    /**
+     * Sets the depth and jump pointer of a node whose parent is indexed. The
+     * jumps follow the skew-binary scheme: a node jumps to the target of the
+     * jump of its parent when the two previous jumps have the same length,
+     * and to its parent otherwise. Any ancestor is then reached in
+     * O(log depth) steps while each node only stores one extra link.
+     *
+     * @param node the node to index
+     */
+    private void indexAncestry(TreeNode<E> node) {
+        TreeNode<E> parent = node.getParent();
+        if (parent == null) {
+            node.depth = 0;
+            node.jump = node;
+            return;
+        }
+        node.depth = parent.depth + 1;
+        TreeNode<E> j = parent.jump;
+        if (parent.depth - j.depth == j.depth - j.jump.depth) {
+            node.jump = j.jump;
+        } else {
+            node.jump = parent;
+        }
+    }
+
+    /**
+     * Checks whether a node belongs to the subtree rooted at another one with
+     * two comparisons of interval labels. A node belongs to its own subtree.
+     *
+     * @param p the position of the node
+     * @param subtreeRoot the position of the root of the subtree
+     * @return TRUE if the node is in the subtree
+     * @throws IllegalStateException if any position is not valid
+     */
+    public boolean isInSubtree(Position<E> p, Position<E> subtreeRoot) throws IllegalStateException {
+        TreeNode<E> node = checkPosition(p);
+        TreeNode<E> top = checkPosition(subtreeRoot);
+        buildIntervalLabels();
+        return top.enter <= node.enter && node.exit <= top.exit;
+    }
+
+    /**
+     * Gives the nodes of a subtree, in pre-order, as a range of a flat array
+     * holding the whole tree. The array is rebuilt in O(n) on the first call
+     * after a modification and shared by later calls, which cost O(log n).
+     * The returned list is read-only and must not be used after the tree is
+     * modified.
+     *
+     * @param p the root of the subtree
+     * @return the positions of the subtree in pre-order
+     * @throws IllegalStateException if the position is not valid
+     */
+    public List<Position<E>> subtreeView(Position<E> p) throws IllegalStateException {
+        TreeNode<E> node = checkPosition(p);
+        buildIntervalLabels();
+        ensureSubtreeSizes();
+        if (preorder == null) {
+            @SuppressWarnings("unchecked")
+            Position<E>[] nodes = (Position<E>[]) new Position<?>[size];
+            long[] labels = new long[size];
+            int[] next = {0};
+            forEachInSubtree(root, n -> {
+                nodes[next[0]] = n;
+                labels[next[0]++] = n.enter;
+            });
+            preorder = nodes;
+            preorderLabels = labels;
+        }
+        // The enter labels grow in pre-order, so the rank is found by bisection
+        int from = Arrays.binarySearch(preorderLabels, node.enter);
+        List<Position<E>> all = Collections.unmodifiableList(Arrays.asList(preorder));
+        return all.subList(from, from + node.getSubtreeSize());
+    }
+
+    /**
+     * Labels every node the first time an interval query is made. From then
+     * on, {@link #add(Object, Position)} labels each new node in the gap left
+     * after its previous sibling, and removals need no update.
+     */
+    private void buildIntervalLabels() {
+        if (intervalLabeled) {
+            return;
+        }
+        ensureSubtreeSizes();
+        if (root != null) {
+            relabel(root);
+        }
+        intervalLabeled = true;
+    }
+
+    /**
+     * Gives a new last child labels between the exit label of its previous
+     * sibling (or the enter label of its parent) and the exit label of its
+     * parent. The new node takes the middle third of that gap, so later
+     * siblings and children also find room. When the gap is exhausted, the
+     * nearest ancestor whose interval is wide enough for its whole subtree is
+     * relabelled, using the subtree sizes kept in the nodes. If they are out
+     * of date, they are recounted from the parent upwards, one ancestor at a
+     * time, which costs no more than relabelling the chosen ancestor.
+     *
+     * @param node the new node, already linked to its parent
+     */
+    private void labelInterval(TreeNode<E> node) {
+        TreeNode<E> parent = node.getParent();
+        TreeNode<E> prev = node.getPrevSibling();
+        long lo = (prev != null) ? prev.exit : parent.enter;
+        long gap = parent.exit - lo;
+        if (gap >= 3) {
+            node.enter = lo + gap / 3;
+            node.exit = lo + 2 * (gap / 3);
+            return;
+        }
+        TreeNode<E> top = parent;
+        if (!sizesValid) {
+            countSubtree(top);
+        }
+        while (top != root && spacing(top) < MIN_LABEL_SPACING) {
+            TreeNode<E> counted = top;
+            top = top.getParent();
+            if (!sizesValid) {
+                // Only the siblings of the subtree already counted are new
+                top.subtreeSize = 1;
+                for (TreeNode<E> c = top.getFirstChild(); c != null; c = c.getNextSibling()) {
+                    top.subtreeSize += (c == counted) ? c.subtreeSize : countSubtree(c);
+                }
+            }
+        }
+        relabel(top);
+    }
+
+    /**
+     * Computes the distance between consecutive labels if the interval of a
+     * node were spread evenly over the labels of its descendants.
+     */
+    private long spacing(TreeNode<E> node) {
+        return (node.exit - node.enter) / (2L * node.getSubtreeSize() - 1);
+    }
+
+    /**
+     * Spreads the interval of a node evenly over the labels of its
+     * descendants, in Euler tour order. The root always takes the whole range
+     * of non-negative longs.
+     *
+     * @param top the node whose descendants are relabelled
+     */
+    private void relabel(TreeNode<E> top) {
+        if (top == root) {
+            root.enter = 0;
+            root.exit = Long.MAX_VALUE;
+        }
+        long step = spacing(top);
+        long label = top.enter;
+        TreeNode<E> node = top.getFirstChild();
+        while (node != null) {
+            label += step;
+            node.enter = label;
+            if (node.getFirstChild() != null) {
+                node = node.getFirstChild();
+                continue;
+            }
+            // Leave every finished node until one with a next sibling is found
+            while (node != top) {
+                label += step;
+                node.exit = label;
+                if (node.getNextSibling() != null) {
+                    break;
+                }
+                node = node.getParent();
+            }
+            node = (node == top) ? null : node.getNextSibling();
+        }
+        preorder = null;
+    }
+
+    /**
+     * Aggregates the subtree rooted at a given position. The result for a node
+     * is its mapped element combined, from left to right, with the results of
+     * its children. Large subtrees are processed in parallel in the common
+     * ForkJoinPool; see {@link #fold(Position, Function, BinaryOperator, int)}.
+     *
+     * @param <R> the type of the result
+     * @param p the root of the subtree to fold
+     * @param mapper the function that maps every element to a partial result
+     * @param combiner the function that combines two partial results
+     * @return the result of folding the subtree
+     * @throws IllegalStateException if the position is not valid
+     */
+    public <R> R fold(Position<E> p, Function<? super E, ? extends R> mapper,
+            BinaryOperator<R> combiner) throws IllegalStateException {
+        return fold(p, mapper, combiner, DEFAULT_FOLD_THRESHOLD);
+    }
+
+    /**
+     * Aggregates the subtree rooted at a given position, folding sequentially
+     * every subtree with at most threshold nodes. If the tree was modified
+     * since the subtree sizes were last needed, the subtree is recounted
+     * first. The tree must not be modified while the fold is running.
+     *
+     * @param <R> the type of the result
+     * @param p the root of the subtree to fold
+     * @param mapper the function that maps every element to a partial result
+     * @param combiner the function that combines two partial results
+     * @param threshold the size under which subtrees are not split
+     * @return the result of folding the subtree
+     * @throws IllegalStateException if the position is not valid
+     */
+    public <R> R fold(Position<E> p, Function<? super E, ? extends R> mapper,
+            BinaryOperator<R> combiner, int threshold) throws IllegalStateException {
+        TreeNode<E> node = checkPosition(p);
+        if (!sizesValid) {
+            countSubtree(node);
+        }
+        FoldTask<R> task = new FoldTask<>(node, 1, node.getSubtreeSize(), mapper, combiner, Math.max(threshold, 1));
+        return ForkJoinPool.commonPool().invoke(task).get(0);
+    }
+
     public void setIterator(TreeIteratorFactory<E> iteratorFactory) {
         this.iteratorFactory = iteratorFactory;
     }
     
     @Override
     public Iterator<Position<E>> iterator() {
-        return this.iteratorFactory.createIterator(this);
+        if (listener == null) {
+            return this.iteratorFactory.createIterator(this);
+        }
+        long start = System.nanoTime();
+        Iterator<Position<E>> it = this.iteratorFactory.createIterator(this);
+        if (it instanceof BFSIterator) {
+            ((BFSIterator<E>) it).setListener(listener);
+        }
+        completed(TreeOperation.ITERATOR, start);
+        return it;
+    }
+
+    /**
+     * Turns instrumentation on by attaching a listener, which receives the
+     * latency of every successful add, addRoot, remove, replace,
+     * swapElements, mutate and iterator call, the depth of every new node and
+     * the positions rejected. Iterators created by the default factory also
+     * report the fan-out of the nodes they expand and the length of their
+     * queue. While no listener is attached, each operation only pays for a
+     * null check. The size reported after every operation is the one the tree
+     * maintains, which still includes the nodes of removed subtrees that
+     * {@link #size()} has not counted yet, so it is an upper bound and
+     * instrumented removals keep their constant cost.
+     *
+     * @param listener the listener, or null to turn instrumentation off
+     */
+    public void setListener(TreeListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Attaches a listener that receives every successful modification of the
+     * tree, in order, as described in {@link TreeChangeListener}. While no
+     * listener is attached, each modification only pays for a null check.
+     *
+     * @param changeListener the listener, or null to stop reporting changes
+     */
+    public void setChangeListener(TreeChangeListener<E> changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * Reports a completed operation to the listener, which must be attached.
+     *
+     * @param operation the operation
+     * @param start the value of System.nanoTime() when the operation started
+     */
+    private void completed(TreeOperation operation, long start) {
+        listener.operationCompleted(operation, System.nanoTime() - start, size);
+    }
+
+    /**
+     * Computes the depth of a node, reading it from the ancestry index if it
+     * is built, or walking to the root otherwise.
+     *
+     * @param node the node
+     * @return the depth of the node, the root having depth 0
+     */
+    private int depthOf(TreeNode<E> node) {
+        if (ancestryIndexed) {
+            return node.depth;
+        }
+        int depth = 0;
+        for (TreeNode<E> aux = node.getParent(); aux != null; aux = aux.getParent()) {
+            depth++;
+        }
+        return depth;
+    }
+
+    /**
+     * Creates a spliterator over every position of the tree, in pre-order.
+     * It splits by subtrees using the subtree sizes kept in the nodes, so it
+     * is SIZED and SUBSIZED and parallel streams can divide the work evenly.
+     * The sizes are recounted first if the tree was modified since they were
+     * last needed, in a pass as long as the traversal itself. The tree must
+     * not be modified while the spliterator is in use.
+     *
+     * @return a spliterator over the positions of the tree
+     */
+    @Override
+    public Spliterator<Position<E>> spliterator() {
+        ensureSubtreeSizes();
+        ArrayDeque<TreeNode<E>> subtrees = new ArrayDeque<>();
+        if (root != null) {
+            subtrees.add(root);
+        }
+        return new SubtreeSpliterator(null, subtrees, size);
     }
 }
 
@@ -0,0 +1,15 @@
+package material.tree;
+
+/**
+ * A position that stores a primitive long, which can be read without
+ * boxing.
+ */
+public interface LongPosition extends Position<Long> {
+
+    /**
+     * Checks the element stored at this position, without boxing it.
+     *
+     * @return the element stored in the given position
+     */
+    long getLong();
+}
@@ -0,0 +1,157 @@
+package material.tree;
+
+import java.util.function.LongBinaryOperator;
+
+/**
+ * A tree of primitive long elements, stored unboxed.
+ *
+ * It shares the structure-of-arrays layout of {@link LCRSTree2}, but the
+ * elements live in a long[] column, so a node costs 28 bytes (four
+ * links, a generation counter and the element) and creates no object at all.
+ * A LinkedTree&lt;Long&gt; pays for its TreeNode (80 bytes) plus a boxed
+ * Long (24 bytes) per node, and unboxes the element on every read.
+ *
+ * The positions of this tree are {@link LongPosition}s, whose
+ * {@link LongPosition#getLong()} reads the element without boxing, and the
+ * fold operations aggregate the elements without boxing them. The
+ * methods of the {@link Tree} interface remain available and box the
+ * elements; null elements are not supported.
+ */
+public class LongTree extends AbstractArrayTree<Long, LongPosition> {
+
+    /**
+     * Handle to a slot of the tree with unboxed access to the element.
+     */
+    private static class LongNode extends TreeNode<Long> implements LongPosition {
+
+        public LongNode(LongTree t, int index, int generation) {
+            super(t, index, generation);
+        }
+
+        @Override
+        public long getLong() {
+            return ((LongTree) tree()).column()[slot()];
+        }
+    }
+
+    /**
+     * Creates an empty tree.
+     */
+    public LongTree() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates an empty tree with room for a given number of nodes.
+     *
+     * @param capacity the number of nodes to reserve space for
+     */
+    public LongTree(int capacity) {
+        super(capacity);
+    }
+
+    private long[] column() {
+        return (long[]) elements();
+    }
+
+    @Override
+    Object newColumn(int capacity) {
+        return new long[capacity];
+    }
+
+    @Override
+    void copyElement(Object from, int fromSlot, Object to, int toSlot) {
+        ((long[]) to)[toSlot] = ((long[]) from)[fromSlot];
+    }
+
+    @Override
+    Long elementAt(int slot) {
+        return column()[slot];
+    }
+
+    @Override
+    void setElementAt(int slot, Long e) {
+        column()[slot] = e;
+    }
+
+    @Override
+    TreeNode<Long> newHandle(int slot, int generation) {
+        return new LongNode(this, slot, generation);
+    }
+
+    /**
+     * Adds the root of the tree.
+     *
+     * @param e the element to be stored in the root
+     * @return the position of the root
+     * @throws IllegalStateException if the tree already has a root
+     */
+    public LongPosition addRoot(long e) throws IllegalStateException {
+        int slot = addRootSlot();
+        column()[slot] = e;
+        return handle(slot);
+    }
+
+    /**
+     * Adds a new node whose parent is pointed by a given position. The new
+     * node becomes the last child of its parent.
+     *
+     * @param element the element to be added
+     * @param p the position of the parent
+     * @return the position of the new node created
+     * @throws IllegalStateException if the position is not valid
+     */
+    public LongPosition add(long element, Position<Long> p) throws IllegalStateException {
+        int slot = addSlot(checkSlot(p));
+        column()[slot] = element;
+        return handle(slot);
+    }
+
+    /**
+     * Modifies the element stored in a given position
+     * @param p the position to be modified
+     * @param e the new element to be stored
+     * @return the previous element stored in the position
+     * @throws IllegalStateException if the position is not valid
+     */
+    public long replace(Position<Long> p, long e) throws IllegalStateException {
+        int slot = checkSlot(p);
+        long[] elements = column();
+        long temp = elements[slot];
+        elements[slot] = e;
+        return temp;
+    }
+
+    /**
+     * Aggregates the elements of the subtree rooted at a given position,
+     * visited in pre-order.
+     *
+     * @param p the root of the subtree
+     * @param identity the initial value of the aggregation
+     * @param op the function that combines the partial result with an element
+     * @return the result of the aggregation
+     * @throws IllegalStateException if the position is not valid
+     */
+    public long fold(Position<Long> p, long identity, LongBinaryOperator op) throws IllegalStateException {
+        long[] elements = column();
+        long[] result = {identity};
+        forEachSlot(p, slot -> result[0] = op.applyAsLong(result[0], elements[slot]));
+        return result[0];
+    }
+
+    /**
+     * Aggregates every element of the tree, scanning the element column
+     * sequentially. The elements are visited in no particular order, so the
+     * operator should be associative and commutative.
+     *
+     * @param identity the initial value of the aggregation
+     * @param op the function that combines the partial result with an element
+     * @return the result of the aggregation
+     */
+    public long fold(long identity, LongBinaryOperator op) {
+        long[] elements = column();
+        long[] result = {identity};
+        forEachLiveSlot(slot -> result[0] = op.applyAsLong(result[0], elements[slot]));
+        return result[0];
+    }
+}
@@ -0,0 +1,29 @@
+package material.tree;
+
+/**
+ * A tree that gives direct access to the sibling links of its nodes, so the
+ * children of a node can be visited without creating any iterator.
+ *
+ * @param <E> the type of the elements stored in the tree
+ */
+public interface NavigableTree<E> extends Tree<E> {
+
+    /**
+     * Consults the leftmost child of a given node.
+     *
+     * @param v the position of the node whose first child is consulted
+     * @return the position of the first child, or null if v is a leaf
+     * @throws IllegalStateException if the position is not valid
+     */
+    public Position<E> firstChild(Position<E> v) throws IllegalStateException;
+
+    /**
+     * Consults the sibling at the right of a given node.
+     *
+     * @param v the position of the node whose next sibling is consulted
+     * @return the position of the next sibling, or null if v is the last
+     * child of its parent or the root
+     * @throws IllegalStateException if the position is not valid
+     */
+    public Position<E> nextSibling(Position<E> v) throws IllegalStateException;
+}
@@ -0,0 +1,305 @@
+package material.tree;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable sequence where every modification returns a new sequence,
+ * used by {@link PersistentTree} to store the children of a node.
+ *
+ * The elements are kept in a balanced tree of chunks of at most
+ * {@link #WIDTH} entries: leaf chunks hold the elements, and branch chunks
+ * hold their children together with the cumulative number of elements below
+ * each of them. Reading, replacing, inserting or removing an element copies
+ * only the chunks on the path to it, O(WIDTH * log n), and shares every other
+ * chunk with the old sequence, so a node with a large fan-out is not copied
+ * whole when one of its children changes.
+ *
+ * A chunk is split in two when it overflows. Removals only drop the chunks
+ * that become empty, so chunks may be left under-full; the height is still
+ * logarithmic in the largest size the sequence reached.
+ *
+ * @param <T> the type of the elements
+ */
+final class PersistentSequence<T> implements Iterable<T> {
+
+    /**
+     * Maximum number of entries of a chunk.
+     */
+    static final int WIDTH = 32;
+
+    /**
+     * Node of the tree of chunks.
+     */
+    private static final class Chunk {
+
+        private final Object[] items; // The elements of a leaf, or the chunks of a branch
+        private final int[] counts; // Elements below items[0..i] of a branch, null in a leaf
+
+        Chunk(Object[] items, int[] counts) {
+            this.items = items;
+            this.counts = counts;
+        }
+
+        boolean isLeaf() {
+            return counts == null;
+        }
+
+        int length() {
+            return items.length;
+        }
+
+        int count() {
+            return isLeaf() ? items.length : counts[counts.length - 1];
+        }
+
+        /**
+         * Finds the child of a branch that holds a given element.
+         */
+        int childFor(int index) {
+            int i = 0;
+            while (counts[i] <= index) {
+                i++;
+            }
+            return i;
+        }
+
+        /**
+         * Number of elements below the children before a given one.
+         */
+        int before(int child) {
+            return (child == 0) ? 0 : counts[child - 1];
+        }
+    }
+
+    private static final PersistentSequence<?> EMPTY =
+            new PersistentSequence<>(new Chunk(new Object[0], null), 0);
+
+    private final Chunk root; // The root chunk, an empty leaf if the sequence is empty
+    private final int size; // The number of elements
+
+    private PersistentSequence(Chunk root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Consults the empty sequence.
+     *
+     * @param <T> the type of the elements
+     * @return the empty sequence
+     */
+    @SuppressWarnings("unchecked")
+    static <T> PersistentSequence<T> empty() {
+        return (PersistentSequence<T>) EMPTY;
+    }
+
+    /**
+     * Consults the number of elements.
+     *
+     * @return the number of elements
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Consults the element at a given index.
+     *
+     * @param index the index of the element
+     * @return the element
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    @SuppressWarnings("unchecked")
+    T get(int index) throws IndexOutOfBoundsException {
+        checkIndex(index, size);
+        Chunk chunk = root;
+        while (!chunk.isLeaf()) {
+            int child = chunk.childFor(index);
+            index -= chunk.before(child);
+            chunk = (Chunk) chunk.items[child];
+        }
+        return (T) chunk.items[index];
+    }
+
+    /**
+     * Creates a sequence where the element at a given index is replaced.
+     *
+     * @param index the index of the element
+     * @param element the new element
+     * @return the new sequence
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    PersistentSequence<T> set(int index, T element) throws IndexOutOfBoundsException {
+        checkIndex(index, size);
+        return new PersistentSequence<>(set(root, index, element), size);
+    }
+
+    /**
+     * Creates a sequence with an element added at the end.
+     *
+     * @param element the element to be added
+     * @return the new sequence
+     */
+    PersistentSequence<T> append(T element) {
+        return insert(size, element);
+    }
+
+    /**
+     * Creates a sequence with an element inserted at a given index.
+     *
+     * @param index the index of the new element, up to the size
+     * @param element the element to be inserted
+     * @return the new sequence
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    PersistentSequence<T> insert(int index, T element) throws IndexOutOfBoundsException {
+        checkIndex(index, size + 1);
+        Chunk[] parts = insert(root, index, element);
+        Chunk newRoot = (parts.length == 1) ? parts[0] : branch(parts);
+        return new PersistentSequence<>(newRoot, size + 1);
+    }
+
+    /**
+     * Creates a sequence without the element at a given index.
+     *
+     * @param index the index of the element to be removed
+     * @return the new sequence
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    PersistentSequence<T> remove(int index) throws IndexOutOfBoundsException {
+        checkIndex(index, size);
+        if (size == 1) {
+            return empty();
+        }
+        Chunk newRoot = remove(root, index);
+        while (!newRoot.isLeaf() && newRoot.length() == 1) {
+            newRoot = (Chunk) newRoot.items[0];
+        }
+        return new PersistentSequence<>(newRoot, size - 1);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int next = 0; // Index of the next element
+            private Object[] leaf; // The leaf chunk of the next element
+            private int offset; // Position of the next element in the leaf
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (next == size) {
+                    throw new NoSuchElementException();
+                }
+                if (leaf == null || offset == leaf.length) {
+                    // Descend once per leaf, not once per element
+                    Chunk chunk = root;
+                    int index = next;
+                    while (!chunk.isLeaf()) {
+                        int child = chunk.childFor(index);
+                        index -= chunk.before(child);
+                        chunk = (Chunk) chunk.items[child];
+                    }
+                    leaf = chunk.items;
+                    offset = index;
+                }
+                next++;
+                return (T) leaf[offset++];
+            }
+        };
+    }
+
+    private static void checkIndex(int index, int bound) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of range");
+        }
+    }
+
+    private static Chunk set(Chunk chunk, int index, Object element) {
+        Object[] items = chunk.items.clone();
+        if (chunk.isLeaf()) {
+            items[index] = element;
+        } else {
+            int child = chunk.childFor(index);
+            items[child] = set((Chunk) items[child], index - chunk.before(child), element);
+        }
+        return new Chunk(items, chunk.counts);
+    }
+
+    /**
+     * Inserts an element below a chunk, returning the new chunk or, if it
+     * overflowed, the two halves it was split into.
+     */
+    private static Chunk[] insert(Chunk chunk, int index, Object element) {
+        Object[] items;
+        if (chunk.isLeaf()) {
+            items = new Object[chunk.length() + 1];
+            System.arraycopy(chunk.items, 0, items, 0, index);
+            items[index] = element;
+            System.arraycopy(chunk.items, index, items, index + 1, chunk.length() - index);
+        } else {
+            // Appending goes to the last child, which is not in counts yet
+            int child = (index == chunk.count()) ? chunk.length() - 1 : chunk.childFor(index);
+            Chunk[] parts = insert((Chunk) chunk.items[child], index - chunk.before(child), element);
+            items = new Object[chunk.length() + parts.length - 1];
+            System.arraycopy(chunk.items, 0, items, 0, child);
+            System.arraycopy(parts, 0, items, child, parts.length);
+            System.arraycopy(chunk.items, child + 1, items, child + parts.length, chunk.length() - child - 1);
+        }
+        if (items.length <= WIDTH) {
+            return new Chunk[] {chunk.isLeaf() ? new Chunk(items, null) : branch(items)};
+        }
+        int half = items.length / 2;
+        Object[] left = new Object[half];
+        Object[] right = new Object[items.length - half];
+        System.arraycopy(items, 0, left, 0, half);
+        System.arraycopy(items, half, right, 0, right.length);
+        if (chunk.isLeaf()) {
+            return new Chunk[] {new Chunk(left, null), new Chunk(right, null)};
+        }
+        return new Chunk[] {branch(left), branch(right)};
+    }
+
+    /**
+     * Removes an element below a chunk of more than one element.
+     */
+    private static Chunk remove(Chunk chunk, int index) {
+        if (chunk.isLeaf()) {
+            Object[] items = new Object[chunk.length() - 1];
+            System.arraycopy(chunk.items, 0, items, 0, index);
+            System.arraycopy(chunk.items, index + 1, items, index, items.length - index);
+            return new Chunk(items, null);
+        }
+        int child = chunk.childFor(index);
+        Chunk old = (Chunk) chunk.items[child];
+        if (old.count() > 1) {
+            Object[] items = chunk.items.clone();
+            items[child] = remove(old, index - chunk.before(child));
+            return branch(items);
+        }
+        // The child only held this element, so it goes away
+        Object[] items = new Object[chunk.length() - 1];
+        System.arraycopy(chunk.items, 0, items, 0, child);
+        System.arraycopy(chunk.items, child + 1, items, child, items.length - child);
+        return branch(items);
+    }
+
+    /**
+     * Creates a branch chunk over some chunks, computing their counts.
+     */
+    private static Chunk branch(Object[] children) {
+        int[] counts = new int[children.length];
+        int total = 0;
+        for (int i = 0; i < children.length; i++) {
+            total += ((Chunk) children[i]).count();
+            counts[i] = total;
+        }
+        return new Chunk(children, counts);
+    }
+}
@@ -0,0 +1,474 @@
+package material.tree;
+
+import material.tree.iterator.BFSIterator;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An immutable tree where every modification returns a new version.
+ *
+ * Updates use path copying: only the nodes on the path from the modified node
+ * up to the root are copied, and every other subtree is shared between the
+ * old and the new version. The children of a node are kept in a
+ * {@link PersistentSequence}, so copying a node only copies the chunks of
+ * its child sequence on the way to the modified child, and the siblings are
+ * shared too. A modification therefore costs O(depth * log(fan-out)) time
+ * and memory, and keeping N versions with small differences costs the size
+ * of the differences, not N copies of the tree.
+ *
+ * Positions are handles bound to the version that produced them: they record
+ * the node, its parent handle and its index among its siblings. A position of
+ * an older version is rejected by a newer one; navigate the new version from
+ * {@link #root()} or use the position returned by {@link #add(Object, Position)}.
+ *
+ * @param <E> the type of the elements in the tree
+ */
+public final class PersistentTree<E> implements NavigableTree<E> {
+
+    /**
+     * Immutable node, shared by every version that contains it.
+     *
+     * @param <T> the type of the element stored in the node
+     */
+    private static final class Node<T> {
+
+        private final T element; // The element stored in the node
+        private final PersistentSequence<Node<T>> children; // The children of the node
+        private final int size; // The number of nodes of the subtree
+        private final long id; // Kept by the copies of the node in later versions
+
+        public Node(T element, PersistentSequence<Node<T>> children, int size, long id) {
+            this.element = element;
+            this.children = children;
+            this.size = size;
+            this.id = id;
+        }
+
+        /**
+         * Creates a copy of the node with other children.
+         */
+        Node<T> withChildren(PersistentSequence<Node<T>> newChildren, int newSize) {
+            return new Node<>(element, newChildren, newSize, id);
+        }
+    }
+
+    /**
+     * Position of a node inside one version of the tree.
+     *
+     * @param <T> the type of the element stored in the node
+     */
+    private static final class TreeNode<T> implements Position<T> {
+
+        private final PersistentTree<T> myTree; // The version the handle belongs to
+        private final Node<T> node; // The node pointed by the handle
+        private final TreeNode<T> parent; // Handle of the parent, null for the root
+        private final int index; // Index of the node among its siblings
+
+        public TreeNode(PersistentTree<T> myTree, Node<T> node, TreeNode<T> parent, int index) {
+            this.myTree = myTree;
+            this.node = node;
+            this.parent = parent;
+            this.index = index;
+        }
+
+        @Override
+        public T getElement() {
+            return node.element;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TreeNode)) {
+                return false;
+            }
+            TreeNode<?> other = (TreeNode<?>) o;
+            return myTree == other.myTree && node == other.node;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(node);
+        }
+    }
+
+    /**
+     * The result of a modification: the new version and the position of the
+     * modified node in it (null for removals).
+     */
+    private static final class Update<T> {
+
+        private final PersistentTree<T> tree;
+        private final Position<T> position;
+
+        public Update(PersistentTree<T> tree, Position<T> position) {
+            this.tree = tree;
+            this.position = position;
+        }
+    }
+
+    private static final AtomicLong IDS = new AtomicLong(); // Source of node identities
+
+    private final Node<E> root; // The root of this version, null if empty
+
+    /**
+     * Creates an empty tree.
+     */
+    public PersistentTree() {
+        this.root = null;
+    }
+
+    private PersistentTree(Node<E> root) {
+        this.root = root;
+    }
+
+    private static <T> Node<T> leaf(T element) {
+        return new Node<>(element, PersistentSequence.empty(), 1, IDS.incrementAndGet());
+    }
+
+    @Override
+    public int size() {
+        return (root == null) ? 0 : root.size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (root == null);
+    }
+
+    @Override
+    public boolean isInternal(Position<E> v) throws IllegalStateException {
+        return !isLeaf(v);
+    }
+
+    @Override
+    public boolean isLeaf(Position<E> p) throws IllegalStateException {
+        return checkPosition(p).node.children.size() == 0;
+    }
+
+    @Override
+    public boolean isRoot(Position<E> p) throws IllegalStateException {
+        return checkPosition(p).parent == null;
+    }
+
+    @Override
+    public Position<E> root() throws IllegalStateException {
+        if (root == null) {
+            throw new IllegalStateException("The tree is empty");
+        }
+        return new TreeNode<>(this, root, null, 0);
+    }
+
+    @Override
+    public Position<E> parent(Position<E> p) throws IllegalStateException,
+            IndexOutOfBoundsException {
+        TreeNode<E> node = checkPosition(p);
+        if (node.parent == null) {
+            throw new IndexOutOfBoundsException("The node has not parent");
+        }
+        return node.parent;
+    }
+
+    @Override
+    public Iterable<? extends Position<E>> children(Position<E> p) throws IllegalStateException {
+        TreeNode<E> node = checkPosition(p);
+        List<Position<E>> result = new ArrayList<>(node.node.children.size());
+        int i = 0;
+        for (Node<E> child : node.node.children) {
+            result.add(new TreeNode<>(this, child, node, i++));
+        }
+        return result;
+    }
+
+    @Override
+    public Position<E> firstChild(Position<E> p) throws IllegalStateException {
+        TreeNode<E> node = checkPosition(p);
+        PersistentSequence<Node<E>> children = node.node.children;
+        return (children.size() == 0) ? null : new TreeNode<>(this, children.get(0), node, 0);
+    }
+
+    @Override
+    public Position<E> nextSibling(Position<E> p) throws IllegalStateException {
+        TreeNode<E> node = checkPosition(p);
+        if (node.parent == null) {
+            return null;
+        }
+        PersistentSequence<Node<E>> siblings = node.parent.node.children;
+        int next = node.index + 1;
+        return (next == siblings.size()) ? null : new TreeNode<>(this, siblings.get(next), node.parent, next);
+    }
+
+    /**
+     * Immutable trees cannot be modified in place.
+     *
+     * @throws UnsupportedOperationException always; use {@link #withRoot(Object)}
+     */
+    @Override
+    public Position<E> addRoot(E e) throws IllegalStateException {
+        throw new UnsupportedOperationException("The tree is immutable, use withRoot");
+    }
+
+    /**
+     * Creates a version of this empty tree with a root.
+     *
+     * @param e the element to be used as a root
+     * @return the new version
+     * @throws IllegalStateException if the tree already has a root
+     */
+    public PersistentTree<E> withRoot(E e) throws IllegalStateException {
+        if (root != null) {
+            throw new IllegalStateException("Tree already has a root");
+        }
+        return new PersistentTree<>(leaf(e));
+    }
+
+    /**
+     * Creates a version with a new node added as the last child of a given
+     * node.
+     *
+     * @param element the element to be added
+     * @param p the position of the parent in this version
+     * @return the new version
+     * @throws IllegalStateException if the position is not valid
+     */
+    public PersistentTree<E> add(E element, Position<E> p) throws IllegalStateException {
+        return addAndLocate(element, p).tree;
+    }
+
+    /**
+     * Creates a version with a new node added as the last child of a given
+     * node, returning the position of the new node in the new version.
+     * The new version is reachable from the returned position through
+     * {@link #treeOf(Position)}.
+     *
+     * @param element the element to be added
+     * @param p the position of the parent in this version
+     * @return the position of the new node in the new version
+     * @throws IllegalStateException if the position is not valid
+     */
+    public Position<E> addPosition(E element, Position<E> p) throws IllegalStateException {
+        return addAndLocate(element, p).position;
+    }
+
+    private Update<E> addAndLocate(E element, Position<E> p) {
+        TreeNode<E> parent = checkPosition(p);
+        Node<E> added = leaf(element);
+        PersistentSequence<Node<E>> children = parent.node.children.append(added);
+        Update<E> update = rebuild(parent, parent.node.withChildren(children, parent.node.size + 1));
+        TreeNode<E> newParent = (TreeNode<E>) update.position;
+        Position<E> child = new TreeNode<>(update.tree, added, newParent, children.size() - 1);
+        return new Update<>(update.tree, child);
+    }
+
+    /**
+     * Creates a version without the subtree rooted at a given node.
+     *
+     * @param p the position of the node to be removed
+     * @return the new version
+     * @throws IllegalStateException if the position is not valid
+     */
+    public PersistentTree<E> remove(Position<E> p) throws IllegalStateException {
+        TreeNode<E> node = checkPosition(p);
+        if (node.parent == null) {
+            return new PersistentTree<>();
+        }
+        Node<E> parent = node.parent.node;
+        PersistentSequence<Node<E>> children = parent.children.remove(node.index);
+        return rebuild(node.parent, parent.withChildren(children, parent.size - node.node.size)).tree;
+    }
+
+    /**
+     * Creates a version where a given node stores another element.
+     *
+     * @param p the position to be modified
+     * @param e the new element to be stored
+     * @return the new version
+     * @throws IllegalStateException if the position is not valid
+     */
+    public PersistentTree<E> replace(Position<E> p, E e) throws IllegalStateException {
+        TreeNode<E> node = checkPosition(p);
+        return rebuild(node, withElement(node.node, e)).tree;
+    }
+
+    /**
+     * Creates a version where the elements of two nodes are swapped.
+     *
+     * @param p1 the first node to swap
+     * @param p2 the second node to swap
+     * @return the new version
+     * @throws IllegalStateException if the position of any node is not valid
+     */
+    public PersistentTree<E> swapElements(Position<E> p1, Position<E> p2) throws IllegalStateException {
+        TreeNode<E> node1 = checkPosition(p1);
+        TreeNode<E> node2 = checkPosition(p2);
+        PersistentTree<E> tree = rebuild(node1, withElement(node1.node, node2.node.element)).tree;
+        // Replacing an element keeps the shape, so the path of p2 is still valid
+        TreeNode<E> moved = tree.relocate(node2);
+        return tree.rebuild(moved, withElement(moved.node, node1.node.element)).tree;
+    }
+
+    /**
+     * Consults the version a position belongs to.
+     *
+     * @param <T> the type of the elements
+     * @param p a position created by a PersistentTree
+     * @return the version that created the position
+     * @throws IllegalStateException if the position is not from a PersistentTree
+     */
+    public static <T> PersistentTree<T> treeOf(Position<T> p) throws IllegalStateException {
+        if (!(p instanceof TreeNode)) {
+            throw new IllegalStateException("The position is invalid");
+        }
+        return ((TreeNode<T>) p).myTree;
+    }
+
+    /**
+     * Finds in this version the node of a position obtained from another
+     * version derived from the same tree. Nodes keep their identity when they
+     * are copied into a new version, so the node is found by following the
+     * identities of its ancestors from the root; the index of each one among
+     * its siblings is tried first, and the siblings are only scanned if an
+     * earlier sibling was removed.
+     *
+     * @param p a position of any version of the tree
+     * @return the position of the same node in this version, or null if the
+     * node or one of its ancestors is not in this version
+     * @throws IllegalStateException if the position is not from a PersistentTree
+     */
+    Position<E> locate(Position<E> p) throws IllegalStateException {
+        if (!(p instanceof TreeNode)) {
+            throw new IllegalStateException("The position is invalid");
+        }
+        TreeNode<E> other = (TreeNode<E>) p;
+        if (other.myTree == this) {
+            return other;
+        }
+        int depth = 0;
+        for (TreeNode<E> aux = other; aux.parent != null; aux = aux.parent) {
+            depth++;
+        }
+        @SuppressWarnings("unchecked")
+        TreeNode<E>[] path = (TreeNode<E>[]) new TreeNode<?>[depth];
+        TreeNode<E> top = other;
+        while (top.parent != null) {
+            path[--depth] = top;
+            top = top.parent;
+        }
+        if (root == null || root.id != top.node.id) {
+            return null;
+        }
+        TreeNode<E> handle = new TreeNode<>(this, root, null, 0);
+        for (TreeNode<E> step : path) {
+            PersistentSequence<Node<E>> children = handle.node.children;
+            int index = step.index;
+            if (index >= children.size() || children.get(index).id != step.node.id) {
+                index = indexOf(children, step.node.id);
+                if (index < 0) {
+                    return null;
+                }
+            }
+            handle = new TreeNode<>(this, children.get(index), handle, index);
+        }
+        return handle;
+    }
+
+    /**
+     * Consults the identity of the node of a position, which is the same in
+     * every version that contains the node.
+     *
+     * @param p a position created by a PersistentTree
+     * @return the identity of the node
+     * @throws IllegalStateException if the position is not from a PersistentTree
+     */
+    static long idOf(Position<?> p) throws IllegalStateException {
+        if (!(p instanceof TreeNode)) {
+            throw new IllegalStateException("The position is invalid");
+        }
+        return ((TreeNode<?>) p).node.id;
+    }
+
+    private static <T> int indexOf(PersistentSequence<Node<T>> children, long id) {
+        int i = 0;
+        for (Node<T> child : children) {
+            if (child.id == id) {
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private static <T> Node<T> withElement(Node<T> node, T element) {
+        return new Node<>(element, node.children, node.size, node.id);
+    }
+
+    /**
+     * Builds a new version where a node is replaced, copying only its
+     * ancestors. Returns the new version and the handle of the replacement.
+     */
+    private Update<E> rebuild(TreeNode<E> target, Node<E> replacement) {
+        int depth = 0;
+        for (TreeNode<E> aux = target; aux.parent != null; aux = aux.parent) {
+            depth++;
+        }
+        int[] path = new int[depth];
+        Node<E> current = replacement;
+        TreeNode<E> aux = target;
+        while (aux.parent != null) {
+            path[--depth] = aux.index;
+            Node<E> parent = aux.parent.node;
+            PersistentSequence<Node<E>> children = parent.children.set(aux.index, current);
+            current = parent.withChildren(children, parent.size - aux.node.size + current.size);
+            aux = aux.parent;
+        }
+        PersistentTree<E> tree = new PersistentTree<>(current);
+        TreeNode<E> handle = new TreeNode<>(tree, current, null, 0);
+        for (int index : path) {
+            handle = new TreeNode<>(tree, handle.node.children.get(index), handle, index);
+        }
+        return new Update<>(tree, handle);
+    }
+
+    /**
+     * Finds in this version the node at the same path of child indices as a
+     * handle of another version with the same shape.
+     */
+    private TreeNode<E> relocate(TreeNode<E> other) {
+        int depth = 0;
+        for (TreeNode<E> aux = other; aux.parent != null; aux = aux.parent) {
+            depth++;
+        }
+        int[] path = new int[depth];
+        for (TreeNode<E> aux = other; aux.parent != null; aux = aux.parent) {
+            path[--depth] = aux.index;
+        }
+        TreeNode<E> handle = new TreeNode<>(this, root, null, 0);
+        for (int index : path) {
+            handle = new TreeNode<>(this, handle.node.children.get(index), handle, index);
+        }
+        return handle;
+    }
+
+    /**
+     * Validates the given position, casting it to TreeNode if valid
+     * @param p the position to be converted
+     * @return the position casted to TreeNode
+     * @throws IllegalStateException if the position is not valid
+     */
+    private TreeNode<E> checkPosition(Position<E> p) throws IllegalStateException {
+        if (p == null || !(p instanceof TreeNode)) {
+            throw new IllegalStateException("The position is invalid");
+        }
+        TreeNode<E> aux = (TreeNode<E>) p;
+        if (aux.myTree != this) {
+            throw new IllegalStateException("The node is not from this version of the tree");
+        }
+        return aux;
+    }
+
+    @Override
+    public Iterator<Position<E>> iterator() {
+        return new BFSIterator<>(this);
+    }
+}
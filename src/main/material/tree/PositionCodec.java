@@ -0,0 +1,30 @@
+package material.tree;
+
+/**
+ * Converts the positions of a tree to long values and back, so they can be
+ * kept in primitive arrays or written to disk instead of as objects. A code
+ * identifies the node for as long as it is in the tree; decoding the code of
+ * a removed node fails, even if its storage has been reused.
+ *
+ * @param <E> the type of the elements stored in the tree
+ */
+public interface PositionCodec<E> {
+
+    /**
+     * Encodes a position of the tree.
+     *
+     * @param p the position
+     * @return the code of the position
+     * @throws IllegalStateException if the position is not valid
+     */
+    public long encode(Position<E> p) throws IllegalStateException;
+
+    /**
+     * Decodes a code produced by {@link #encode(Position)}.
+     *
+     * @param code the code of a position
+     * @return a position of the node, equal to the encoded one
+     * @throws IllegalStateException if the node has been removed
+     */
+    public Position<E> decode(long code) throws IllegalStateException;
+}
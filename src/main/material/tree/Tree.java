@@ -1,6 +1,8 @@
 package material.tree;
 
 import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * An interface for a tree where nodes can have an arbitrary number of children.
@@ -86,4 +88,23 @@ public interface Tree<E> extends Iterable<Position<E>> {
      * @throws IllegalStateException if the tree already has a root
      */
     public Position<E> addRoot(E e) throws IllegalStateException;
+
+    /**
+     * Creates a sequential stream over the positions of the tree.
+     * 
+     * @return a stream with every position of the tree
+     */
+    public default Stream<Position<E>> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Creates a parallel stream over the positions of the tree. How well it
+     * scales depends on how the implementation splits its spliterator.
+     * 
+     * @return a possibly parallel stream with every position of the tree
+     */
+    public default Stream<Position<E>> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
 }
@@ -0,0 +1,48 @@
+package material.tree;
+
+/**
+ * A group of modifications of a tree that are recorded first and applied
+ * together. Each operation is validated when it is recorded, but the tree is
+ * not changed until the whole batch is applied, so a failing batch leaves the
+ * tree untouched.
+ *
+ * Positions returned by {@link #add(Object, Position)} can be used as parents
+ * of later additions and as arguments of remove and replace within the same
+ * batch. They become positions of the tree once the batch is applied. The
+ * batch describes the final state of the tree, so operations on nodes of a
+ * removed subtree are discarded, whether they are recorded before or after
+ * the removal.
+ *
+ * @param <E> the type of the elements stored in the tree
+ */
+public interface TreeBatch<E> {
+
+    /**
+     * Records the addition of a new node as the last child of a given node.
+     *
+     * @param element the element to be added
+     * @param p the position of the parent, either in the tree or added by
+     * this batch
+     * @return the position the new node will have
+     * @throws IllegalStateException if the position is not valid
+     */
+    public Position<E> add(E element, Position<E> p) throws IllegalStateException;
+
+    /**
+     * Records the removal of a node and its subtree.
+     *
+     * @param p the position of the node to be removed
+     * @throws IllegalStateException if the position is not valid
+     */
+    public void remove(Position<E> p) throws IllegalStateException;
+
+    /**
+     * Records the replacement of the element of a node. Only the last
+     * replacement of each node is applied.
+     *
+     * @param p the position of the node
+     * @param e the new element
+     * @throws IllegalStateException if the position is not valid
+     */
+    public void replace(Position<E> p, E e) throws IllegalStateException;
+}
@@ -0,0 +1,76 @@
+package material.tree;
+
+import java.util.Map;
+
+/**
+ * Receives the structural and element changes of a tree, in the order they
+ * are applied, so they can be recorded or replicated. The listener is called
+ * synchronously by the thread that modifies the tree, only for modifications
+ * that succeed.
+ *
+ * A batch applied with {@link LinkedTree#mutate} is reported as the
+ * sequence of single operations that produces the same tree: first the
+ * removed subtrees, then the added nodes (parents before children), then
+ * the replaced elements. A tree grafted with {@link LinkedTree#graft} is
+ * reported as the addition of each of its nodes, in pre-order, and a subtree
+ * detached with {@link LinkedTree#split} as a removal.
+ *
+ * @param <E> the type of the elements stored in the tree
+ */
+public interface TreeChangeListener<E> {
+
+    /**
+     * Called after the root of an empty tree is added.
+     *
+     * @param root the position of the new root
+     */
+    public void rootAdded(Position<E> root);
+
+    /**
+     * Called after a node is added as the last child of another one.
+     *
+     * @param node the position of the new node
+     * @param parent the position of its parent
+     */
+    public void nodeAdded(Position<E> node, Position<E> parent);
+
+    /**
+     * Called before a node and its subtree are removed, while their positions
+     * are still valid.
+     *
+     * @param node the position of the node to be removed
+     */
+    public void nodeRemoving(Position<E> node);
+
+    /**
+     * Called after the element of a node is replaced.
+     *
+     * @param node the position of the node, which holds the new element
+     */
+    public void elementReplaced(Position<E> node);
+
+    /**
+     * Called after the elements of two different nodes are swapped.
+     *
+     * @param p1 the position of the first node
+     * @param p2 the position of the second node
+     */
+    public void elementsSwapped(Position<E> p1, Position<E> p2);
+
+    /**
+     * Called after a node and its subtree are moved within the tree.
+     *
+     * @param node the position of the moved node
+     * @param parent the position of its new parent, of which it is now the
+     * last child
+     */
+    public void subtreeMoved(Position<E> node, Position<E> parent);
+
+    /**
+     * Called after {@link LinkedTree#relayout} replaces every node of the
+     * tree by a new one. The structure and the elements do not change.
+     *
+     * @param mapping the new position of every old position
+     */
+    public void positionsRemapped(Map<Position<E>, Position<E>> mapping);
+}
@@ -0,0 +1,242 @@
+package material.tree;
+
+import material.tree.iterator.BFSIteratorFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import material.tree.iterator.TreeIteratorFactory;
+
+/**
+ * A mutable tree backed by a {@link PersistentTree}. Every modification
+ * publishes a new immutable version, so {@link #snapshot()} only hands out
+ * the current version, in O(1), and later modifications never affect it.
+ *
+ * Positions remain valid across modifications for as long as their node is
+ * in the tree, like those of {@link LinkedTree}, and always read the element
+ * of the current version. A position keeps the handle of its node in the
+ * last version it was used with; the first use after a modification finds
+ * the node again in the current version by the identities of its
+ * ancestors, which costs O(depth) and is done once per position and version.
+ *
+ * @param <E> the type of the elements in the tree
+ */
+public class VersionedTree<E> implements NavigableTree<E> {
+
+    /**
+     * Position of a node in every version of the tree that contains it.
+     *
+     * @param <T> the type of the element stored in the node
+     */
+    private static final class VersionedNode<T> implements Position<T> {
+
+        private final VersionedTree<T> myTree; // The tree where the node belongs
+        private final long id; // The identity of the node in every version
+        private Position<T> handle; // The node in the last version it was resolved in
+
+        public VersionedNode(VersionedTree<T> myTree, Position<T> handle) {
+            this.myTree = myTree;
+            this.id = PersistentTree.idOf(handle);
+            this.handle = handle;
+        }
+
+        @Override
+        public T getElement() {
+            return myTree.resolve(this).getElement();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof VersionedNode)) {
+                return false;
+            }
+            VersionedNode<?> other = (VersionedNode<?>) o;
+            return myTree == other.myTree && id == other.id;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(id);
+        }
+    }
+
+    private PersistentTree<E> current; // The current version of the tree
+    private TreeIteratorFactory<E> iteratorFactory; // The factory of iterators
+
+    /**
+     * Creates an empty tree.
+     */
+    public VersionedTree() {
+        this(new PersistentTree<>());
+    }
+
+    /**
+     * Creates a mutable tree whose first version is the given one.
+     *
+     * @param version the initial version
+     */
+    public VersionedTree(PersistentTree<E> version) {
+        this.current = version;
+        this.iteratorFactory = new BFSIteratorFactory<>();
+    }
+
+    /**
+     * Consults the current version of the tree in constant time. The returned
+     * tree is immutable and shares every node with this tree.
+     *
+     * @return the current version
+     */
+    public PersistentTree<E> snapshot() {
+        return current;
+    }
+
+    @Override
+    public int size() {
+        return current.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return current.isEmpty();
+    }
+
+    @Override
+    public boolean isInternal(Position<E> v) throws IllegalStateException {
+        return current.isInternal(resolve(v));
+    }
+
+    @Override
+    public boolean isLeaf(Position<E> p) throws IllegalStateException {
+        return current.isLeaf(resolve(p));
+    }
+
+    @Override
+    public boolean isRoot(Position<E> p) throws IllegalStateException {
+        return current.isRoot(resolve(p));
+    }
+
+    @Override
+    public Position<E> root() throws IllegalStateException {
+        return wrap(current.root());
+    }
+
+    @Override
+    public Position<E> parent(Position<E> p) throws IllegalStateException,
+            IndexOutOfBoundsException {
+        return wrap(current.parent(resolve(p)));
+    }
+
+    @Override
+    public Iterable<? extends Position<E>> children(Position<E> p) throws IllegalStateException {
+        List<Position<E>> result = new ArrayList<>();
+        for (Position<E> child : current.children(resolve(p))) {
+            result.add(wrap(child));
+        }
+        return result;
+    }
+
+    @Override
+    public Position<E> firstChild(Position<E> p) throws IllegalStateException {
+        return wrap(current.firstChild(resolve(p)));
+    }
+
+    @Override
+    public Position<E> nextSibling(Position<E> p) throws IllegalStateException {
+        return wrap(current.nextSibling(resolve(p)));
+    }
+
+    /**
+     * Modifies the element stored in a given position
+     * @param p the position to be modified
+     * @param e the new element to be stored
+     * @return the previous element stored in the position
+     * @throws IllegalStateException if the position is not valid
+     */
+    public E replace(Position<E> p, E e) throws IllegalStateException {
+        Position<E> node = resolve(p);
+        current = current.replace(node, e);
+        return node.getElement();
+    }
+
+    @Override
+    public Position<E> addRoot(E e) throws IllegalStateException {
+        current = current.withRoot(e);
+        return wrap(current.root());
+    }
+
+    /**
+     * Swap the elements stored in two given positions
+     * @param p1 the first node to swap
+     * @param p2 the second node to swap
+     * @throws IllegalStateException if the position of any node is not valid
+     */
+    public void swapElements(Position<E> p1, Position<E> p2)
+            throws IllegalStateException {
+        current = current.swapElements(resolve(p1), resolve(p2));
+    }
+
+    /**
+     * Adds a new node whose parent is pointed by a given position.
+     *
+     * @param element the element to be added
+     * @param p the position of the parent
+     * @return the position of the new node created
+     * @throws IllegalStateException if the position is not valid
+     */
+    public Position<E> add(E element, Position<E> p) throws IllegalStateException {
+        Position<E> newNode = current.addPosition(element, resolve(p));
+        current = PersistentTree.treeOf(newNode);
+        return wrap(newNode);
+    }
+
+    /**
+     * Removes a node and its corresponding subtree rooted at node.
+     *
+     * @param p the position of the node to be removed.
+     * @throws IllegalStateException if the position is not valid
+     */
+    public void remove(Position<E> p) throws IllegalStateException {
+        current = current.remove(resolve(p));
+    }
+
+    public void setIterator(TreeIteratorFactory<E> iteratorFactory) {
+        this.iteratorFactory = iteratorFactory;
+    }
+
+    @Override
+    public Iterator<Position<E>> iterator() {
+        return this.iteratorFactory.createIterator(this);
+    }
+
+    /**
+     * Creates a position for a node of the current version.
+     */
+    private Position<E> wrap(Position<E> handle) {
+        return (handle == null) ? null : new VersionedNode<>(this, handle);
+    }
+
+    /**
+     * Validates the given position and finds its node in the current version.
+     *
+     * @param p the position to be resolved
+     * @return the handle of the node in the current version
+     * @throws IllegalStateException if the position is not valid or its node
+     * has been removed
+     */
+    private Position<E> resolve(Position<E> p) throws IllegalStateException {
+        if (p == null || !(p instanceof VersionedNode)) {
+            throw new IllegalStateException("The position is invalid");
+        }
+        VersionedNode<E> node = (VersionedNode<E>) p;
+        if (node.myTree != this) {
+            throw new IllegalStateException("The node is not from this tree");
+        }
+        if (PersistentTree.treeOf(node.handle) != current) {
+            Position<E> handle = current.locate(node.handle);
+            if (handle == null) {
+                throw new IllegalStateException("The node has been removed");
+            }
+            node.handle = handle;
+        }
+        return node.handle;
+    }
+}
@@ -0,0 +1,30 @@
+package material.tree.io;
+
+/**
+ * Layout of the binary tree format. All numbers are big-endian.
+ *
+ * <pre>
+ * header   magic (int), version (int), node count (int), reserved (int),
+ *          offset of the parent column (long),
+ *          offset of the subtree size column (long),
+ *          offset of the element offset column (long)
+ * data     the encoded elements, in pre-order, one after the other
+ * parents  node count ints: pre-order index of the parent, -1 for the root
+ * sizes    node count ints: number of nodes of the subtree of every node
+ * offsets  node count + 1 longs: start of every element inside the data
+ *          section, followed by the length of the data section
+ * </pre>
+ *
+ * Nodes are identified by their pre-order index, so the first child of node i
+ * is i + 1 and its next sibling is i + sizes[i], which lets a reader navigate
+ * the tree without building any node objects.
+ */
+final class BinaryTreeFormat {
+
+    static final int MAGIC = 0x54524545; // "TREE"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 40;
+
+    private BinaryTreeFormat() {
+    }
+}
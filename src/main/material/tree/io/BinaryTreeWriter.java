@@ -0,0 +1,150 @@
+package material.tree.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import material.tree.Position;
+import material.tree.Tree;
+
+/**
+ * Writes a tree in the format described by {@link BinaryTreeFormat}. The
+ * elements are streamed to the file through a fixed-size buffer as the tree
+ * is traversed; only the structure columns are kept in memory until the
+ * end: the parent and subtree size of every node as ints and its element
+ * offset as a long, that is, 16 bytes per node, plus a stack of the open
+ * nodes as deep as the tree.
+ *
+ * @param <E> the type of the elements of the tree
+ */
+public class BinaryTreeWriter<E> {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ElementCodec<E> codec;
+
+    /**
+     * Creates a writer.
+     *
+     * @param codec the codec used to encode the elements
+     */
+    public BinaryTreeWriter(ElementCodec<E> codec) {
+        this.codec = codec;
+    }
+
+    /**
+     * Writes a tree to a file, replacing its previous content.
+     *
+     * @param tree the tree to write
+     * @param file the destination file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Tree<E> tree, Path file) throws IOException {
+        int n = tree.size();
+        int[] parents = new int[n];
+        int[] sizes = new int[n];
+        long[] offsets = new long[n + 1];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            channel.position(BinaryTreeFormat.HEADER_SIZE);
+            long dataLength = 0;
+            int count = 0;
+            if (n > 0) {
+                // Iterative pre-order traversal: every open node keeps its
+                // index and the iterator over its pending children.
+                Deque<Integer> indices = new ArrayDeque<>();
+                Deque<Iterator<? extends Position<E>>> pending = new ArrayDeque<>();
+                Position<E> node = tree.root();
+                int parent = -1;
+                while (true) {
+                    if (node != null) {
+                        if (count == n) {
+                            throw new IllegalStateException("The tree has more nodes than its size");
+                        }
+                        parents[count] = parent;
+                        offsets[count] = dataLength;
+                        dataLength += put(channel, buffer, codec.encode(node.getElement()));
+                        indices.push(count);
+                        pending.push(tree.children(node).iterator());
+                        count++;
+                    }
+                    if (pending.isEmpty()) {
+                        break;
+                    }
+                    if (pending.peek().hasNext()) {
+                        node = pending.peek().next();
+                        parent = indices.peek();
+                    } else {
+                        int index = indices.pop();
+                        pending.pop();
+                        sizes[index] = count - index;
+                        node = null;
+                    }
+                }
+            }
+            if (count != n) {
+                throw new IllegalStateException("The tree has fewer nodes than its size");
+            }
+            offsets[n] = dataLength;
+            long parentsOffset = BinaryTreeFormat.HEADER_SIZE + dataLength;
+            for (int v : parents) {
+                ensure(channel, buffer, 4).putInt(v);
+            }
+            long sizesOffset = parentsOffset + 4L * n;
+            for (int v : sizes) {
+                ensure(channel, buffer, 4).putInt(v);
+            }
+            long offsetsOffset = sizesOffset + 4L * n;
+            for (long v : offsets) {
+                ensure(channel, buffer, 8).putLong(v);
+            }
+            flush(channel, buffer);
+            buffer.putInt(BinaryTreeFormat.MAGIC).putInt(BinaryTreeFormat.VERSION)
+                    .putInt(n).putInt(0)
+                    .putLong(parentsOffset).putLong(sizesOffset).putLong(offsetsOffset);
+            buffer.flip();
+            long position = 0;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+    }
+
+    /**
+     * Appends some bytes to the buffer, flushing it to the channel as needed.
+     *
+     * @return the number of bytes written
+     */
+    private int put(FileChannel channel, ByteBuffer buffer, byte[] bytes) throws IOException {
+        int written = 0;
+        while (written < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flush(channel, buffer);
+            }
+            int chunk = Math.min(buffer.remaining(), bytes.length - written);
+            buffer.put(bytes, written, chunk);
+            written += chunk;
+        }
+        return bytes.length;
+    }
+
+    private ByteBuffer ensure(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush(channel, buffer);
+        }
+        return buffer;
+    }
+
+    private void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
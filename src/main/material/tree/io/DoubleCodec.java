@@ -0,0 +1,25 @@
+package material.tree.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Codec that stores double elements in 8 bytes, in the byte order of the
+ * buffer. Null elements are not supported.
+ */
+public class DoubleCodec implements FixedWidthCodec<Double> {
+
+    @Override
+    public int width() {
+        return 8;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer, int offset, Double element) {
+        buffer.putDouble(offset, element);
+    }
+
+    @Override
+    public Double read(ByteBuffer buffer, int offset) {
+        return buffer.getDouble(offset);
+    }
+}
@@ -0,0 +1,29 @@
+package material.tree.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts the elements of a tree to bytes and back, so a tree can be stored
+ * in the binary format written by {@link BinaryTreeWriter}.
+ *
+ * @param <E> the type of the elements
+ */
+public interface ElementCodec<E> {
+
+    /**
+     * Encodes an element.
+     *
+     * @param element the element to encode
+     * @return the bytes that represent the element
+     */
+    public byte[] encode(E element);
+
+    /**
+     * Decodes an element.
+     *
+     * @param buffer a buffer whose remaining bytes are exactly the bytes
+     * produced by {@link #encode(Object)} for the element
+     * @return the decoded element
+     */
+    public E decode(ByteBuffer buffer);
+}
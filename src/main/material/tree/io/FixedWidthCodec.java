@@ -0,0 +1,53 @@
+package material.tree.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A codec whose elements always take the same number of bytes, so they can
+ * be stored in fixed-size records such as the ones of {@link OffHeapTree}.
+ * It is also an {@link ElementCodec}, so the same codec can be used with
+ * {@link BinaryTreeWriter} and {@link MappedTree}.
+ *
+ * @param <E> the type of the elements
+ */
+public interface FixedWidthCodec<E> extends ElementCodec<E> {
+
+    /**
+     * Consults the number of bytes of every encoded element.
+     *
+     * @return the width of an element
+     */
+    public int width();
+
+    /**
+     * Writes an element at a given offset of a buffer, without moving its
+     * position.
+     *
+     * @param buffer the buffer to write to
+     * @param offset the index of the first byte
+     * @param element the element to write
+     */
+    public void write(ByteBuffer buffer, int offset, E element);
+
+    /**
+     * Reads the element stored at a given offset of a buffer, without moving
+     * its position.
+     *
+     * @param buffer the buffer to read from
+     * @param offset the index of the first byte
+     * @return the element
+     */
+    public E read(ByteBuffer buffer, int offset);
+
+    @Override
+    public default byte[] encode(E element) {
+        byte[] bytes = new byte[width()];
+        write(ByteBuffer.wrap(bytes), 0, element);
+        return bytes;
+    }
+
+    @Override
+    public default E decode(ByteBuffer buffer) {
+        return read(buffer, buffer.position());
+    }
+}
@@ -0,0 +1,25 @@
+package material.tree.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Codec that stores int elements in 4 bytes, in the byte order of the
+ * buffer. Null elements are not supported.
+ */
+public class IntCodec implements FixedWidthCodec<Integer> {
+
+    @Override
+    public int width() {
+        return 4;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer, int offset, Integer element) {
+        buffer.putInt(offset, element);
+    }
+
+    @Override
+    public Integer read(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset);
+    }
+}
@@ -0,0 +1,25 @@
+package material.tree.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Codec that stores long elements in 8 bytes, in the byte order of the
+ * buffer. Null elements are not supported.
+ */
+public class LongCodec implements FixedWidthCodec<Long> {
+
+    @Override
+    public int width() {
+        return 8;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer, int offset, Long element) {
+        buffer.putLong(offset, element);
+    }
+
+    @Override
+    public Long read(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset);
+    }
+}
@@ -0,0 +1,294 @@
+package material.tree.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import material.tree.NavigableTree;
+import material.tree.Position;
+import material.tree.iterator.BFSIteratorFactory;
+import material.tree.iterator.TreeIteratorFactory;
+
+/**
+ * Read-only tree backed by a file in the format written by
+ * {@link BinaryTreeWriter}.
+ *
+ * The file is memory-mapped instead of read: the structure columns are
+ * accessed in place and an element is only decoded when
+ * {@link Position#getElement()} is first called on a position, so opening a
+ * tree of several gigabytes costs neither the time nor the heap needed to
+ * copy it. The data section is mapped in windows of up to 1 GiB, so it may
+ * exceed the 2 GiB limit of a single mapping; each structure column must fit
+ * in one mapping (up to about 268 million nodes).
+ *
+ * @param <E> the type of the elements of the tree
+ */
+public class MappedTree<E> implements NavigableTree<E> {
+
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    /**
+     * Handle to a node of the mapped tree, identified by its pre-order index.
+     * The decoded element is cached in the handle.
+     *
+     * @param <T> the type of the element
+     */
+    private static class TreeNode<T> implements Position<T> {
+
+        private final MappedTree<T> myTree; // The tree where the node belongs
+        private final int index; // The pre-order index of the node
+        private T element; // The decoded element, once decoded
+        private boolean decoded; // Whether the element has been decoded
+
+        public TreeNode(MappedTree<T> myTree, int index) {
+            this.myTree = myTree;
+            this.index = index;
+        }
+
+        @Override
+        public T getElement() {
+            if (!decoded) {
+                element = myTree.decode(index);
+                decoded = true;
+            }
+            return element;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TreeNode)) {
+                return false;
+            }
+            TreeNode<?> other = (TreeNode<?>) o;
+            return myTree == other.myTree && index == other.index;
+        }
+
+        @Override
+        public int hashCode() {
+            return index;
+        }
+    }
+
+    private final ElementCodec<E> codec;
+    private final int size; // The number of nodes in the tree
+    private final IntBuffer parents; // Parent pre-order index of every node
+    private final IntBuffer sizes; // Subtree size of every node
+    private final LongBuffer offsets; // Start of every element in the data section
+    private final MappedByteBuffer[] windows; // The data section, in windows
+    private TreeIteratorFactory<E> iteratorFactory; // The factory of iterators
+
+    /**
+     * Opens a tree stored in a file.
+     *
+     * @param file the file written by {@link BinaryTreeWriter}
+     * @param codec the codec used to decode the elements
+     * @throws IOException if the file cannot be read or is not a valid tree
+     */
+    public MappedTree(Path file, ElementCodec<E> codec) throws IOException {
+        this.codec = codec;
+        this.iteratorFactory = new BFSIteratorFactory<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < BinaryTreeFormat.HEADER_SIZE) {
+                throw new IOException("The file is too short to be a tree");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, BinaryTreeFormat.HEADER_SIZE);
+            if (header.getInt() != BinaryTreeFormat.MAGIC) {
+                throw new IOException("The file is not a tree");
+            }
+            int version = header.getInt();
+            if (version != BinaryTreeFormat.VERSION) {
+                throw new IOException("Unsupported tree format version " + version);
+            }
+            size = header.getInt();
+            header.getInt();
+            long parentsOffset = header.getLong();
+            long sizesOffset = header.getLong();
+            long offsetsOffset = header.getLong();
+            parents = map(channel, parentsOffset, 4L * size).asIntBuffer();
+            sizes = map(channel, sizesOffset, 4L * size).asIntBuffer();
+            offsets = map(channel, offsetsOffset, 8L * (size + 1)).asLongBuffer();
+            long dataLength = parentsOffset - BinaryTreeFormat.HEADER_SIZE;
+            int count = (int) ((dataLength + WINDOW_SIZE - 1) / WINDOW_SIZE);
+            windows = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long start = i * WINDOW_SIZE;
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        BinaryTreeFormat.HEADER_SIZE + start, Math.min(WINDOW_SIZE, dataLength - start));
+            }
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long offset, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("The tree has too many nodes to be mapped");
+        }
+        if (offset < 0 || offset + length > channel.size()) {
+            throw new IOException("The file is truncated");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (size == 0);
+    }
+
+    @Override
+    public Position<E> root() throws IllegalStateException {
+        if (size == 0) {
+            throw new IllegalStateException("The tree is empty");
+        }
+        return new TreeNode<>(this, 0);
+    }
+
+    @Override
+    public Position<E> parent(Position<E> v) throws IllegalStateException, IndexOutOfBoundsException {
+        int node = checkPosition(v);
+        int parent = parents.get(node);
+        if (parent < 0) {
+            throw new IndexOutOfBoundsException("The node has not parent");
+        }
+        return new TreeNode<>(this, parent);
+    }
+
+    @Override
+    public Iterable<? extends Position<E>> children(Position<E> v) throws IllegalStateException {
+        final int node = checkPosition(v);
+        return new Iterable<Position<E>>() {
+            @Override
+            public Iterator<Position<E>> iterator() {
+                return new Iterator<Position<E>>() {
+                    private int next = firstChildIndex(node);
+
+                    @Override
+                    public boolean hasNext() {
+                        return next >= 0;
+                    }
+
+                    @Override
+                    public Position<E> next() {
+                        if (next < 0) {
+                            throw new NoSuchElementException();
+                        }
+                        int aux = next;
+                        next = nextSiblingIndex(aux);
+                        return new TreeNode<>(MappedTree.this, aux);
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    public Position<E> firstChild(Position<E> v) throws IllegalStateException {
+        int child = firstChildIndex(checkPosition(v));
+        return (child < 0) ? null : new TreeNode<>(this, child);
+    }
+
+    @Override
+    public Position<E> nextSibling(Position<E> v) throws IllegalStateException {
+        int sibling = nextSiblingIndex(checkPosition(v));
+        return (sibling < 0) ? null : new TreeNode<>(this, sibling);
+    }
+
+    @Override
+    public boolean isInternal(Position<E> v) throws IllegalStateException {
+        return !isLeaf(v);
+    }
+
+    @Override
+    public boolean isLeaf(Position<E> v) throws IllegalStateException {
+        return sizes.get(checkPosition(v)) == 1;
+    }
+
+    @Override
+    public boolean isRoot(Position<E> v) throws IllegalStateException {
+        return checkPosition(v) == 0;
+    }
+
+    /**
+     * The tree is read-only.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public Position<E> addRoot(E e) throws IllegalStateException {
+        throw new UnsupportedOperationException("The tree is read-only");
+    }
+
+    public void setIterator(TreeIteratorFactory<E> iteratorFactory) {
+        this.iteratorFactory = iteratorFactory;
+    }
+
+    @Override
+    public Iterator<Position<E>> iterator() {
+        return this.iteratorFactory.createIterator(this);
+    }
+
+    /**
+     * Validates the given position, returning its pre-order index
+     */
+    private int checkPosition(Position<E> p) throws IllegalStateException {
+        if (p == null || !(p instanceof TreeNode)) {
+            throw new IllegalStateException("The position is invalid");
+        }
+        TreeNode<E> aux = (TreeNode<E>) p;
+        if (aux.myTree != this) {
+            throw new IllegalStateException("The node is not from this tree");
+        }
+        return aux.index;
+    }
+
+    private int firstChildIndex(int node) {
+        return (sizes.get(node) > 1) ? node + 1 : -1;
+    }
+
+    private int nextSiblingIndex(int node) {
+        int parent = parents.get(node);
+        if (parent < 0) {
+            return -1;
+        }
+        int next = node + sizes.get(node);
+        return (next < parent + sizes.get(parent)) ? next : -1;
+    }
+
+    /**
+     * Decodes the element of a node, reading it in place when it lies in a
+     * single window and copying it otherwise.
+     */
+    private E decode(int node) {
+        long start = offsets.get(node);
+        int length = (int) (offsets.get(node + 1) - start);
+        if (length == 0) {
+            return codec.decode(ByteBuffer.allocate(0));
+        }
+        int window = (int) (start / WINDOW_SIZE);
+        int offset = (int) (start % WINDOW_SIZE);
+        if (offset + length <= windows[window].capacity()) {
+            ByteBuffer bytes = windows[window].duplicate();
+            bytes.limit(offset + length).position(offset);
+            return codec.decode(bytes.slice());
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        while (bytes.hasRemaining()) {
+            ByteBuffer part = windows[window++].duplicate();
+            part.position(offset);
+            part.limit(Math.min(part.capacity(), offset + bytes.remaining()));
+            bytes.put(part);
+            offset = 0;
+        }
+        bytes.flip();
+        return codec.decode(bytes);
+    }
+}
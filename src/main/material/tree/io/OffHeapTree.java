@@ -0,0 +1,460 @@
+package material.tree.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import material.tree.NavigableTree;
+import material.tree.Position;
+import material.tree.PositionCodec;
+import material.tree.iterator.BFSIteratorFactory;
+import material.tree.iterator.TreeIteratorFactory;
+
+/**
+ * A tree whose structure and elements live outside the Java heap.
+ *
+ * Every node is a fixed-size record (parent, first child, last child, next
+ * sibling, generation and the element encoded by a {@link FixedWidthCodec})
+ * in direct buffers of {@link #SEGMENT_RECORDS} records each. The garbage
+ * collector only sees the few segment buffers, not one object per node, so
+ * a tree of hundreds of millions of nodes adds almost nothing to the time
+ * needed to mark the heap.
+ *
+ * Positions are small value handles (tree, record, generation) created on
+ * demand: two handles to the same node are equal, and a handle may be kept
+ * and reused for as long as its node is in the tree. Records released by
+ * {@link #remove(Position)} are recycled, and their generation is increased
+ * so old handles are rejected.
+ *
+ * The lifetime of the memory is explicit: {@link #close()} releases the
+ * segments and every later operation fails. The tree is not thread-safe.
+ *
+ * @param <E> the type of the elements of the tree
+ */
+public class OffHeapTree<E> implements NavigableTree<E>, AutoCloseable {
+
+    /**
+     * Number of records in each segment.
+     */
+    public static final int SEGMENT_RECORDS = 1 << 16;
+
+    private static final int SEGMENT_SHIFT = 16;
+    private static final int NONE = -1; // Absent link
+    private static final int FREE = -2; // Parent value of a released record
+    private static final int PARENT = 0; // Offsets of the fields inside a record
+    private static final int FIRST_CHILD = 4;
+    private static final int LAST_CHILD = 8;
+    private static final int NEXT_SIBLING = 12; // Next free record if released
+    private static final int GENERATION = 16;
+    private static final int ELEMENT = 20;
+
+    /**
+     * Handle to a record of the tree.
+     *
+     * @param <T> the type of the element
+     */
+    private static class TreeNode<T> implements Position<T> {
+
+        private final OffHeapTree<T> myTree; // The tree where the node belongs
+        private final int index; // The record of the node
+        private final int generation; // The generation of the record
+
+        public TreeNode(OffHeapTree<T> myTree, int index, int generation) {
+            this.myTree = myTree;
+            this.index = index;
+            this.generation = generation;
+        }
+
+        @Override
+        public T getElement() {
+            return myTree.elementAt(myTree.checkPosition(this));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TreeNode)) {
+                return false;
+            }
+            TreeNode<?> other = (TreeNode<?>) o;
+            return myTree == other.myTree && index == other.index
+                    && generation == other.generation;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * index + generation;
+        }
+    }
+
+    private final FixedWidthCodec<E> codec; // Encodes the elements in the records
+    private final int recordSize; // Number of bytes of a record
+    private List<ByteBuffer> segments; // The records, null once closed
+    private int used; // Number of records ever handed out (high-water mark)
+    private int freeHead; // First released record, chained through the next sibling
+    private int root; // The record of the root
+    private int size; // The number of nodes in the tree
+    private TreeIteratorFactory<E> iteratorFactory; // The factory of iterators
+
+    /**
+     * Creates an empty tree.
+     *
+     * @param codec the codec that stores the elements in the records
+     * @throws IllegalArgumentException if the width of the codec is negative
+     * or too large for a segment to fit in a single buffer
+     */
+    public OffHeapTree(FixedWidthCodec<E> codec) throws IllegalArgumentException {
+        int width = codec.width();
+        if (width < 0 || (long) SEGMENT_RECORDS * (ELEMENT + (long) width) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid element width: " + width);
+        }
+        this.codec = codec;
+        this.recordSize = ELEMENT + width;
+        this.segments = new ArrayList<>();
+        this.used = 0;
+        this.freeHead = NONE;
+        this.root = NONE;
+        this.size = 0;
+        this.iteratorFactory = new BFSIteratorFactory<>();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (size == 0);
+    }
+
+    @Override
+    public boolean isInternal(Position<E> v) throws IllegalStateException {
+        return !isLeaf(v);
+    }
+
+    @Override
+    public boolean isLeaf(Position<E> p) throws IllegalStateException {
+        return get(checkPosition(p), FIRST_CHILD) == NONE;
+    }
+
+    @Override
+    public boolean isRoot(Position<E> p) throws IllegalStateException {
+        return checkPosition(p) == root;
+    }
+
+    @Override
+    public Position<E> root() throws IllegalStateException {
+        checkOpen();
+        if (root == NONE) {
+            throw new IllegalStateException("The tree is empty");
+        }
+        return handle(root);
+    }
+
+    @Override
+    public Position<E> parent(Position<E> p) throws IllegalStateException,
+            IndexOutOfBoundsException {
+        int parent = get(checkPosition(p), PARENT);
+        if (parent == NONE) {
+            throw new IndexOutOfBoundsException("The node has not parent");
+        }
+        return handle(parent);
+    }
+
+    @Override
+    public Iterable<? extends Position<E>> children(Position<E> p) throws IllegalStateException {
+        final int first = get(checkPosition(p), FIRST_CHILD);
+        return new Iterable<Position<E>>() {
+            @Override
+            public Iterator<Position<E>> iterator() {
+                return new Iterator<Position<E>>() {
+                    private int next = first;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next != NONE;
+                    }
+
+                    @Override
+                    public Position<E> next() {
+                        if (next == NONE) {
+                            throw new NoSuchElementException();
+                        }
+                        int aux = next;
+                        next = get(aux, NEXT_SIBLING);
+                        return handle(aux);
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    public Position<E> firstChild(Position<E> p) throws IllegalStateException {
+        int child = get(checkPosition(p), FIRST_CHILD);
+        return (child == NONE) ? null : handle(child);
+    }
+
+    @Override
+    public Position<E> nextSibling(Position<E> p) throws IllegalStateException {
+        int sibling = get(checkPosition(p), NEXT_SIBLING);
+        return (sibling == NONE) ? null : handle(sibling);
+    }
+
+    /**
+     * Modifies the element stored in a given position
+     * @param p the position to be modified
+     * @param e the new element to be stored
+     * @return the previous element stored in the position
+     * @throws IllegalStateException if the position is not valid
+     */
+    public E replace(Position<E> p, E e) throws IllegalStateException {
+        int node = checkPosition(p);
+        E temp = elementAt(node);
+        setElementAt(node, e);
+        return temp;
+    }
+
+    @Override
+    public Position<E> addRoot(E e) throws IllegalStateException {
+        checkOpen();
+        if (!isEmpty()) {
+            throw new IllegalStateException("Tree already has a root");
+        }
+        root = allocate(e, NONE);
+        size = 1;
+        return handle(root);
+    }
+
+    /**
+     * Swap the elements stored in two given positions
+     * @param p1 the first node to swap
+     * @param p2 the second node to swap
+     * @throws IllegalStateException if the position of any node is not valid
+     */
+    public void swapElements(Position<E> p1, Position<E> p2)
+            throws IllegalStateException {
+        int node1 = checkPosition(p1);
+        int node2 = checkPosition(p2);
+        E temp = elementAt(node2);
+        setElementAt(node2, elementAt(node1));
+        setElementAt(node1, temp);
+    }
+
+    /**
+     * Adds a new node whose parent is pointed by a given position. The new
+     * node becomes the last child of its parent.
+     *
+     * @param element the element to be added
+     * @param p the position of the parent
+     * @return the position of the new node created
+     * @throws IllegalStateException if the position is not valid
+     */
+    public Position<E> add(E element, Position<E> p) throws IllegalStateException {
+        int parent = checkPosition(p);
+        int node = allocate(element, parent);
+        int last = get(parent, LAST_CHILD);
+        if (last == NONE) {
+            set(parent, FIRST_CHILD, node);
+        } else {
+            set(last, NEXT_SIBLING, node);
+        }
+        set(parent, LAST_CHILD, node);
+        size++;
+        return handle(node);
+    }
+
+    /**
+     * Removes a node and its corresponding subtree rooted at node. The
+     * records of the removed nodes are released for later additions.
+     *
+     * @param p the position of the node to be removed.
+     * @throws IllegalStateException if the position is not valid
+     */
+    public void remove(Position<E> p) throws IllegalStateException {
+        int node = checkPosition(p);
+        int parent = get(node, PARENT);
+        if (parent != NONE) {
+            int next = get(node, NEXT_SIBLING);
+            int prev = NONE;
+            if (get(parent, FIRST_CHILD) == node) {
+                set(parent, FIRST_CHILD, next);
+            } else {
+                prev = get(parent, FIRST_CHILD);
+                while (get(prev, NEXT_SIBLING) != node) {
+                    prev = get(prev, NEXT_SIBLING);
+                }
+                set(prev, NEXT_SIBLING, next);
+            }
+            if (get(parent, LAST_CHILD) == node) {
+                set(parent, LAST_CHILD, prev);
+            }
+        } else {
+            root = NONE;
+        }
+        size = size - release(node);
+    }
+
+    /**
+     * Releases the memory of the tree. Every later operation on the tree or
+     * on its positions throws IllegalStateException. Direct buffers have no
+     * explicit deallocation in Java 17, so the memory is returned when the
+     * segments are collected, which no longer depends on the number of nodes.
+     */
+    @Override
+    public void close() {
+        segments = null;
+        root = NONE;
+        size = 0;
+    }
+
+    /**
+     * Creates a codec for the positions of this tree. The code of a node
+     * holds its record and the generation of the record, so removed nodes
+     * are detected like with handles.
+     *
+     * @return the codec of the positions of this tree
+     */
+    public PositionCodec<E> positionCodec() {
+        return new PositionCodec<E>() {
+            @Override
+            public long encode(Position<E> p) throws IllegalStateException {
+                int node = checkPosition(p);
+                return ((long) get(node, GENERATION) << 32) | (node & 0xFFFFFFFFL);
+            }
+
+            @Override
+            public Position<E> decode(long code) throws IllegalStateException {
+                int node = (int) code;
+                int generation = (int) (code >>> 32);
+                checkOpen();
+                if (node < 0 || node >= used || get(node, PARENT) == FREE
+                        || get(node, GENERATION) != generation) {
+                    throw new IllegalStateException("The node has been removed");
+                }
+                return new TreeNode<>(OffHeapTree.this, node, generation);
+            }
+        };
+    }
+
+    public void setIterator(TreeIteratorFactory<E> iteratorFactory) {
+        this.iteratorFactory = iteratorFactory;
+    }
+
+    @Override
+    public Iterator<Position<E>> iterator() {
+        return this.iteratorFactory.createIterator(this);
+    }
+
+    private void checkOpen() throws IllegalStateException {
+        if (segments == null) {
+            throw new IllegalStateException("The tree is closed");
+        }
+    }
+
+    /**
+     * Validates the given position, returning its record
+     */
+    private int checkPosition(Position<E> p) throws IllegalStateException {
+        if (p == null || !(p instanceof TreeNode)) {
+            throw new IllegalStateException("The position is invalid");
+        }
+        TreeNode<E> aux = (TreeNode<E>) p;
+        if (aux.myTree != this) {
+            throw new IllegalStateException("The node is not from this tree");
+        }
+        checkOpen();
+        if (aux.index >= used || get(aux.index, PARENT) == FREE
+                || get(aux.index, GENERATION) != aux.generation) {
+            throw new IllegalStateException("The node has been removed");
+        }
+        return aux.index;
+    }
+
+    private Position<E> handle(int node) {
+        return new TreeNode<>(this, node, get(node, GENERATION));
+    }
+
+    private int get(int node, int field) {
+        return segments.get(node >>> SEGMENT_SHIFT).getInt((node & (SEGMENT_RECORDS - 1)) * recordSize + field);
+    }
+
+    private void set(int node, int field, int value) {
+        segments.get(node >>> SEGMENT_SHIFT).putInt((node & (SEGMENT_RECORDS - 1)) * recordSize + field, value);
+    }
+
+    private E elementAt(int node) {
+        return codec.read(segments.get(node >>> SEGMENT_SHIFT),
+                (node & (SEGMENT_RECORDS - 1)) * recordSize + ELEMENT);
+    }
+
+    private void setElementAt(int node, E e) {
+        codec.write(segments.get(node >>> SEGMENT_SHIFT),
+                (node & (SEGMENT_RECORDS - 1)) * recordSize + ELEMENT, e);
+    }
+
+    /**
+     * Takes a free record (recycled or new) and initializes it as a leaf.
+     */
+    private int allocate(E e, int parent) {
+        int node;
+        if (freeHead != NONE) {
+            node = freeHead;
+            freeHead = get(node, NEXT_SIBLING);
+        } else {
+            if (used == Integer.MAX_VALUE) {
+                throw new IllegalStateException("The tree is full");
+            }
+            if ((used >>> SEGMENT_SHIFT) == segments.size()) {
+                segments.add(ByteBuffer.allocateDirect(SEGMENT_RECORDS * recordSize)
+                        .order(ByteOrder.nativeOrder()));
+            }
+            node = used++;
+            set(node, GENERATION, 0);
+        }
+        set(node, PARENT, parent);
+        set(node, FIRST_CHILD, NONE);
+        set(node, LAST_CHILD, NONE);
+        set(node, NEXT_SIBLING, NONE);
+        setElementAt(node, e);
+        return node;
+    }
+
+    /**
+     * Releases every record of the subtree rooted at a given record, visiting
+     * it in post-order so the links of a node are read before it is released.
+     *
+     * @return the number of released records
+     */
+    private int release(int start) {
+        int count = 0;
+        int cur = leftmostLeaf(start);
+        while (true) {
+            boolean last = (cur == start);
+            int next = NONE;
+            if (!last) {
+                int sibling = get(cur, NEXT_SIBLING);
+                next = (sibling != NONE) ? leftmostLeaf(sibling) : get(cur, PARENT);
+            }
+            set(cur, PARENT, FREE);
+            set(cur, GENERATION, get(cur, GENERATION) + 1);
+            set(cur, NEXT_SIBLING, freeHead);
+            freeHead = cur;
+            count++;
+            if (last) {
+                return count;
+            }
+            cur = next;
+        }
+    }
+
+    private int leftmostLeaf(int node) {
+        int child;
+        while ((child = get(node, FIRST_CHILD)) != NONE) {
+            node = child;
+        }
+        return node;
+    }
+}
@@ -0,0 +1,21 @@
+package material.tree.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codec that stores strings encoded in UTF-8. Null elements are not
+ * supported.
+ */
+public class StringCodec implements ElementCodec<String> {
+
+    @Override
+    public byte[] encode(String element) {
+        return element.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String decode(ByteBuffer buffer) {
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+}
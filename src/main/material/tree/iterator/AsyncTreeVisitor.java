@@ -0,0 +1,204 @@
+package material.tree.iterator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import material.tree.Position;
+import material.tree.Tree;
+
+/**
+ * Visits a subtree running a possibly slow callback on every node, with a
+ * bounded number of callbacks in progress at the same time. The callback of
+ * a node starts as soon as the callback of its parent has completed and a
+ * slot is free; there is no other ordering between nodes.
+ *
+ * Callbacks that block, such as lookups against a local store, are run on
+ * the executor given to the visitor, which should be able to run at least
+ * as many tasks as the concurrency limit (on Java 21 or later, a
+ * virtual-thread-per-task executor fits this use).
+ *
+ * The visitor keeps a stack with one children iterator per visited node
+ * whose children have not all been started, and takes the next node from
+ * the most recent one. Children are only pulled from the tree when a slot
+ * is free, so memory does not grow with the width of the tree. The tree must
+ * not be modified during the visit.
+ *
+ * @param <E> the type of the elements in the tree
+ */
+public class AsyncTreeVisitor<E> {
+
+    /**
+     * The state of a single visit.
+     */
+    private class Run {
+
+        private final Tree<E> tree;
+        private final Function<? super Position<E>, ? extends CompletionStage<?>> action;
+        private final Deque<Iterator<? extends Position<E>>> pending; // Nodes not started yet
+        private final CompletableFuture<Void> result;
+        private int inFlight; // Callbacks started and not completed
+        private boolean finished; // Whether the result has been completed
+
+        Run(Tree<E> tree, Position<E> start, Function<? super Position<E>, ? extends CompletionStage<?>> action) {
+            this.tree = tree;
+            this.action = action;
+            this.pending = new ArrayDeque<>();
+            this.pending.push(List.of(start).iterator());
+            this.result = new CompletableFuture<>();
+        }
+
+        /**
+         * Starts as many pending nodes as free slots, or completes the
+         * result if there is nothing left to do.
+         */
+        void pump() {
+            List<Position<E>> toStart = new ArrayList<>();
+            boolean done = false;
+            RuntimeException failure = null;
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                try {
+                    while (inFlight < maxConcurrency && !pending.isEmpty()) {
+                        Iterator<? extends Position<E>> it = pending.peek();
+                        if (it.hasNext()) {
+                            toStart.add(it.next());
+                            inFlight++;
+                        } else {
+                            pending.pop();
+                        }
+                    }
+                } catch (RuntimeException ex) {
+                    failure = ex;
+                }
+                if (failure == null && inFlight == 0 && pending.isEmpty()) {
+                    finished = done = true;
+                }
+            }
+            if (done) {
+                result.complete(null);
+            }
+            if (failure != null) {
+                fail(failure);
+                return;
+            }
+            for (Position<E> node : toStart) {
+                start(node);
+            }
+        }
+
+        private void start(Position<E> node) {
+            CompletionStage<?> stage;
+            try {
+                stage = action.apply(node);
+            } catch (RuntimeException ex) {
+                fail(ex);
+                return;
+            }
+            // Completing on the executor keeps callbacks that complete
+            // immediately from nesting pump calls, unless the executor runs
+            // tasks in the calling thread
+            stage.whenCompleteAsync((r, ex) -> {
+                if (ex != null) {
+                    fail(ex);
+                } else {
+                    completed(node);
+                }
+            }, executor);
+        }
+
+        private void completed(Position<E> node) {
+            RuntimeException failure = null;
+            synchronized (this) {
+                inFlight--;
+                if (finished) {
+                    return;
+                }
+                try {
+                    Iterator<? extends Position<E>> children = tree.children(node).iterator();
+                    if (children.hasNext()) {
+                        pending.push(children);
+                    }
+                } catch (RuntimeException ex) {
+                    // Such as an invalid position if the tree was modified
+                    failure = ex;
+                }
+            }
+            if (failure != null) {
+                fail(failure);
+            } else {
+                pump();
+            }
+        }
+
+        private void fail(Throwable ex) {
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+                pending.clear();
+            }
+            result.completeExceptionally(ex);
+        }
+    }
+
+    private final Executor executor; // Runs the callbacks
+    private final int maxConcurrency; // Maximum number of callbacks in progress
+
+    /**
+     * Creates a visitor.
+     *
+     * @param executor the executor that runs the callbacks
+     * @param maxConcurrency the maximum number of callbacks in progress
+     * @throws IllegalArgumentException if maxConcurrency is not positive
+     */
+    public AsyncTreeVisitor(Executor executor, int maxConcurrency) throws IllegalArgumentException {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("The concurrency limit must be positive");
+        }
+        this.executor = executor;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Runs a blocking action on every node of a subtree, on the executor of
+     * the visitor.
+     *
+     * @param tree the tree to visit
+     * @param start the root of the subtree
+     * @param action the action to run on every node
+     * @return a future completed when every action has completed, or
+     * completed exceptionally with the first exception thrown by an action,
+     * in which case no more actions are started
+     */
+    public CompletableFuture<Void> visit(Tree<E> tree, Position<E> start, Consumer<? super Position<E>> action) {
+        return visitAsync(tree, start, p -> CompletableFuture.runAsync(() -> action.accept(p), executor));
+    }
+
+    /**
+     * Runs an asynchronous action on every node of a subtree. A node counts
+     * as visited when the stage returned by its action completes.
+     *
+     * @param tree the tree to visit
+     * @param start the root of the subtree
+     * @param action the action that starts the work for a node
+     * @return a future completed when every stage has completed, or
+     * completed exceptionally with the first failure, in which case no more
+     * actions are started
+     */
+    public CompletableFuture<Void> visitAsync(Tree<E> tree, Position<E> start,
+            Function<? super Position<E>, ? extends CompletionStage<?>> action) {
+        Run run = new Run(tree, start, action);
+        run.pump();
+        return run.result;
+    }
+}
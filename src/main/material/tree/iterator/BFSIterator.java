@@ -10,6 +10,7 @@ import java.util.Iterator;
 import java.util.Queue;
 import material.tree.Position;
 import material.tree.Tree;
+import material.tree.metrics.TreeListener;
 
 /**
  * Generic iterator for trees
@@ -21,6 +22,7 @@ public class BFSIterator<E> implements Iterator<Position<E>> {
 
     private final Queue<Position<E>> nodeQueue;
     private final Tree<E> tree;
+    private TreeListener listener;
 
     public BFSIterator(Tree<E> tree, Position<E> start) {
         nodeQueue = new ArrayDeque<>();
@@ -39,12 +41,25 @@ public class BFSIterator<E> implements Iterator<Position<E>> {
         return (nodeQueue.size() != 0);
     }
 
+    /**
+     * Reports the number of children of every expanded node and the length
+     * of the queue to a listener.
+     * @param listener the listener, or null to stop reporting
+     */
+    public void setListener(TreeListener listener) {
+        this.listener = listener;
+    }
+
     @Override
     public Position<E> next() {
         Position<E> aux = nodeQueue.remove();
+        int queued = nodeQueue.size();
         for (Position<E> node : tree.children(aux)) {
             nodeQueue.add(node);
         }
+        if (listener != null) {
+            listener.nodeExpanded(nodeQueue.size() - queued, nodeQueue.size());
+        }
         return aux;
     }
     
@@ -0,0 +1,183 @@
+package material.tree.iterator;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import material.tree.NavigableTree;
+import material.tree.Position;
+
+/**
+ * Breadth-first iterator that keeps at most a fixed number of positions in
+ * memory and needs nothing from the tree but its parent and sibling links,
+ * so it can be used with trees that have no {@link material.tree.PositionCodec},
+ * such as {@link material.tree.LinkedTree}.
+ *
+ * The iterator holds two buffers of half the capacity: the current level,
+ * being returned, and the next one, filled with the children of the returned
+ * nodes. When the next level does not fit, the buffer keeps its first nodes
+ * and the rest are not stored. Once those first nodes have been returned,
+ * the remaining nodes of the level are found one at a time by a
+ * level-successor walk: from the last node returned, climb until an ancestor
+ * has a next sibling and descend from it to the leftmost node at the same
+ * depth. Levels that fit in the buffer cost the same as with
+ * {@link BFSIterator}; each node of a level that does not fit costs a walk
+ * that may go over the upper levels between it and the previous node, at
+ * most O(n) per level and usually much less.
+ *
+ * Nodes are found again from the links, so the tree must not be modified
+ * while iterating.
+ *
+ * @param <E> the type of elements stored in the tree
+ */
+public class BoundedBFSIterator<E> implements Iterator<Position<E>> {
+
+    private final NavigableTree<E> tree; // The tree being iterated
+    private Position<E>[] level; // The first nodes of the current level
+    private int levelStart; // Next node of the current level to return
+    private int levelEnd; // End of the valid nodes of level
+    private boolean levelTruncated; // Whether the current level goes on after the buffer
+    private Position<E>[] nextLevel; // The first nodes of the next level
+    private int nextSize; // Number of valid nodes of nextLevel
+    private boolean nextTruncated; // Whether some nodes of the next level were not stored
+    private int depth; // Depth of the current level below the start
+    private Position<E> upcoming; // The node returned by the next call, null at the end
+
+    /**
+     * Creates an iterator over the subtree rooted at a given position.
+     *
+     * @param tree the tree to iterate
+     * @param start the root of the subtree
+     * @param capacity the maximum number of positions kept in memory, at
+     * least 2
+     * @throws IllegalArgumentException if the capacity is lower than 2
+     */
+    @SuppressWarnings("unchecked")
+    public BoundedBFSIterator(NavigableTree<E> tree, Position<E> start, int capacity)
+            throws IllegalArgumentException {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("The capacity must be at least 2");
+        }
+        this.tree = tree;
+        this.level = (Position<E>[]) new Position<?>[capacity / 2];
+        this.nextLevel = (Position<E>[]) new Position<?>[capacity / 2];
+        this.upcoming = start;
+    }
+
+    /**
+     * Creates an iterator over the whole tree.
+     *
+     * @param tree the tree to iterate
+     * @param capacity the maximum number of positions kept in memory, at
+     * least 2
+     * @throws IllegalArgumentException if the capacity is lower than 2
+     */
+    public BoundedBFSIterator(NavigableTree<E> tree, int capacity) throws IllegalArgumentException {
+        this(tree, tree.root(), capacity);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return upcoming != null;
+    }
+
+    @Override
+    public Position<E> next() {
+        if (upcoming == null) {
+            throw new NoSuchElementException();
+        }
+        Position<E> aux = upcoming;
+        if (!nextTruncated) {
+            for (Position<E> c = tree.firstChild(aux); c != null; c = tree.nextSibling(c)) {
+                if (nextSize == nextLevel.length) {
+                    nextTruncated = true;
+                    break;
+                }
+                nextLevel[nextSize++] = c;
+            }
+        }
+        upcoming = following(aux);
+        return aux;
+    }
+
+    /**
+     * Finds the node returned after a given one: the next one of the buffer,
+     * the level successor if the level did not fit, or the first node of the
+     * next level.
+     */
+    private Position<E> following(Position<E> node) {
+        if (levelStart < levelEnd) {
+            return level[levelStart++];
+        }
+        if (levelTruncated) {
+            Position<E> successor = levelSuccessor(node);
+            if (successor != null) {
+                return successor;
+            }
+        }
+        if (nextSize == 0) {
+            return null;
+        }
+        Position<E>[] aux = level;
+        level = nextLevel;
+        nextLevel = aux;
+        levelStart = 0;
+        levelEnd = nextSize;
+        levelTruncated = nextTruncated;
+        nextSize = 0;
+        nextTruncated = false;
+        depth++;
+        return level[levelStart++];
+    }
+
+    /**
+     * Finds the next node at the depth of the current level, to the right of
+     * a given one and inside the subtree being iterated.
+     */
+    private Position<E> levelSuccessor(Position<E> node) {
+        int up = 0;
+        while (true) {
+            for (Position<E> s = tree.nextSibling(node); s != null; s = tree.nextSibling(s)) {
+                Position<E> found = leftmostAt(s, up);
+                if (found != null) {
+                    return found;
+                }
+            }
+            if (up + 1 == depth) {
+                // The parent is the start of the iteration
+                return null;
+            }
+            node = tree.parent(node);
+            up++;
+        }
+    }
+
+    /**
+     * Finds the leftmost descendant of a node a given number of levels below
+     * it, or null if its subtree is not that deep.
+     */
+    private Position<E> leftmostAt(Position<E> top, int levels) {
+        Position<E> node = top;
+        int d = 0;
+        while (d < levels) {
+            Position<E> child = tree.firstChild(node);
+            if (child != null) {
+                node = child;
+                d++;
+                continue;
+            }
+            // Move right, leaving every finished node
+            while (true) {
+                if (d == 0) {
+                    return null;
+                }
+                Position<E> sibling = tree.nextSibling(node);
+                if (sibling != null) {
+                    node = sibling;
+                    break;
+                }
+                node = tree.parent(node);
+                d--;
+            }
+        }
+        return node;
+    }
+}
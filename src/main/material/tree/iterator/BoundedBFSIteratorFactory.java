@@ -0,0 +1,84 @@
+package material.tree.iterator;
+
+import java.util.Iterator;
+import material.tree.NavigableTree;
+import material.tree.Position;
+import material.tree.Tree;
+
+/**
+ * Factory for creating breadth-first iterators that keep at most a given
+ * number of positions in memory, for trees that implement
+ * {@link NavigableTree}. Unlike {@link SpillingBFSIteratorFactory}, it needs
+ * no codec, so one factory serves any number of trees.
+ *
+ * It is the bounded traversal for {@link material.tree.LinkedTree}, and it
+ * pays for that: each node of a level that overflows the buffer is found
+ * again by a walk over the links, so a traversal may cost O(n * height)
+ * instead of O(n). Giving LinkedTree a spillable identity, so that it could
+ * use {@link SpillingBFSIteratorFactory}, is out of scope. Its nodes have no
+ * slot to encode, so a codec needs a table from ids to nodes for the whole
+ * tree, which costs at least a reference per node. The frontier it would
+ * let us spill costs a reference per frontier node, so the table is never
+ * smaller than the frontier it saves. And with a TreeNode of 80 bytes per
+ * node, even a full frontier is a small fraction of the tree.
+ *
+ * @param <E> the type of the elements in the tree
+ * @see BoundedBFSIterator
+ */
+public class BoundedBFSIteratorFactory<E> implements TreeIteratorFactory<E> {
+
+    /**
+     * Default maximum number of positions kept in memory.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    private final int capacity;
+
+    /**
+     * Creates a factory with the default capacity.
+     */
+    public BoundedBFSIteratorFactory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a factory.
+     *
+     * @param capacity the maximum number of positions kept in memory by each
+     * iterator, at least 2
+     * @throws IllegalArgumentException if the capacity is lower than 2
+     */
+    public BoundedBFSIteratorFactory(int capacity) throws IllegalArgumentException {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("The capacity must be at least 2");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if the tree is not a NavigableTree
+     */
+    @Override
+    public Iterator<Position<E>> createIterator(Tree<E> tree) throws IllegalArgumentException {
+        return new BoundedBFSIterator<>(navigable(tree), capacity);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if the tree is not a NavigableTree
+     */
+    @Override
+    public Iterator<Position<E>> createIterator(Tree<E> tree, Position<E> pos) throws IllegalArgumentException {
+        return new BoundedBFSIterator<>(navigable(tree), pos, capacity);
+    }
+
+    private static <E> NavigableTree<E> navigable(Tree<E> tree) throws IllegalArgumentException {
+        if (!(tree instanceof NavigableTree)) {
+            throw new IllegalArgumentException("The tree does not give access to its sibling links");
+        }
+        return (NavigableTree<E>) tree;
+    }
+}
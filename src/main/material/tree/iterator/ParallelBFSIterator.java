@@ -0,0 +1,155 @@
+package material.tree.iterator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import material.tree.Position;
+import material.tree.Tree;
+
+/**
+ * Breadth-first iterator that builds each level of the tree at once,
+ * gathering the children of a wide level in parallel in a ForkJoinPool.
+ * The positions are returned in exactly the same order as {@link BFSIterator}.
+ *
+ * The next level is built when the current one has been consumed, so the
+ * iterator holds one level of the tree at a time. The tree is only called by
+ * the thread that builds the level, which asks it for the children of every
+ * node; the pool only walks the returned iterables. Trees whose reads are
+ * not thread-safe, such as {@link material.tree.LinkedTree}, whose position
+ * checks write to the nodes, can therefore be traversed as long as walking
+ * their children views only reads the links. The tree must not be modified
+ * while the iterator is in use.
+ *
+ * @param <E> the type of elements stored in the tree
+ */
+public class ParallelBFSIterator<E> implements Iterator<Position<E>> {
+
+    /**
+     * Gathers, for a range of chunks of a level, the children of the nodes
+     * of each chunk, running an optional action on every node first.
+     */
+    private static class LevelTask<E> extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L; // Tasks are never serialized
+        private final List<Position<E>> level;
+        private final List<Iterable<? extends Position<E>>> views; // The children of each node of the level
+        private final List<List<Position<E>>> children; // The children of each chunk
+        private final Consumer<? super Position<E>> action; // Null if nodes are not visited
+        private final int chunk; // Number of nodes per chunk
+        private final int from; // First chunk of the range
+        private final int to; // Chunk after the last one of the range
+
+        LevelTask(List<Position<E>> level, List<Iterable<? extends Position<E>>> views,
+                List<List<Position<E>>> children, Consumer<? super Position<E>> action,
+                int chunk, int from, int to) {
+            this.level = level;
+            this.views = views;
+            this.children = children;
+            this.action = action;
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new LevelTask<>(level, views, children, action, chunk, from, middle),
+                        new LevelTask<>(level, views, children, action, chunk, middle, to));
+                return;
+            }
+            int end = Math.min(level.size(), (from + 1) * chunk);
+            List<Position<E>> result = new ArrayList<>();
+            for (int i = from * chunk; i < end; i++) {
+                if (action != null) {
+                    action.accept(level.get(i));
+                }
+                for (Position<E> child : views.get(i)) {
+                    result.add(child);
+                }
+            }
+            children.set(from, result);
+        }
+    }
+
+    private final Tree<E> tree;
+    private final ForkJoinPool pool;
+    private final int threshold; // Levels up to this size are expanded sequentially
+    private List<Position<E>> level; // The level being returned
+    private int index; // The next position of the level to return
+
+    public ParallelBFSIterator(Tree<E> tree, Position<E> start, ForkJoinPool pool, int threshold) {
+        this.tree = tree;
+        this.pool = pool;
+        this.threshold = Math.max(threshold, 1);
+        this.level = Collections.singletonList(start);
+        this.index = 0;
+    }
+
+    public ParallelBFSIterator(Tree<E> tree, ForkJoinPool pool, int threshold) {
+        this(tree, tree.root(), pool, threshold);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (index == level.size() && !level.isEmpty()) {
+            level = nextLevel(tree, level, null, pool, threshold);
+            index = 0;
+        }
+        return index < level.size();
+    }
+
+    @Override
+    public Position<E> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return level.get(index++);
+    }
+
+    /**
+     * Builds the level below a given one, in order. The children of every
+     * node are requested from the tree by the calling thread; levels with
+     * more than threshold nodes are then split into chunks of threshold nodes
+     * whose children are gathered in parallel.
+     *
+     * @param <E> the type of elements stored in the tree
+     * @param tree the tree being traversed
+     * @param level the nodes of the current level
+     * @param action the action to run on every node of the current level, or
+     * null; it may run concurrently on different nodes
+     * @param pool the pool where the chunks are processed
+     * @param threshold the number of nodes per chunk
+     * @return the nodes of the next level
+     */
+    static <E> List<Position<E>> nextLevel(Tree<E> tree, List<Position<E>> level,
+            Consumer<? super Position<E>> action, ForkJoinPool pool, int threshold) {
+        List<Iterable<? extends Position<E>>> views = new ArrayList<>(level.size());
+        for (Position<E> node : level) {
+            views.add(tree.children(node));
+        }
+        int chunks = (level.size() + threshold - 1) / threshold;
+        List<List<Position<E>>> children = new ArrayList<>(Collections.nCopies(chunks, null));
+        LevelTask<E> task = new LevelTask<>(level, views, children, action, threshold, 0, chunks);
+        if (chunks > 1) {
+            pool.invoke(task);
+        } else if (chunks == 1) {
+            task.compute();
+        }
+        int total = 0;
+        for (List<Position<E>> c : children) {
+            total += c.size();
+        }
+        List<Position<E>> next = new ArrayList<>(total);
+        for (List<Position<E>> c : children) {
+            next.addAll(c);
+        }
+        return next;
+    }
+}
@@ -0,0 +1,89 @@
+package material.tree.iterator;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import material.tree.Position;
+import material.tree.Tree;
+
+/**
+ * Factory for creating breadth-first iterators that expand wide levels in
+ * parallel. It also offers a level-synchronous visitor, which runs an action
+ * on every node of a level in parallel and only starts a level when the
+ * previous one has been completely visited.
+ *
+ * @param <E> the type of the elements in the tree
+ */
+public class ParallelBFSIteratorFactory<E> implements TreeIteratorFactory<E> {
+
+    /**
+     * Default number of nodes of a level processed by each parallel chunk.
+     */
+    public static final int DEFAULT_THRESHOLD = 1024;
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    /**
+     * Creates a factory that uses the common ForkJoinPool.
+     */
+    public ParallelBFSIteratorFactory() {
+        this(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Creates a factory that uses a given pool.
+     *
+     * @param pool the pool where the levels are expanded
+     * @param threshold the number of nodes of a level processed by each
+     * parallel chunk; smaller levels are expanded by the calling thread
+     */
+    public ParallelBFSIteratorFactory(ForkJoinPool pool, int threshold) {
+        this.pool = pool;
+        this.threshold = Math.max(threshold, 1);
+    }
+
+    @Override
+    public Iterator<Position<E>> createIterator(Tree<E> tree) {
+        return new ParallelBFSIterator<>(tree, pool, threshold);
+    }
+
+    @Override
+    public Iterator<Position<E>> createIterator(Tree<E> tree, Position<E> pos) {
+        return new ParallelBFSIterator<>(tree, pos, pool, threshold);
+    }
+
+    /**
+     * Visits the subtree rooted at a given position level by level. The nodes
+     * of a level are visited in parallel, in no particular order, and every
+     * node of a level is visited before any node of the next one. The tree
+     * must not be modified during the visit.
+     *
+     * @param tree the tree to visit
+     * @param pos the root of the subtree to visit
+     * @param action the action to run on every node, which must be
+     * thread-safe; it must not call methods of a tree whose reads are not
+     * thread-safe, such as {@link material.tree.LinkedTree}
+     */
+    public void forEachLevel(Tree<E> tree, Position<E> pos, Consumer<? super Position<E>> action) {
+        List<Position<E>> level = Collections.singletonList(pos);
+        while (!level.isEmpty()) {
+            level = ParallelBFSIterator.nextLevel(tree, level, action, pool, threshold);
+        }
+    }
+
+    /**
+     * Visits the whole tree level by level.
+     *
+     * @param tree the tree to visit
+     * @param action the action to run on every node, which must be thread-safe
+     * @see #forEachLevel(Tree, Position, Consumer)
+     */
+    public void forEachLevel(Tree<E> tree, Consumer<? super Position<E>> action) {
+        if (!tree.isEmpty()) {
+            forEachLevel(tree, tree.root(), action);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package material.tree.iterator;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import material.tree.NavigableTree;
+import material.tree.Position;
+import material.tree.Tree;
+
+/**
+ * Depth-first post-order iterator for trees.
+ *
+ * On a {@link NavigableTree} the traversal follows the first-child, next-sibling
+ * and parent links, so it keeps a single cursor and allocates nothing per
+ * node. On any other tree it falls back to an explicit stack of pending
+ * nodes and their children iterators, whose size is bounded by the depth of
+ * the tree.
+ *
+ * @param <E> the type of elements stored in the tree
+ */
+public class PostorderIterator<E> implements Iterator<Position<E>> {
+
+    private final Tree<E> tree;
+    private final NavigableTree<E> navigable; // The tree, if it exposes sibling links
+    private final Position<E> start;
+    private final Deque<Position<E>> nodeStack; // Only used without sibling links
+    private final Deque<Iterator<? extends Position<E>>> childrenStack; // Only used without sibling links
+    private Position<E> next;
+
+    public PostorderIterator(Tree<E> tree, Position<E> start) {
+        this.tree = tree;
+        this.start = start;
+        if (tree instanceof NavigableTree) {
+            this.navigable = (NavigableTree<E>) tree;
+            this.nodeStack = null;
+            this.childrenStack = null;
+            this.next = leftmostLeaf(start);
+        } else {
+            this.navigable = null;
+            this.nodeStack = new ArrayDeque<>();
+            this.childrenStack = new ArrayDeque<>();
+            this.nodeStack.push(start);
+            this.childrenStack.push(tree.children(start).iterator());
+            this.next = advanceStack();
+        }
+    }
+
+    public PostorderIterator(Tree<E> tree) {
+        this(tree, tree.root());
+    }
+
+    @Override
+    public boolean hasNext() {
+        return (next != null);
+    }
+
+    @Override
+    public Position<E> next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        Position<E> aux = next;
+        next = (navigable != null) ? successorByLinks(aux) : advanceStack();
+        return aux;
+    }
+
+    /**
+     * Computes the post-order successor of a node following the tree links.
+     */
+    private Position<E> successorByLinks(Position<E> node) {
+        if (node.equals(start)) {
+            return null;
+        }
+        Position<E> sibling = navigable.nextSibling(node);
+        return (sibling != null) ? leftmostLeaf(sibling) : tree.parent(node);
+    }
+
+    private Position<E> leftmostLeaf(Position<E> node) {
+        Position<E> child = navigable.firstChild(node);
+        while (child != null) {
+            node = child;
+            child = navigable.firstChild(node);
+        }
+        return node;
+    }
+
+    /**
+     * Descends through the pending children until a node whose children have
+     * all been visited is found, and pops it.
+     */
+    private Position<E> advanceStack() {
+        while (!nodeStack.isEmpty()) {
+            Iterator<? extends Position<E>> top = childrenStack.peek();
+            if (top.hasNext()) {
+                Position<E> child = top.next();
+                nodeStack.push(child);
+                childrenStack.push(tree.children(child).iterator());
+            } else {
+                childrenStack.pop();
+                return nodeStack.pop();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,25 @@
+package material.tree.iterator;
+
+import java.util.Iterator;
+import material.tree.Position;
+import material.tree.Tree;
+
+/**
+ * Factory for creating postorder iterators
+ * @param <E> the type of the elements in the tree
+ */
+public class PostorderIteratorFactory<E> implements TreeIteratorFactory<E> {
+
+    @Override
+    public Iterator<Position<E>> createIterator(Tree<E> tree) {
+        return new PostorderIterator<>(tree);
+    }
+
+    @Override
+    public Iterator<Position<E>> createIterator(Tree<E> tree, Position<E> pos) {
+        return new PostorderIterator<>(tree,pos);
+    }
+    
+    
+    
+}
@@ -0,0 +1,94 @@
+package material.tree.iterator;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import material.tree.NavigableTree;
+import material.tree.Position;
+import material.tree.Tree;
+
+/**
+ * Depth-first pre-order iterator for trees.
+ *
+ * On a {@link NavigableTree} the traversal follows the first-child, next-sibling
+ * and parent links, so it keeps a single cursor and allocates nothing per
+ * node. On any other tree it falls back to an explicit stack of children
+ * iterators, whose size is bounded by the depth of the tree.
+ *
+ * @param <E> the type of elements stored in the tree
+ */
+public class PreorderIterator<E> implements Iterator<Position<E>> {
+
+    private final Tree<E> tree;
+    private final NavigableTree<E> navigable; // The tree, if it exposes sibling links
+    private final Position<E> start;
+    private final Deque<Iterator<? extends Position<E>>> stack; // Only used without sibling links
+    private Position<E> next;
+
+    public PreorderIterator(Tree<E> tree, Position<E> start) {
+        this.tree = tree;
+        this.start = start;
+        this.next = start;
+        if (tree instanceof NavigableTree) {
+            this.navigable = (NavigableTree<E>) tree;
+            this.stack = null;
+        } else {
+            this.navigable = null;
+            this.stack = new ArrayDeque<>();
+        }
+    }
+
+    public PreorderIterator(Tree<E> tree) {
+        this(tree, tree.root());
+    }
+
+    @Override
+    public boolean hasNext() {
+        return (next != null);
+    }
+
+    @Override
+    public Position<E> next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        Position<E> aux = next;
+        next = (navigable != null) ? successorByLinks(aux) : successorByStack(aux);
+        return aux;
+    }
+
+    /**
+     * Computes the pre-order successor of a node following the tree links.
+     */
+    private Position<E> successorByLinks(Position<E> node) {
+        Position<E> child = navigable.firstChild(node);
+        if (child != null) {
+            return child;
+        }
+        Position<E> aux = node;
+        while (!aux.equals(start)) {
+            Position<E> sibling = navigable.nextSibling(aux);
+            if (sibling != null) {
+                return sibling;
+            }
+            aux = tree.parent(aux);
+        }
+        return null;
+    }
+
+    /**
+     * Computes the pre-order successor of a node using the explicit stack.
+     */
+    private Position<E> successorByStack(Position<E> node) {
+        stack.push(tree.children(node).iterator());
+        while (!stack.isEmpty()) {
+            Iterator<? extends Position<E>> top = stack.peek();
+            if (top.hasNext()) {
+                return top.next();
+            }
+            stack.pop();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,25 @@
+package material.tree.iterator;
+
+import java.util.Iterator;
+import material.tree.Position;
+import material.tree.Tree;
+
+/**
+ * Factory for creating preorder iterators
+ * @param <E> the type of the elements in the tree
+ */
+public class PreorderIteratorFactory<E> implements TreeIteratorFactory<E> {
+
+    @Override
+    public Iterator<Position<E>> createIterator(Tree<E> tree) {
+        return new PreorderIterator<>(tree);
+    }
+
+    @Override
+    public Iterator<Position<E>> createIterator(Tree<E> tree, Position<E> pos) {
+        return new PreorderIterator<>(tree,pos);
+    }
+    
+    
+    
+}
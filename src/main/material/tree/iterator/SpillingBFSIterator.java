@@ -0,0 +1,260 @@
+package material.tree.iterator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import material.tree.Position;
+import material.tree.PositionCodec;
+import material.tree.Tree;
+
+/**
+ * Breadth-first iterator whose queue holds at most a fixed number of
+ * positions in memory and keeps the rest in a temporary file.
+ *
+ * Queued positions are stored as the long codes of a {@link PositionCodec},
+ * 8 bytes each, in two arrays of half the capacity: one with the oldest
+ * positions, consumed by {@link #next()}, and one with the newest, filled
+ * with the children of the visited nodes. When the newest array is full it
+ * is appended to the file with one sequential write; when the oldest one is
+ * empty it is refilled with one sequential read from the file, or takes the
+ * newest array if nothing is on disk. The queue therefore stays in exact
+ * first-in first-out order, and the file is deleted whenever it has been
+ * read completely, so it never holds more than the positions waiting in it.
+ *
+ * The file is only open during each block read or write, so an iterator that
+ * is abandoned before the end holds no open channel. The file is deleted when
+ * the iterator is exhausted or closed, or, if it is just dropped, when it is
+ * garbage collected. Positions are decoded when they are returned, so the
+ * tree must not be modified while iterating.
+ *
+ * @param <E> the type of elements stored in the tree
+ */
+public class SpillingBFSIterator<E> implements Iterator<Position<E>>, AutoCloseable {
+
+    private static final Cleaner CLEANER = Cleaner.create(); // Deletes the files of dropped iterators
+
+    /**
+     * Deletes a spill file. It holds no reference to the iterator, so it can
+     * run once the iterator is unreachable.
+     */
+    private static final class Deletion implements Runnable {
+
+        private final Path file; // The spill file
+
+        Deletion(Path file) {
+            this.file = file;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ex) {
+                // Left in the temporary directory
+            }
+        }
+    }
+
+    private final Tree<E> tree; // The tree being iterated
+    private final PositionCodec<E> codec; // Converts positions to codes and back
+    private final Path directory; // Where the spill file is created
+    private long[] head; // The oldest queued codes, from headStart to headEnd
+    private int headStart; // Next code to return
+    private int headEnd; // End of the valid codes of head
+    private long[] tail; // The newest queued codes
+    private int tailSize; // Number of valid codes of tail
+    private Path spill; // The spill file, null while nothing is on disk
+    private Cleaner.Cleanable deletion; // Deletes the spill file
+    private ByteBuffer buffer; // Transfer buffer of one array of codes, null until needed
+    private long readOffset; // Offset in the file of the oldest spilled code
+    private long writeOffset; // Offset in the file after the newest spilled code
+    private long spilled; // Number of codes written to the file, for statistics
+
+    /**
+     * Creates an iterator over the subtree rooted at a given position.
+     *
+     * @param tree the tree to iterate
+     * @param start the root of the subtree
+     * @param codec the codec of the positions of the tree
+     * @param capacity the maximum number of positions kept in memory, at
+     * least 2
+     * @param directory the directory of the spill file
+     * @throws IllegalArgumentException if the capacity is lower than 2
+     */
+    public SpillingBFSIterator(Tree<E> tree, Position<E> start, PositionCodec<E> codec, int capacity,
+            Path directory) throws IllegalArgumentException {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("The capacity must be at least 2");
+        }
+        this.tree = tree;
+        this.codec = codec;
+        this.directory = directory;
+        this.head = new long[capacity / 2];
+        this.tail = new long[capacity / 2];
+        this.tail[tailSize++] = codec.encode(start);
+    }
+
+    /**
+     * Creates an iterator over the whole tree.
+     *
+     * @param tree the tree to iterate
+     * @param codec the codec of the positions of the tree
+     * @param capacity the maximum number of positions kept in memory, at
+     * least 2
+     * @param directory the directory of the spill file
+     * @throws IllegalArgumentException if the capacity is lower than 2
+     */
+    public SpillingBFSIterator(Tree<E> tree, PositionCodec<E> codec, int capacity, Path directory)
+            throws IllegalArgumentException {
+        this(tree, tree.root(), codec, capacity, directory);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return headStart < headEnd || readOffset < writeOffset || tailSize > 0;
+    }
+
+    @Override
+    public Position<E> next() {
+        if (headStart == headEnd) {
+            refill();
+        }
+        Position<E> aux = codec.decode(head[headStart++]);
+        for (Position<E> node : tree.children(aux)) {
+            enqueue(codec.encode(node));
+        }
+        if (!hasNext()) {
+            close();
+        }
+        return aux;
+    }
+
+    /**
+     * Consults the number of positions written to disk so far.
+     *
+     * @return the number of spilled positions
+     */
+    public long spilledPositions() {
+        return spilled;
+    }
+
+    /**
+     * Deletes the spill file. The iterator must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        deleteSpill();
+    }
+
+    /**
+     * Deletes the spill file, if any, leaving nothing on disk.
+     */
+    private void deleteSpill() {
+        if (spill != null) {
+            deletion.clean();
+            spill = null;
+            deletion = null;
+            readOffset = 0;
+            writeOffset = 0;
+        }
+    }
+
+    /**
+     * Appends a code at the end of the queue, writing the newest array to
+     * the file if it is full.
+     */
+    private void enqueue(long code) {
+        if (tailSize == tail.length) {
+            write();
+        }
+        tail[tailSize++] = code;
+    }
+
+    /**
+     * Moves the oldest codes that are not in memory to the head array.
+     */
+    private void refill() {
+        if (readOffset == writeOffset) {
+            if (tailSize == 0) {
+                throw new NoSuchElementException();
+            }
+            long[] aux = head;
+            head = tail;
+            headEnd = tailSize;
+            tail = aux;
+            tailSize = 0;
+        } else {
+            headEnd = read();
+        }
+        headStart = 0;
+    }
+
+    /**
+     * Appends the newest array to the spill file.
+     */
+    private void write() {
+        try {
+            if (spill == null) {
+                spill = Files.createTempFile(directory, "bfs-", ".spill");
+                deletion = CLEANER.register(this, new Deletion(spill));
+            }
+            if (buffer == null) {
+                buffer = ByteBuffer.allocateDirect(tail.length * Long.BYTES);
+            }
+            buffer.clear();
+            buffer.asLongBuffer().put(tail, 0, tailSize);
+            buffer.limit(tailSize * Long.BYTES);
+            try (FileChannel channel = FileChannel.open(spill, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    writeOffset += channel.write(buffer, writeOffset);
+                }
+            }
+            spilled += tailSize;
+            tailSize = 0;
+        } catch (IOException ex) {
+            close();
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Reads the oldest spilled codes into the head array, deleting the file
+     * once it has been read completely.
+     *
+     * @return the number of codes read
+     */
+    private int read() {
+        try {
+            int count = (int) Math.min(head.length, (writeOffset - readOffset) / Long.BYTES);
+            buffer.clear();
+            buffer.limit(count * Long.BYTES);
+            try (FileChannel channel = FileChannel.open(spill, StandardOpenOption.READ)) {
+                while (buffer.hasRemaining()) {
+                    int n = channel.read(buffer, readOffset + buffer.position());
+                    if (n < 0) {
+                        throw new IOException("The spill file is shorter than expected");
+                    }
+                }
+            }
+            buffer.flip();
+            LongBuffer codes = buffer.asLongBuffer();
+            codes.get(head, 0, count);
+            readOffset += (long) count * Long.BYTES;
+            if (readOffset == writeOffset) {
+                deleteSpill();
+            }
+            return count;
+        } catch (IOException ex) {
+            close();
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package material.tree.iterator;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import material.tree.Position;
+import material.tree.PositionCodec;
+import material.tree.Tree;
+
+/**
+ * Factory for creating breadth-first iterators with a bounded queue, which
+ * keep at most a given number of positions in memory and spill the rest of
+ * the frontier to a temporary file. It needs the {@link PositionCodec} of the
+ * tree, so a factory serves a single tree. Trees without a codec, such as
+ * {@link material.tree.LinkedTree}, can use {@link BoundedBFSIteratorFactory},
+ * which explains why LinkedTree has none.
+ *
+ * @param <E> the type of the elements in the tree
+ * @see SpillingBFSIterator
+ */
+public class SpillingBFSIteratorFactory<E> implements TreeIteratorFactory<E> {
+
+    /**
+     * Default maximum number of positions of the frontier kept in memory.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    private final PositionCodec<E> codec;
+    private final int capacity;
+    private final Path directory;
+
+    /**
+     * Creates a factory with the default capacity that spills to the
+     * temporary directory of the system.
+     *
+     * @param codec the codec of the positions of the tree
+     */
+    public SpillingBFSIteratorFactory(PositionCodec<E> codec) {
+        this(codec, DEFAULT_CAPACITY, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Creates a factory.
+     *
+     * @param codec the codec of the positions of the tree
+     * @param capacity the maximum number of positions kept in memory by each
+     * iterator, at least 2
+     * @param directory the directory of the spill files
+     * @throws IllegalArgumentException if the capacity is lower than 2
+     */
+    public SpillingBFSIteratorFactory(PositionCodec<E> codec, int capacity, Path directory)
+            throws IllegalArgumentException {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("The capacity must be at least 2");
+        }
+        this.codec = codec;
+        this.capacity = capacity;
+        this.directory = directory;
+    }
+
+    @Override
+    public Iterator<Position<E>> createIterator(Tree<E> tree) {
+        return new SpillingBFSIterator<>(tree, codec, capacity, directory);
+    }
+
+    @Override
+    public Iterator<Position<E>> createIterator(Tree<E> tree, Position<E> pos) {
+        return new SpillingBFSIterator<>(tree, pos, codec, capacity, directory);
+    }
+}
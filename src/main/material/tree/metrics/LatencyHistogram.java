@@ -0,0 +1,111 @@
+package material.tree.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies with one bucket per power of two nanoseconds, so
+ * recording is a constant number of atomic increments and the memory is
+ * fixed (64 buckets). Percentiles are therefore approximate: they report the
+ * upper bound of the bucket that contains them, which is at most twice the
+ * actual value. It may be recorded and read by different threads.
+ */
+public class LatencyHistogram {
+
+    private final AtomicLongArray buckets; // Bucket i counts latencies in [2^i, 2^(i+1)), bucket 0 also 0
+    private final LongAdder total; // The sum of all the latencies recorded
+
+    /**
+     * Creates an empty histogram.
+     */
+    public LatencyHistogram() {
+        this.buckets = new AtomicLongArray(Long.SIZE);
+        this.total = new LongAdder();
+    }
+
+    /**
+     * Adds a latency to the histogram.
+     *
+     * @param nanos the latency, in nanoseconds; negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        buckets.incrementAndGet(bucket(value));
+        total.add(value);
+    }
+
+    /**
+     * Consults the number of latencies recorded.
+     *
+     * @return the number of latencies
+     */
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Consults the mean of the latencies recorded.
+     *
+     * @return the mean latency in nanoseconds, or 0 if there is none
+     */
+    public long mean() {
+        long count = count();
+        return (count == 0) ? 0 : total.sum() / count;
+    }
+
+    /**
+     * Consults an approximate percentile of the latencies recorded.
+     *
+     * @param fraction the fraction of latencies that must be lower or equal,
+     * between 0 and 1 (0.99 for the 99th percentile)
+     * @return the upper bound of the bucket of the percentile, in
+     * nanoseconds, or 0 if there is no latency
+     * @throws IllegalArgumentException if the fraction is out of range
+     */
+    public long percentile(double fraction) throws IllegalArgumentException {
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("The fraction must be between 0 and 1");
+        }
+        long[] counts = new long[buckets.length()];
+        long count = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        int i = 0;
+        while (seen + counts[i] < rank) {
+            seen += counts[i];
+            i++;
+        }
+        return (i == Long.SIZE - 1) ? Long.MAX_VALUE : (2L << i) - 1;
+    }
+
+    /**
+     * Discards every latency recorded.
+     */
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        total.reset();
+    }
+
+    /**
+     * Computes the bucket of a latency.
+     *
+     * @param value a non-negative latency
+     * @return the index of the highest bit set, or 0 for a latency of 0
+     */
+    private static int bucket(long value) {
+        return (value == 0) ? 0 : Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    }
+}
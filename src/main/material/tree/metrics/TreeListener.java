@@ -0,0 +1,48 @@
+package material.tree.metrics;
+
+/**
+ * Receives measurements from an instrumented tree. A tree without listener
+ * takes no measurement at all, so instrumentation only costs a null check
+ * per operation while it is disabled.
+ *
+ * Listeners are called synchronously by the thread that modifies or iterates
+ * the tree, so they must be cheap. Only {@link #operationCompleted} is
+ * mandatory; the other events are ignored by default.
+ */
+public interface TreeListener {
+
+    /**
+     * Called after an operation finishes successfully.
+     *
+     * @param operation the operation
+     * @param nanos the time spent in the operation, in nanoseconds
+     * @param size the number of nodes of the tree after the operation, or an
+     * upper bound if the tree counts removed nodes lazily
+     */
+    public void operationCompleted(TreeOperation operation, long nanos, int size);
+
+    /**
+     * Called when a position is rejected by the tree because it is not valid,
+     * belongs to another tree or has been removed.
+     */
+    public default void positionRejected() {
+    }
+
+    /**
+     * Called when a node is added.
+     *
+     * @param depth the depth of the new node, the root having depth 0
+     */
+    public default void nodeAdded(int depth) {
+    }
+
+    /**
+     * Called when an iterator expands a node, queueing its children.
+     *
+     * @param children the number of children of the node
+     * @param queued the number of positions queued by the iterator after
+     * the expansion
+     */
+    public default void nodeExpanded(int children, int queued) {
+    }
+}
@@ -0,0 +1,191 @@
+package material.tree.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A listener that keeps a latency histogram per operation and the gauges of
+ * a tree: its size, the depth of the deepest node added, the largest fan-out
+ * and the longest queue seen by its iterators. Depth and fan-out are peaks
+ * observed while measuring: nodes are not revisited when the listener is
+ * attached, and removals do not lower them.
+ *
+ * Measurements may be read from any thread while the tree records them, in
+ * particular through JMX once {@link #register(String)} has been called. The
+ * same instance may be attached to several trees to aggregate them, although
+ * the size gauge then reports the last tree modified.
+ */
+public class TreeMetrics implements TreeListener, TreeMetricsMXBean {
+
+    private final Map<TreeOperation, LatencyHistogram> latencies; // One histogram per operation
+    private final LongAdder rejected; // Positions rejected by the tree
+    private final LongAccumulator maxDepth; // Deepest node added
+    private final LongAccumulator maxFanOut; // Largest fan-out expanded by an iterator
+    private final LongAccumulator peakQueue; // Longest iterator queue
+    private volatile int size; // Size of the tree after the last operation
+    private ObjectName name; // The name registered in JMX, null if not registered
+
+    /**
+     * Creates a listener without measurements.
+     */
+    public TreeMetrics() {
+        this.latencies = new EnumMap<>(TreeOperation.class);
+        for (TreeOperation operation : TreeOperation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+        }
+        this.rejected = new LongAdder();
+        this.maxDepth = new LongAccumulator(Math::max, 0);
+        this.maxFanOut = new LongAccumulator(Math::max, 0);
+        this.peakQueue = new LongAccumulator(Math::max, 0);
+    }
+
+    @Override
+    public void operationCompleted(TreeOperation operation, long nanos, int size) {
+        latencies.get(operation).record(nanos);
+        this.size = size;
+    }
+
+    @Override
+    public void positionRejected() {
+        rejected.increment();
+    }
+
+    @Override
+    public void nodeAdded(int depth) {
+        maxDepth.accumulate(depth);
+    }
+
+    @Override
+    public void nodeExpanded(int children, int queued) {
+        maxFanOut.accumulate(children);
+        peakQueue.accumulate(queued);
+    }
+
+    /**
+     * Accesses the latency histogram of an operation.
+     *
+     * @param operation the operation
+     * @return the histogram of the operation
+     */
+    public LatencyHistogram latencies(TreeOperation operation) {
+        return latencies.get(operation);
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public int getMaxDepth() {
+        return (int) maxDepth.get();
+    }
+
+    @Override
+    public int getMaxFanOut() {
+        return (int) maxFanOut.get();
+    }
+
+    @Override
+    public int getPeakIteratorQueueDepth() {
+        return (int) peakQueue.get();
+    }
+
+    @Override
+    public long getRejectedPositions() {
+        return rejected.sum();
+    }
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        return summary(LatencyHistogram::count);
+    }
+
+    @Override
+    public Map<String, Long> getMeanLatencies() {
+        return summary(LatencyHistogram::mean);
+    }
+
+    @Override
+    public Map<String, Long> getP99Latencies() {
+        return summary(h -> h.percentile(0.99));
+    }
+
+    @Override
+    public Map<String, Long> getMaxLatencies() {
+        return summary(h -> h.percentile(1));
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : latencies.values()) {
+            histogram.reset();
+        }
+        rejected.reset();
+        maxDepth.reset();
+        maxFanOut.reset();
+        peakQueue.reset();
+    }
+
+    /**
+     * Publishes these metrics in the platform MBean server, under the name
+     * material.tree:type=TreeMetrics,name=(the given name).
+     *
+     * @param treeName the name that identifies the tree
+     * @return the name of the MBean
+     * @throws IllegalStateException if the metrics are already registered or
+     * the name is taken or not valid
+     */
+    public synchronized ObjectName register(String treeName) throws IllegalStateException {
+        if (name != null) {
+            throw new IllegalStateException("The metrics are already registered as " + name);
+        }
+        try {
+            ObjectName objectName = new ObjectName("material.tree:type=TreeMetrics,name=" + ObjectName.quote(treeName));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            name = objectName;
+            return name;
+        } catch (JMException ex) {
+            throw new IllegalStateException("Cannot register the metrics of " + treeName, ex);
+        }
+    }
+
+    /**
+     * Removes these metrics from the platform MBean server, if they were
+     * published.
+     */
+    public synchronized void unregister() {
+        if (name == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(name);
+        } catch (JMException ex) {
+            // Already unregistered by someone else
+        }
+        name = null;
+    }
+
+    /**
+     * Computes a figure of every operation.
+     *
+     * @param figure the function that computes the figure from a histogram
+     * @return the figure of every operation, in declaration order
+     */
+    private Map<String, Long> summary(ToLongFunction<LatencyHistogram> figure) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Map.Entry<TreeOperation, LatencyHistogram> entry : latencies.entrySet()) {
+            result.put(entry.getKey().name(), figure.applyAsLong(entry.getValue()));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,65 @@
+package material.tree.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link TreeMetrics}, published through JMX by
+ * {@link TreeMetrics#register(String)}. Maps are keyed by the name of a
+ * {@link TreeOperation}.
+ */
+public interface TreeMetricsMXBean {
+
+    /**
+     * @return the size of the tree after the last operation, as reported by
+     * the tree
+     */
+    public int getSize();
+
+    /**
+     * @return the depth of the deepest node added while measuring
+     */
+    public int getMaxDepth();
+
+    /**
+     * @return the largest number of children of a node expanded by an
+     * iterator while measuring
+     */
+    public int getMaxFanOut();
+
+    /**
+     * @return the largest number of positions queued by an iterator while
+     * measuring
+     */
+    public int getPeakIteratorQueueDepth();
+
+    /**
+     * @return the number of positions rejected by the tree
+     */
+    public long getRejectedPositions();
+
+    /**
+     * @return the number of operations completed, by operation
+     */
+    public Map<String, Long> getOperationCounts();
+
+    /**
+     * @return the mean latency in nanoseconds, by operation
+     */
+    public Map<String, Long> getMeanLatencies();
+
+    /**
+     * @return the approximate 99th percentile of the latency in
+     * nanoseconds, by operation
+     */
+    public Map<String, Long> getP99Latencies();
+
+    /**
+     * @return the approximate maximum latency in nanoseconds, by operation
+     */
+    public Map<String, Long> getMaxLatencies();
+
+    /**
+     * Discards every measurement.
+     */
+    public void reset();
+}
@@ -0,0 +1,21 @@
+package material.tree.metrics;
+
+/**
+ * The operations of a tree reported to a {@link TreeListener}.
+ */
+public enum TreeOperation {
+    /** Addition of a node, including the root */
+    ADD,
+    /** Removal of a subtree */
+    REMOVE,
+    /** Replacement of the element of a node */
+    REPLACE,
+    /** Exchange of the elements of two nodes */
+    SWAP,
+    /** Creation of an iterator over the tree */
+    ITERATOR,
+    /** Application of a batch of modifications */
+    BATCH,
+    /** Move, graft or split of a subtree */
+    MOVE
+}
@@ -0,0 +1,271 @@
+package material.tree.replication;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import material.tree.LinkedTree;
+import material.tree.Position;
+import material.tree.io.ElementCodec;
+import material.tree.iterator.PreorderIterator;
+
+/**
+ * Replays the entries of a {@link ChangeLog} into a replica of the recorded
+ * tree. The replica starts either empty, to follow a log recorded from an
+ * empty tree, or from a checkpoint written by
+ * {@link ChangeLog#checkpoint(java.io.OutputStream)}.
+ *
+ * Entries must be applied in order. Entries already covered by the replica
+ * (with a sequence number not greater than the one of the replica) are
+ * skipped, so a replica restored from a checkpoint can read the log from any
+ * earlier point; a gap in the sequence numbers is rejected. Each entry costs
+ * a hash lookup per identifier plus the operation on the tree, except a
+ * removal, which forgets the identifiers of the whole removed subtree.
+ *
+ * The replica must only be modified through the applier, or its identifiers
+ * would no longer match those of the log.
+ *
+ * @param <E> the type of the elements of the tree
+ */
+public class ChangeApplier<E> {
+
+    private final ElementCodec<E> codec; // Decodes the elements of the entries
+    private final LinkedTree<E> tree; // The replica
+    private final Map<Long, Position<E>> positions; // The node of every identifier
+    private final Map<Position<E>, Long> ids; // The identifier of every node
+    private long sequence; // The sequence number of the last entry applied
+
+    /**
+     * Creates an empty replica, which follows a log from its first entry.
+     *
+     * @param codec the codec used to decode the elements
+     */
+    public ChangeApplier(ElementCodec<E> codec) {
+        this.codec = codec;
+        this.tree = new LinkedTree<>();
+        this.positions = new HashMap<>();
+        this.ids = new IdentityHashMap<>();
+        this.sequence = 0;
+    }
+
+    /**
+     * Creates a replica from a checkpoint, which follows the log from the
+     * entry after the checkpoint. The tree is built in a single linear pass.
+     *
+     * @param codec the codec used to decode the elements
+     * @param checkpoint the stream with the checkpoint, which is read up to
+     * the end of the checkpoint but not closed
+     * @throws IOException if the checkpoint cannot be read or is malformed
+     */
+    public ChangeApplier(ElementCodec<E> codec, InputStream checkpoint) throws IOException {
+        this.codec = codec;
+        this.positions = new HashMap<>();
+        this.ids = new IdentityHashMap<>();
+        DataInputStream in = new DataInputStream(checkpoint);
+        if (in.readInt() != ChangeLog.CHECKPOINT_MAGIC) {
+            throw new IOException("Not a checkpoint");
+        }
+        this.sequence = TreeChange.readVarLong(in);
+        long size = TreeChange.readVarLong(in);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Too many nodes: " + size);
+        }
+        int n = (int) size;
+        long[] nodeIds = new long[n];
+        int[] parents = new int[n];
+        List<E> elements = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            nodeIds[i] = TreeChange.readVarLong(in);
+            parents[i] = (int) TreeChange.readVarLong(in) - 1;
+            elements.add(TreeChange.readElement(in, codec));
+        }
+        try {
+            this.tree = new LinkedTree<>(elements, parents);
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Malformed checkpoint", ex);
+        }
+        // The nodes were listed in pre-order, which the tree keeps
+        if (n > 0) {
+            int i = 0;
+            for (Iterator<Position<E>> it = new PreorderIterator<>(tree); it.hasNext(); i++) {
+                Position<E> p = it.next();
+                positions.put(nodeIds[i], p);
+                ids.put(p, nodeIds[i]);
+            }
+        }
+    }
+
+    /**
+     * Consults the replica. It must not be modified directly.
+     *
+     * @return the tree
+     */
+    public LinkedTree<E> getTree() {
+        return tree;
+    }
+
+    /**
+     * Consults the sequence number of the last entry applied, or of the
+     * checkpoint if no entry has been applied since.
+     *
+     * @return the sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Finds the node of the replica with a given identifier.
+     *
+     * @param id the identifier of the node
+     * @return the position of the node, or null if there is no such node
+     */
+    public Position<E> getPosition(long id) {
+        return positions.get(id);
+    }
+
+    /**
+     * Applies an entry of the log.
+     *
+     * @param change the entry
+     * @return TRUE if the entry was applied, FALSE if it was skipped because
+     * the replica already included it
+     * @throws IllegalStateException if entries are missing before this one,
+     * or if the entry refers to a node that does not exist
+     */
+    public boolean apply(TreeChange<E> change) throws IllegalStateException {
+        if (change.getSequence() <= sequence) {
+            return false;
+        }
+        if (change.getSequence() != sequence + 1) {
+            throw new IllegalStateException("Missing changes " + (sequence + 1) + " to "
+                    + (change.getSequence() - 1));
+        }
+        switch (change.getType()) {
+            case ADD_ROOT:
+                register(change.getNode(), tree.addRoot(change.getElement()));
+                break;
+            case ADD:
+                register(change.getNode(), tree.add(change.getElement(), lookup(change.getOther())));
+                break;
+            case REMOVE:
+                Position<E> removed = lookup(change.getNode());
+                for (Iterator<Position<E>> it = new PreorderIterator<>(tree, removed); it.hasNext();) {
+                    positions.remove(ids.remove(it.next()));
+                }
+                tree.remove(removed);
+                break;
+            case REPLACE:
+                tree.replace(lookup(change.getNode()), change.getElement());
+                break;
+            case SWAP:
+                tree.swapElements(lookup(change.getNode()), lookup(change.getOther()));
+                break;
+            case MOVE:
+                tree.moveSubtree(lookup(change.getNode()), lookup(change.getOther()));
+                break;
+        }
+        sequence = change.getSequence();
+        return true;
+    }
+
+    /**
+     * Applies every entry read from a stream, up to its end.
+     *
+     * @param stream the stream with the entries in binary form
+     * @return the number of entries applied
+     * @throws IOException if the entries cannot be read or the last one is
+     * truncated
+     * @throws IllegalStateException if entries are missing or refer to nodes
+     * that do not exist
+     */
+    public int apply(InputStream stream) throws IOException, IllegalStateException {
+        DataInputStream in = new DataInputStream(new EntrySource(stream));
+        int applied = 0;
+        for (TreeChange<E> change = TreeChange.readFrom(in, codec); change != null;
+                change = TreeChange.readFrom(in, codec)) {
+            if (apply(change)) {
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Buffered reader of the entries. Unlike BufferedInputStream, its methods
+     * are not synchronized, which matters because entries are decoded a byte
+     * at a time. The stream is read up to its end anyway, so reading ahead
+     * loses nothing.
+     */
+    private static final class EntrySource extends InputStream {
+
+        private final InputStream stream; // The source of the entries
+        private final byte[] buffer = new byte[1 << 13]; // The bytes read ahead
+        private int position; // The next byte of the buffer
+        private int count; // The number of bytes in the buffer
+
+        EntrySource(InputStream stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position == count && !fill()) {
+                return -1;
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position == count && !fill()) {
+                return -1;
+            }
+            int n = Math.min(len, count - position);
+            System.arraycopy(buffer, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        private boolean fill() throws IOException {
+            count = stream.read(buffer, 0, buffer.length);
+            position = 0;
+            if (count < 0) {
+                count = 0;
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Records the identifier of a new node.
+     */
+    private void register(long id, Position<E> p) {
+        positions.put(id, p);
+        ids.put(p, id);
+    }
+
+    /**
+     * Finds the node with a given identifier.
+     *
+     * @param id the identifier
+     * @return the position of the node
+     * @throws IllegalStateException if there is no node with that identifier
+     */
+    private Position<E> lookup(long id) throws IllegalStateException {
+        Position<E> p = positions.get(id);
+        if (p == null) {
+            throw new IllegalStateException("Unknown node " + id);
+        }
+        return p;
+    }
+}
@@ -0,0 +1,328 @@
+package material.tree.replication;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Consumer;
+import material.tree.LinkedTree;
+import material.tree.Position;
+import material.tree.TreeChangeListener;
+import material.tree.io.ElementCodec;
+import material.tree.iterator.PreorderIterator;
+
+/**
+ * Records every modification of a {@link LinkedTree} as an ordered stream of
+ * {@link TreeChange} entries, so that a {@link ChangeApplier} can replay them
+ * into another tree, possibly in another process.
+ *
+ * Nodes are named by stable identifiers: positive numbers assigned in
+ * creation order and never reused, so they survive element swaps and
+ * replacements and mean the same node on both sides of the stream. The nodes
+ * already in the tree when the log is attached are numbered in pre-order.
+ * Keeping the identifiers costs one IdentityHashMap entry per node (about 40
+ * bytes with the boxed identifier), and each modification costs a map update
+ * and the encoding of one entry, except a removal, which forgets the
+ * identifiers of the whole removed subtree.
+ *
+ * A checkpoint is a snapshot of the tree that lets a new replica catch up
+ * without replaying the log from the start: it restores the checkpoint and
+ * then applies the entries whose sequence number is greater than the one of
+ * the checkpoint. Checkpoints are written on demand by
+ * {@link #checkpoint(OutputStream)}, so a writer that checkpoints
+ * periodically calls it between modifications once
+ * {@link #getChangesSinceCheckpoint()} reaches its interval. The layout of a
+ * checkpoint is:
+ *
+ * <pre>
+ * magic     int, "TCKP"
+ * sequence  varint, the last change included
+ * size      varint, the number of nodes
+ * nodes     size entries in pre-order: identifier (varint), pre-order index
+ *           of the parent plus one (varint, 0 for the root) and the element
+ *           (varint length followed by the encoded element)
+ * </pre>
+ *
+ * @param <E> the type of the elements of the tree
+ */
+public class ChangeLog<E> implements TreeChangeListener<E>, Closeable {
+
+    static final int CHECKPOINT_MAGIC = 0x54434B50; // "TCKP"
+
+    private final LinkedTree<E> tree; // The recorded tree
+    private final ElementCodec<E> codec; // Encodes the elements of entries and checkpoints
+    private final Consumer<? super TreeChange<E>> sink; // Receives every entry
+    private final DataOutputStream out; // The stream written by the sink, null for other sinks
+    private Map<Position<E>, Long> ids; // The identifier of every node of the tree
+    private long nextId; // The identifier of the next new node
+    private long sequence; // The sequence number of the last entry
+    private long checkpointSequence; // The sequence number of the last checkpoint
+
+    /**
+     * Creates a log that writes its entries, in binary form, to a stream,
+     * and starts recording the modifications of a tree.
+     *
+     * @param tree the tree to record
+     * @param codec the codec used to encode the elements
+     * @param stream the destination of the entries; it is buffered, so the
+     * entries are only guaranteed to reach it after {@link #flush()}
+     */
+    public ChangeLog(LinkedTree<E> tree, ElementCodec<E> codec, OutputStream stream) {
+        this(tree, codec, null, new DataOutputStream(new EntryBuffer(stream)));
+    }
+
+    /**
+     * Creates a log that passes its entries to a consumer, and starts
+     * recording the modifications of a tree.
+     *
+     * @param tree the tree to record
+     * @param codec the codec used to encode the elements of checkpoints
+     * @param sink the consumer of the entries, called synchronously by the
+     * thread that modifies the tree
+     */
+    public ChangeLog(LinkedTree<E> tree, ElementCodec<E> codec, Consumer<? super TreeChange<E>> sink) {
+        this(tree, codec, sink, null);
+    }
+
+    private ChangeLog(LinkedTree<E> tree, ElementCodec<E> codec, Consumer<? super TreeChange<E>> sink,
+            DataOutputStream out) {
+        this.tree = tree;
+        this.codec = codec;
+        this.out = out;
+        this.sink = (sink != null) ? sink : this::write;
+        this.ids = new IdentityHashMap<>();
+        this.nextId = 1;
+        this.sequence = 0;
+        this.checkpointSequence = 0;
+        if (!tree.isEmpty()) {
+            for (Iterator<Position<E>> it = new PreorderIterator<>(tree); it.hasNext();) {
+                ids.put(it.next(), nextId++);
+            }
+        }
+        tree.setChangeListener(this);
+    }
+
+    /**
+     * Consults the identifier of a node.
+     *
+     * @param p the position of the node
+     * @return the identifier of the node, or 0 if it is not in the tree
+     */
+    public long getId(Position<E> p) {
+        Long id = ids.get(p);
+        return (id == null) ? 0 : id;
+    }
+
+    /**
+     * Consults the sequence number of the last entry of the log.
+     *
+     * @return the sequence number, 0 if nothing has been recorded
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Consults the number of entries recorded since the last checkpoint, or
+     * since the log was created if no checkpoint has been written.
+     *
+     * @return the number of entries not covered by a checkpoint
+     */
+    public long getChangesSinceCheckpoint() {
+        return sequence - checkpointSequence;
+    }
+
+    @Override
+    public void rootAdded(Position<E> root) {
+        long id = nextId++;
+        ids.put(root, id);
+        emit(TreeChange.Type.ADD_ROOT, id, 0, root.getElement());
+    }
+
+    @Override
+    public void nodeAdded(Position<E> node, Position<E> parent) {
+        long id = nextId++;
+        ids.put(node, id);
+        emit(TreeChange.Type.ADD, id, ids.get(parent), node.getElement());
+    }
+
+    @Override
+    public void nodeRemoving(Position<E> node) {
+        long id = ids.get(node);
+        for (Iterator<Position<E>> it = new PreorderIterator<>(tree, node); it.hasNext();) {
+            ids.remove(it.next());
+        }
+        emit(TreeChange.Type.REMOVE, id, 0, null);
+    }
+
+    @Override
+    public void elementReplaced(Position<E> node) {
+        emit(TreeChange.Type.REPLACE, ids.get(node), 0, node.getElement());
+    }
+
+    @Override
+    public void elementsSwapped(Position<E> p1, Position<E> p2) {
+        emit(TreeChange.Type.SWAP, ids.get(p1), ids.get(p2), null);
+    }
+
+    @Override
+    public void subtreeMoved(Position<E> node, Position<E> parent) {
+        emit(TreeChange.Type.MOVE, ids.get(node), ids.get(parent), null);
+    }
+
+    @Override
+    public void positionsRemapped(Map<Position<E>, Position<E>> mapping) {
+        Map<Position<E>, Long> remapped = new IdentityHashMap<>(ids.size());
+        for (Map.Entry<Position<E>, Long> entry : ids.entrySet()) {
+            remapped.put(mapping.get(entry.getKey()), entry.getValue());
+        }
+        ids = remapped;
+    }
+
+    /**
+     * Writes a checkpoint of the tree, in the layout described above, after
+     * flushing the entries recorded so far. It must not be called while the
+     * tree is being modified.
+     *
+     * @param stream the destination of the checkpoint, which is flushed but
+     * not closed
+     * @return the sequence number of the last change included
+     * @throws IOException if the checkpoint or the pending entries cannot be
+     * written
+     */
+    public long checkpoint(OutputStream stream) throws IOException {
+        flush();
+        DataOutputStream data = new DataOutputStream(new EntryBuffer(stream));
+        data.writeInt(CHECKPOINT_MAGIC);
+        TreeChange.writeVarLong(data, sequence);
+        TreeChange.writeVarLong(data, tree.size());
+        if (!tree.isEmpty()) {
+            // The open ancestors of the current node and their pre-order
+            // indices, to find the index of every parent without a map
+            Deque<Position<E>> ancestors = new ArrayDeque<>();
+            Deque<Integer> indices = new ArrayDeque<>();
+            int index = 0;
+            for (Iterator<Position<E>> it = new PreorderIterator<>(tree); it.hasNext(); index++) {
+                Position<E> node = it.next();
+                int parentIndex = -1;
+                if (index > 0) {
+                    Position<E> parent = tree.parent(node);
+                    while (ancestors.peek() != parent) {
+                        ancestors.pop();
+                        indices.pop();
+                    }
+                    parentIndex = indices.peek();
+                }
+                TreeChange.writeVarLong(data, ids.get(node));
+                TreeChange.writeVarLong(data, parentIndex + 1);
+                TreeChange.writeElement(data, codec, node.getElement());
+                ancestors.push(node);
+                indices.push(index);
+            }
+        }
+        data.flush();
+        checkpointSequence = sequence;
+        return sequence;
+    }
+
+    /**
+     * Pushes the buffered entries to the stream of the log. It does nothing
+     * if the entries are passed to a consumer.
+     *
+     * @throws IOException if the entries cannot be written
+     */
+    public void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    /**
+     * Stops recording the modifications of the tree and flushes the pending
+     * entries. The stream of the log is not closed.
+     *
+     * @throws IOException if the entries cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        tree.setChangeListener(null);
+        flush();
+    }
+
+    /**
+     * Creates the next entry and passes it to the sink.
+     */
+    private void emit(TreeChange.Type type, long node, long other, E element) {
+        sink.accept(new TreeChange<>(type, ++sequence, node, other, element));
+    }
+
+    /**
+     * Buffer of the encoded entries and checkpoints. Unlike
+     * BufferedOutputStream, its methods are not synchronized, which matters
+     * because entries are encoded a byte at a time.
+     */
+    private static final class EntryBuffer extends OutputStream {
+
+        private final OutputStream stream; // The destination of the entries
+        private final byte[] buffer = new byte[1 << 13]; // The entries not written yet
+        private int count; // The number of bytes in the buffer
+
+        EntryBuffer(OutputStream stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                drain();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > buffer.length - count) {
+                drain();
+                if (len > buffer.length) {
+                    stream.write(b, off, len);
+                    return;
+                }
+            }
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+            stream.flush();
+        }
+
+        private void drain() throws IOException {
+            if (count > 0) {
+                stream.write(buffer, 0, count);
+                count = 0;
+            }
+        }
+    }
+
+    /**
+     * Writes an entry to the stream of the log.
+     *
+     * @param change the entry
+     * @throws UncheckedIOException if the entry cannot be written
+     */
+    private void write(TreeChange<E> change) {
+        try {
+            change.writeTo(out, codec);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package material.tree.replication;
+
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import material.tree.io.ElementCodec;
+
+/**
+ * A single entry of a change log: one modification of a tree, with the
+ * stable identifiers of the nodes involved and the sequence number that
+ * orders it in the log.
+ *
+ * Entries are written in a compact binary form, with every number stored as
+ * a variable-length integer (seven bits per byte):
+ *
+ * <pre>
+ * type      one byte, the ordinal of {@link Type}
+ * sequence  varint
+ * node      varint, identifier of the node
+ * other     varint, identifier of the parent (ADD, MOVE) or of the
+ *           second node (SWAP); absent for the other types
+ * element   varint length followed by the encoded element (ADD_ROOT, ADD
+ *           and REPLACE); absent for the other types
+ * </pre>
+ *
+ * @param <E> the type of the elements of the tree
+ */
+public final class TreeChange<E> {
+
+    /**
+     * The kinds of modification.
+     */
+    public enum Type {
+        /** A root added to an empty tree */
+        ADD_ROOT,
+        /** A node added as the last child of another one */
+        ADD,
+        /** A node removed with its subtree */
+        REMOVE,
+        /** The element of a node replaced */
+        REPLACE,
+        /** The elements of two nodes swapped */
+        SWAP,
+        /** A node moved, with its subtree, to be the last child of another one */
+        MOVE
+    }
+
+    private static final Type[] TYPES = Type.values();
+
+    private final Type type; // The kind of modification
+    private final long sequence; // The position of the change in the log, starting at 1
+    private final long node; // The identifier of the modified node
+    private final long other; // The parent (ADD, MOVE) or second node (SWAP), 0 otherwise
+    private final E element; // The new element (ADD_ROOT, ADD, REPLACE), null otherwise
+
+    /**
+     * Creates a change.
+     *
+     * @param type the kind of modification
+     * @param sequence the position of the change in the log
+     * @param node the identifier of the modified node
+     * @param other the identifier of the parent for ADD and MOVE, of the
+     * second node for SWAP, and 0 otherwise
+     * @param element the new element for ADD_ROOT, ADD and REPLACE, and null
+     * otherwise
+     */
+    public TreeChange(Type type, long sequence, long node, long other, E element) {
+        this.type = type;
+        this.sequence = sequence;
+        this.node = node;
+        this.other = other;
+        this.element = element;
+    }
+
+    /**
+     * Consults the kind of modification.
+     *
+     * @return the type of the change
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Consults the position of the change in the log.
+     *
+     * @return the sequence number, starting at 1
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Consults the identifier of the modified node.
+     *
+     * @return the identifier of the node
+     */
+    public long getNode() {
+        return node;
+    }
+
+    /**
+     * Consults the identifier of the second node involved in the change.
+     *
+     * @return the parent for ADD and MOVE, the second node for SWAP, and 0
+     * otherwise
+     */
+    public long getOther() {
+        return other;
+    }
+
+    /**
+     * Consults the element carried by the change.
+     *
+     * @return the new element for ADD_ROOT, ADD and REPLACE, and null
+     * otherwise
+     */
+    public E getElement() {
+        return element;
+    }
+
+    /**
+     * Writes the change in its binary form.
+     *
+     * @param out the destination
+     * @param codec the codec used to encode the element
+     * @throws IOException if the change cannot be written
+     */
+    public void writeTo(DataOutput out, ElementCodec<E> codec) throws IOException {
+        out.writeByte(type.ordinal());
+        writeVarLong(out, sequence);
+        writeVarLong(out, node);
+        if (hasOther(type)) {
+            writeVarLong(out, other);
+        }
+        if (type == Type.ADD_ROOT || type == Type.ADD || type == Type.REPLACE) {
+            writeElement(out, codec, element);
+        }
+    }
+
+    /**
+     * Reads a change written by {@link #writeTo(DataOutput, ElementCodec)}.
+     *
+     * @param <E> the type of the elements of the tree
+     * @param in the source
+     * @param codec the codec used to decode the element
+     * @return the change, or null if the source is at its end
+     * @throws IOException if the change cannot be read or is truncated
+     */
+    public static <E> TreeChange<E> readFrom(DataInputStream in, ElementCodec<E> codec) throws IOException {
+        int ordinal = in.read();
+        if (ordinal < 0) {
+            return null;
+        }
+        if (ordinal >= TYPES.length) {
+            throw new IOException("Unknown change type " + ordinal);
+        }
+        Type type = TYPES[ordinal];
+        long sequence = readVarLong(in);
+        long node = readVarLong(in);
+        long other = hasOther(type) ? readVarLong(in) : 0;
+        E element = null;
+        if (type == Type.ADD_ROOT || type == Type.ADD || type == Type.REPLACE) {
+            element = readElement(in, codec);
+        }
+        return new TreeChange<>(type, sequence, node, other, element);
+    }
+
+    /**
+     * Checks whether the changes of a type involve a second node.
+     */
+    private static boolean hasOther(Type type) {
+        return type == Type.ADD || type == Type.SWAP || type == Type.MOVE;
+    }
+
+    @Override
+    public String toString() {
+        return type + "#" + sequence + "(" + node + ", " + other + ", " + element + ")";
+    }
+
+    /**
+     * Writes a non-negative number with seven bits per byte, the lowest
+     * first, setting the high bit of every byte but the last.
+     *
+     * @param out the destination
+     * @param value the number
+     * @throws IOException if the number cannot be written
+     */
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Reads a number written by {@link #writeVarLong(DataOutput, long)}.
+     *
+     * @param in the source
+     * @return the number
+     * @throws IOException if the number cannot be read or is malformed
+     */
+    static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated change log");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed number in change log");
+    }
+
+    /**
+     * Writes an element preceded by the length of its encoding.
+     *
+     * @param <E> the type of the element
+     * @param out the destination
+     * @param codec the codec used to encode the element
+     * @param element the element
+     * @throws IOException if the element cannot be written
+     */
+    static <E> void writeElement(DataOutput out, ElementCodec<E> codec, E element) throws IOException {
+        byte[] bytes = codec.encode(element);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads an element written by
+     * {@link #writeElement(DataOutput, ElementCodec, Object)}.
+     *
+     * @param <E> the type of the element
+     * @param in the source
+     * @param codec the codec used to decode the element
+     * @return the element
+     * @throws IOException if the element cannot be read
+     */
+    static <E> E readElement(DataInputStream in, ElementCodec<E> codec) throws IOException {
+        long length = readVarLong(in);
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Element too long: " + length);
+        }
+        byte[] bytes = new byte[(int) length];
+        in.readFully(bytes);
+        return codec.decode(ByteBuffer.wrap(bytes));
+    }
+}
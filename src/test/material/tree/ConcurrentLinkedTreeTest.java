@@ -0,0 +1,141 @@
+package material.tree;
+
+import material.tree.iterator.BFSIterator;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Basic and stress tests for ConcurrentLinkedTree class
+ */
+public class ConcurrentLinkedTreeTest {
+
+    /**
+     * Test of the basic operations, as in LinkedTree.
+     */
+    @Test
+    public void testBasicOperations() {
+        ConcurrentLinkedTree<String> t = new ConcurrentLinkedTree<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", a);
+        Position<String> d = t.add("D", b);
+        assertEquals(4, t.size());
+        assertEquals(a, t.parent(b));
+        assertTrue(t.isInternal(b));
+        assertTrue(t.isLeaf(d));
+        t.swapElements(a, c);
+        assertEquals("C", a.getElement());
+        assertEquals("C", t.replace(a, "A"));
+        t.remove(b);
+        assertEquals(2, t.size());
+        try {
+            t.add("E", d);
+            fail("A descendant of a removed node must be rejected");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+    }
+
+    /**
+     * Test that an iterator keeps working while its nodes are removed.
+     */
+    @Test
+    public void testIteratorIsWeaklyConsistent() {
+        ConcurrentLinkedTree<String> t = new ConcurrentLinkedTree<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        t.add("C", b);
+        t.add("D", a);
+        Iterator<Position<String>> it = new BFSIterator<>(t);
+        assertEquals(a, it.next());
+        t.remove(b);
+        int count = 1;
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        assertEquals(4, count);
+    }
+
+    /**
+     * One writer adds and removes nodes while several readers traverse the
+     * tree; no reader may fail and the final size must match the structure.
+     */
+    @Test
+    public void testConcurrentReadersAndWriter() throws InterruptedException {
+        final ConcurrentLinkedTree<Integer> t = new ConcurrentLinkedTree<>();
+        final Position<Integer> root = t.addRoot(0);
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch started = new CountDownLatch(4);
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        while (!done.get()) {
+                            Iterator<Position<Integer>> it = new BFSIterator<>(t);
+                            while (it.hasNext()) {
+                                Position<Integer> p = it.next();
+                                assertNotNull(p.getElement());
+                                if (!t.isRoot(p) && t.isLeaf(p)) {
+                                    try {
+                                        t.children(t.parent(p));
+                                    } catch (IndexOutOfBoundsException ex) {
+                                        // the node was removed while being visited
+                                    }
+                                }
+                            }
+                        }
+                    } catch (Throwable ex) {
+                        failure.compareAndSet(null, ex);
+                    }
+                }
+            });
+            readers.add(reader);
+            reader.start();
+        }
+        started.await();
+        Random random = new Random(1);
+        List<Position<Integer>> nodes = new ArrayList<>();
+        nodes.add(root);
+        for (int i = 1; i < 20000; i++) {
+            if (nodes.size() > 1 && random.nextInt(4) == 0) {
+                Position<Integer> victim = nodes.remove(1 + random.nextInt(nodes.size() - 1));
+                try {
+                    t.remove(victim);
+                } catch (IllegalStateException ex) {
+                    // it was inside a subtree removed earlier
+                }
+            } else {
+                Position<Integer> parent = nodes.get(random.nextInt(nodes.size()));
+                try {
+                    nodes.add(t.add(i, parent));
+                } catch (IllegalStateException ex) {
+                    nodes.remove(parent);
+                }
+            }
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        int count = 0;
+        for (Iterator<Position<Integer>> it = t.iterator(); it.hasNext(); it.next()) {
+            count++;
+        }
+        assertEquals(t.size(), count);
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package material.tree;
+
+import material.tree.iterator.BFSIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Basic tests for LCRSTree2 class
+ */
+public class LCRSTree2Test {
+
+    /**
+     * Test of size method, of class LCRSTree2.
+     */
+    @Test
+    public void testSize() {
+        LCRSTree2<String> t = new LCRSTree2<>();
+        assertEquals(t.size(), 0);
+        Position<String> a = t.addRoot("A");
+        assertEquals(t.size(), 1);
+    }
+
+    /**
+     * Test of isEmpty method, of class LCRSTree2.
+     */
+    @Test
+    public void testIsEmpty() {
+        LCRSTree2<String> t = new LCRSTree2<>();
+        assertTrue(t.isEmpty());
+    }
+
+    /**
+     * Test of isInternal method, of class LCRSTree2.
+     */
+    @Test
+    public void testIsInternal() {
+        LCRSTree2<String> t = new LCRSTree2<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", a);
+        Position<String> d = t.add("D", b);
+        assertTrue(t.isInternal(b));
+    }
+
+    /**
+     * Test of isLeaf method, of class LCRSTree2.
+     */
+    @Test
+    public void testIsLeaf() {
+        LCRSTree2<String> t = new LCRSTree2<>();
+        Position<String> a = t.addRoot("A");
+        assertTrue(t.isLeaf(a));
+    }
+
+    /**
+     * Test of isRoot method, of class LCRSTree2.
+     */
+    @Test
+    public void testIsRoot() {
+        LCRSTree2<String> t = new LCRSTree2<>();
+        Position<String> a = t.addRoot("A");
+        assertTrue(t.isRoot(a));
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", a);
+        Position<String> d = t.add("D", b);
+        assertTrue(t.isRoot(a));
+    }
+
+    /**
+     * Test of root method, of class LCRSTree2.
+     */
+    @Test
+    public void testRoot() {
+        LCRSTree2<String> t = new LCRSTree2<>();
+        Position<String> a = t.addRoot("A");
+        assertEquals(t.root(), a);
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", a);
+        Position<String> d = t.add("D", b);
+        assertEquals(t.root(), a);
+    }
+    
+    /**
+     * Test of parent method, of class LCRSTree2.
+     */
+    @Test
+    public void testParent() {
+        LCRSTree2<String> t = new LCRSTree2<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", a);
+        Position<String> d = t.add("D", b);
+        assertEquals(t.parent(b), a);
+    }
+
+    /**
+     * Test of children method, of class LCRSTree2.
+     */
+    @Test
+    public void testChildren() {
+        LCRSTree2<String> t = new LCRSTree2<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", a);
+        Position<String> d = t.add("D", b);
+        Set<Position<String>> myChildren = new HashSet<>();
+        myChildren.add(b);
+        myChildren.add(c);
+        for (Position<String> node : t.children(a)) {
+            assertTrue(myChildren.contains(node));
+        }
+    }
+
+    /**
+     * Test of replace method, of class LCRSTree2.
+     */
+    @Test
+    public void testReplace() {
+        LCRSTree2<String> t = new LCRSTree2<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", a);
+        Position<String> d = t.add("D", b);
+        assertEquals(d.getElement(), "D");
+        t.replace(d, "nuevo");
+        assertEquals(d.getElement(), "nuevo");
+    }
+
+    
+    /**
+     * Test of addRoot method, of class LCRSTree2.
+     */
+    @Test
+    public void testAddRoot() {
+        LCRSTree2<String> t = new LCRSTree2<>();
+        Position<String> a = t.addRoot("A");
+        assertEquals(a, t.root());
+    }
+
+    /**
+     * Test of swapElements method, of class LCRSTree2.
+     */
+    @Test
+    public void testSwapElements() {
+        LCRSTree2<String> t = new LCRSTree2<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        t.swapElements(a, b);
+        assertEquals(b.getElement(), "A");
+        assertEquals(a.getElement(), "B");
+    }
+
+    /**
+     * Test of remove method, of class LCRSTree2.
+     */
+    @Test
+    public void testRemove() {
+        LCRSTree2<String> t = new LCRSTree2<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", a);
+        Position<String> d = t.add("D", b);
+        t.remove(d);
+        Iterator<Position<String>> it = new BFSIterator<>(t,t.root());
+        while (it.hasNext()) {
+            Position<String> node = it.next();
+            assertNotSame(node.getElement(),d);
+        }
+    }
+
+    /**
+     * Test that children are returned in insertion order, as in LinkedTree.
+     */
+    @Test
+    public void testChildrenOrder() {
+        LCRSTree2<String> t = new LCRSTree2<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", a);
+        Position<String> d = t.add("D", a);
+        List<Position<String>> order = new ArrayList<>();
+        for (Position<String> node : t.children(a)) {
+            order.add(node);
+        }
+        assertEquals(3, order.size());
+        assertEquals(b, order.get(0));
+        assertEquals(c, order.get(1));
+        assertEquals(d, order.get(2));
+    }
+
+    /**
+     * Test that removing an inner node updates the size and unlinks it.
+     */
+    @Test
+    public void testRemoveSubtree() {
+        LCRSTree2<String> t = new LCRSTree2<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", a);
+        t.add("D", b);
+        t.add("E", b);
+        t.remove(b);
+        assertEquals(2, t.size());
+        Iterator<? extends Position<String>> it = t.children(a).iterator();
+        assertEquals(c, it.next());
+        assertFalse(it.hasNext());
+    }
+
+    /**
+     * Test that released slots are reused and stale handles are rejected.
+     */
+    @Test
+    public void testRemoveRecyclesSlots() {
+        LCRSTree2<String> t = new LCRSTree2<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        t.add("D", b);
+        t.remove(b);
+        assertEquals(1, t.size());
+        Position<String> e = t.add("E", a);
+        assertEquals("E", e.getElement());
+        try {
+            t.isLeaf(b);
+            fail("A removed position must be rejected");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+    }
+
+    /**
+     * Test that compact keeps the structure of the tree.
+     */
+    @Test
+    public void testCompact() {
+        LCRSTree2<String> t = new LCRSTree2<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", a);
+        t.add("D", b);
+        t.add("E", c);
+        t.remove(b);
+        t.compact();
+        assertEquals(3, t.size());
+        List<String> order = new ArrayList<>();
+        for (Position<String> node : t) {
+            order.add(node.getElement());
+        }
+        assertEquals(Arrays.asList("A", "C", "E"), order);
+        try {
+            t.isLeaf(c);
+            fail("Positions taken before compact must be rejected");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+    }
+
+    /**
+     * Test that appending to a node with many children does not walk them,
+     * and that removing its first and last children keeps the order.
+     */
+    @Test(timeout = 10000)
+    public void testWideNode() {
+        LCRSTree2<Integer> t = new LCRSTree2<>();
+        Position<Integer> root = t.addRoot(-1);
+        List<Position<Integer>> children = new ArrayList<>();
+        for (int i = 0; i < 200000; i++) {
+            children.add(t.add(i, root));
+        }
+        t.remove(children.get(199999));
+        t.remove(children.get(0));
+        t.remove(children.get(1000));
+        t.compact();
+        root = t.root();
+        Position<Integer> last = t.add(-2, root);
+        List<Integer> elements = new ArrayList<>();
+        for (Position<Integer> c : t.children(root)) {
+            elements.add(c.getElement());
+        }
+        assertEquals(199998, elements.size());
+        assertEquals(Integer.valueOf(1), elements.get(0));
+        assertEquals(Integer.valueOf(199998), elements.get(199996));
+        assertEquals(Integer.valueOf(-2), elements.get(199997));
+        assertFalse(elements.contains(1000));
+        assertEquals(Integer.valueOf(1), t.firstChild(root).getElement());
+        assertNull(t.nextSibling(last));
+    }
+}
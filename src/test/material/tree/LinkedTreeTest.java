@@ -6,9 +6,21 @@
 package material.tree;
 
 import material.tree.iterator.BFSIterator;
+import material.tree.iterator.BFSIteratorFactory;
+import material.tree.iterator.PreorderIterator;
+import material.tree.iterator.PreorderIteratorFactory;
+import material.tree.iterator.TreeIteratorFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.Spliterator;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -176,5 +188,1063 @@ public class LinkedTreeTest {
             assertNotSame(node.getElement(),d);
         }
     }
-    
+
+    /**
+     * Test that removing an inner node discounts its whole subtree.
+     */
+    @Test
+    public void testRemoveSubtreeSize() {
+        LinkedTree<String> t = new LinkedTree<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", a);
+        Position<String> d = t.add("D", b);
+        t.add("E", d);
+        t.add("F", c);
+        t.remove(b);
+        assertEquals(3, t.size());
+        Iterator<? extends Position<String>> it = t.children(a).iterator();
+        assertEquals(c, it.next());
+        assertFalse(it.hasNext());
+        t.remove(c);
+        assertEquals(1, t.size());
+        assertTrue(t.isLeaf(a));
+    }
+
+    /**
+     * Test that the descendants of a removed node are rejected as well.
+     */
+    @Test
+    public void testRemovedDescendantIsInvalid() {
+        LinkedTree<String> t = new LinkedTree<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", b);
+        Position<String> d = t.add("D", c);
+        assertTrue(t.isLeaf(d));
+        t.remove(b);
+        try {
+            t.add("E", d);
+            fail("A descendant of a removed node must be rejected");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+        assertEquals(1, t.size());
+        assertTrue(t.isLeaf(a));
+    }
+
+    /**
+     * Test that building and pruning a long chain does not walk the
+     * ancestors of every node: with a cost proportional to the depth it
+     * would take hours.
+     */
+    @Test(timeout = 20000)
+    public void testDeepChain() {
+        int n = 500000;
+        LinkedTree<Integer> t = new LinkedTree<>();
+        Position<Integer> p = t.addRoot(0);
+        Position<Integer> middle = null;
+        for (int i = 1; i < n; i++) {
+            p = t.add(i, p);
+            if (i == n / 2) {
+                middle = p;
+            }
+        }
+        assertEquals(n, t.size());
+        t.remove(middle);
+        assertEquals(n / 2, t.size());
+        assertEquals(n / 2, t.stream().count());
+        assertEquals(Integer.valueOf(n / 2), t.fold(t.root(), e -> 1, Integer::sum));
+        try {
+            t.add(-1, p);
+            fail("A descendant of a removed node must be rejected");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+    }
+
+    /**
+     * Test that removals near the top of a deep chain do not make the
+     * following checks of live positions walk the chain.
+     */
+    @Test(timeout = 20000)
+    public void testRemovalsKeepDeepPositionsValid() {
+        int n = 200000;
+        LinkedTree<Integer> t = new LinkedTree<>();
+        Position<Integer> p = t.addRoot(0);
+        Position<Integer> middle = null;
+        for (int i = 1; i < n; i++) {
+            p = t.add(i, p);
+            if (i == n / 2) {
+                middle = p;
+            }
+        }
+        for (int i = 0; i < 20000; i++) {
+            Position<Integer> removed = t.add(-1, middle);
+            t.remove(removed);
+            assertTrue(t.isLeaf(p));
+            try {
+                t.isLeaf(removed);
+                fail("A removed node must be rejected");
+            } catch (IllegalStateException ex) {
+                // expected
+            }
+        }
+        assertEquals(n, t.size());
+    }
+
+    /**
+     * Test that the positions accepted by the tree are exactly those reached
+     * by a traversal, after random additions, removals, batches, moves,
+     * splits, grafts and relayouts.
+     */
+    @Test
+    public void testCheckPositionAfterModifications() {
+        Random random = new Random(11);
+        LinkedTree<Integer> t = new LinkedTree<>();
+        LinkedTree<Integer> side = new LinkedTree<>();
+        side.addRoot(-2);
+        List<Position<Integer>> created = new ArrayList<>();
+        created.add(t.addRoot(0));
+        for (int i = 1; i < 2000; i++) {
+            List<Position<Integer>> nodes = new ArrayList<>();
+            t.iterator().forEachRemaining(nodes::add);
+            Position<Integer> p = nodes.get(random.nextInt(nodes.size()));
+            Position<Integer> q = nodes.get(random.nextInt(nodes.size()));
+            int op = random.nextInt(100);
+            if (op < 50) {
+                created.add(t.add(i, p));
+            } else if (op < 65 && !t.isRoot(p)) {
+                t.remove(p);
+            } else if (op < 75 && !t.isInSubtree(q, p)) {
+                t.moveSubtree(p, q);
+            } else if (op < 85) {
+                t.mutate(batch -> {
+                    created.add(batch.add(-1, p));
+                    if (!t.isRoot(q)) {
+                        batch.remove(q);
+                    }
+                });
+            } else if (op < 95 && !t.isRoot(p)) {
+                boolean inside = t.isInSubtree(q, p);
+                LinkedTree<Integer> piece = t.split(p);
+                if (random.nextBoolean() && !inside) {
+                    t.graft(piece, q);
+                } else if (random.nextBoolean()) {
+                    side.graft(piece, side.root());
+                }
+            } else if (op < 97) {
+                created.addAll(t.relayout(new PreorderIteratorFactory<>()).values());
+            }
+            Set<Position<Integer>> live = Collections.newSetFromMap(new IdentityHashMap<>());
+            t.iterator().forEachRemaining(live::add);
+            for (int j = 0; j < 20; j++) {
+                Position<Integer> r = created.get(random.nextInt(created.size()));
+                assertEquals(live.contains(r), accepts(t, r));
+                if (live.contains(r)) {
+                    assertEquals(naiveDepth(t, r), t.depth(r));
+                }
+            }
+        }
+        Set<Position<Integer>> live = Collections.newSetFromMap(new IdentityHashMap<>());
+        t.iterator().forEachRemaining(live::add);
+        for (Position<Integer> r : created) {
+            assertEquals(live.contains(r), accepts(t, r));
+        }
+    }
+
+    private static <E> boolean accepts(LinkedTree<E> t, Position<E> p) {
+        try {
+            t.isLeaf(p);
+            return true;
+        } catch (IllegalStateException ex) {
+            return false;
+        }
+    }
+
+    private static <E> int naiveDepth(LinkedTree<E> t, Position<E> p) {
+        int depth = 0;
+        for (Position<E> aux = p; !t.isRoot(aux); aux = t.parent(aux)) {
+            depth++;
+        }
+        return depth;
+    }
+
+    /**
+     * Test that size, fold and the spliterator agree with a traversal of the
+     * tree after random additions, removals and moves.
+     */
+    @Test
+    public void testSizesAfterModifications() {
+        Random random = new Random(7);
+        LinkedTree<Integer> t = new LinkedTree<>();
+        t.addRoot(0);
+        for (int i = 1; i < 3000; i++) {
+            List<Position<Integer>> nodes = new ArrayList<>();
+            t.iterator().forEachRemaining(nodes::add);
+            Position<Integer> p = nodes.get(random.nextInt(nodes.size()));
+            int op = random.nextInt(10);
+            if (op < 6) {
+                t.add(i, p);
+            } else if (op < 7 && !t.isRoot(p)) {
+                t.remove(p);
+            } else if (op < 8 && !t.isRoot(p)) {
+                Position<Integer> target = nodes.get(random.nextInt(nodes.size()));
+                if (!t.isInSubtree(target, p)) {
+                    t.moveSubtree(p, target);
+                }
+            } else if (op < 9) {
+                int expected = 0;
+                for (Iterator<Position<Integer>> it = new PreorderIterator<>(t, p); it.hasNext(); it.next()) {
+                    expected++;
+                }
+                assertEquals(Integer.valueOf(expected), t.fold(p, e -> 1, Integer::sum, 4));
+            } else {
+                assertEquals(nodes.size(), t.size());
+                assertEquals(nodes.size(), t.parallelStream().count());
+            }
+        }
+    }
+
+    /**
+     * Test that streams visit every position once, also in parallel.
+     */
+    @Test
+    public void testStream() {
+        LinkedTree<Integer> t = new LinkedTree<>();
+        Position<Integer> a = t.addRoot(0);
+        int expected = 0;
+        for (int i = 1; i <= 20; i++) {
+            Position<Integer> b = t.add(i, a);
+            expected += i;
+            for (int j = 1; j <= 5; j++) {
+                t.add(100 * i + j, b);
+                expected += 100 * i + j;
+            }
+        }
+        assertEquals(t.size(), t.stream().count());
+        assertEquals(expected, t.stream().mapToInt(Position::getElement).sum());
+        assertEquals(expected, t.parallelStream().mapToInt(Position::getElement).sum());
+        assertEquals(0, new LinkedTree<String>().stream().count());
+    }
+
+    /**
+     * Test that every split of the spliterator knows its exact size.
+     */
+    @Test
+    public void testSpliteratorSplitsAreSized() {
+        LinkedTree<String> t = new LinkedTree<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", a);
+        t.add("D", b);
+        t.add("E", b);
+        t.add("F", c);
+        Spliterator<Position<String>> right = t.spliterator();
+        Spliterator<Position<String>> left = right.trySplit();
+        assertNotNull(left);
+        assertEquals(6, left.estimateSize() + right.estimateSize());
+        List<String> order = new ArrayList<>();
+        left.forEachRemaining(p -> order.add(p.getElement()));
+        right.forEachRemaining(p -> order.add(p.getElement()));
+        assertEquals(Arrays.asList("A", "B", "D", "E", "C", "F"), order);
+    }
+
+    /**
+     * Test of fold method, of class LinkedTree.
+     */
+    @Test
+    public void testFold() {
+        LinkedTree<Integer> t = new LinkedTree<>();
+        Position<Integer> a = t.addRoot(1);
+        Position<Integer> b = null;
+        int expected = 1;
+        for (int i = 0; i < 50; i++) {
+            b = t.add(i, a);
+            expected += i;
+            for (int j = 0; j < 30; j++) {
+                t.add(j, b);
+                expected += j;
+            }
+        }
+        assertEquals(Integer.valueOf(expected), t.fold(a, e -> e, Integer::sum));
+        assertEquals(Integer.valueOf(expected), t.fold(a, e -> e, Integer::sum, 4));
+        assertEquals(Integer.valueOf(31), t.fold(b, e -> 1, Integer::sum, 2));
+        LinkedTree<String> s = new LinkedTree<>();
+        Position<String> x = s.addRoot("A");
+        Position<String> y = s.add("B", x);
+        s.add("C", y);
+        s.add("D", x);
+        assertEquals("ABCD", s.fold(x, e -> e, String::concat));
+        assertEquals("ABCD", s.fold(x, e -> e, String::concat, 1));
+    }
+
+    /**
+     * Test that fold does not overflow the stack on list-shaped trees.
+     */
+    @Test
+    public void testFoldDeepTree() {
+        LinkedTree<Integer> t = new LinkedTree<>();
+        Position<Integer> p = t.addRoot(1);
+        Position<Integer> root = p;
+        for (int i = 0; i < 20000; i++) {
+            p = t.add(1, p);
+        }
+        assertEquals(Integer.valueOf(20001), t.fold(root, e -> e, Integer::sum));
+        assertEquals(Integer.valueOf(20001), t.fold(root, e -> e, Integer::sum, 8));
+    }
+
+    /**
+     * Test of the bulk constructor of class LinkedTree.
+     */
+    @Test
+    public void testBulkConstructor() {
+        List<String> elements = Arrays.asList("A", "B", "C", "D", "E", "F");
+        int[] parents = {-1, 0, 0, 1, 1, 2};
+        LinkedTree<String> t = new LinkedTree<>(elements, parents);
+        assertEquals(6, t.size());
+        Position<String> a = t.root();
+        assertEquals("A", a.getElement());
+        assertTrue(t.isRoot(a));
+        List<String> order = new ArrayList<>();
+        for (Position<String> node : t) {
+            order.add(node.getElement());
+        }
+        assertEquals(elements, order);
+        Iterator<? extends Position<String>> it = t.children(a).iterator();
+        Position<String> b = it.next();
+        Position<String> c = it.next();
+        assertFalse(it.hasNext());
+        assertEquals(a, t.parent(b));
+        assertTrue(t.isInternal(b));
+        t.remove(b);
+        assertEquals(3, t.size());
+        Position<String> g = t.add("G", c);
+        assertEquals(c, t.parent(g));
+        assertEquals(4, t.size());
+        assertEquals(0, new LinkedTree<String>(new ArrayList<String>(), new int[0]).size());
+    }
+
+    /**
+     * Test that the bulk constructor rejects parent indices that are not a tree.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBulkConstructorInvalidParents() {
+        new LinkedTree<>(Arrays.asList("A", "B", "C"), new int[] {-1, 2, 0});
+    }
+
+    /**
+     * Test of depth, isAncestor and lowestCommonAncestor methods, of class
+     * LinkedTree, against walking the parent links.
+     */
+    @Test
+    public void testAncestryQueries() {
+        Random random = new Random(7);
+        LinkedTree<Integer> t = new LinkedTree<>();
+        List<Position<Integer>> nodes = new ArrayList<>();
+        nodes.add(t.addRoot(0));
+        for (int i = 1; i < 300; i++) {
+            // Half of the nodes extend a long chain, so the jumps are exercised
+            Position<Integer> parent = (i % 2 == 0) ? nodes.get(i - 1) : nodes.get(random.nextInt(i));
+            nodes.add(t.add(i, parent));
+            if (i == 150) {
+                assertEquals(0, t.depth(nodes.get(0)));
+            }
+        }
+        for (int k = 0; k < 500; k++) {
+            Position<Integer> p = nodes.get(random.nextInt(nodes.size()));
+            Position<Integer> q = nodes.get(random.nextInt(nodes.size()));
+            List<Position<Integer>> pathP = pathToRoot(t, p);
+            List<Position<Integer>> pathQ = pathToRoot(t, q);
+            assertEquals(pathP.size() - 1, t.depth(p));
+            assertEquals(pathQ.contains(p), t.isAncestor(p, q));
+            Position<Integer> lca = null;
+            for (Position<Integer> a : pathP) {
+                if (pathQ.contains(a)) {
+                    lca = a;
+                    break;
+                }
+            }
+            assertEquals(lca, t.lowestCommonAncestor(p, q));
+        }
+    }
+
+    /**
+     * Test that the ancestry index follows removals and later additions.
+     */
+    @Test
+    public void testAncestryAfterRemove() {
+        LinkedTree<String> t = new LinkedTree<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", b);
+        Position<String> d = t.add("D", a);
+        assertEquals(b, t.lowestCommonAncestor(b, c));
+        t.remove(b);
+        Position<String> e = t.add("E", d);
+        Position<String> f = t.add("F", e);
+        assertEquals(3, t.depth(f));
+        assertTrue(t.isAncestor(d, f));
+        assertFalse(t.isAncestor(f, d));
+        assertEquals(d, t.lowestCommonAncestor(f, d));
+        try {
+            t.depth(c);
+            fail("A removed node has no depth");
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    private static <T> List<Position<T>> pathToRoot(Tree<T> t, Position<T> p) {
+        List<Position<T>> path = new ArrayList<>();
+        path.add(p);
+        while (!t.isRoot(p)) {
+            p = t.parent(p);
+            path.add(p);
+        }
+        return path;
+    }
+
+    /**
+     * Test of createIndex method, of class LinkedTree, with a unique index.
+     */
+    @Test
+    public void testUniqueIndex() {
+        LinkedTree<String> t = new LinkedTree<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        ElementIndex<String, String> index = t.createIndex(e -> e, true);
+        Position<String> c = t.add("C", b);
+        Position<String> d = t.add("D", c);
+        assertEquals(4, index.size());
+        assertEquals(c, index.get("C"));
+        assertNull(index.get("Z"));
+        try {
+            t.add("A", d);
+            fail("Duplicated keys must be rejected");
+        } catch (IllegalStateException ex) {
+        }
+        assertEquals(4, t.size());
+        try {
+            t.replace(d, "B");
+            fail("Duplicated keys must be rejected");
+        } catch (IllegalStateException ex) {
+        }
+        assertEquals("D", d.getElement());
+        assertEquals(d, index.get("D"));
+        t.replace(d, "X");
+        assertNull(index.get("D"));
+        assertEquals(d, index.get("X"));
+        t.swapElements(a, d);
+        assertEquals(a, index.get("X"));
+        assertEquals(d, index.get("A"));
+        t.remove(b);
+        assertEquals(1, index.size());
+        assertEquals(a, index.get("X"));
+        assertFalse(index.containsKey("B"));
+        assertFalse(index.containsKey("C"));
+        assertFalse(index.containsKey("A"));
+        t.dropIndex(index);
+        t.add("X", t.root());
+        assertEquals(1, index.size());
+    }
+
+    /**
+     * Test of createIndex method, of class LinkedTree, with a multi-valued
+     * index over a key extractor.
+     */
+    @Test
+    public void testMultiValuedIndex() {
+        LinkedTree<String> t = new LinkedTree<>();
+        Position<String> root = t.addRoot("root");
+        Position<String> apple = t.add("apple", root);
+        Position<String> avocado = t.add("avocado", apple);
+        Position<String> banana = t.add("banana", root);
+        ElementIndex<Character, String> index = t.createIndex(e -> e.charAt(0), false);
+        assertEquals(4, index.size());
+        assertEquals(3, index.keyCount());
+        assertEquals(Arrays.asList(apple, avocado), index.getAll('a'));
+        assertEquals(apple, index.get('a'));
+        t.remove(avocado);
+        assertEquals(Arrays.asList(apple), index.getAll('a'));
+        t.add("blueberry", banana);
+        assertEquals(2, index.getAll('b').size());
+        t.remove(root);
+        assertEquals(0, index.size());
+        assertEquals(0, index.keyCount());
+        assertTrue(index.getAll('b').isEmpty());
+    }
+
+    /**
+     * Test that a unique index cannot be created over repeated elements.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testUniqueIndexOverDuplicates() {
+        LinkedTree<String> t = new LinkedTree<>();
+        Position<String> a = t.addRoot("A");
+        t.add("A", a);
+        t.createIndex(e -> e, true);
+    }
+
+    /**
+     * Test of isInSubtree and subtreeView methods, of class LinkedTree, on a
+     * tree whose labels are exhausted and rebuilt several times.
+     */
+    @Test
+    public void testIntervalLabels() {
+        Random random = new Random(11);
+        LinkedTree<Integer> t = new LinkedTree<>();
+        List<Position<Integer>> nodes = new ArrayList<>();
+        nodes.add(t.addRoot(0));
+        assertTrue(t.isInSubtree(nodes.get(0), nodes.get(0)));
+        for (int i = 1; i < 400; i++) {
+            // Long chains, long sibling lists and random nodes
+            Position<Integer> parent;
+            if (i < 100) {
+                parent = nodes.get(nodes.size() - 1);
+            } else if (i < 200) {
+                parent = nodes.get(nodes.size() / 2);
+            } else {
+                parent = nodes.get(random.nextInt(nodes.size()));
+            }
+            nodes.add(t.add(i, parent));
+            if (i % 97 == 0) {
+                t.remove(nodes.get(nodes.size() - 2));
+                nodes.remove(nodes.size() - 2);
+                nodes.removeIf(n -> {
+                    try {
+                        t.isLeaf(n);
+                        return false;
+                    } catch (IllegalStateException ex) {
+                        return true;
+                    }
+                });
+            }
+        }
+        for (int k = 0; k < 500; k++) {
+            Position<Integer> p = nodes.get(random.nextInt(nodes.size()));
+            Position<Integer> q = nodes.get(random.nextInt(nodes.size()));
+            assertEquals(pathToRoot(t, q).contains(p), t.isInSubtree(q, p));
+        }
+        for (int k = 0; k < 50; k++) {
+            Position<Integer> p = nodes.get(random.nextInt(nodes.size()));
+            List<Position<Integer>> expected = new ArrayList<>();
+            Iterator<Position<Integer>> it = new PreorderIterator<>(t, p);
+            while (it.hasNext()) {
+                expected.add(it.next());
+            }
+            assertEquals(expected, t.subtreeView(p));
+        }
+        assertEquals(t.size(), t.subtreeView(t.root()).size());
+    }
+
+    /**
+     * Test of the interval labels when appending along a chain exhausts the
+     * gaps, so that an ancestor below the root, and above the parent of the
+     * new node, is relabelled while the rest of the tree keeps its labels.
+     */
+    @Test
+    public void testRelabelAncestor() {
+        LinkedTree<Integer> t = new LinkedTree<>();
+        Position<Integer> root = t.addRoot(0);
+        Position<Integer> a = t.add(1, root);
+        Position<Integer> b = t.add(2, root);
+        t.add(3, b);
+        t.add(4, b);
+        assertTrue(t.isInSubtree(b, root));
+        // Each node of the chain takes a third of the gap of its parent
+        Position<Integer> p = a;
+        for (int i = 5; i < 125; i++) {
+            p = t.add(i, p);
+            if (i % 40 == 0) {
+                t.add(-i, a);
+            }
+        }
+        t.add(200, b);
+        assertSubtreeQueries(t);
+    }
+
+    /**
+     * Test of subtreeView and isInSubtree methods, of class LinkedTree, after
+     * moving subtrees that had already been labelled.
+     */
+    @Test
+    public void testSubtreeViewAfterMove() {
+        Random random = new Random(19);
+        LinkedTree<Integer> t = new LinkedTree<>();
+        List<Position<Integer>> nodes = new ArrayList<>();
+        nodes.add(t.addRoot(0));
+        for (int i = 1; i < 200; i++) {
+            nodes.add(t.add(i, nodes.get(random.nextInt(nodes.size()))));
+        }
+        assertSubtreeQueries(t);
+        for (int k = 0; k < 20; k++) {
+            Position<Integer> moved = nodes.get(1 + random.nextInt(nodes.size() - 1));
+            Position<Integer> target = nodes.get(random.nextInt(nodes.size()));
+            if (!t.isInSubtree(target, moved)) {
+                t.moveSubtree(moved, target);
+                t.add(-k, moved);
+                assertSubtreeQueries(t);
+            }
+        }
+    }
+
+    /**
+     * Test of subtreeView method, of class LinkedTree, after a relayout.
+     */
+    @Test
+    public void testSubtreeViewAfterRelayout() {
+        Random random = new Random(23);
+        LinkedTree<Integer> t = new LinkedTree<>();
+        List<Position<Integer>> nodes = new ArrayList<>();
+        nodes.add(t.addRoot(0));
+        for (int i = 1; i < 200; i++) {
+            nodes.add(t.add(i, nodes.get(random.nextInt(nodes.size()))));
+        }
+        Position<Integer> old = nodes.get(50);
+        List<Position<Integer>> before = t.subtreeView(old);
+        List<Integer> elements = new ArrayList<>();
+        before.forEach(n -> elements.add(n.getElement()));
+        Map<Position<Integer>, Position<Integer>> mapping = t.relayout(new BFSIteratorFactory<>());
+        List<Integer> after = new ArrayList<>();
+        t.subtreeView(mapping.get(old)).forEach(n -> after.add(n.getElement()));
+        assertEquals(elements, after);
+        assertSubtreeQueries(t);
+        try {
+            t.subtreeView(old);
+            fail("Positions from before the relayout must be rejected");
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    /**
+     * Checks isInSubtree and subtreeView on every node against a walk to the
+     * root and a pre-order traversal.
+     */
+    private static <E> void assertSubtreeQueries(LinkedTree<E> t) {
+        List<Position<E>> all = new ArrayList<>();
+        new PreorderIterator<>(t).forEachRemaining(all::add);
+        for (Position<E> p : all) {
+            List<Position<E>> expected = new ArrayList<>();
+            new PreorderIterator<>(t, p).forEachRemaining(expected::add);
+            assertEquals(expected, t.subtreeView(p));
+            for (Position<E> q : all) {
+                assertEquals(pathToRoot(t, q).contains(p), t.isInSubtree(q, p));
+            }
+        }
+    }
+
+    /**
+     * Checks that every split of a spliterator announces the number of
+     * positions it produces, which only holds if subtree sizes are right.
+     */
+    private static <E> void assertSplitSizes(Spliterator<Position<E>> s) {
+        Spliterator<Position<E>> prefix = s.trySplit();
+        if (prefix != null) {
+            assertSplitSizes(prefix);
+            assertSplitSizes(s);
+        } else {
+            long expected = s.estimateSize();
+            long[] count = new long[1];
+            s.forEachRemaining(p -> count[0]++);
+            assertEquals(expected, count[0]);
+        }
+    }
+
+    /**
+     * Test of mutate method, of class LinkedTree.
+     */
+    @Test
+    public void testMutate() {
+        LinkedTree<String> t = new LinkedTree<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", a);
+        Position<String> d = t.add("D", b);
+        t.add("E", b);
+        assertEquals(2, t.depth(d));
+        List<Position<String>> created = new ArrayList<>();
+        t.mutate(batch -> {
+            Position<String> x = batch.add("X", c);
+            created.add(x);
+            created.add(batch.add("Y", x));
+            created.add(batch.add("Z", d));
+            batch.remove(d);
+            batch.remove(b);
+            created.add(batch.add("W", d));
+            batch.replace(d, "D2");
+            batch.replace(c, "C2");
+            batch.replace(c, "C3");
+            batch.replace(x, "X2");
+            assertEquals(5, t.size());
+        });
+        List<String> expected = Arrays.asList("A", "C3", "X2", "Y");
+        List<String> actual = new ArrayList<>();
+        for (Position<String> p : t) {
+            actual.add(p.getElement());
+        }
+        assertEquals(expected, actual);
+        assertEquals(4, t.size());
+        assertEquals(2, t.depth(created.get(0)));
+        assertEquals(3, t.depth(created.get(1)));
+        assertTrue(t.isInSubtree(created.get(1), c));
+        assertSplitSizes(t.spliterator());
+        assertEquals("D", d.getElement());
+        for (Position<String> p : Arrays.asList(b, d, created.get(2), created.get(3))) {
+            try {
+                t.isLeaf(p);
+                fail("Removed position accepted");
+            } catch (IllegalStateException ex) {
+            }
+        }
+        t.mutate(batch -> batch.remove(t.root()));
+        assertTrue(t.isEmpty());
+    }
+
+    /**
+     * Test of mutate method, of class LinkedTree, with batches that fail.
+     */
+    @Test
+    public void testMutateIsAtomic() {
+        LinkedTree<String> t = new LinkedTree<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        ElementIndex<String, String> index = t.createIndex(s -> s, true);
+        try {
+            t.mutate(batch -> {
+                batch.add("C", a);
+                batch.remove(b);
+                batch.add("D", new LinkedTree<String>().addRoot("X"));
+            });
+            fail("Position of another tree accepted");
+        } catch (IllegalStateException ex) {
+        }
+        try {
+            t.mutate(batch -> {
+                batch.remove(b);
+                batch.replace(a, "Z");
+                batch.add("C", a);
+                batch.add("Z", a);
+            });
+            fail("Duplicated key accepted");
+        } catch (IllegalStateException ex) {
+        }
+        assertEquals(2, t.size());
+        assertEquals("A", a.getElement());
+        assertEquals(b, t.firstChild(a));
+        assertEquals(2, index.size());
+        assertEquals(b, index.get("B"));
+        assertNull(index.get("C"));
+        // Deletions are applied first, so a key can move between nodes
+        t.mutate(batch -> {
+            batch.remove(b);
+            batch.add("B", a);
+        });
+        assertEquals(t.firstChild(a), index.get("B"));
+        assertEquals(2, index.size());
+    }
+
+    /**
+     * Test of mutate method, of class LinkedTree, with random batches.
+     */
+    @Test
+    public void testMutateRandom() {
+        Random random = new Random(5);
+        LinkedTree<Integer> t = new LinkedTree<>();
+        Position<Integer> last = t.addRoot(0);
+        int next = 1;
+        // A long chain makes the size fix-up merge paths instead of walking them
+        while (next < 200) {
+            last = t.add(next++, last);
+        }
+        for (int round = 0; round < 30; round++) {
+            List<Position<Integer>> nodes = new ArrayList<>();
+            for (Position<Integer> p : t) {
+                nodes.add(p);
+            }
+            int first = next;
+            next += 50;
+            t.mutate(batch -> {
+                List<Position<Integer>> known = new ArrayList<>(nodes);
+                for (int k = first; k < first + 50; k++) {
+                    Position<Integer> p = known.get(random.nextInt(known.size()));
+                    if (k % 9 == 0 && p != t.root()) {
+                        batch.remove(p);
+                        known.remove(p);
+                    } else {
+                        known.add(batch.add(k, p));
+                    }
+                }
+            });
+            int count = 0;
+            for (Position<Integer> p : t) {
+                assertEquals(pathToRoot(t, p).size() - 1, t.depth(p));
+                count++;
+            }
+            assertEquals(count, t.size());
+            assertSplitSizes(t.spliterator());
+        }
+    }
+
+    /**
+     * Test of relayout method, of class LinkedTree.
+     */
+    @Test
+    public void testRelayout() {
+        LinkedTree<String> t = new LinkedTree<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", a);
+        Position<String> d = t.add("D", b);
+        Position<String> e = t.add("E", d);
+        t.add("F", c);
+        t.remove(c);
+        Position<String> g = t.add("G", a);
+        ElementIndex<String, String> index = t.createIndex(s -> s, true);
+        assertEquals(3, t.depth(e));
+        assertTrue(t.isInSubtree(e, b));
+
+        List<String> before = new ArrayList<>();
+        for (Position<String> p : t) {
+            before.add(p.getElement());
+        }
+        Map<Position<String>, Position<String>> mapping = t.relayout(new PreorderIteratorFactory<>());
+        assertEquals(5, mapping.size());
+        List<String> after = new ArrayList<>();
+        for (Position<String> p : t) {
+            after.add(p.getElement());
+        }
+        assertEquals(before, after);
+        assertSame(mapping.get(a), t.root());
+        try {
+            t.parent(b);
+            fail("Old positions must be rejected");
+        } catch (IllegalStateException ex) {
+        }
+        Position<String> e2 = mapping.get(e);
+        assertSame(e2, index.get("E"));
+        assertEquals(3, t.depth(e2));
+        assertTrue(t.isInSubtree(e2, mapping.get(b)));
+        assertSame(mapping.get(d), t.lowestCommonAncestor(e2, mapping.get(d)));
+        assertSame(t.root(), t.lowestCommonAncestor(e2, mapping.get(g)));
+        assertSame(mapping.get(g), t.parent(t.add("H", mapping.get(g))));
+        assertSplitSizes(t.spliterator());
+
+        mapping = t.relayout(new BFSIteratorFactory<>());
+        assertEquals(6, mapping.size());
+        assertEquals(6, t.size());
+        assertEquals("E", mapping.get(e2).getElement());
+    }
+
+    /**
+     * Test of relayout method, of class LinkedTree, after a move has made
+     * the ancestry index stale. Position checks rebuild it once they have
+     * walked as many nodes as the tree has, which happens at a different
+     * node of the relayout for each number of nodes walked before it.
+     */
+    @Test
+    public void testRelayoutAfterLosingAncestryIndex() {
+        int n = 100;
+        for (int checked = 0; checked < n; checked++) {
+            LinkedTree<Integer> t = new LinkedTree<>();
+            List<Position<Integer>> chain = new ArrayList<>();
+            chain.add(t.addRoot(0));
+            for (int i = 1; i < n; i++) {
+                chain.add(t.add(i, chain.get(i - 1)));
+            }
+            t.moveSubtree(chain.get(n / 2), chain.get(0));
+            // Removals make every check walk up to a node checked since
+            t.remove(t.add(-1, chain.get(0)));
+            assertTrue(accepts(t, chain.get(checked)));
+            t.remove(t.add(-1, chain.get(0)));
+            Map<Position<Integer>, Position<Integer>> mapping = t.relayout(new BFSIteratorFactory<>());
+            Position<Integer> root = t.root();
+            for (int i = 1; i < n; i++) {
+                Position<Integer> p = mapping.get(chain.get(i));
+                int depth = (i < n / 2) ? i : i - n / 2 + 1;
+                assertEquals(depth, t.depth(p));
+                assertTrue(t.isAncestor(root, p));
+                assertSame(t.parent(p), t.lowestCommonAncestor(t.parent(p), p));
+            }
+        }
+    }
+
+    /**
+     * Test of relayout method, of class LinkedTree, with an iterator that
+     * misses nodes.
+     */
+    @Test
+    public void testRelayoutIncomplete() {
+        LinkedTree<String> t = new LinkedTree<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        TreeIteratorFactory<String> rootOnly = new TreeIteratorFactory<String>() {
+            @Override
+            public Iterator<Position<String>> createIterator(Tree<String> tree) {
+                return createIterator(tree, tree.root());
+            }
+
+            @Override
+            public Iterator<Position<String>> createIterator(Tree<String> tree, Position<String> pos) {
+                return Arrays.asList(pos).iterator();
+            }
+        };
+        try {
+            t.relayout(rootOnly);
+            fail("An incomplete order must be rejected");
+        } catch (IllegalStateException ex) {
+        }
+        assertSame(a, t.parent(b));
+        assertEquals(2, t.size());
+    }
+
+    /**
+     * Test of moveSubtree method, of class LinkedTree.
+     */
+    @Test
+    public void testMoveSubtree() {
+        LinkedTree<String> t = new LinkedTree<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", a);
+        Position<String> d = t.add("D", b);
+        Position<String> e = t.add("E", d);
+        ElementIndex<String, String> index = t.createIndex(s -> s, true);
+        assertEquals(3, t.depth(e));
+        assertTrue(t.isInSubtree(e, b));
+
+        t.moveSubtree(d, c);
+        assertSame(c, t.parent(d));
+        assertTrue(t.isLeaf(b));
+        assertEquals(3, t.depth(e));
+        assertTrue(t.isInSubtree(e, c));
+        assertFalse(t.isInSubtree(e, b));
+        assertSame(c, t.lowestCommonAncestor(e, c));
+        assertSame(e, index.get("E"));
+        assertEquals(5, t.size());
+        assertSplitSizes(t.spliterator());
+
+        t.moveSubtree(c, b);
+        assertEquals(4, t.depth(e));
+        try {
+            t.moveSubtree(b, e);
+            fail("A node cannot be moved below itself");
+        } catch (IllegalStateException ex) {
+        }
+        try {
+            t.moveSubtree(a, b);
+            fail("The root cannot be moved below its descendants");
+        } catch (IllegalStateException ex) {
+        }
+        assertSame(b, t.parent(c));
+        assertSplitSizes(t.spliterator());
+    }
+
+    /**
+     * Test of split and graft methods, of class LinkedTree.
+     */
+    @Test
+    public void testSplitAndGraft() {
+        LinkedTree<String> t = new LinkedTree<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", a);
+        Position<String> d = t.add("D", b);
+        Position<String> e = t.add("E", d);
+        ElementIndex<String, String> index = t.createIndex(s -> s, true);
+
+        LinkedTree<String> piece = t.split(b);
+        assertEquals(2, t.size());
+        assertEquals(3, piece.size());
+        assertSame(b, piece.root());
+        assertSame(d, piece.parent(e));
+        assertEquals(2, piece.depth(e));
+        assertNull(index.get("D"));
+        try {
+            t.parent(e);
+            fail("Split nodes must be rejected by the original tree");
+        } catch (IllegalStateException ex) {
+        }
+        Position<String> f = piece.add("F", e);
+        assertEquals(4, piece.size());
+
+        LinkedTree<String> other = new LinkedTree<>();
+        other.addRoot("C");
+        try {
+            t.graft(other, a);
+            fail("A unique index must reject a repeated key");
+        } catch (IllegalStateException ex) {
+        }
+        assertEquals(1, other.size());
+        assertEquals(2, t.size());
+        try {
+            t.graft(t, a);
+            fail("A tree cannot be grafted onto itself");
+        } catch (IllegalStateException ex) {
+        }
+
+        t.graft(piece, c);
+        assertTrue(piece.isEmpty());
+        assertEquals(6, t.size());
+        assertSame(c, t.parent(b));
+        assertSame(e, t.parent(f));
+        assertEquals(5, t.depth(f));
+        assertTrue(t.isInSubtree(f, c));
+        assertSame(f, index.get("F"));
+        assertSplitSizes(t.spliterator());
+        try {
+            piece.parent(f);
+            fail("Grafted nodes must be rejected by their old tree");
+        } catch (IllegalStateException ex) {
+        }
+        piece.addRoot("G");
+        try {
+            piece.parent(e);
+            fail("Grafted nodes must be rejected by their old tree");
+        } catch (IllegalStateException ex) {
+        }
+        try {
+            other.parent(e);
+            fail("Nodes of other trees must be rejected");
+        } catch (IllegalStateException ex) {
+        }
+
+        LinkedTree<String> whole = t.split(a);
+        assertTrue(t.isEmpty());
+        assertEquals(6, whole.size());
+        assertSame(a, whole.parent(c));
+        t.remove(t.addRoot("X"));
+        assertSame(e, whole.parent(f));
+    }
+
+    /**
+     * Test that the nodes of a split subtree stay rejected by the original
+     * tree once the subtree is grafted into a third tree.
+     */
+    @Test
+    public void testSplitPieceGraftedElsewhere() {
+        LinkedTree<String> t = new LinkedTree<>();
+        Position<String> r = t.addRoot("R");
+        Position<String> a = t.add("A", r);
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", b);
+        assertTrue(t.isLeaf(c));
+        LinkedTree<String> piece = t.split(a);
+        LinkedTree<String> other = new LinkedTree<>();
+        Position<String> s = other.addRoot("S");
+        other.graft(piece, s);
+        try {
+            t.isLeaf(c);
+            fail("Nodes grafted into another tree must be rejected");
+        } catch (IllegalStateException ex) {
+        }
+        other.remove(a);
+        try {
+            t.add("Z", c);
+            fail("Nodes grafted into another tree must be rejected");
+        } catch (IllegalStateException ex) {
+        }
+        assertEquals(1, t.size());
+        assertEquals(1, other.size());
+        assertEquals(0, t.depth(r));
+    }
 }
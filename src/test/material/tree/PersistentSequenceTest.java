@@ -0,0 +1,83 @@
+package material.tree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Basic tests for PersistentSequence class
+ */
+public class PersistentSequenceTest {
+
+    private static <T> List<T> toList(PersistentSequence<T> sequence) {
+        List<T> result = new ArrayList<>();
+        for (T e : sequence) {
+            result.add(e);
+        }
+        return result;
+    }
+
+    /**
+     * Test of random insertions, removals and replacements against a list,
+     * checking that older sequences are not affected.
+     */
+    @Test
+    public void testAgainstList() {
+        Random random = new Random(5);
+        PersistentSequence<Integer> sequence = PersistentSequence.empty();
+        List<Integer> expected = new ArrayList<>();
+        PersistentSequence<Integer> saved = sequence;
+        List<Integer> savedExpected = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            int op = random.nextInt(10);
+            if (op < 5 || expected.isEmpty()) {
+                int index = random.nextBoolean() ? expected.size() : random.nextInt(expected.size() + 1);
+                sequence = sequence.insert(index, i);
+                expected.add(index, i);
+            } else if (op < 8) {
+                int index = random.nextInt(expected.size());
+                sequence = sequence.remove(index);
+                expected.remove(index);
+            } else {
+                int index = random.nextInt(expected.size());
+                sequence = sequence.set(index, -i);
+                expected.set(index, -i);
+            }
+            assertEquals(expected.size(), sequence.size());
+            if (i % 1000 == 0) {
+                assertEquals(savedExpected, toList(saved));
+                assertEquals(expected, toList(sequence));
+                saved = sequence;
+                savedExpected = new ArrayList<>(expected);
+            }
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), sequence.get(i));
+        }
+        assertEquals(savedExpected, toList(saved));
+    }
+
+    /**
+     * Test of the index checks.
+     */
+    @Test
+    public void testIndexOutOfBounds() {
+        PersistentSequence<String> sequence = PersistentSequence.<String>empty().append("A");
+        for (int index : new int[] {-1, 1}) {
+            try {
+                sequence.get(index);
+                fail("Index " + index + " must be rejected");
+            } catch (IndexOutOfBoundsException ex) {
+            }
+        }
+        try {
+            sequence.insert(2, "B");
+            fail("Inserting past the end must be rejected");
+        } catch (IndexOutOfBoundsException ex) {
+        }
+        assertEquals(0, sequence.remove(0).size());
+        assertEquals(1, sequence.size());
+    }
+}
@@ -0,0 +1,191 @@
+package material.tree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Basic tests for PersistentTree and VersionedTree classes
+ */
+public class PersistentTreeTest {
+
+    private static List<String> elements(Tree<String> t) {
+        List<String> result = new ArrayList<>();
+        for (Position<String> p : t) {
+            result.add(p.getElement());
+        }
+        return result;
+    }
+
+    /**
+     * Test of add method, of class PersistentTree.
+     */
+    @Test
+    public void testAddKeepsOldVersion() {
+        PersistentTree<String> v0 = new PersistentTree<String>().withRoot("A");
+        PersistentTree<String> v1 = v0.add("B", v0.root());
+        Position<String> c = v1.addPosition("C", v1.root());
+        PersistentTree<String> v2 = PersistentTree.treeOf(c);
+        assertEquals(1, v0.size());
+        assertEquals(2, v1.size());
+        assertEquals(3, v2.size());
+        assertEquals("C", c.getElement());
+        assertEquals(v2.root(), v2.parent(c));
+        assertEquals(List.of("A", "B", "C"), elements(v2));
+        assertEquals(List.of("A", "B"), elements(v1));
+    }
+
+    /**
+     * Test of remove method, of class PersistentTree.
+     */
+    @Test
+    public void testRemove() {
+        PersistentTree<String> t = new PersistentTree<String>().withRoot("A");
+        t = t.add("B", t.root());
+        t = t.add("C", t.root());
+        Position<String> b = t.firstChild(t.root());
+        t = t.add("D", b);
+        PersistentTree<String> removed = t.remove(t.firstChild(t.root()));
+        assertEquals(4, t.size());
+        assertEquals(2, removed.size());
+        assertEquals(List.of("A", "C"), elements(removed));
+        assertTrue(t.remove(t.root()).isEmpty());
+    }
+
+    /**
+     * Test of replace and swapElements methods, of class PersistentTree.
+     */
+    @Test
+    public void testReplaceAndSwap() {
+        PersistentTree<String> t = new PersistentTree<String>().withRoot("A");
+        t = t.add("B", t.root());
+        t = t.add("C", t.firstChild(t.root()));
+        Position<String> b = t.firstChild(t.root());
+        PersistentTree<String> replaced = t.replace(b, "X");
+        assertEquals(List.of("A", "X", "C"), elements(replaced));
+        assertEquals(List.of("A", "B", "C"), elements(t));
+        PersistentTree<String> swapped = t.swapElements(t.root(), t.firstChild(b));
+        assertEquals(List.of("C", "B", "A"), elements(swapped));
+    }
+
+    /**
+     * Test of checkPosition method, of class PersistentTree.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testPositionOfOtherVersion() {
+        PersistentTree<String> v0 = new PersistentTree<String>().withRoot("A");
+        PersistentTree<String> v1 = v0.add("B", v0.root());
+        v1.add("C", v0.root());
+    }
+
+    /**
+     * Test of snapshot method, of class VersionedTree.
+     */
+    @Test
+    public void testSnapshot() {
+        VersionedTree<String> t = new VersionedTree<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        PersistentTree<String> snapshot = t.snapshot();
+        Position<String> c = t.add("C", b);
+        t.replace(c, "Z");
+        t.remove(t.firstChild(t.root()));
+        assertEquals(1, t.size());
+        assertEquals(2, snapshot.size());
+        assertEquals(List.of("A", "B"), elements(snapshot));
+        assertEquals(List.of("A"), elements(t));
+    }
+
+    /**
+     * Test of replace method, of class VersionedTree.
+     */
+    @Test
+    public void testVersionedReplace() {
+        VersionedTree<String> t = new VersionedTree<>();
+        Position<String> a = t.addRoot("A");
+        t.add("B", a);
+        assertEquals("A", t.replace(t.root(), "X"));
+        assertEquals("X", t.root().getElement());
+    }
+
+    /**
+     * Test of random modifications of a node with a large fan-out, checking
+     * that older versions are not affected.
+     */
+    @Test
+    public void testWideNode() {
+        Random random = new Random(3);
+        PersistentTree<String> t = new PersistentTree<String>().withRoot("R");
+        List<String> expected = new ArrayList<>();
+        expected.add("R");
+        for (int i = 0; i < 2000; i++) {
+            t = t.add("n" + i, t.root());
+            expected.add("n" + i);
+        }
+        PersistentTree<String> old = t;
+        List<String> oldExpected = new ArrayList<>(expected);
+        for (int i = 0; i < 2000; i++) {
+            List<Position<String>> children = new ArrayList<>();
+            t.children(t.root()).forEach(children::add);
+            int index = random.nextInt(children.size());
+            int op = random.nextInt(3);
+            if (op == 0) {
+                t = t.remove(children.get(index));
+                expected.remove(index + 1);
+            } else if (op == 1) {
+                t = t.replace(children.get(index), "r" + i);
+                expected.set(index + 1, "r" + i);
+            } else {
+                t = t.add("a" + i, t.root());
+                expected.add("a" + i);
+            }
+        }
+        assertEquals(expected, elements(t));
+        assertEquals(expected.size(), t.size());
+        assertEquals(oldExpected, elements(old));
+    }
+
+    /**
+     * Test that positions of VersionedTree remain valid after modifications
+     * of other nodes, and are rejected once their node is removed.
+     */
+    @Test
+    public void testVersionedPositions() {
+        VersionedTree<String> t = new VersionedTree<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", a);
+        Position<String> d = t.add("D", c);
+        Position<String> e = t.add("E", a);
+        t.replace(c, "X");
+        assertEquals("X", c.getElement());
+        assertEquals(c, t.parent(d));
+        t.remove(b);
+        assertEquals(c, t.firstChild(a));
+        assertEquals(e, t.nextSibling(c));
+        assertEquals(a, t.parent(c));
+        t.swapElements(a, d);
+        assertEquals("D", a.getElement());
+        assertEquals("A", d.getElement());
+        assertEquals(List.of("D", "X", "E", "A"), elements(t));
+        try {
+            b.getElement();
+            fail("A removed node must be rejected");
+        } catch (IllegalStateException ex) {
+        }
+        t.remove(c);
+        try {
+            t.add("F", d);
+            fail("A descendant of a removed node must be rejected");
+        } catch (IllegalStateException ex) {
+        }
+        try {
+            t.add("F", t.snapshot().root());
+            fail("Positions of a snapshot must be rejected");
+        } catch (IllegalStateException ex) {
+        }
+        assertEquals(2, t.size());
+    }
+}
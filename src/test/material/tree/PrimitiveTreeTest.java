@@ -0,0 +1,109 @@
+package material.tree;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Basic tests for IntTree, LongTree and DoubleTree classes
+ */
+public class PrimitiveTreeTest {
+
+    /**
+     * Test of add and getInt methods, of class IntTree.
+     */
+    @Test
+    public void testIntTree() {
+        IntTree t = new IntTree();
+        IntPosition a = t.addRoot(1);
+        IntPosition b = t.add(2, a);
+        IntPosition c = t.add(3, a);
+        IntPosition d = t.add(4, b);
+        assertEquals(4, t.size());
+        assertEquals(4, d.getInt());
+        assertEquals(Integer.valueOf(4), d.getElement());
+        assertEquals(b, t.parent(d));
+        assertEquals(b, t.firstChild(a));
+        assertEquals(c, t.nextSibling(b));
+        assertNull(t.nextSibling(c));
+        assertEquals(a.getInt(), t.root().getInt());
+        List<Integer> bfs = new ArrayList<>();
+        for (Position<Integer> p : t) {
+            bfs.add(p.getElement());
+        }
+        assertEquals(List.of(1, 2, 3, 4), bfs);
+    }
+
+    /**
+     * Test of replace, swapElements and remove methods, of class IntTree.
+     */
+    @Test
+    public void testIntTreeModifications() {
+        IntTree t = new IntTree(2);
+        IntPosition a = t.addRoot(1);
+        IntPosition b = t.add(2, a);
+        IntPosition c = t.add(3, b);
+        assertEquals(3, t.replace(c, 30));
+        assertEquals(30, c.getInt());
+        t.swapElements(a, c);
+        assertEquals(30, a.getInt());
+        assertEquals(1, c.getInt());
+        t.remove(b);
+        assertEquals(1, t.size());
+        try {
+            c.getInt();
+            fail("A removed node must be rejected");
+        } catch (IllegalStateException ex) {
+        }
+        IntPosition e = t.add(5, a);
+        t.compact();
+        assertEquals(35, t.fold(0, Integer::sum));
+        assertEquals(5, t.firstChild(t.root()).getInt());
+        try {
+            e.getInt();
+            fail("Compacting invalidates the positions");
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    /**
+     * Test of fold methods, of class IntTree.
+     */
+    @Test
+    public void testIntFold() {
+        IntTree t = new IntTree();
+        IntPosition a = t.addRoot(1);
+        IntPosition b = t.add(2, a);
+        t.add(3, a);
+        t.add(4, b);
+        t.add(5, b);
+        assertEquals(15, t.fold(0, Integer::sum));
+        assertEquals(11, t.fold(b, 0, Integer::sum));
+        assertEquals(5, t.fold(a, Integer.MIN_VALUE, Math::max));
+        // Pre-order: 1 2 4 5 3
+        assertEquals(12453, t.fold(a, 0, (acc, x) -> acc * 10 + x));
+    }
+
+    /**
+     * Test of LongTree and DoubleTree classes.
+     */
+    @Test
+    public void testLongAndDoubleTrees() {
+        LongTree l = new LongTree();
+        LongPosition la = l.addRoot(Long.MAX_VALUE);
+        LongPosition lb = l.add(1L, la);
+        assertEquals(Long.MAX_VALUE, la.getLong());
+        assertEquals(Long.MIN_VALUE, l.fold(0L, Long::sum));
+        assertEquals(1L, l.replace(lb, 7L));
+        assertEquals(7L, l.fold(lb, 0L, Long::sum));
+
+        DoubleTree d = new DoubleTree();
+        DoublePosition da = d.addRoot(0.5);
+        d.add(0.25, da);
+        d.add(Double.valueOf(0.25), da);
+        assertEquals(1.0, d.fold(0.0, Double::sum), 0.0);
+        assertEquals(0.5, d.root().getDouble(), 0.0);
+        assertEquals(3, d.size());
+    }
+}
@@ -0,0 +1,97 @@
+package material.tree.io;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import material.tree.LinkedTree;
+import material.tree.Position;
+import material.tree.Tree;
+import material.tree.iterator.PreorderIterator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Basic tests for BinaryTreeWriter and MappedTree classes
+ */
+public class BinaryTreeFormatTest {
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("tree", ".bin");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private List<String> preorder(Tree<String> t) {
+        List<String> result = new ArrayList<>();
+        Iterator<Position<String>> it = new PreorderIterator<>(t);
+        while (it.hasNext()) {
+            result.add(it.next().getElement());
+        }
+        return result;
+    }
+
+    /**
+     * Test that a tree written to disk is read back with the same structure.
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        LinkedTree<String> t = new LinkedTree<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("", a);
+        t.add("D", b);
+        t.add("ñandú", b);
+        t.add("F", c);
+        new BinaryTreeWriter<>(new StringCodec()).write(t, file);
+
+        MappedTree<String> m = new MappedTree<>(file, new StringCodec());
+        assertEquals(6, m.size());
+        assertEquals(preorder(t), preorder(m));
+        Position<String> root = m.root();
+        assertTrue(m.isRoot(root));
+        Iterator<? extends Position<String>> it = m.children(root).iterator();
+        Position<String> mb = it.next();
+        Position<String> mc = it.next();
+        assertFalse(it.hasNext());
+        assertEquals(root, m.parent(mb));
+        assertEquals(root, m.parent(mc));
+        assertTrue(m.isInternal(mb));
+        assertTrue(m.isInternal(mc));
+        List<String> bfs = new ArrayList<>();
+        for (Position<String> p : m) {
+            bfs.add(p.getElement());
+        }
+        assertEquals(Arrays.asList("A", "B", "", "D", "ñandú", "F"), bfs);
+    }
+
+    /**
+     * Test that an empty tree can be written and read.
+     */
+    @Test
+    public void testEmptyTree() throws IOException {
+        new BinaryTreeWriter<>(new StringCodec()).write(new LinkedTree<String>(), file);
+        MappedTree<String> m = new MappedTree<>(file, new StringCodec());
+        assertTrue(m.isEmpty());
+    }
+
+    /**
+     * Test that files in other formats are rejected.
+     */
+    @Test(expected = IOException.class)
+    public void testInvalidFile() throws IOException {
+        Files.write(file, new byte[64]);
+        new MappedTree<>(file, new StringCodec());
+    }
+}
@@ -0,0 +1,158 @@
+package material.tree.io;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import material.tree.LinkedTree;
+import material.tree.Position;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Basic tests for OffHeapTree class
+ */
+public class OffHeapTreeTest {
+
+    /**
+     * Test of add, children and navigation methods, of class OffHeapTree.
+     */
+    @Test
+    public void testAdd() {
+        try (OffHeapTree<Long> t = new OffHeapTree<>(new LongCodec())) {
+            Position<Long> a = t.addRoot(1L);
+            Position<Long> b = t.add(2L, a);
+            Position<Long> c = t.add(3L, a);
+            Position<Long> d = t.add(Long.MIN_VALUE, b);
+            assertEquals(4, t.size());
+            assertEquals(Long.valueOf(Long.MIN_VALUE), d.getElement());
+            assertEquals(b, t.parent(d));
+            assertEquals(b, t.firstChild(a));
+            assertEquals(c, t.nextSibling(b));
+            assertTrue(t.isRoot(a));
+            assertTrue(t.isLeaf(c));
+            List<Position<Long>> children = new ArrayList<>();
+            for (Position<Long> p : t.children(a)) {
+                children.add(p);
+            }
+            assertEquals(List.of(b, c), children);
+            assertEquals(Long.valueOf(2L), t.replace(b, 20L));
+            t.swapElements(a, b);
+            assertEquals(Long.valueOf(20L), a.getElement());
+            assertEquals(Long.valueOf(1L), b.getElement());
+        }
+    }
+
+    /**
+     * Test that the tree matches a LinkedTree after random additions and
+     * removals spanning several segments.
+     */
+    @Test
+    public void testAgainstLinkedTree() {
+        Random random = new Random(17);
+        LinkedTree<Integer> expected = new LinkedTree<>();
+        OffHeapTree<Integer> actual = new OffHeapTree<>(new IntCodec());
+        List<Position<Integer>> e = new ArrayList<>();
+        List<Position<Integer>> a = new ArrayList<>();
+        e.add(expected.addRoot(0));
+        a.add(actual.addRoot(0));
+        for (int i = 1; i < 3 * OffHeapTree.SEGMENT_RECORDS; i++) {
+            int parent = random.nextInt(e.size());
+            e.add(expected.add(i, e.get(parent)));
+            a.add(actual.add(i, a.get(parent)));
+            if (i % 5000 == 0) {
+                int victim = 1 + random.nextInt(e.size() - 1);
+                expected.remove(e.get(victim));
+                actual.remove(a.get(victim));
+                for (int k = e.size() - 1; k > 0; k--) {
+                    try {
+                        expected.isLeaf(e.get(k));
+                    } catch (IllegalStateException ex) {
+                        e.remove(k);
+                        a.remove(k);
+                    }
+                }
+            }
+        }
+        assertEquals(expected.size(), actual.size());
+        java.util.Iterator<Position<Integer>> it = actual.iterator();
+        for (Position<Integer> p : expected) {
+            assertEquals(p.getElement(), it.next().getElement());
+        }
+        assertFalse(it.hasNext());
+        actual.close();
+    }
+
+    /**
+     * Test that removed nodes and closed trees reject their positions.
+     */
+    @Test
+    public void testInvalidPositions() {
+        OffHeapTree<Double> t = new OffHeapTree<>(new DoubleCodec());
+        Position<Double> a = t.addRoot(1.0);
+        Position<Double> b = t.add(2.0, a);
+        Position<Double> c = t.add(3.0, b);
+        t.remove(b);
+        assertEquals(1, t.size());
+        try {
+            c.getElement();
+            fail("A removed node must be rejected");
+        } catch (IllegalStateException ex) {
+        }
+        Position<Double> d = t.add(4.0, a);
+        assertNotEquals(c, d);
+        assertEquals(d, t.firstChild(a));
+        t.close();
+        try {
+            a.getElement();
+            fail("A closed tree must reject its positions");
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    /**
+     * Test that the constructor rejects widths whose segments would not fit
+     * in a single buffer.
+     */
+    @Test
+    public void testInvalidWidth() {
+        int largest = Integer.MAX_VALUE / OffHeapTree.SEGMENT_RECORDS - 20;
+        new OffHeapTree<>(new BytesCodec(largest)).close();
+        for (int width : new int[] {largest + 1, 1 << 20, Integer.MAX_VALUE, -1}) {
+            try {
+                new OffHeapTree<>(new BytesCodec(width));
+                fail("A width of " + width + " must be rejected");
+            } catch (IllegalArgumentException ex) {
+            }
+        }
+    }
+
+    /**
+     * Codec of byte arrays of a given width, for the width checks.
+     */
+    private static class BytesCodec implements FixedWidthCodec<byte[]> {
+
+        private final int width; // The number of bytes of every element
+
+        BytesCodec(int width) {
+            this.width = width;
+        }
+
+        @Override
+        public int width() {
+            return width;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, int offset, byte[] element) {
+            buffer.put(offset, element);
+        }
+
+        @Override
+        public byte[] read(ByteBuffer buffer, int offset) {
+            byte[] element = new byte[width];
+            buffer.get(offset, element);
+            return element;
+        }
+    }
+}
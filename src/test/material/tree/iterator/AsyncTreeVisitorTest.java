@@ -0,0 +1,114 @@
+package material.tree.iterator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import material.tree.LinkedTree;
+import material.tree.Position;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Basic tests for the asynchronous visitor
+ */
+public class AsyncTreeVisitorTest {
+
+    private static LinkedTree<Integer> randomTree(int size) {
+        Random random = new Random(13);
+        LinkedTree<Integer> t = new LinkedTree<>();
+        List<Position<Integer>> nodes = new ArrayList<>();
+        nodes.add(t.addRoot(0));
+        for (int i = 1; i < size; i++) {
+            nodes.add(t.add(i, nodes.get(random.nextInt(nodes.size()))));
+        }
+        return t;
+    }
+
+    /**
+     * Test of visit method, of class AsyncTreeVisitor.
+     */
+    @Test
+    public void testVisit() throws Exception {
+        LinkedTree<Integer> t = randomTree(300);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Set<Position<Integer>> completed = ConcurrentHashMap.newKeySet();
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxRunning = new AtomicInteger();
+            AtomicInteger orderErrors = new AtomicInteger();
+            AsyncTreeVisitor<Integer> visitor = new AsyncTreeVisitor<>(executor, 3);
+            visitor.visit(t, t.root(), p -> {
+                int now = running.incrementAndGet();
+                maxRunning.accumulateAndGet(now, Math::max);
+                if (!t.isRoot(p) && !completed.contains(t.parent(p))) {
+                    orderErrors.incrementAndGet();
+                }
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                completed.add(p);
+                running.decrementAndGet();
+            }).get(30, TimeUnit.SECONDS);
+            assertEquals(t.size(), completed.size());
+            assertTrue(maxRunning.get() <= 3);
+            assertEquals(0, orderErrors.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Test that the first failure completes the future exceptionally.
+     */
+    @Test
+    public void testVisitAsyncFailure() throws Exception {
+        LinkedTree<Integer> t = randomTree(100);
+        AsyncTreeVisitor<Integer> visitor = new AsyncTreeVisitor<>(Runnable::run, 4);
+        CompletableFuture<Void> result = visitor.visitAsync(t, t.root(), p -> {
+            CompletableFuture<Void> f = new CompletableFuture<>();
+            if (p.getElement() == 50) {
+                f.completeExceptionally(new IllegalStateException("failed"));
+            } else {
+                f.complete(null);
+            }
+            return f;
+        });
+        try {
+            result.get(30, TimeUnit.SECONDS);
+            fail("The failure must be reported");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    /**
+     * Test that an exception thrown by the tree while listing the children
+     * of a visited node completes the future exceptionally.
+     */
+    @Test
+    public void testVisitTreeFailure() throws Exception {
+        LinkedTree<Integer> t = randomTree(100);
+        AsyncTreeVisitor<Integer> visitor = new AsyncTreeVisitor<>(Runnable::run, 4);
+        CompletableFuture<Void> result = visitor.visit(t, t.root(), p -> {
+            if (p.getElement() == 1) {
+                t.remove(p);
+            }
+        });
+        try {
+            result.get(30, TimeUnit.SECONDS);
+            fail("The failure must be reported");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+    }
+}
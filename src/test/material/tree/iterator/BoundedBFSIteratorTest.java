@@ -0,0 +1,101 @@
+package material.tree.iterator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import material.tree.ConcurrentLinkedTree;
+import material.tree.IntTree;
+import material.tree.LinkedTree;
+import material.tree.Position;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Basic tests for the breadth-first iterator with bounded memory
+ */
+public class BoundedBFSIteratorTest {
+
+    private static List<Position<Integer>> toList(Iterator<Position<Integer>> it) {
+        List<Position<Integer>> result = new ArrayList<>();
+        while (it.hasNext()) {
+            result.add(it.next());
+        }
+        return result;
+    }
+
+    /**
+     * Builds a tree mixing wide levels, long chains and random nodes.
+     */
+    private static LinkedTree<Integer> randomTree(int size, long seed) {
+        Random random = new Random(seed);
+        LinkedTree<Integer> t = new LinkedTree<>();
+        List<Position<Integer>> nodes = new ArrayList<>();
+        nodes.add(t.addRoot(0));
+        for (int i = 1; i < size; i++) {
+            Position<Integer> parent;
+            int op = random.nextInt(3);
+            if (op == 0) {
+                parent = nodes.get(random.nextInt(Math.min(nodes.size(), 5)));
+            } else if (op == 1) {
+                parent = nodes.get(nodes.size() - 1);
+            } else {
+                parent = nodes.get(random.nextInt(nodes.size()));
+            }
+            nodes.add(t.add(i, parent));
+        }
+        return t;
+    }
+
+    /**
+     * Test that the iterator returns the same sequence as BFSIterator, with
+     * capacities that truncate most levels.
+     */
+    @Test
+    public void testSameOrderAsBFS() {
+        for (long seed = 1; seed <= 5; seed++) {
+            LinkedTree<Integer> t = randomTree(3000, seed);
+            List<Position<Integer>> expected = toList(new BFSIterator<>(t));
+            for (int capacity : new int[]{2, 3, 8, 64, 100000}) {
+                assertEquals(expected, toList(new BoundedBFSIterator<>(t, capacity)));
+            }
+            Position<Integer> sub = t.firstChild(t.root());
+            assertEquals(toList(new BFSIterator<>(t, sub)),
+                    toList(new BoundedBFSIterator<>(t, sub, 4)));
+        }
+    }
+
+    /**
+     * Test of the factory, set as the iterator of a LinkedTree and of an
+     * IntTree, and rejected by trees without sibling links.
+     */
+    @Test
+    public void testFactory() {
+        LinkedTree<Integer> t = randomTree(2000, 9);
+        List<Position<Integer>> expected = toList(t.iterator());
+        t.setIterator(new BoundedBFSIteratorFactory<>(6));
+        List<Position<Integer>> actual = new ArrayList<>();
+        for (Position<Integer> p : t) {
+            actual.add(p);
+        }
+        assertEquals(expected, actual);
+
+        IntTree ints = new IntTree();
+        Position<Integer> root = ints.addRoot(0);
+        Position<Integer> first = ints.add(1, root);
+        for (int i = 2; i < 100; i++) {
+            ints.add(i, (i % 3 == 0) ? root : first);
+        }
+        expected = toList(ints.iterator());
+        ints.setIterator(new BoundedBFSIteratorFactory<>(2));
+        assertEquals(expected, toList(ints.iterator()));
+
+        ConcurrentLinkedTree<Integer> concurrent = new ConcurrentLinkedTree<>();
+        concurrent.addRoot(0);
+        try {
+            new BoundedBFSIteratorFactory<Integer>().createIterator(concurrent);
+            fail("A tree without sibling links must be rejected");
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+}
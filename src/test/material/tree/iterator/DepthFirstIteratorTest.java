@@ -0,0 +1,151 @@
+package material.tree.iterator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import material.tree.LCRSTree2;
+import material.tree.LinkedTree;
+import material.tree.Position;
+import material.tree.Tree;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Basic tests for the depth-first iterators
+ */
+public class DepthFirstIteratorTest {
+
+    /**
+     * Minimal tree that only exposes the Tree interface, so the iterators
+     * have to use their explicit stack.
+     */
+    private static class PlainTree<E> implements Tree<E> {
+
+        private final Tree<E> tree;
+
+        PlainTree(Tree<E> tree) {
+            this.tree = tree;
+        }
+
+        @Override
+        public int size() {
+            return tree.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return tree.isEmpty();
+        }
+
+        @Override
+        public Position<E> root() {
+            return tree.root();
+        }
+
+        @Override
+        public Position<E> parent(Position<E> v) {
+            return tree.parent(v);
+        }
+
+        @Override
+        public Iterable<? extends Position<E>> children(Position<E> v) {
+            return tree.children(v);
+        }
+
+        @Override
+        public boolean isInternal(Position<E> v) {
+            return tree.isInternal(v);
+        }
+
+        @Override
+        public boolean isLeaf(Position<E> v) {
+            return tree.isLeaf(v);
+        }
+
+        @Override
+        public boolean isRoot(Position<E> v) {
+            return tree.isRoot(v);
+        }
+
+        @Override
+        public Position<E> addRoot(E e) {
+            return tree.addRoot(e);
+        }
+
+        @Override
+        public Iterator<Position<E>> iterator() {
+            return tree.iterator();
+        }
+    }
+
+    /**
+     * Builds A(B(D, E), C(F)) and returns the position of B.
+     */
+    private Position<String> build(LinkedTree<String> t) {
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", a);
+        t.add("D", b);
+        t.add("E", b);
+        t.add("F", c);
+        return b;
+    }
+
+    private List<String> elements(Iterator<Position<String>> it) {
+        List<String> result = new ArrayList<>();
+        while (it.hasNext()) {
+            result.add(it.next().getElement());
+        }
+        return result;
+    }
+
+    @Test
+    public void testPreorder() {
+        LinkedTree<String> t = new LinkedTree<>();
+        build(t);
+        t.setIterator(new PreorderIteratorFactory<String>());
+        assertEquals(Arrays.asList("A", "B", "D", "E", "C", "F"), elements(t.iterator()));
+        assertEquals(Arrays.asList("A", "B", "D", "E", "C", "F"),
+                elements(new PreorderIterator<>(new PlainTree<>(t))));
+    }
+
+    @Test
+    public void testPreorderSubtree() {
+        LinkedTree<String> t = new LinkedTree<>();
+        Position<String> b = build(t);
+        assertEquals(Arrays.asList("B", "D", "E"), elements(new PreorderIterator<>(t, b)));
+        assertEquals(Arrays.asList("B", "D", "E"),
+                elements(new PreorderIterator<>(new PlainTree<>(t), b)));
+    }
+
+    @Test
+    public void testPostorder() {
+        LinkedTree<String> t = new LinkedTree<>();
+        build(t);
+        t.setIterator(new PostorderIteratorFactory<String>());
+        assertEquals(Arrays.asList("D", "E", "B", "F", "C", "A"), elements(t.iterator()));
+        assertEquals(Arrays.asList("D", "E", "B", "F", "C", "A"),
+                elements(new PostorderIterator<>(new PlainTree<>(t))));
+    }
+
+    @Test
+    public void testPostorderSubtree() {
+        LinkedTree<String> t = new LinkedTree<>();
+        Position<String> b = build(t);
+        assertEquals(Arrays.asList("D", "E", "B"), elements(new PostorderIterator<>(t, b)));
+        assertEquals(Arrays.asList("D", "E", "B"),
+                elements(new PostorderIterator<>(new PlainTree<>(t), b)));
+    }
+
+    @Test
+    public void testHandleBasedTree() {
+        LCRSTree2<String> t = new LCRSTree2<>();
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        t.add("C", a);
+        t.add("D", b);
+        assertEquals(Arrays.asList("A", "B", "D", "C"), elements(new PreorderIterator<>(t)));
+        assertEquals(Arrays.asList("D", "B", "C", "A"), elements(new PostorderIterator<>(t)));
+    }
+}
@@ -0,0 +1,93 @@
+package material.tree.iterator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import material.tree.LinkedTree;
+import material.tree.Position;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Basic tests for the parallel breadth-first iterator
+ */
+public class ParallelBFSIteratorTest {
+
+    private static LinkedTree<Integer> randomTree(int size, long seed) {
+        Random random = new Random(seed);
+        LinkedTree<Integer> t = new LinkedTree<>();
+        List<Position<Integer>> nodes = new ArrayList<>();
+        nodes.add(t.addRoot(0));
+        for (int i = 1; i < size; i++) {
+            nodes.add(t.add(i, nodes.get(random.nextInt(nodes.size()))));
+        }
+        return t;
+    }
+
+    private static List<Position<Integer>> toList(Iterator<Position<Integer>> it) {
+        List<Position<Integer>> result = new ArrayList<>();
+        while (it.hasNext()) {
+            result.add(it.next());
+        }
+        return result;
+    }
+
+    /**
+     * Test that the parallel iterator returns the same sequence as BFSIterator.
+     */
+    @Test
+    public void testSameOrderAsBFS() {
+        LinkedTree<Integer> t = randomTree(2000, 3);
+        ParallelBFSIteratorFactory<Integer> factory = new ParallelBFSIteratorFactory<>(ForkJoinPool.commonPool(), 4);
+        assertEquals(toList(new BFSIterator<>(t)), toList(factory.createIterator(t)));
+        Position<Integer> start = t.children(t.root()).iterator().next();
+        assertEquals(toList(new BFSIterator<>(t, start)), toList(factory.createIterator(t, start)));
+    }
+
+    /**
+     * Test the parallel iterator on a tree whose positions must be walked
+     * again after moves and removals, with several worker threads.
+     */
+    @Test
+    public void testAfterModifications() {
+        LinkedTree<Integer> t = randomTree(2000, 7);
+        List<Position<Integer>> nodes = toList(new BFSIterator<>(t));
+        Random random = new Random(7);
+        for (int i = 0; i < 20; i++) {
+            t.moveSubtree(nodes.get(1000 + i), nodes.get(random.nextInt(1000)));
+            t.remove(nodes.get(1500 + i));
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParallelBFSIteratorFactory<Integer> factory = new ParallelBFSIteratorFactory<>(pool, 4);
+            assertEquals(toList(new BFSIterator<>(t)), toList(factory.createIterator(t)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Test of forEachLevel method, of class ParallelBFSIteratorFactory.
+     */
+    @Test
+    public void testForEachLevel() {
+        LinkedTree<Integer> t = randomTree(2000, 5);
+        ParallelBFSIteratorFactory<Integer> factory = new ParallelBFSIteratorFactory<>(ForkJoinPool.commonPool(), 4);
+        // LinkedTree reads are not thread-safe, so the depths are read first
+        Map<Position<Integer>, Integer> depthOf = new HashMap<>();
+        for (Position<Integer> p : t) {
+            depthOf.put(p, t.depth(p));
+        }
+        List<Integer> depths = Collections.synchronizedList(new ArrayList<>());
+        factory.forEachLevel(t, p -> depths.add(depthOf.get(p)));
+        assertEquals(t.size(), depths.size());
+        for (int i = 1; i < depths.size(); i++) {
+            assertTrue(depths.get(i - 1) <= depths.get(i));
+        }
+    }
+}
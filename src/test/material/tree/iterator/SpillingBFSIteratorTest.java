@@ -0,0 +1,141 @@
+package material.tree.iterator;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiFunction;
+import material.tree.IntTree;
+import material.tree.LCRSTree2;
+import material.tree.Position;
+import material.tree.PositionCodec;
+import material.tree.Tree;
+import material.tree.io.IntCodec;
+import material.tree.io.OffHeapTree;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Basic tests for the breadth-first iterator with a spilling queue
+ */
+public class SpillingBFSIteratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static <T extends Tree<Integer>> T fill(T t, Position<Integer> root, int size, long seed,
+            BiFunction<Integer, Position<Integer>, Position<Integer>> add) {
+        Random random = new Random(seed);
+        List<Position<Integer>> nodes = new ArrayList<>();
+        nodes.add(root);
+        for (int i = 1; i < size; i++) {
+            // Half of the nodes hang from the root, so the frontier is wide
+            Position<Integer> parent = random.nextBoolean() ? root : nodes.get(random.nextInt(nodes.size()));
+            nodes.add(add.apply(i, parent));
+        }
+        return t;
+    }
+
+    private static List<Position<Integer>> toList(Iterator<Position<Integer>> it) {
+        List<Position<Integer>> result = new ArrayList<>();
+        while (it.hasNext()) {
+            result.add(it.next());
+        }
+        return result;
+    }
+
+    /**
+     * Test that the spilling iterator returns the same sequence as
+     * BFSIterator, with capacities that force many spills.
+     */
+    @Test
+    public void testSameOrderAsBFS() {
+        LCRSTree2<Integer> t = new LCRSTree2<>();
+        fill(t, t.addRoot(0), 5000, 3, t::add);
+        PositionCodec<Integer> codec = t.positionCodec();
+        Path dir = folder.getRoot().toPath();
+        List<Position<Integer>> expected = toList(new BFSIterator<>(t));
+        for (int capacity : new int[]{2, 3, 64, 1000, 100000}) {
+            SpillingBFSIterator<Integer> it = new SpillingBFSIterator<>(t, codec, capacity, dir);
+            assertEquals(expected, toList(it));
+            assertEquals(capacity < 5000, it.spilledPositions() > 0);
+        }
+        Position<Integer> sub = t.firstChild(t.root());
+        assertEquals(toList(new BFSIterator<>(t, sub)),
+                toList(new SpillingBFSIterator<>(t, sub, codec, 4, dir)));
+        File[] left = folder.getRoot().listFiles();
+        assertEquals(0, left.length);
+    }
+
+    /**
+     * Test that an iterator closed before the end leaves no file, and that
+     * the file is deleted whenever it has been read completely.
+     */
+    @Test
+    public void testCloseBeforeEnd() {
+        LCRSTree2<Integer> t = new LCRSTree2<>();
+        fill(t, t.addRoot(0), 5000, 11, t::add);
+        Path dir = folder.getRoot().toPath();
+        SpillingBFSIterator<Integer> it = new SpillingBFSIterator<>(t, t.positionCodec(), 8, dir);
+        for (int i = 0; i < 10; i++) {
+            it.next();
+        }
+        assertTrue(it.spilledPositions() > 0);
+        assertEquals(1, folder.getRoot().listFiles().length);
+        it.close();
+        assertEquals(0, folder.getRoot().listFiles().length);
+
+        // Every child of the root is spilled, then read back before the grandchildren
+        LCRSTree2<Integer> wide = new LCRSTree2<>();
+        Position<Integer> root = wide.addRoot(0);
+        for (int i = 1; i <= 20; i++) {
+            wide.add(i, root);
+        }
+        it = new SpillingBFSIterator<>(wide, wide.positionCodec(), 4, dir);
+        while (it.hasNext()) {
+            it.next();
+            assertTrue(folder.getRoot().listFiles().length <= 1);
+        }
+        assertEquals(0, folder.getRoot().listFiles().length);
+    }
+
+    /**
+     * Test of the factory with the primitive and off-heap trees.
+     */
+    @Test
+    public void testFactory() {
+        Path dir = folder.getRoot().toPath();
+        IntTree ints = new IntTree();
+        fill(ints, ints.addRoot(0), 2000, 5, (e, p) -> ints.add((int) e, p));
+        List<Position<Integer>> expected = toList(ints.iterator());
+        ints.setIterator(new SpillingBFSIteratorFactory<>(ints.positionCodec(), 16, dir));
+        assertEquals(expected, toList(ints.iterator()));
+
+        try (OffHeapTree<Integer> offHeap = new OffHeapTree<>(new IntCodec())) {
+            fill(offHeap, offHeap.addRoot(0), 2000, 7, offHeap::add);
+            expected = toList(offHeap.iterator());
+            offHeap.setIterator(new SpillingBFSIteratorFactory<>(offHeap.positionCodec(), 16, dir));
+            assertEquals(expected, toList(offHeap.iterator()));
+        }
+        assertEquals(0, folder.getRoot().listFiles().length);
+    }
+
+    /**
+     * Test of decode method, of class PositionCodec, on removed nodes.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testDecodeRemoved() {
+        LCRSTree2<Integer> t = new LCRSTree2<>();
+        Position<Integer> child = t.add(1, t.addRoot(0));
+        PositionCodec<Integer> codec = t.positionCodec();
+        long code = codec.encode(child);
+        assertEquals(child, codec.decode(code));
+        t.remove(child);
+        t.add(2, t.root());
+        codec.decode(code);
+    }
+}
@@ -0,0 +1,136 @@
+package material.tree.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.Map;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import material.tree.LinkedTree;
+import material.tree.Position;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Basic tests for TreeMetrics and LatencyHistogram classes
+ */
+public class TreeMetricsTest {
+
+    /**
+     * Test of operationCompleted method, of class TreeMetrics, attached to a
+     * LinkedTree.
+     */
+    @Test
+    public void testLinkedTreeOperations() {
+        LinkedTree<String> t = new LinkedTree<>();
+        TreeMetrics metrics = new TreeMetrics();
+        t.setListener(metrics);
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", a);
+        t.add("D", a);
+        Position<String> e = t.add("E", b);
+        t.add("F", e);
+        t.replace(c, "X");
+        t.swapElements(a, c);
+        t.mutate(batch -> batch.add("G", a));
+        Iterator<Position<String>> it = t.iterator();
+        while (it.hasNext()) {
+            it.next();
+        }
+        t.remove(b);
+        try {
+            t.replace(e, "Y");
+            fail("Removed position accepted");
+        } catch (IllegalStateException ex) {
+        }
+
+        Map<String, Long> counts = metrics.getOperationCounts();
+        assertEquals(Long.valueOf(6), counts.get("ADD"));
+        assertEquals(Long.valueOf(1), counts.get("REMOVE"));
+        assertEquals(Long.valueOf(1), counts.get("REPLACE"));
+        assertEquals(Long.valueOf(1), counts.get("SWAP"));
+        assertEquals(Long.valueOf(1), counts.get("ITERATOR"));
+        assertEquals(Long.valueOf(1), counts.get("BATCH"));
+        assertEquals(1, metrics.getRejectedPositions());
+        assertEquals(4, metrics.getSize());
+        assertEquals(3, metrics.getMaxDepth());
+        assertEquals(4, metrics.getMaxFanOut());
+        assertEquals(4, metrics.getPeakIteratorQueueDepth());
+        assertTrue(metrics.getMaxLatencies().get("ADD") >= metrics.getMeanLatencies().get("ADD"));
+
+        t.setListener(null);
+        t.add("H", a);
+        assertEquals(Long.valueOf(6), metrics.getOperationCounts().get("ADD"));
+        metrics.reset();
+        assertEquals(Long.valueOf(0), metrics.getOperationCounts().get("ADD"));
+        assertEquals(0, metrics.getMaxDepth());
+    }
+
+    /**
+     * Test that a removal reports the size without counting the removed
+     * subtree, which is only counted by size().
+     */
+    @Test
+    public void testRemoveReportsUpperBound() {
+        LinkedTree<Integer> t = new LinkedTree<>();
+        TreeMetrics metrics = new TreeMetrics();
+        t.setListener(metrics);
+        Position<Integer> root = t.addRoot(0);
+        Position<Integer> top = t.add(1, root);
+        Position<Integer> p = top;
+        for (int i = 2; i < 1000; i++) {
+            p = t.add(i, p);
+        }
+        t.remove(top);
+        assertTrue(metrics.getSize() > 1);
+        assertTrue(metrics.getSize() < 1000);
+        assertEquals(1, t.size());
+        t.add(1, root);
+        assertEquals(2, metrics.getSize());
+    }
+
+    /**
+     * Test of percentile method, of class LatencyHistogram.
+     */
+    @Test
+    public void testPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(0.5));
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100);
+        }
+        histogram.record(5000);
+        assertEquals(100, histogram.count());
+        assertEquals(149, histogram.mean());
+        assertEquals(127, histogram.percentile(0.5));
+        assertEquals(127, histogram.percentile(0.99));
+        assertEquals(8191, histogram.percentile(1));
+        histogram.record(0);
+        assertEquals(1, histogram.percentile(0));
+    }
+
+    /**
+     * Test of register method, of class TreeMetrics.
+     */
+    @Test
+    public void testRegister() throws Exception {
+        TreeMetrics metrics = new TreeMetrics();
+        LinkedTree<Integer> t = new LinkedTree<>();
+        t.setListener(metrics);
+        t.add(1, t.addRoot(0));
+        ObjectName name = metrics.register("test tree");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(2, server.getAttribute(name, "Size"));
+            assertEquals(1, server.getAttribute(name, "MaxDepth"));
+            try {
+                metrics.register("test tree");
+                fail("Registered twice");
+            } catch (IllegalStateException ex) {
+            }
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+}
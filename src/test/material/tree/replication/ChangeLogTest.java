@@ -0,0 +1,217 @@
+package material.tree.replication;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import material.tree.LinkedTree;
+import material.tree.Position;
+import material.tree.Tree;
+import material.tree.io.StringCodec;
+import material.tree.iterator.BFSIteratorFactory;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Basic tests for ChangeLog and ChangeApplier classes
+ */
+public class ChangeLogTest {
+
+    /**
+     * Test of the entries recorded by ChangeLog, applied in process.
+     */
+    @Test
+    public void testRecordAndApply() {
+        LinkedTree<String> t = new LinkedTree<>();
+        List<TreeChange<String>> changes = new ArrayList<>();
+        ChangeLog<String> log = new ChangeLog<>(t, new StringCodec(), changes::add);
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", a);
+        Position<String> d = t.add("D", b);
+        t.replace(c, "X");
+        t.swapElements(a, d);
+        t.swapElements(a, a);
+        t.remove(b);
+        t.mutate(batch -> {
+            Position<String> e = batch.add("E", c);
+            batch.add("F", e);
+            batch.replace(a, "Y");
+        });
+        assertEquals(10, changes.size());
+        assertEquals(10, log.getSequence());
+        assertEquals(TreeChange.Type.ADD_ROOT, changes.get(0).getType());
+        assertEquals(TreeChange.Type.REMOVE, changes.get(6).getType());
+        assertEquals(log.getId(c), changes.get(7).getOther());
+        assertEquals(0, log.getId(d));
+
+        ChangeApplier<String> replica = new ChangeApplier<>(new StringCodec());
+        for (TreeChange<String> change : changes) {
+            assertTrue(replica.apply(change));
+        }
+        assertFalse(replica.apply(changes.get(3)));
+        assertEquals(describe(t), describe(replica.getTree()));
+        assertEquals("X", replica.getPosition(log.getId(c)).getElement());
+        assertNull(replica.getPosition(4));
+    }
+
+    /**
+     * Test of random modifications replicated through a binary stream, with
+     * a second replica that catches up from a checkpoint.
+     */
+    @Test
+    public void testStreamAndCheckpoint() throws IOException {
+        Random random = new Random(42);
+        LinkedTree<String> t = new LinkedTree<>();
+        t.addRoot("root");
+        for (int i = 0; i < 50; i++) {
+            t.add("n" + i, t.root());
+        }
+        ByteArrayOutputStream logStream = new ByteArrayOutputStream();
+        ByteArrayOutputStream checkpointStream = new ByteArrayOutputStream();
+        ByteArrayOutputStream initial = new ByteArrayOutputStream();
+        ChangeLog<String> log = new ChangeLog<>(t, new StringCodec(), logStream);
+        assertEquals(0, log.checkpoint(initial));
+        long checkpointed = 0;
+        for (int i = 0; i < 2000; i++) {
+            List<Position<String>> nodes = positions(t);
+            Position<String> p = nodes.get(random.nextInt(nodes.size()));
+            int op = random.nextInt(10);
+            if (op < 5) {
+                t.add("m" + i, p);
+            } else if (op < 6 && !t.isRoot(p)) {
+                t.remove(p);
+            } else if (op < 7) {
+                t.replace(p, "r" + i);
+            } else if (op < 8) {
+                t.swapElements(p, nodes.get(random.nextInt(nodes.size())));
+            } else if (op < 9) {
+                t.mutate(batch -> {
+                    Position<String> q = batch.add("b", p);
+                    batch.add("c", q);
+                    Position<String> other = nodes.get(random.nextInt(nodes.size()));
+                    if (!t.isRoot(other)) {
+                        batch.remove(other);
+                    }
+                });
+            }
+            if (i == 1000) {
+                checkpointed = log.checkpoint(checkpointStream);
+                assertEquals(0, log.getChangesSinceCheckpoint());
+            }
+        }
+        log.close();
+        String expected = describe(t);
+        t.add("unrecorded", t.root());
+        byte[] entries = logStream.toByteArray();
+
+        ChangeApplier<String> replica = new ChangeApplier<>(new StringCodec(),
+                new ByteArrayInputStream(initial.toByteArray()));
+        assertEquals(log.getSequence(), replica.apply(new ByteArrayInputStream(entries)));
+        ChangeApplier<String> late = new ChangeApplier<>(new StringCodec(),
+                new ByteArrayInputStream(checkpointStream.toByteArray()));
+        assertEquals(checkpointed, late.getSequence());
+        assertEquals(log.getSequence() - checkpointed, late.apply(new ByteArrayInputStream(entries)));
+        assertEquals(expected, describe(replica.getTree()));
+        assertEquals(expected, describe(late.getTree()));
+        assertEquals(log.getSequence(), replica.getSequence());
+    }
+
+    /**
+     * Test of positionsRemapped method, of class ChangeLog, after a relayout
+     * of the recorded tree.
+     */
+    @Test
+    public void testRelayout() {
+        LinkedTree<String> t = new LinkedTree<>();
+        List<TreeChange<String>> changes = new ArrayList<>();
+        ChangeLog<String> log = new ChangeLog<>(t, new StringCodec(), changes::add);
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        long id = log.getId(b);
+        Map<Position<String>, Position<String>> mapping = t.relayout(new BFSIteratorFactory<>());
+        assertEquals(0, log.getId(b));
+        assertEquals(id, log.getId(mapping.get(b)));
+        t.add("C", mapping.get(b));
+        assertEquals(id, changes.get(2).getOther());
+        ChangeApplier<String> replica = new ChangeApplier<>(new StringCodec());
+        changes.forEach(replica::apply);
+        assertEquals(describe(t), describe(replica.getTree()));
+    }
+
+    /**
+     * Test of the entries recorded for moveSubtree, graft and split.
+     */
+    @Test
+    public void testMoveGraftAndSplit() {
+        LinkedTree<String> t = new LinkedTree<>();
+        List<TreeChange<String>> changes = new ArrayList<>();
+        new ChangeLog<>(t, new StringCodec(), changes::add);
+        Position<String> a = t.addRoot("A");
+        Position<String> b = t.add("B", a);
+        Position<String> c = t.add("C", a);
+        t.add("D", b);
+        t.moveSubtree(b, c);
+        LinkedTree<String> other = new LinkedTree<>();
+        other.add("F", other.add("E", other.addRoot("R")));
+        t.graft(other, a);
+        t.split(b);
+        assertEquals(TreeChange.Type.MOVE, changes.get(4).getType());
+        assertEquals(TreeChange.Type.REMOVE, changes.get(changes.size() - 1).getType());
+
+        ChangeApplier<String> replica = new ChangeApplier<>(new StringCodec());
+        changes.forEach(replica::apply);
+        assertEquals(describe(t), describe(replica.getTree()));
+        assertEquals("A(C()R(E(F())))", describe(replica.getTree()));
+    }
+
+    /**
+     * Test of apply method, of class ChangeApplier, with missing entries.
+     */
+    @Test
+    public void testGap() {
+        ChangeApplier<String> replica = new ChangeApplier<>(new StringCodec());
+        replica.apply(new TreeChange<>(TreeChange.Type.ADD_ROOT, 1, 1, 0, "A"));
+        try {
+            replica.apply(new TreeChange<>(TreeChange.Type.ADD, 3, 2, 1, "B"));
+            fail("Missing entries must be rejected");
+        } catch (IllegalStateException ex) {
+        }
+        try {
+            replica.apply(new TreeChange<>(TreeChange.Type.ADD, 2, 3, 7, "B"));
+            fail("Unknown parents must be rejected");
+        } catch (IllegalStateException ex) {
+        }
+        assertEquals(1, replica.getSequence());
+        assertEquals(1, replica.getTree().size());
+    }
+
+    private static <E> List<Position<E>> positions(Tree<E> t) {
+        List<Position<E>> list = new ArrayList<>();
+        t.iterator().forEachRemaining(list::add);
+        return list;
+    }
+
+    /**
+     * Writes a tree as nested parentheses, so equal strings mean equal
+     * shapes and elements.
+     */
+    private static <E> String describe(Tree<E> t) {
+        StringBuilder sb = new StringBuilder();
+        if (!t.isEmpty()) {
+            describe(t, t.root(), sb);
+        }
+        return sb.toString();
+    }
+
+    private static <E> void describe(Tree<E> t, Position<E> p, StringBuilder sb) {
+        sb.append(p.getElement()).append('(');
+        for (Position<E> child : t.children(p)) {
+            describe(t, child, sb);
+        }
+        sb.append(')');
+    }
+}